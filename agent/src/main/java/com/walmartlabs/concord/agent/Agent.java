@@ -33,6 +33,8 @@ import com.walmartlabs.concord.client.ProcessApi;
 import com.walmartlabs.concord.client.ProcessEntry.StatusEnum;
 import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.server.queueclient.QueueClient;
+import com.walmartlabs.concord.server.queueclient.message.Message;
+import com.walmartlabs.concord.server.queueclient.message.ProcessBatchResponse;
 import com.walmartlabs.concord.server.queueclient.message.ProcessRequest;
 import com.walmartlabs.concord.server.queueclient.message.ProcessResponse;
 import org.slf4j.Logger;
@@ -43,10 +45,10 @@ import javax.inject.Named;
 import javax.inject.Singleton;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 @Named
 @Singleton
@@ -86,7 +88,8 @@ public class Agent {
         ExecutorService executor = Executors.newCachedThreadPool();
 
         int workersCount = agentCfg.getWorkersCount();
-        log.info("run -> using {} worker(s)", workersCount);
+        int acquireBatchSize = Math.max(1, agentCfg.getAcquireBatchSize());
+        log.info("run -> using {} worker(s), acquire batch size: {}", workersCount, acquireBatchSize);
         Semaphore workersAvailable = new Semaphore(workersCount);
 
         // listen for maintenance mode requests
@@ -105,19 +108,22 @@ public class Agent {
             // check if the maintenance mode is enabled. If so, hang there indefinitely
             validateMaintenanceMode();
 
-            // TODO parallel acquire?
-            // wait for a free "slot"
+            // wait for a free "slot" and grab any other free slots, up to the batch size
             workersAvailable.acquire();
-            log.info("run -> acquired a slot, {}/{} remains", workersAvailable.availablePermits(), workersCount);
+            int slots = 1;
+            while (slots < acquireBatchSize && workersAvailable.tryAcquire()) {
+                slots++;
+            }
+            log.info("run -> acquired {} slot(s), {}/{} remains", slots, workersAvailable.availablePermits(), workersCount);
 
-            // fetch the next job
-            JobRequest jobRequest;
+            // fetch the next job(s)
+            List<JobRequest> jobRequests;
             try {
-                jobRequest = take(queueClient);
+                jobRequests = take(queueClient, slots, acquireBatchSize > 1);
             } catch (Exception e) {
                 log.warn("run -> error while fetching a job: {}", e.getMessage());
 
-                workersAvailable.release();
+                workersAvailable.release(slots);
 
                 // wait before retrying
                 // the server is not reachable or unhealthy, no point retrying immediately
@@ -125,22 +131,32 @@ public class Agent {
                 continue;
             }
 
-            if (jobRequest == null) {
-                // can happen on switching to maintenance mode or reconnecting, etc
-                workersAvailable.release();
-                continue;
+            // return the unused slots
+            // no jobs can happen on switching to maintenance mode or reconnecting, etc
+            if (jobRequests.size() < slots) {
+                workersAvailable.release(slots - jobRequests.size());
             }
 
-            UUID instanceId = jobRequest.getInstanceId();
+            for (JobRequest jobRequest : jobRequests) {
+                UUID instanceId = jobRequest.getInstanceId();
 
-            // worker will handle the process' lifecycle
-            Worker w = workerFactory.create(jobRequest, createStatusCallback(instanceId, workersAvailable));
+                try {
+                    // worker will handle the process' lifecycle
+                    Worker w = workerFactory.create(jobRequest, createStatusCallback(instanceId, workersAvailable));
 
-            // register the worker so we can cancel it later
-            activeWorkers.put(instanceId, w);
+                    // register the worker so we can cancel it later
+                    activeWorkers.put(instanceId, w);
 
-            // start a new thread to process the job
-            executor.submit(w);
+                    // start a new thread to process the job
+                    executor.submit(w);
+                } catch (Exception e) {
+                    // the rest of the batch can still run, return the process to the queue
+                    log.warn("run -> error while starting a job {}: {}", instanceId, e.getMessage());
+                    activeWorkers.remove(instanceId);
+                    workersAvailable.release();
+                    requeue(instanceId);
+                }
+            }
         }
     }
 
@@ -203,17 +219,71 @@ public class Agent {
         };
     }
 
-    private JobRequest take(QueueClient queueClient) throws Exception {
-        Future<ProcessResponse> req = queueClient.request(new ProcessRequest(agentCfg.getCapabilities()));
+    private List<JobRequest> take(QueueClient queueClient, int maxCount, boolean batch) throws Exception {
+        // older servers don't support batch requests, send maxCount only if batching is enabled
+        ProcessRequest request = new ProcessRequest(agentCfg.getCapabilities(), batch ? maxCount : null);
+        Future<Message> req = queueClient.request(request);
 
-        ProcessResponse resp = req.get();
+        Message resp = req.get();
         if (resp == null) {
-            return null;
+            return Collections.emptyList();
+        }
+
+        List<ProcessResponse> processes;
+        if (resp instanceof ProcessBatchResponse) {
+            processes = ((ProcessBatchResponse) resp).getProcesses();
+        } else {
+            processes = Collections.singletonList((ProcessResponse) resp);
+        }
+
+        if (processes == null || processes.isEmpty()) {
+            return Collections.emptyList();
         }
 
+        return prepareJobs(processes, maxCount, this::createJobRequest, this::requeue);
+    }
+
+    /**
+     * Prepares the jobs for the received processes. A failure doesn't affect
+     * the rest of the batch: the processes that can't be prepared or that
+     * exceed {@code maxCount} are returned to the queue.
+     */
+    static List<JobRequest> prepareJobs(List<ProcessResponse> processes, int maxCount,
+                                        JobRequestFactory factory, Consumer<UUID> requeue) {
+
+        List<JobRequest> result = new ArrayList<>(Math.min(processes.size(), maxCount));
+        for (ProcessResponse p : processes) {
+            UUID instanceId = p.getProcessId();
+
+            if (result.size() >= maxCount) {
+                // shouldn't happen, the server respects maxCount
+                log.warn("prepareJobs -> expected at most {} process(es), returning {} to the queue", maxCount, instanceId);
+                requeue.accept(instanceId);
+                continue;
+            }
+
+            try {
+                result.add(factory.create(p));
+            } catch (Exception e) {
+                log.warn("prepareJobs -> error while preparing a job {}, returning it to the queue: {}", instanceId, e.getMessage());
+                requeue.accept(instanceId);
+            }
+        }
+        return result;
+    }
+
+    private JobRequest createJobRequest(ProcessResponse resp) throws IOException {
         Path workDir = IOUtils.createTempDir(agentCfg.getPayloadDir(), "workDir");
+        try {
+            return JobRequest.from(resp, workDir, processLogFactory);
+        } catch (RuntimeException e) {
+            IOUtils.deleteRecursively(workDir);
+            throw e;
+        }
+    }
 
-        return JobRequest.from(resp, workDir, processLogFactory);
+    private void requeue(UUID instanceId) {
+        updateStatus(instanceId, StatusEnum.ENQUEUED);
     }
 
     private void updateStatus(UUID instanceId, StatusEnum s) {
@@ -235,4 +305,9 @@ public class Agent {
 
         w.cancel();
     }
+
+    interface JobRequestFactory {
+
+        JobRequest create(ProcessResponse resp) throws Exception;
+    }
 }
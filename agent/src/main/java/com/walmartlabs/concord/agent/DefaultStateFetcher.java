@@ -20,6 +20,8 @@ package com.walmartlabs.concord.agent;
  * =====
  */
 
+import com.google.gson.reflect.TypeToken;
+import com.walmartlabs.concord.ApiException;
 import com.walmartlabs.concord.client.ClientUtils;
 import com.walmartlabs.concord.client.ProcessApi;
 import com.walmartlabs.concord.common.IOUtils;
@@ -30,8 +32,10 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import java.io.File;
+import java.lang.reflect.Type;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.*;
 
 @Named
 @Singleton
@@ -39,15 +43,34 @@ public class DefaultStateFetcher implements StateFetcher {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultStateFetcher.class);
 
+    private static final Type MANIFEST_TYPE = new TypeToken<Map<String, StateManifestEntry>>() {
+    }.getType();
+
     private final ProcessApi processApi;
+    private final StateCache stateCache;
 
     @Inject
-    public DefaultStateFetcher(ProcessApi processApi) {
+    public DefaultStateFetcher(ProcessApi processApi, StateCache stateCache) {
         this.processApi = processApi;
+        this.stateCache = stateCache;
     }
 
     @Override
     public void downloadState(JobRequest job) throws Exception {
+        if (stateCache.isEnabled()) {
+            try {
+                downloadDelta(job);
+                return;
+            } catch (ApiException e) {
+                if (e.getCode() != 404) {
+                    throw e;
+                }
+
+                // older server versions
+                log.warn("downloadState ['{}'] -> delta download is not supported by the server, downloading the whole state", job.getInstanceId());
+            }
+        }
+
         File payload = null;
         try {
             payload = ClientUtils.withRetry(AgentConstants.API_CALL_MAX_RETRIES, AgentConstants.API_CALL_RETRY_DELAY, () -> processApi.downloadState(job.getInstanceId()));
@@ -59,6 +82,52 @@ public class DefaultStateFetcher implements StateFetcher {
         }
     }
 
+    /**
+     * Downloads only the files which are not in the local cache.
+     */
+    private void downloadDelta(JobRequest job) throws Exception {
+        UUID instanceId = job.getInstanceId();
+        Path payloadDir = job.getPayloadDir();
+
+        Map<String, StateManifestEntry> manifest = ClientUtils.withRetry(AgentConstants.API_CALL_MAX_RETRIES, AgentConstants.API_CALL_RETRY_DELAY,
+                () -> ClientUtils.<Map<String, StateManifestEntry>>getData(processApi.getApiClient(), "/api/v1/process/" + instanceId + "/state/manifest", MANIFEST_TYPE).getData());
+
+        List<String> missing = new ArrayList<>();
+        for (Map.Entry<String, StateManifestEntry> e : manifest.entrySet()) {
+            StateManifestEntry entry = e.getValue();
+            if (entry.getHash() != null && stateCache.copyTo(entry.getHash(), payloadDir.resolve(e.getKey()), entry.getUnixMode())) {
+                continue;
+            }
+            missing.add(e.getKey());
+        }
+
+        if (!missing.isEmpty()) {
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Content-Type", "application/json");
+
+            File payload = null;
+            try {
+                payload = ClientUtils.withRetry(AgentConstants.API_CALL_MAX_RETRIES, AgentConstants.API_CALL_RETRY_DELAY,
+                        () -> ClientUtils.<File>postData(processApi.getApiClient(), "/api/v1/process/" + instanceId + "/state/snapshot/files", missing, headers, File.class).getData());
+
+                IOUtils.unzip(payload.toPath(), payloadDir, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                if (payload != null) {
+                    delete(payload.toPath());
+                }
+            }
+
+            for (String n : missing) {
+                String hash = manifest.get(n).getHash();
+                if (hash != null) {
+                    stateCache.put(hash, payloadDir.resolve(n));
+                }
+            }
+        }
+
+        log.info("downloadDelta ['{}'] -> {} file(s), {} downloaded", instanceId, manifest.size(), missing.size());
+    }
+
     private static void delete(Path dir) {
         if (dir == null) {
             return;
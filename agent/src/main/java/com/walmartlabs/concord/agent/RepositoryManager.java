@@ -55,6 +55,8 @@ public class RepositoryManager {
         GitClientConfiguration clientCfg = GitClientConfiguration.builder()
                 .oauthToken(gitCfg.getToken())
                 .shallowClone(gitCfg.isShallowClone())
+                .partialCloneFilter(gitCfg.getPartialCloneFilter())
+                .partialCloneRepositories(gitCfg.getPartialCloneRepositories())
                 .fetchTimeout(gitCfg.getFetchTimeout())
                 .httpLowSpeedLimit(gitCfg.getHttpLowSpeedLimit())
                 .httpLowSpeedTime(gitCfg.getHttpLowSpeedTime())
@@ -0,0 +1,207 @@
+package com.walmartlabs.concord.agent;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.agent.cfg.StateCacheConfiguration;
+import com.walmartlabs.concord.common.Posix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Local content-addressed cache of the process state files.
+ * The files are stored by their SHA-256 hashes (as returned by the server).
+ * The least recently used files are removed when the cache exceeds
+ * the configured size.
+ */
+@Named
+@Singleton
+public class StateCache {
+
+    private static final Logger log = LoggerFactory.getLogger(StateCache.class);
+
+    /**
+     * Percentage of {@code maxSize} to keep when the cache is cleaned up.
+     */
+    private static final double CLEANUP_TARGET = 0.8;
+
+    private final boolean enabled;
+    private final Path cacheDir;
+    private final long maxSize;
+
+    private final AtomicLong size = new AtomicLong();
+
+    @Inject
+    public StateCache(StateCacheConfiguration cfg) {
+        this.enabled = cfg.isEnabled();
+        this.cacheDir = cfg.getCacheDir();
+        this.maxSize = cfg.getMaxSize();
+
+        if (enabled) {
+            this.size.set(listFiles().stream().mapToLong(f -> f.size).sum());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Copies a cached file to the specified destination.
+     *
+     * @return {@code false} if the file is not in the cache.
+     */
+    public boolean copyTo(String hash, Path dst, int unixMode) throws IOException {
+        Path src = path(hash);
+
+        try {
+            Path parent = dst.getParent();
+            if (parent != null && !Files.exists(parent)) {
+                Files.createDirectories(parent);
+            }
+
+            Files.copy(src, dst, StandardCopyOption.REPLACE_EXISTING);
+            Files.setPosixFilePermissions(dst, Posix.posix(unixMode));
+
+            // used for the LRU cleanup
+            Files.setLastModifiedTime(src, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds a file to the cache. The caller is responsible for the
+     * correctness of the hash.
+     */
+    public void put(String hash, Path src) throws IOException {
+        Path dst = path(hash);
+        if (Files.exists(dst)) {
+            Files.setLastModifiedTime(dst, FileTime.fromMillis(System.currentTimeMillis()));
+            return;
+        }
+
+        Files.createDirectories(dst.getParent());
+
+        // copy into a temporary file first, so the readers never see partially written data
+        Path tmp = Files.createTempFile(dst.getParent(), hash, ".tmp");
+        try {
+            Files.copy(src, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, dst, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        if (size.addAndGet(Files.size(dst)) > maxSize) {
+            cleanup();
+        }
+    }
+
+    private synchronized void cleanup() {
+        if (size.get() <= maxSize) {
+            // already cleaned up by another thread
+            return;
+        }
+
+        List<CachedFile> files = listFiles();
+        files.sort(Comparator.comparing(f -> f.lastModified));
+
+        long total = files.stream().mapToLong(f -> f.size).sum();
+        long target = (long) (maxSize * CLEANUP_TARGET);
+
+        int removed = 0;
+        for (CachedFile f : files) {
+            if (total <= target) {
+                break;
+            }
+
+            try {
+                Files.deleteIfExists(f.path);
+                total -= f.size;
+                removed++;
+            } catch (IOException e) {
+                log.warn("cleanup -> can't remove {}: {}", f.path, e.getMessage());
+            }
+        }
+
+        size.set(total);
+        log.info("cleanup -> removed {} file(s), current size: {} byte(s)", removed, total);
+    }
+
+    private List<CachedFile> listFiles() {
+        try (Stream<Path> s = Files.walk(cacheDir)) {
+            return s.filter(p -> !p.getFileName().toString().endsWith(".tmp"))
+                    .map(StateCache::toCachedFile)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Path path(String hash) {
+        if (hash.length() < 3 || hash.contains("/") || hash.contains("..")) {
+            throw new IllegalArgumentException("Invalid hash: " + hash);
+        }
+
+        // use the first two characters as a subdirectory to keep the directories small
+        return cacheDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static CachedFile toCachedFile(Path p) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                return null;
+            }
+            return new CachedFile(p, attrs.size(), attrs.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            // removed concurrently
+            return null;
+        }
+    }
+
+    private static final class CachedFile {
+
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+
+        private CachedFile(Path path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.walmartlabs.concord.agent;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.io.Serializable;
+
+/**
+ * A single file in a process state manifest.
+ * Must match the server's {@code StateManifestEntry}.
+ */
+public class StateManifestEntry implements Serializable {
+
+    /**
+     * SHA-256 of the file's content, {@code null} if unknown.
+     */
+    private final String hash;
+    private final int unixMode;
+
+    public StateManifestEntry(String hash, int unixMode) {
+        this.hash = hash;
+        this.unixMode = unixMode;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public int getUnixMode() {
+        return unixMode;
+    }
+}
@@ -36,6 +36,7 @@ public abstract class AbstractRunnerConfiguration {
     private final Path cfgDir;
     private final String javaCmd;
     private final String mainClass;
+    private final String daemonMainClass;
     private final boolean securityManagerEnabled;
 
     public AbstractRunnerConfiguration(String prefix, Config cfg) {
@@ -53,6 +54,7 @@ public abstract class AbstractRunnerConfiguration {
         this.cfgDir = getDir(cfg, prefix + ".cfgDir");
         this.javaCmd = cfg.getString(prefix + ".javaCmd");
         this.mainClass = cfg.getString(prefix + ".mainClass");
+        this.daemonMainClass = cfg.hasPath(prefix + ".daemonMainClass") ? cfg.getString(prefix + ".daemonMainClass") : null;
         this.securityManagerEnabled = cfg.getBoolean(prefix + ".securityManagerEnabled");
     }
 
@@ -72,6 +74,14 @@ public abstract class AbstractRunnerConfiguration {
         return mainClass;
     }
 
+    /**
+     * Main class of the runner daemon or {@code null} if the runtime
+     * doesn't support the daemon mode.
+     */
+    public String getDaemonMainClass() {
+        return daemonMainClass;
+    }
+
     public boolean isSecurityManagerEnabled() {
         return securityManagerEnabled;
     }
@@ -52,6 +52,7 @@ public class AgentConfiguration {
     private final long logMaxDelay;
 
     private final int workersCount;
+    private final int acquireBatchSize;
     private final long pollInterval;
     private final int maintenanceModeListenerPort;
 
@@ -70,6 +71,7 @@ public class AgentConfiguration {
         this.logMaxDelay = cfg.getDuration("logMaxDelay", TimeUnit.MILLISECONDS);
 
         this.workersCount = cfg.getInt("workersCount");
+        this.acquireBatchSize = cfg.getInt("acquireBatchSize");
         this.maintenanceModeListenerPort = cfg.getInt("maintenanceModeListenerPort");
 
         this.pollInterval = cfg.getDuration("pollInterval", TimeUnit.MILLISECONDS);
@@ -107,6 +109,10 @@ public class AgentConfiguration {
         return workersCount;
     }
 
+    public int getAcquireBatchSize() {
+        return acquireBatchSize;
+    }
+
     public long getPollInterval() {
         return pollInterval;
     }
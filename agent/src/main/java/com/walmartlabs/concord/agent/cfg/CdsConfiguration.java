@@ -0,0 +1,59 @@
+package com.walmartlabs.concord.agent.cfg;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.typesafe.config.Config;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static com.walmartlabs.concord.agent.cfg.Utils.getDir;
+
+@Named
+@Singleton
+public class CdsConfiguration {
+
+    private final boolean enabled;
+    private final Path archiveDir;
+    private final long maxUnusedAge;
+
+    @Inject
+    public CdsConfiguration(Config cfg) {
+        this.enabled = cfg.getBoolean("cds.enabled");
+        this.archiveDir = getDir(cfg, "cds.archiveDir");
+        this.maxUnusedAge = cfg.getDuration("cds.maxUnusedAge", TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getArchiveDir() {
+        return archiveDir;
+    }
+
+    public long getMaxUnusedAge() {
+        return maxUnusedAge;
+    }
+}
@@ -27,6 +27,7 @@ import javax.inject.Named;
 import javax.inject.Singleton;
 
 import java.time.Duration;
+import java.util.List;
 
 import static com.walmartlabs.concord.agent.cfg.Utils.getStringOrDefault;
 
@@ -36,6 +37,8 @@ public class GitConfiguration {
 
     private final String token;
     private final boolean shallowClone;
+    private final String partialCloneFilter;
+    private final List<String> partialCloneRepositories;
     private final Duration fetchTimeout;
     private final int httpLowSpeedLimit;
     private final int httpLowSpeedTime;
@@ -46,6 +49,8 @@ public class GitConfiguration {
     public GitConfiguration(Config cfg) {
         this.token = getStringOrDefault(cfg, "git.oauth", () -> null);
         this.shallowClone = cfg.getBoolean("git.shallowClone");
+        this.partialCloneFilter = getStringOrDefault(cfg, "git.partialCloneFilter", () -> null);
+        this.partialCloneRepositories = cfg.getStringList("git.partialCloneRepositories");
         this.fetchTimeout = cfg.getDuration("git.fetchTimeout");
         this.httpLowSpeedLimit = cfg.getInt("git.httpLowSpeedLimit");
         this.httpLowSpeedTime = cfg.getInt("git.httpLowSpeedTime");
@@ -61,6 +66,14 @@ public class GitConfiguration {
         return shallowClone;
     }
 
+    public String getPartialCloneFilter() {
+        return partialCloneFilter;
+    }
+
+    public List<String> getPartialCloneRepositories() {
+        return partialCloneRepositories;
+    }
+
     public Duration getFetchTimeout() {
         return fetchTimeout;
     }
@@ -33,11 +33,17 @@ public class PreForkConfiguration {
 
     private final long maxAge;
     private final int maxCount;
+    private final int minIdle;
+    private final int maxIdle;
+    private final long demandHalfLife;
 
     @Inject
     public PreForkConfiguration(Config cfg) {
         this.maxAge = cfg.getDuration("prefork.maxAge", TimeUnit.MILLISECONDS);
         this.maxCount = cfg.getInt("prefork.maxCount");
+        this.minIdle = cfg.getInt("prefork.minIdle");
+        this.maxIdle = cfg.getInt("prefork.maxIdle");
+        this.demandHalfLife = cfg.getDuration("prefork.demandHalfLife", TimeUnit.MILLISECONDS);
     }
 
     public long getMaxAge() {
@@ -47,4 +53,16 @@ public class PreForkConfiguration {
     public int getMaxCount() {
         return maxCount;
     }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    public long getDemandHalfLife() {
+        return demandHalfLife;
+    }
 }
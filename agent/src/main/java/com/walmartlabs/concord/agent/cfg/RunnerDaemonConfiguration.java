@@ -0,0 +1,74 @@
+package com.walmartlabs.concord.agent.cfg;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.typesafe.config.Config;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.TimeUnit;
+
+@Named
+@Singleton
+public class RunnerDaemonConfiguration {
+
+    private final boolean enabled;
+    private final int maxRuns;
+    private final double maxHeapUsage;
+    private final int maxIdle;
+    private final long maxIdleTime;
+    private final long startTimeout;
+
+    @Inject
+    public RunnerDaemonConfiguration(Config cfg) {
+        this.enabled = cfg.getBoolean("runnerDaemon.enabled");
+        this.maxRuns = cfg.getInt("runnerDaemon.maxRuns");
+        this.maxHeapUsage = cfg.getDouble("runnerDaemon.maxHeapUsage");
+        this.maxIdle = cfg.getInt("runnerDaemon.maxIdle");
+        this.maxIdleTime = cfg.getDuration("runnerDaemon.maxIdleTime", TimeUnit.MILLISECONDS);
+        this.startTimeout = cfg.getDuration("runnerDaemon.startTimeout", TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getMaxRuns() {
+        return maxRuns;
+    }
+
+    public double getMaxHeapUsage() {
+        return maxHeapUsage;
+    }
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    public long getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    public long getStartTimeout() {
+        return startTimeout;
+    }
+}
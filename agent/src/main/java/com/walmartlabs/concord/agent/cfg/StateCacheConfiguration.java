@@ -0,0 +1,58 @@
+package com.walmartlabs.concord.agent.cfg;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.typesafe.config.Config;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.nio.file.Path;
+
+import static com.walmartlabs.concord.agent.cfg.Utils.getDir;
+
+@Named
+@Singleton
+public class StateCacheConfiguration {
+
+    private final boolean enabled;
+    private final Path cacheDir;
+    private final long maxSize;
+
+    @Inject
+    public StateCacheConfiguration(Config cfg) {
+        this.enabled = cfg.getBoolean("stateCache.enabled");
+        this.cacheDir = getDir(cfg, "stateCache.cacheDir");
+        this.maxSize = cfg.getBytes("stateCache.maxSize");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getCacheDir() {
+        return cacheDir;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+}
@@ -0,0 +1,343 @@
+package com.walmartlabs.concord.agent.executors.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.common.hash.HashCode;
+import com.walmartlabs.concord.agent.cfg.CdsConfiguration;
+import com.walmartlabs.concord.common.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * AppCDS (Application Class Data Sharing) archives of the runner JVMs,
+ * one archive per command line hash.
+ * <p>
+ * The first process of each hash is started with {@code -XX:ArchiveClassesAtExit}
+ * and the resulting archive is used by the subsequent processes with the same hash.
+ * The hash includes the path to the runner's configuration file, which in turn
+ * depends on the process' dependencies, so any change in the dependency set
+ * results in a new archive.
+ * <p>
+ * Dynamic archives require JDK 13+. Processes started using older JDKs are
+ * not affected.
+ */
+@Named
+@Singleton
+public class CdsArchiveCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CdsArchiveCache.class);
+
+    private static final int MIN_JAVA_VERSION = 13;
+    private static final int MAX_DUMP_ATTEMPTS = 3;
+    private static final long VERSION_CHECK_TIMEOUT = 30000;
+    private static final String ARCHIVE_EXT = ".jsa";
+    private static final String TMP_EXT = ".tmp";
+
+    private static final Pattern VERSION_PATTERN = Pattern.compile("version \"(\\d+)(?:\\.(\\d+))?");
+
+    private final boolean enabled;
+    private final Path archiveDir;
+    private final long maxUnusedAge;
+
+    private final Map<String, Boolean> supportedJavaCmds = new ConcurrentHashMap<>();
+    private final Set<HashCode> dumping = ConcurrentHashMap.newKeySet();
+    private final Map<HashCode, Integer> failedDumps = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Inject
+    public CdsArchiveCache(CdsConfiguration cfg) {
+        this.enabled = cfg.isEnabled();
+        this.archiveDir = cfg.getArchiveDir();
+        this.maxUnusedAge = cfg.getMaxUnusedAge();
+
+        if (enabled) {
+            log.info("init -> using CDS archives in {}", archiveDir);
+            cleanup();
+        }
+    }
+
+    /**
+     * Prepares the specified command line to use the archive of the specified hash.
+     * If there's no archive yet, the returned command creates it.
+     *
+     * @param key hash of the original command line
+     * @param cmd command line, the first element must be the java command
+     */
+    public Launch prepare(HashCode key, String[] cmd) {
+        if (!enabled || hasCdsOptions(cmd) || !isSupported(cmd[0])) {
+            return new Launch(cmd, null);
+        }
+
+        Path archive = archiveDir.resolve(key + ARCHIVE_EXT);
+        if (Files.exists(archive)) {
+            touch(archive);
+            return new Launch(addOption(cmd, "-XX:SharedArchiveFile=" + archive), null);
+        }
+
+        if (failedDumps.getOrDefault(key, 0) >= MAX_DUMP_ATTEMPTS || !canDump(cmd)) {
+            return new Launch(cmd, null);
+        }
+
+        // only one process at a time creates the archive, others run as usual
+        if (!dumping.add(key)) {
+            return new Launch(cmd, null);
+        }
+
+        Path tmp = archiveDir.resolve(key + "." + UUID.randomUUID() + TMP_EXT);
+        return new Launch(addOption(cmd, "-XX:ArchiveClassesAtExit=" + tmp), new Dump(key, tmp, archive));
+    }
+
+    private void commit(Dump d, Process p) {
+        try {
+            p.waitFor();
+
+            if (Files.exists(d.tmp) && Files.size(d.tmp) > 0) {
+                Files.move(d.tmp, d.archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                failedDumps.remove(d.key);
+                log.info("commit ['{}'] -> archive created: {} bytes", d.key, Files.size(d.archive));
+                cleanup();
+            } else {
+                failedDumps.merge(d.key, 1, Integer::sum);
+                log.warn("commit ['{}'] -> archive wasn't created, exit code: {}", d.key, p.exitValue());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failedDumps.merge(d.key, 1, Integer::sum);
+            log.warn("commit ['{}'] -> error while saving the archive: {}", d.key, e.getMessage());
+        } finally {
+            abort(d);
+        }
+    }
+
+    private void abort(Dump d) {
+        try {
+            Files.deleteIfExists(d.tmp);
+        } catch (IOException e) {
+            log.warn("abort ['{}'] -> error while removing {}: {}", d.key, d.tmp, e.getMessage());
+        }
+        dumping.remove(d.key);
+    }
+
+    /**
+     * Removes archives which weren't used for longer than {@code maxUnusedAge}
+     * and any leftovers of unfinished dumps.
+     */
+    private void cleanup() {
+        long cutoff = System.currentTimeMillis() - maxUnusedAge;
+
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            files.filter(p -> {
+                String n = p.getFileName().toString();
+                return n.endsWith(ARCHIVE_EXT) || n.endsWith(TMP_EXT);
+            }).forEach(p -> {
+                try {
+                    if (Files.getLastModifiedTime(p).toMillis() < cutoff) {
+                        Files.deleteIfExists(p);
+                        log.info("cleanup -> removed {}", p);
+                    }
+                } catch (IOException e) {
+                    log.warn("cleanup -> error while removing {}: {}", p, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("cleanup -> error: {}", e.getMessage());
+        }
+    }
+
+    private boolean isSupported(String javaCmd) {
+        return supportedJavaCmds.computeIfAbsent(javaCmd, cmd -> {
+            int version = getJavaVersion(cmd);
+            if (version < MIN_JAVA_VERSION) {
+                log.warn("isSupported ['{}'] -> Java version {} doesn't support dynamic CDS archives, JDK {}+ is required",
+                        cmd, version, MIN_JAVA_VERSION);
+                return false;
+            }
+            return true;
+        });
+    }
+
+    private static int getJavaVersion(String javaCmd) {
+        try {
+            Process p = new ProcessBuilder(javaCmd, "-version")
+                    .redirectErrorStream(true)
+                    .start();
+
+            String out;
+            try (InputStream in = p.getInputStream()) {
+                out = new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8);
+            }
+
+            if (!p.waitFor(VERSION_CHECK_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                p.destroyForcibly();
+                return -1;
+            }
+
+            return parseMajorVersion(out);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (IOException e) {
+            log.warn("getJavaVersion ['{}'] -> error: {}", javaCmd, e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Parses the output of {@code java -version}, e.g. {@code openjdk version "1.8.0_252"}
+     * or {@code openjdk version "11.0.7"}.
+     *
+     * @return the major version or -1 if the version can't be determined
+     */
+    static int parseMajorVersion(String s) {
+        Matcher m = VERSION_PATTERN.matcher(s);
+        if (!m.find()) {
+            return -1;
+        }
+
+        int major = Integer.parseInt(m.group(1));
+        if (major == 1 && m.group(2) != null) {
+            return Integer.parseInt(m.group(2));
+        }
+        return major;
+    }
+
+    private static boolean hasCdsOptions(String[] cmd) {
+        for (String s : cmd) {
+            if (s.startsWith("-Xshare:") || s.startsWith("-XX:SharedArchiveFile") || s.startsWith("-XX:ArchiveClassesAtExit")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The JVM refuses to start with {@code -XX:ArchiveClassesAtExit} if the classpath
+     * contains non-empty directories. Only JAR files are allowed.
+     */
+    static boolean canDump(String[] cmd) {
+        for (int i = 0; i < cmd.length - 1; i++) {
+            if (!"-cp".equals(cmd[i]) && !"-classpath".equals(cmd[i])) {
+                continue;
+            }
+
+            for (String s : cmd[i + 1].split(File.pathSeparator)) {
+                if (!Files.isRegularFile(Paths.get(s))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    static String[] addOption(String[] cmd, String option) {
+        // JVM options go right after the java command
+        String[] result = new String[cmd.length + 1];
+        result[0] = cmd[0];
+        result[1] = option;
+        System.arraycopy(cmd, 1, result, 2, cmd.length - 1);
+        return result;
+    }
+
+    private static void touch(Path p) {
+        try {
+            Files.setLastModifiedTime(p, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            log.warn("touch -> error while updating {}: {}", p, e.getMessage());
+        }
+    }
+
+    /**
+     * Command line of a runner JVM with the CDS options applied.
+     */
+    public final class Launch {
+
+        private final String[] cmd;
+        private final Dump dump;
+
+        private Launch(String[] cmd, Dump dump) {
+            this.cmd = cmd;
+            this.dump = dump;
+        }
+
+        public String[] getCmd() {
+            return cmd;
+        }
+
+        /**
+         * Starts the process. If the process creates a new archive,
+         * the archive is saved when the process exits.
+         */
+        public Process start(ProcessBuilder b) throws IOException {
+            Process p;
+            try {
+                p = b.command(cmd).start();
+            } catch (IOException e) {
+                if (dump != null) {
+                    abort(dump);
+                }
+                throw e;
+            }
+
+            if (dump != null) {
+                log.info("start ['{}'] -> creating a new archive", dump.key);
+                executor.submit(() -> commit(dump, p));
+            }
+
+            return p;
+        }
+    }
+
+    private static final class Dump {
+
+        private final HashCode key;
+        private final Path tmp;
+        private final Path archive;
+
+        private Dump(HashCode key, Path tmp, Path archive) {
+            this.key = key;
+            this.tmp = tmp;
+            this.archive = archive;
+        }
+    }
+}
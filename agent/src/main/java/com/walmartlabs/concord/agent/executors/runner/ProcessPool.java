@@ -20,6 +20,7 @@ package com.walmartlabs.concord.agent.executors.runner;
  * =====
  */
 
+
 import com.google.common.hash.HashCode;
 import com.walmartlabs.concord.agent.ExecutionException;
 import com.walmartlabs.concord.agent.Utils;
@@ -30,12 +31,34 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Pool of pre-forked JVMs, grouped by the hash of their command line.
+ * <p>
+ * The pool tracks the demand for each hash and keeps the number of idle
+ * processes proportional to the expected number of requests during
+ * the lifetime of a process (within the {@code minIdle} and {@code maxIdle} limits).
+ * When the pool is full, idle processes of less demanded hashes are
+ * replaced with the processes of more demanded ones.
+ * <p>
+ * The processes are always started outside of any locks.
+ */
 @Named
 @Singleton
 public class ProcessPool {
@@ -44,24 +67,73 @@ public class ProcessPool {
 
     private static final long CLEANUP_PERIOD = 30000;
 
+    /**
+     * Hashes with a lower demand score are not warmed up in advance,
+     * e.g. a hash requested only once more than a half-life ago.
+     */
+    private static final double MIN_ACTIVE_SCORE = 0.5;
+
+    /**
+     * Hashes with a lower demand score and without processes are removed.
+     */
+    private static final double MIN_KEEP_SCORE = 0.01;
+
+    private static final String MBEAN_NAME = "com.walmartlabs.concord.agent:type=ProcessPool";
+
     private final long maxEntryAge;
     private final int maxEntryCount;
-    private final Map<HashCode, Queue<ProcessEntry>> pool = new HashMap<>();
-    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final int minIdle;
+    private final int maxIdle;
+    private final long demandHalfLife;
+
+    private final Map<HashCode, Slot> slots = new ConcurrentHashMap<>();
+
+    /**
+     * Total number of idle and starting processes.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final ExecutorService executor;
+    private final LongSupplier clock;
+    private final Stats stats = new Stats();
+
+    private Thread maintenanceThread;
 
     @Inject
     public ProcessPool(PreForkConfiguration cfg) {
+        this(cfg, Executors.newCachedThreadPool(), System::currentTimeMillis);
+    }
+
+    /**
+     * @param executor used to start, warm up and kill the processes
+     * @param clock    returns the current time in milliseconds
+     */
+    ProcessPool(PreForkConfiguration cfg, ExecutorService executor, LongSupplier clock) {
         this.maxEntryAge = cfg.getMaxAge();
         this.maxEntryCount = cfg.getMaxCount();
+        this.minIdle = cfg.getMinIdle();
+        this.maxIdle = cfg.getMaxIdle();
+        this.demandHalfLife = Math.max(1, cfg.getDemandHalfLife());
+        this.executor = executor;
+        this.clock = clock;
+        registerMBean();
         init();
     }
 
-    public void init() {
+    public synchronized void init() {
+        if (maintenanceThread != null) {
+            return;
+        }
+
         Thread t = new Thread(() -> {
-            log.info("run -> starting cleanup thread, max entry age {}ms, max entry count {}", maxEntryAge, maxEntryCount);
+            log.info("run -> starting cleanup thread, max entry age {}ms, max entry count {}, idle {}..{}",
+                    maxEntryAge, maxEntryCount, minIdle, maxIdle);
 
             while (!Thread.currentThread().isInterrupted()) {
                 Utils.sleep(CLEANUP_PERIOD);
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
 
                 try {
                     maintenance();
@@ -72,98 +144,311 @@ public class ProcessPool {
         }, "process-pool-cleanup");
 
         t.start();
+        maintenanceThread = t;
+    }
+
+    /**
+     * Stops the maintenance thread and kills the idle processes.
+     * The processes already taken from the pool are not affected.
+     */
+    public void close() throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            t = maintenanceThread;
+            maintenanceThread = null;
+        }
+
+        if (t != null) {
+            t.interrupt();
+            t.join();
+        }
+
+        for (Slot s : slots.values()) {
+            synchronized (s) {
+                s.removed = true;
+            }
+
+            ProcessEntry e;
+            while ((e = s.idle.pollFirst()) != null) {
+                size.decrementAndGet();
+                kill(e);
+            }
+        }
+
+        executor.shutdown();
+    }
+
+    /**
+     * @return {@code true} if the maintenance thread is running
+     */
+    synchronized boolean isMaintenanceRunning() {
+        return maintenanceThread != null && maintenanceThread.isAlive();
     }
 
     public ProcessEntry take(HashCode hc, ProcessLauncher launcher) throws ExecutionException {
-        synchronized (pool) {
-            Queue<ProcessEntry> q = pool.computeIfAbsent(hc, k -> new LinkedList<>());
+        long now = clock.getAsLong();
 
-            ProcessEntry entry = q.poll();
-            if (entry == null) {
-                try {
-                    entry = launcher.start();
-                } catch (IOException e) {
-                    throw new ExecutionException("Error while starting a new process", e);
-                }
+        Slot slot = slots.computeIfAbsent(hc, Slot::new);
+        slot.onRequest(launcher, now);
+
+        ProcessEntry entry = poll(slot, now);
+        if (entry == null) {
+            stats.misses.increment();
 
-                log.info("take -> started a new process: {}", entry.procDir);
-            } else {
-                log.info("take -> using a pre-forked instance: {}", entry.procDir);
+            try {
+                entry = launcher.start();
+            } catch (IOException e) {
+                throw new ExecutionException("Error while starting a new process", e);
             }
 
-            executor.submit(() -> populate(hc, launcher));
+            log.info("take -> started a new process: {}", entry.procDir);
+        } else {
+            stats.hits.increment();
+            log.info("take -> using a pre-forked instance: {}", entry.procDir);
+        }
 
-            return entry;
+        // replace the taken process (or more, if the demand is high enough)
+        try {
+            executor.submit(() -> warmUp(slot, Math.max(1, target(slot, clock.getAsLong()))));
+        } catch (RejectedExecutionException e) {
+            // the pool is closed, nothing to warm up
         }
+
+        return entry;
+    }
+
+    public ProcessPoolMXBean getStats() {
+        return stats;
     }
 
-    private void populate(HashCode hc, ProcessLauncher launcher) {
-        synchronized (pool) {
-            // calculate the total number of processes in the pool
-            int total = 0;
-            for (Map.Entry<HashCode, Queue<ProcessEntry>> e : pool.entrySet()) {
-                total += e.getValue().size();
+    /**
+     * Returns the oldest usable idle process, if any.
+     */
+    private ProcessEntry poll(Slot slot, long now) {
+        while (true) {
+            ProcessEntry e = slot.idle.pollFirst();
+            if (e == null) {
+                return null;
             }
 
-            if (total >= maxEntryCount) {
-                // mark the oldest entry for removal
-                ProcessEntry oldest = null;
-                for (Map.Entry<HashCode, Queue<ProcessEntry>> q : pool.entrySet()) {
-                    for (ProcessEntry e : q.getValue()) {
-                        if (oldest == null || oldest.timestamp > e.timestamp) {
-                            oldest = e;
-                        }
-                    }
+            size.decrementAndGet();
+
+            if (isExpired(e, now)) {
+                stats.expired.increment();
+                kill(e);
+                continue;
+            }
+
+            return e;
+        }
+    }
+
+    /**
+     * Starts new processes until the slot has at least {@code desired}
+     * idle or starting processes. The processes are started asynchronously.
+     */
+    private void warmUp(Slot slot, int desired) {
+        desired = Math.min(desired, maxIdle);
+
+        while (true) {
+            ProcessLauncher launcher;
+
+            synchronized (slot) {
+                if (slot.removed || slot.launcher == null) {
+                    return;
                 }
 
-                // it's never null
-                assert oldest != null;
+                if (slot.idle.size() + slot.starting.get() >= desired) {
+                    return;
+                }
+
+                if (!reserve(slot)) {
+                    return;
+                }
 
-                oldest.remove = true;
+                slot.starting.incrementAndGet();
+                launcher = slot.launcher;
             }
 
-            // add a new pool entry
-            Queue<ProcessEntry> q = pool.computeIfAbsent(hc, k -> new LinkedList<>());
             try {
-                q.add(launcher.start());
-            } catch (IOException e) {
-                log.error("populate -> error while starting a new process", e);
+                executor.submit(() -> start(slot, launcher));
+            } catch (RejectedExecutionException e) {
+                // the pool is closed
+                slot.starting.decrementAndGet();
+                size.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private void start(Slot slot, ProcessLauncher launcher) {
+        long t1 = System.currentTimeMillis();
+        try {
+            ProcessEntry e = launcher.start();
+            stats.onWarmUp(System.currentTimeMillis() - t1);
+
+            boolean added = false;
+            synchronized (slot) {
+                if (!slot.removed) {
+                    slot.idle.addLast(e);
+                    added = true;
+                }
+            }
+
+            if (!added) {
+                // the pool was closed while the process was starting
+                size.decrementAndGet();
+                kill(e);
+            }
+        } catch (Exception e) {
+            stats.warmUpFailures.increment();
+            size.decrementAndGet();
+            log.error("warmUp -> error while starting a new process", e);
+        } finally {
+            slot.starting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Reserves a place in the pool for a new process. If the pool is full,
+     * removes an idle process of a less demanded hash.
+     */
+    private boolean reserve(Slot requester) {
+        while (true) {
+            int n = size.get();
+            if (n < maxEntryCount) {
+                if (size.compareAndSet(n, n + 1)) {
+                    return true;
+                }
+                continue;
+            }
+
+            if (!evictLessDemanded(requester)) {
+                return false;
             }
         }
     }
 
+    private boolean evictLessDemanded(Slot requester) {
+        long now = clock.getAsLong();
+        double requesterScore = requester.score(now);
+
+        Slot victim = null;
+        double victimScore = requesterScore;
+        for (Slot s : slots.values()) {
+            if (s == requester || s.idle.isEmpty()) {
+                continue;
+            }
+
+            double score = s.score(now);
+            if (score < victimScore) {
+                victim = s;
+                victimScore = score;
+            }
+        }
+
+        if (victim == null) {
+            return false;
+        }
+
+        ProcessEntry e = victim.idle.pollFirst();
+        if (e != null) {
+            size.decrementAndGet();
+            stats.evictions.increment();
+            kill(e);
+        }
+
+        // try again even if someone else took the process first
+        return true;
+    }
+
+    /**
+     * Returns the number of idle processes to keep for the specified slot.
+     */
+    private int target(Slot slot, long now) {
+        double score = slot.score(now);
+        if (score < MIN_ACTIVE_SCORE) {
+            return 0;
+        }
+
+        // the score is approximately "request rate * half-life / ln(2)"
+        // calculate the expected number of requests during the lifetime of a process
+        double expected = score * Math.log(2) * maxEntryAge / demandHalfLife;
+
+        int n = (int) Math.round(expected);
+        return Math.max(minIdle, Math.min(maxIdle, n));
+    }
+
+    private boolean isExpired(ProcessEntry e, long now) {
+        return now - e.timestamp >= maxEntryAge || !e.process.isAlive();
+    }
+
+    private void kill(ProcessEntry e) {
+        try {
+            executor.submit(() -> Utils.kill(e.process));
+        } catch (RejectedExecutionException ex) {
+            // the pool is closed
+            Utils.kill(e.process);
+        }
+    }
+
     private void maintenance() {
-        List<HashCode> queuesToRemove = new ArrayList<>();
-        List<Process> processesToKill = new ArrayList<>();
+        long now = clock.getAsLong();
+
+        // remove the expired processes
+        int expired = 0;
+        for (Slot s : slots.values()) {
+            for (ProcessEntry e : s.idle) {
+                if (isExpired(e, now) && s.idle.remove(e)) {
+                    size.decrementAndGet();
+                    stats.expired.increment();
+                    kill(e);
+                    expired++;
+                }
+            }
+        }
 
-        long t = System.currentTimeMillis();
+        // warm up the hashes most likely to be requested next
+        List<Slot> l = new ArrayList<>(slots.values());
+        l.sort(Comparator.comparingDouble((Slot s) -> s.score(now)).reversed());
+        for (Slot s : l) {
+            warmUp(s, target(s, now));
+        }
 
-        synchronized (pool) {
-            pool.forEach((hc, q) -> {
-                q.removeIf(e -> {
-                    if (e.remove || t - e.timestamp >= maxEntryAge) {
-                        processesToKill.add(e.process);
-                        return true;
+        // forget the hashes that are no longer requested
+        int removed = 0;
+        for (HashCode hc : new ArrayList<>(slots.keySet())) {
+            Slot s = slots.computeIfPresent(hc, (k, v) -> {
+                synchronized (v) {
+                    if (v.score(now) < MIN_KEEP_SCORE && v.idle.isEmpty() && v.starting.get() == 0) {
+                        v.removed = true;
+                        return null;
                     }
-                    return false;
-                });
-
-                if (q.isEmpty()) {
-                    queuesToRemove.add(hc);
+                    return v;
                 }
             });
 
-            for (HashCode hc : queuesToRemove) {
-                pool.remove(hc);
+            if (s == null) {
+                removed++;
             }
         }
 
-        log.info("maintenance -> removed {} queues", queuesToRemove.size());
+        log.info("maintenance -> removed {} queues, killed {} expired processes, stats: hit ratio {}, idle {}, starting {}, evictions {}, avg warm-up time {}ms",
+                removed, expired, String.format("%.2f", stats.getHitRatio()), stats.getIdleCount(), stats.getStartingCount(),
+                stats.getEvictionCount(), String.format("%.0f", stats.getAverageWarmUpTime()));
+    }
 
-        for (Process p : processesToKill) {
-            Utils.kill(p);
+    private void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new StandardMBean(stats, ProcessPoolMXBean.class, true), name);
+        } catch (Exception e) {
+            log.warn("registerMBean -> error: {}", e.getMessage());
         }
-        log.info("maintenance -> killed {} processes", processesToKill.size());
     }
 
     public interface ProcessLauncher {
@@ -177,8 +462,6 @@ public class ProcessPool {
         private final Process process;
         private final Path procDir;
 
-        private boolean remove = false;
-
         public ProcessEntry(Process process, Path procDir) {
             this.timestamp = System.currentTimeMillis();
             this.process = process;
@@ -193,4 +476,139 @@ public class ProcessPool {
             return procDir;
         }
     }
+
+    private final class Slot {
+
+        private final HashCode hc;
+        private final Deque<ProcessEntry> idle = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger starting = new AtomicInteger();
+
+        /**
+         * Exponentially decaying number of requests.
+         */
+        private final AtomicReference<Demand> demand = new AtomicReference<>(new Demand(0, 0));
+
+        private volatile ProcessLauncher launcher;
+
+        /**
+         * Guarded by {@code this}.
+         */
+        private boolean removed;
+
+        private Slot(HashCode hc) {
+            this.hc = hc;
+        }
+
+        private void onRequest(ProcessLauncher launcher, long now) {
+            this.launcher = launcher;
+            demand.updateAndGet(d -> new Demand(d.score(now) + 1, now));
+        }
+
+        private double score(long now) {
+            return demand.get().score(now);
+        }
+
+        @Override
+        public String toString() {
+            return hc.toString();
+        }
+    }
+
+    private final class Demand {
+
+        private final double score;
+        private final long updatedAt;
+
+        private Demand(double score, long updatedAt) {
+            this.score = score;
+            this.updatedAt = updatedAt;
+        }
+
+        private double score(long now) {
+            long dt = Math.max(0, now - updatedAt);
+            return score * Math.pow(0.5, (double) dt / demandHalfLife);
+        }
+    }
+
+    private final class Stats implements ProcessPoolMXBean {
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder warmUps = new LongAdder();
+        private final LongAdder warmUpFailures = new LongAdder();
+        private final LongAdder warmUpTime = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private final LongAdder expired = new LongAdder();
+
+        private volatile long lastWarmUpTime;
+
+        private void onWarmUp(long ms) {
+            warmUps.increment();
+            warmUpTime.add(ms);
+            lastWarmUpTime = ms;
+        }
+
+        @Override
+        public long getHitCount() {
+            return hits.sum();
+        }
+
+        @Override
+        public long getMissCount() {
+            return misses.sum();
+        }
+
+        @Override
+        public double getHitRatio() {
+            long h = hits.sum();
+            long total = h + misses.sum();
+            return total > 0 ? (double) h / total : 0;
+        }
+
+        @Override
+        public long getWarmUpCount() {
+            return warmUps.sum();
+        }
+
+        @Override
+        public long getWarmUpFailureCount() {
+            return warmUpFailures.sum();
+        }
+
+        @Override
+        public double getAverageWarmUpTime() {
+            long n = warmUps.sum();
+            return n > 0 ? (double) warmUpTime.sum() / n : 0;
+        }
+
+        @Override
+        public long getLastWarmUpTime() {
+            return lastWarmUpTime;
+        }
+
+        @Override
+        public long getEvictionCount() {
+            return evictions.sum();
+        }
+
+        @Override
+        public long getExpiredCount() {
+            return expired.sum();
+        }
+
+        @Override
+        public int getIdleCount() {
+            return slots.values().stream().mapToInt(s -> s.idle.size()).sum();
+        }
+
+        @Override
+        public int getStartingCount() {
+            return slots.values().stream().mapToInt(s -> s.starting.get()).sum();
+        }
+
+        @Override
+        public int getClasspathCount() {
+            return slots.size();
+        }
+    }
 }
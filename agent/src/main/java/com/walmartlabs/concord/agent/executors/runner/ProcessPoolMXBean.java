@@ -0,0 +1,70 @@
+package com.walmartlabs.concord.agent.executors.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+
+/**
+ * Pre-forked process pool metrics.
+ */
+public interface ProcessPoolMXBean {
+
+    /**
+     * Number of requests served using a pre-forked process.
+     */
+    long getHitCount();
+
+    /**
+     * Number of requests that required a new process.
+     */
+    long getMissCount();
+
+    double getHitRatio();
+
+    /**
+     * Number of processes started in advance.
+     */
+    long getWarmUpCount();
+
+    long getWarmUpFailureCount();
+
+    /**
+     * Average time to start a process in advance, in milliseconds.
+     */
+    double getAverageWarmUpTime();
+
+    long getLastWarmUpTime();
+
+    /**
+     * Number of idle processes removed to make room for more demanded classpaths.
+     */
+    long getEvictionCount();
+
+    /**
+     * Number of idle processes removed because they reached the max age or died.
+     */
+    long getExpiredCount();
+
+    int getIdleCount();
+
+    int getStartingCount();
+
+    int getClasspathCount();
+}
@@ -0,0 +1,265 @@
+package com.walmartlabs.concord.agent.executors.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.HashCode;
+import com.google.common.io.ByteStreams;
+import com.walmartlabs.concord.agent.Utils;
+import com.walmartlabs.concord.common.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.walmartlabs.concord.runtime.common.RunnerDaemonProtocol.*;
+
+/**
+ * A long-living runner JVM which executes processes one after another.
+ * Each process is represented as a {@link Process} which completes when
+ * the daemon reports the process' exit code. Destroying the process
+ * stops the daemon.
+ *
+ * @see com.walmartlabs.concord.runtime.common.RunnerDaemonProtocol
+ */
+public class RunnerDaemon {
+
+    private static final Logger log = LoggerFactory.getLogger(RunnerDaemon.class);
+
+    private static final long PORT_FILE_POLL_INTERVAL = 100;
+
+    /**
+     * Waits for the daemon started using the specified process to open its port.
+     *
+     * @param portFile file where the daemon saves its port number
+     * @param timeout  max time to wait
+     */
+    public static RunnerDaemon await(HashCode hash, Process process, Path daemonDir, Path portFile, String token, long timeout) throws IOException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (!Files.exists(portFile)) {
+            if (!process.isAlive()) {
+                throw new IOException("The daemon process finished with code " + process.exitValue() + " before opening a port");
+            }
+
+            if (System.currentTimeMillis() >= deadline) {
+                Utils.kill(process);
+                throw new IOException("Timeout waiting for the daemon to start");
+            }
+
+            Utils.sleep(PORT_FILE_POLL_INTERVAL);
+        }
+
+        int port = Integer.parseInt(new String(Files.readAllBytes(portFile), StandardCharsets.UTF_8).trim());
+        return new RunnerDaemon(hash, process, daemonDir, token, port);
+    }
+
+    private final HashCode hash;
+    private final Process process;
+    private final Path daemonDir;
+    private final String token;
+    private final int port;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile int runs;
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    RunnerDaemon(HashCode hash, Process process, Path daemonDir, String token, int port) {
+        this.hash = hash;
+        this.process = process;
+        this.daemonDir = daemonDir;
+        this.token = token;
+        this.port = port;
+    }
+
+    /**
+     * Sends a new process to the daemon.
+     *
+     * @param workDir  the process' working directory (payload)
+     * @param logFile  file to append the process' output to
+     * @param listener called when the process is finished
+     * @return the process' handle
+     */
+    public Process submit(UUID instanceId, Path workDir, Path logFile, CompletionListener listener) throws IOException {
+        Map<String, Object> req = new HashMap<>();
+        req.put(TOKEN_KEY, token);
+        req.put(INSTANCE_ID_KEY, instanceId.toString());
+        req.put(WORK_DIR_KEY, workDir.toAbsolutePath().toString());
+        req.put(LOG_FILE_KEY, logFile.toAbsolutePath().toString());
+
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            writer.write(objectMapper.writeValueAsString(req));
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+
+        runs++;
+        return new Run(socket, listener);
+    }
+
+    public HashCode getHash() {
+        return hash;
+    }
+
+    public int getRuns() {
+        return runs;
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Stops the daemon's process and removes its directory.
+     */
+    public void stop() {
+        Utils.kill(process);
+
+        try {
+            IOUtils.deleteRecursively(daemonDir);
+        } catch (IOException e) {
+            log.warn("stop -> can't remove the daemon's directory {}: {}", daemonDir, e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RunnerDaemon{hash=" + hash + ", port=" + port + ", runs=" + runs + "}";
+    }
+
+    public interface CompletionListener {
+
+        /**
+         * @param recycle {@code true} if the daemon must not be used anymore
+         */
+        void onComplete(RunnerDaemon daemon, boolean recycle);
+    }
+
+    /**
+     * A single process executed by the daemon.
+     */
+    private final class Run extends Process {
+
+        private final Socket socket;
+        private final CompletionListener listener;
+
+        private volatile Integer exitCode;
+
+        private Run(Socket socket, CompletionListener listener) {
+            this.socket = socket;
+            this.listener = listener;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return ByteStreams.nullOutputStream();
+        }
+
+        /**
+         * The process' output goes directly into the log file.
+         */
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized int waitFor() {
+            if (exitCode != null) {
+                return exitCode;
+            }
+
+            boolean recycle = true;
+            int code = 1;
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                String line = reader.readLine();
+                if (line != null) {
+                    Map<String, Object> resp = objectMapper.readValue(line, Map.class);
+                    code = ((Number) resp.get(EXIT_CODE_KEY)).intValue();
+                    recycle = Boolean.TRUE.equals(resp.get(RECYCLE_KEY));
+                } else {
+                    log.warn("waitFor -> {} closed the connection without a response", RunnerDaemon.this);
+                }
+            } catch (IOException e) {
+                log.warn("waitFor -> error while waiting for {}: {}", RunnerDaemon.this, e.getMessage());
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+
+            exitCode = code;
+            lastUsed = System.currentTimeMillis();
+            listener.onComplete(RunnerDaemon.this, recycle);
+            return code;
+        }
+
+        @Override
+        public int exitValue() {
+            Integer code = exitCode;
+            if (code == null) {
+                throw new IllegalThreadStateException("The process is still running");
+            }
+            return code;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return exitCode == null && process.isAlive();
+        }
+
+        @Override
+        public void destroy() {
+            process.destroy();
+        }
+
+        @Override
+        public Process destroyForcibly() {
+            process.destroyForcibly();
+            return this;
+        }
+    }
+}
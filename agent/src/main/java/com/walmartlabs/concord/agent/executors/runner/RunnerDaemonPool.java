@@ -0,0 +1,234 @@
+package com.walmartlabs.concord.agent.executors.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.common.hash.HashCode;
+import com.walmartlabs.concord.agent.ExecutionException;
+import com.walmartlabs.concord.agent.Utils;
+import com.walmartlabs.concord.agent.cfg.RunnerDaemonConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of idle {@link RunnerDaemon}s, grouped by the hash of their command line.
+ * <p>
+ * A daemon is taken from the pool for the duration of a single process and
+ * returned back when the process is finished. Daemons are stopped when
+ * they reach {@code maxRuns}, when they ask to be recycled (e.g. because of
+ * leaked threads or high memory usage) or when they stay idle for too long.
+ * <p>
+ * The idle daemons are stopped when the pool is closed (on the agent's shutdown).
+ * The daemons also exit on their own if nobody connects to them for a while,
+ * in case the agent dies without closing the pool.
+ */
+@Named
+@Singleton
+public class RunnerDaemonPool implements RunnerDaemon.CompletionListener, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RunnerDaemonPool.class);
+
+    private static final long CLEANUP_PERIOD = 30000;
+
+    private final RunnerDaemonConfiguration cfg;
+
+    private final Map<HashCode, Deque<RunnerDaemon>> idle = new ConcurrentHashMap<>();
+
+    /**
+     * Total number of idle daemons.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private volatile Thread cleanupThread;
+    private volatile boolean closed;
+
+    @Inject
+    public RunnerDaemonPool(RunnerDaemonConfiguration cfg) {
+        this.cfg = cfg;
+
+        if (cfg.isEnabled()) {
+            init();
+        }
+    }
+
+    public void init() {
+        Thread t = new Thread(() -> {
+            log.info("run -> starting cleanup thread, max runs {}, max idle {}, max idle time {}ms",
+                    cfg.getMaxRuns(), cfg.getMaxIdle(), cfg.getMaxIdleTime());
+
+            while (!Thread.currentThread().isInterrupted()) {
+                Utils.sleep(CLEANUP_PERIOD);
+
+                try {
+                    maintenance();
+                } catch (Exception e) {
+                    log.warn("pool -> error while performing maintenance: {}", e.getMessage());
+                }
+            }
+        }, "runner-daemon-cleanup");
+
+        t.setDaemon(true);
+        t.start();
+        cleanupThread = t;
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "runner-daemon-shutdown"));
+    }
+
+    public boolean isEnabled() {
+        return cfg.isEnabled();
+    }
+
+    public double getMaxHeapUsage() {
+        return cfg.getMaxHeapUsage();
+    }
+
+    public long getStartTimeout() {
+        return cfg.getStartTimeout();
+    }
+
+    /**
+     * Max time the daemon waits for a new process before exiting on its own.
+     * Longer than the pool's own expiration, so normally the pool stops
+     * the daemon first.
+     */
+    public long getDaemonIdleTimeout() {
+        return cfg.getMaxIdleTime() + CLEANUP_PERIOD * 2;
+    }
+
+    /**
+     * Returns an idle daemon for the specified hash or starts a new one.
+     * The daemon must be returned using {@link #onComplete(RunnerDaemon, boolean)}.
+     */
+    public RunnerDaemon take(HashCode hc, DaemonLauncher launcher) throws ExecutionException {
+        Deque<RunnerDaemon> q = idle.get(hc);
+        if (q != null) {
+            RunnerDaemon d;
+            while ((d = q.pollFirst()) != null) {
+                size.decrementAndGet();
+
+                if (d.isAlive()) {
+                    log.info("take -> using an existing daemon: {}", d);
+                    return d;
+                }
+
+                d.stop();
+            }
+        }
+
+        try {
+            RunnerDaemon d = launcher.start();
+            log.info("take -> started a new daemon: {}", d);
+            return d;
+        } catch (IOException e) {
+            throw new ExecutionException("Error while starting a new runner daemon", e);
+        }
+    }
+
+    @Override
+    public void onComplete(RunnerDaemon daemon, boolean recycle) {
+        if (closed || recycle || !daemon.isAlive() || daemon.getRuns() >= cfg.getMaxRuns()) {
+            log.info("onComplete -> stopping {} (recycle: {})", daemon, recycle);
+            daemon.stop();
+            return;
+        }
+
+        if (size.incrementAndGet() > cfg.getMaxIdle()) {
+            size.decrementAndGet();
+            log.info("onComplete -> too many idle daemons, stopping {}", daemon);
+            daemon.stop();
+            return;
+        }
+
+        // most recently used first, so the rarely used daemons can expire
+        idle.computeIfAbsent(daemon.getHash(), k -> new ConcurrentLinkedDeque<>()).addFirst(daemon);
+
+        // closed concurrently, don't leave the daemon behind
+        if (closed) {
+            stopAll();
+        }
+    }
+
+    /**
+     * Stops the cleanup thread and all idle daemons. The daemons which are
+     * currently in use are stopped when their processes complete.
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        Thread t = cleanupThread;
+        if (t != null) {
+            t.interrupt();
+        }
+
+        int stopped = stopAll();
+        if (stopped > 0) {
+            log.info("close -> stopped {} idle daemons", stopped);
+        }
+    }
+
+    private int stopAll() {
+        int stopped = 0;
+        for (Deque<RunnerDaemon> q : idle.values()) {
+            RunnerDaemon d;
+            while ((d = q.pollFirst()) != null) {
+                size.decrementAndGet();
+                d.stop();
+                stopped++;
+            }
+        }
+        return stopped;
+    }
+
+    private void maintenance() {
+        long now = System.currentTimeMillis();
+
+        int stopped = 0;
+        for (Deque<RunnerDaemon> q : idle.values()) {
+            for (RunnerDaemon d : q) {
+                boolean expired = now - d.getLastUsed() >= cfg.getMaxIdleTime() || !d.isAlive();
+                if (expired && q.remove(d)) {
+                    size.decrementAndGet();
+                    d.stop();
+                    stopped++;
+                }
+            }
+        }
+
+        if (stopped > 0) {
+            log.info("maintenance -> stopped {} idle daemons, idle {}", stopped, size.get());
+        }
+    }
+
+    public interface DaemonLauncher {
+
+        RunnerDaemon start() throws IOException;
+    }
+}
@@ -39,6 +39,7 @@ import com.walmartlabs.concord.dependencymanager.DependencyManager;
 import com.walmartlabs.concord.policyengine.CheckResult;
 import com.walmartlabs.concord.policyengine.DependencyRule;
 import com.walmartlabs.concord.policyengine.PolicyEngine;
+import com.walmartlabs.concord.runtime.common.RunnerDaemonProtocol;
 import com.walmartlabs.concord.runtime.common.cfg.RunnerConfiguration;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.sdk.MapUtils;
@@ -46,6 +47,7 @@ import org.immutables.value.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -75,6 +77,8 @@ public class RunnerJobExecutor implements JobExecutor {
     private final DefaultDependencies defaultDependencies;
     private final List<JobPostProcessor> postProcessors;
     private final ProcessPool processPool;
+    private final CdsArchiveCache cdsArchiveCache;
+    private final RunnerDaemonPool daemonPool;
     private final ProcessLogFactory logFactory;
     private final ExecutorService executor;
 
@@ -85,6 +89,8 @@ public class RunnerJobExecutor implements JobExecutor {
                              DefaultDependencies defaultDependencies,
                              List<JobPostProcessor> postProcessors,
                              ProcessPool processPool,
+                             CdsArchiveCache cdsArchiveCache,
+                             RunnerDaemonPool daemonPool,
                              ProcessLogFactory processLogFactory,
                              ExecutorService executor) {
 
@@ -93,6 +99,8 @@ public class RunnerJobExecutor implements JobExecutor {
         this.defaultDependencies = defaultDependencies;
         this.postProcessors = postProcessors;
         this.processPool = processPool;
+        this.cdsArchiveCache = cdsArchiveCache;
+        this.daemonPool = daemonPool;
         this.logFactory = processLogFactory;
         this.executor = executor;
 
@@ -149,9 +157,14 @@ public class RunnerJobExecutor implements JobExecutor {
 
     protected ProcessEntry buildProcessEntry(RunnerJob job) throws Exception {
         List<String> jvmParams = getAgentJvmParams(job.getPayloadDir(), job.getProcessCfg());
-        String[] cmd = createCmd(job, jvmParams);
 
         boolean prefork = canUsePrefork(job);
+        if (prefork && daemonPool.isEnabled() && cfg.runnerDaemonMainClass() != null) {
+            String[] cmd = createCmd(job, jvmParams, cfg.runnerDaemonMainClass());
+            return submitToDaemon(job, cmd);
+        }
+
+        String[] cmd = createCmd(job, jvmParams, cfg.runnerMainClass());
         if (prefork) {
             return fork(job, cmd);
         } else {
@@ -307,7 +320,7 @@ public class RunnerJobExecutor implements JobExecutor {
         job.getLog().info("Dependencies: {}", b);
     }
 
-    private String[] createCmd(RunnerJob job, List<String> jvmParams) throws IOException {
+    private String[] createCmd(RunnerJob job, List<String> jvmParams, String mainClass) throws IOException {
         Path runnerCfgFile = storeRunnerCfg(cfg.runnerCfgDir(), job.getRunnerCfg());
 
         RunnerCommandBuilder runner = new RunnerCommandBuilder()
@@ -316,7 +329,7 @@ public class RunnerJobExecutor implements JobExecutor {
                 .extraDockerVolumesFile(createExtraDockerVolumesFile(job))
                 .runnerPath(cfg.runnerPath().toAbsolutePath())
                 .runnerCfgPath(runnerCfgFile.toAbsolutePath())
-                .mainClass(cfg.runnerMainClass());
+                .mainClass(mainClass);
 
         if (jvmParams != null) {
             runner.jvmParams(jvmParams);
@@ -333,7 +346,7 @@ public class RunnerJobExecutor implements JobExecutor {
         // take a "pre-forked" JVM from the pool or start a new one
         ProcessEntry entry = processPool.take(hc, () -> {
             Path forkDir = IOUtils.createTempDir("prefork");
-            return start(forkDir, cmd);
+            return start(forkDir, hc, cmd);
         });
 
         // the job's payload directory containing all files from the process' state snapshot and/or the repository's data
@@ -354,6 +367,72 @@ public class RunnerJobExecutor implements JobExecutor {
         return entry;
     }
 
+    /**
+     * Executes the job in a runner daemon, starts a new daemon if there are
+     * no idle ones for the same command line.
+     */
+    private ProcessEntry submitToDaemon(RunnerJob job, String[] cmd) throws ExecutionException, IOException {
+        long t1 = System.currentTimeMillis();
+
+        HashCode hc = hash(cmd);
+
+        Path procDir = IOUtils.createTempDir("daemon-job");
+        Path dst = procDir.resolve(Constants.Files.PAYLOAD_DIR_NAME);
+        Files.move(job.getPayloadDir(), dst, StandardCopyOption.ATOMIC_MOVE);
+        writeInstanceId(job.getInstanceId(), dst);
+
+        Path logFile = job.getLog().logFile();
+
+        RunnerDaemon daemon = daemonPool.take(hc, () -> startDaemon(hc, cmd));
+
+        Process p;
+        try {
+            p = daemon.submit(job.getInstanceId(), dst, logFile, daemonPool);
+        } catch (IOException e) {
+            // the daemon might have died while being idle, try a fresh one
+            log.warn("submitToDaemon ['{}'] -> error while submitting to {}, retrying with a new daemon: {}",
+                    job.getInstanceId(), daemon, e.getMessage());
+            daemon.stop();
+
+            daemon = daemonPool.take(hc, () -> startDaemon(hc, cmd));
+            p = daemon.submit(job.getInstanceId(), dst, logFile, daemonPool);
+        }
+
+        long t2 = System.currentTimeMillis();
+
+        if (job.isDebugMode()) {
+            job.getLog().info("Starting in a runner daemon took {}ms", (t2 - t1));
+        }
+
+        return new ProcessEntry(p, procDir);
+    }
+
+    private RunnerDaemon startDaemon(HashCode hc, String[] cmd) throws IOException {
+        Path daemonDir = IOUtils.createTempDir("daemon");
+        Path portFile = daemonDir.resolve("port");
+        String token = UUID.randomUUID().toString();
+
+        CdsArchiveCache.Launch launch = cdsArchiveCache.prepare(hc, cmd);
+
+        log.info("startDaemon -> {}, {}", daemonDir, String.join(" ", launch.getCmd()));
+
+        // the daemon's own output, the processes' output goes into their log files
+        ProcessBuilder b = new ProcessBuilder()
+                .directory(daemonDir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(daemonDir.resolve("daemon.log").toFile());
+
+        Map<String, String> env = b.environment();
+        setupEnv(env);
+        env.put(RunnerDaemonProtocol.TOKEN_ENV_KEY, token);
+        env.put(RunnerDaemonProtocol.PORT_FILE_ENV_KEY, portFile.toAbsolutePath().toString());
+        env.put(RunnerDaemonProtocol.MAX_HEAP_USAGE_ENV_KEY, String.valueOf(daemonPool.getMaxHeapUsage()));
+        env.put(RunnerDaemonProtocol.MAX_IDLE_TIME_ENV_KEY, String.valueOf(daemonPool.getDaemonIdleTimeout()));
+
+        Process p = launch.start(b);
+        return RunnerDaemon.await(hc, p, daemonDir, portFile, token, daemonPool.getStartTimeout());
+    }
+
     protected ProcessEntry startOneTime(RunnerJob job, String[] cmd, Path procDir) throws IOException {
         // the job's payload directory containing all files from the process' state snapshot and/or the repository's data
         Path src = job.getPayloadDir();
@@ -363,37 +442,43 @@ public class RunnerJobExecutor implements JobExecutor {
 
         writeInstanceId(job.getInstanceId(), dst);
 
-        return start(procDir, cmd);
+        return start(procDir, hash(cmd), cmd);
     }
 
-    private ProcessEntry start(Path procDir, String[] cmd) throws IOException {
+    private ProcessEntry start(Path procDir, HashCode hc, String[] cmd) throws IOException {
         Path payloadDir = procDir.resolve(Constants.Files.PAYLOAD_DIR_NAME);
         if (!Files.exists(payloadDir)) {
             Files.createDirectories(payloadDir);
         }
 
-        log.info("start -> {}, {}", payloadDir, String.join(" ", cmd));
+        // use or create the class data sharing archive for the command
+        CdsArchiveCache.Launch launch = cdsArchiveCache.prepare(hc, cmd);
+
+        log.info("start -> {}, {}", payloadDir, String.join(" ", launch.getCmd()));
 
         ProcessBuilder b = new ProcessBuilder()
                 .directory(payloadDir.toFile())
-                .command(cmd)
                 .redirectErrorStream(true);
 
         // TODO constants
         Map<String, String> env = b.environment();
-        env.put(IOUtils.TMP_DIR_KEY, IOUtils.TMP_DIR.toAbsolutePath().toString());
+        setupEnv(env);
         env.put("_CONCORD_ATTACHMENTS_DIR", payloadDir.resolve(Constants.Files.JOB_ATTACHMENTS_DIR_NAME)
                 .toAbsolutePath().toString());
 
+        Process p = launch.start(b);
+        return new ProcessEntry(p, procDir);
+    }
+
+    private static void setupEnv(Map<String, String> env) {
+        env.put(IOUtils.TMP_DIR_KEY, IOUtils.TMP_DIR.toAbsolutePath().toString());
+
         // pass through the docker mode
         String dockerMode = System.getenv(CONCORD_DOCKER_LOCAL_MODE_KEY);
         if (dockerMode != null) {
             log.debug("start -> using Docker mode: {}", dockerMode);
             env.put(CONCORD_DOCKER_LOCAL_MODE_KEY, dockerMode);
         }
-
-        Process p = b.start();
-        return new ProcessEntry(p, procDir);
     }
 
     protected Path storeRunnerCfg(Path baseDir, RunnerConfiguration runnerCfg) throws IOException {
@@ -584,6 +669,13 @@ public class RunnerJobExecutor implements JobExecutor {
 
         String runnerMainClass();
 
+        /**
+         * Main class of the runner daemon, {@code null} if the runtime
+         * doesn't support the daemon mode.
+         */
+        @Nullable
+        String runnerDaemonMainClass();
+
         boolean runnerSecurityManagerEnabled();
 
         @Value.Default
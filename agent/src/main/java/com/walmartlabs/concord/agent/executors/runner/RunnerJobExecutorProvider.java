@@ -55,6 +55,8 @@ public class RunnerJobExecutorProvider implements Provider<JobExecutor> {
     private final DefaultDependencies defaultDependencies;
     private final List<JobPostProcessor> postProcessors;
     private final ProcessPool processPool;
+    private final CdsArchiveCache cdsArchiveCache;
+    private final RunnerDaemonPool daemonPool;
     private final ProcessLogFactory processLogFactory;
 
     private final ExecutorService executor;
@@ -69,6 +71,8 @@ public class RunnerJobExecutorProvider implements Provider<JobExecutor> {
                                      DefaultDependencies defaultDependencies,
                                      List<JobPostProcessor> postProcessors,
                                      ProcessPool processPool,
+                                     CdsArchiveCache cdsArchiveCache,
+                                     RunnerDaemonPool daemonPool,
                                      ProcessLogFactory processLogFactory) {
 
         this.agentCfg = agentCfg;
@@ -82,6 +86,8 @@ public class RunnerJobExecutorProvider implements Provider<JobExecutor> {
         this.defaultDependencies = defaultDependencies;
         this.postProcessors = postProcessors;
         this.processPool = processPool;
+        this.cdsArchiveCache = cdsArchiveCache;
+        this.daemonPool = daemonPool;
         this.processLogFactory = processLogFactory;
 
         this.executor = Executors.newCachedThreadPool();
@@ -114,11 +120,12 @@ public class RunnerJobExecutorProvider implements Provider<JobExecutor> {
                         .runnerCfgDir(runnerCfg.getCfgDir())
                         .runnerSecurityManagerEnabled(runnerCfg.isSecurityManagerEnabled())
                         .runnerMainClass(runnerCfg.getMainClass())
+                        .runnerDaemonMainClass(runnerCfg.getDaemonMainClass())
                         .extraDockerVolumes(dockerCfg.getExtraVolumes())
                         .maxHeartbeatInterval(serverCfg.getMaxNoHeartbeatInterval())
                         .build();
 
-                JobExecutor delegate = new RunnerJobExecutor(runnerExecutorCfg, dependencyManager, defaultDependencies, postProcessors, processPool, processLogFactory, executor);
+                JobExecutor delegate = new RunnerJobExecutor(runnerExecutorCfg, dependencyManager, defaultDependencies, postProcessors, processPool, cdsArchiveCache, daemonPool, processLogFactory, executor);
                 return delegate.exec(jobRequest);
             }
         };
@@ -26,6 +26,7 @@ import com.walmartlabs.concord.agent.logging.RemoteProcessLog;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.function.Supplier;
 
 public class RunnerLog implements ProcessLog {
@@ -42,6 +43,10 @@ public class RunnerLog implements ProcessLog {
         redirectedLog.run(stopCondition);
     }
 
+    public Path logFile() {
+        return redirectedLog.logFile();
+    }
+
     @Override
     public void delete() {
         redirectedLog.delete();
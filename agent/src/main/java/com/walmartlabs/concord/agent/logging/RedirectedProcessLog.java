@@ -58,6 +58,14 @@ public class RedirectedProcessLog implements ProcessLog {
         streamLog(localLog.logFile(), stopCondition, logSteamMaxDelay, sink);
     }
 
+    /**
+     * The local log file. Anything appended to the file is sent to the appender
+     * by {@link #run(Supplier)}.
+     */
+    public Path logFile() {
+        return localLog.logFile();
+    }
+
     @Override
     public void delete() {
         this.localLog.delete();
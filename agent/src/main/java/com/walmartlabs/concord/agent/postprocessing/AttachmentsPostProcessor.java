@@ -20,21 +20,48 @@ package com.walmartlabs.concord.agent.postprocessing;
  * =====
  */
 
+import com.google.gson.reflect.TypeToken;
+import com.walmartlabs.concord.ApiException;
 import com.walmartlabs.concord.agent.AgentConstants;
+import com.walmartlabs.concord.agent.ExecutionException;
+import com.walmartlabs.concord.agent.StateCache;
+import com.walmartlabs.concord.agent.StateManifestEntry;
 import com.walmartlabs.concord.client.ClientUtils;
 import com.walmartlabs.concord.client.ProcessApi;
+import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.common.Posix;
+import com.walmartlabs.concord.common.TemporaryPath;
 import com.walmartlabs.concord.sdk.Constants;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Named
 @Singleton
 public class AttachmentsPostProcessor extends JobFileUploadPostProcessor {
 
+    private static final Logger log = LoggerFactory.getLogger(AttachmentsPostProcessor.class);
+
+    private static final Type NAMES_TYPE = new TypeToken<List<String>>() {
+    }.getType();
+
+    private final ProcessApi processApi;
+    private final StateCache stateCache;
+
     @Inject
-    public AttachmentsPostProcessor(ProcessApi processApi) {
+    public AttachmentsPostProcessor(ProcessApi processApi, StateCache stateCache) {
         super(Constants.Files.JOB_ATTACHMENTS_DIR_NAME,
                 "attachments", (instanceId, data) -> {
                     String path = "/api/v1/process/" + instanceId + "/attachment";
@@ -44,5 +71,101 @@ public class AttachmentsPostProcessor extends JobFileUploadPostProcessor {
                         return null;
                     });
                 });
+
+        this.processApi = processApi;
+        this.stateCache = stateCache;
+    }
+
+    @Override
+    public void process(UUID instanceId, Path payloadDir) throws ExecutionException {
+        Path attachmentsDir = payloadDir.resolve(Constants.Files.JOB_ATTACHMENTS_DIR_NAME);
+        if (!stateCache.isEnabled() || !Files.exists(attachmentsDir)) {
+            super.process(instanceId, payloadDir);
+            return;
+        }
+
+        try {
+            if (uploadDelta(instanceId, attachmentsDir)) {
+                return;
+            }
+        } catch (IOException | ApiException e) {
+            log.warn("process ['{}'] -> delta upload error, uploading all attachments: {}", instanceId, e.getMessage());
+        }
+
+        super.process(instanceId, payloadDir);
+    }
+
+    /**
+     * Uploads only the files that are different from the current process state.
+     *
+     * @return {@code false} if the server doesn't accept the delta and
+     * the whole archive must be uploaded.
+     */
+    private boolean uploadDelta(UUID instanceId, Path attachmentsDir) throws IOException, ApiException {
+        Map<String, StateManifestEntry> manifest = manifest(attachmentsDir);
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+
+        List<String> changed;
+        try {
+            changed = ClientUtils.withRetry(AgentConstants.API_CALL_MAX_RETRIES, AgentConstants.API_CALL_RETRY_DELAY,
+                    () -> ClientUtils.<List<String>>postData(processApi.getApiClient(), "/api/v1/process/" + instanceId + "/attachment/manifest", manifest, headers, NAMES_TYPE).getData());
+        } catch (ApiException e) {
+            if (e.getCode() == 404) {
+                // older server versions
+                return false;
+            }
+            throw e;
+        }
+
+        try (TemporaryPath tmp = IOUtils.tempFile("attachments", ".zip")) {
+            try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(Files.newOutputStream(tmp.path()))) {
+                for (String n : changed) {
+                    IOUtils.zipFile(zip, attachmentsDir.resolve(n), n);
+                }
+            }
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("manifest", manifest);
+            if (!changed.isEmpty()) {
+                data.put("data", tmp.path());
+            }
+
+            ClientUtils.withRetry(AgentConstants.API_CALL_MAX_RETRIES, AgentConstants.API_CALL_RETRY_DELAY, () -> {
+                ClientUtils.postData(processApi.getApiClient(), "/api/v1/process/" + instanceId + "/attachment/delta", data, null);
+                return null;
+            });
+        } catch (ApiException e) {
+            if (e.getCode() == 409) {
+                // the state was changed after the manifest was checked
+                return false;
+            }
+            throw e;
+        }
+
+        // the next resume of the process will most likely need the same files
+        for (Map.Entry<String, StateManifestEntry> e : manifest.entrySet()) {
+            stateCache.put(e.getValue().getHash(), attachmentsDir.resolve(e.getKey()));
+        }
+
+        log.info("uploadDelta ['{}'] -> {} file(s), {} uploaded", instanceId, manifest.size(), changed.size());
+        return true;
+    }
+
+    private static Map<String, StateManifestEntry> manifest(Path dir) throws IOException {
+        List<Path> files;
+        try (Stream<Path> s = Files.walk(dir)) {
+            files = s.filter(p -> Files.isRegularFile(p, LinkOption.NOFOLLOW_LINKS))
+                    .collect(Collectors.toList());
+        }
+
+        Map<String, StateManifestEntry> result = new LinkedHashMap<>();
+        for (Path p : files) {
+            String n = dir.relativize(p).toString();
+            int unixMode = Posix.unixMode(Files.getPosixFilePermissions(p));
+            result.put(n, new StateManifestEntry(IOUtils.sha256(p), unixMode));
+        }
+        return result;
     }
 }
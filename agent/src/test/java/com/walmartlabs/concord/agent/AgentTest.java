@@ -0,0 +1,120 @@
+package com.walmartlabs.concord.agent;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.queueclient.message.ProcessResponse;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AgentTest {
+
+    @Test
+    public void testPrepareJobs() {
+        List<ProcessResponse> processes = processes(3);
+        List<UUID> requeued = new ArrayList<>();
+
+        List<JobRequest> result = Agent.prepareJobs(processes, 3, AgentTest::jobRequest, requeued::add);
+
+        assertEquals(ids(processes), instanceIds(result));
+        assertEquals(0, requeued.size());
+    }
+
+    @Test
+    public void testPartialBatch() {
+        List<ProcessResponse> processes = processes(4);
+        UUID failed = processes.get(1).getProcessId();
+        List<UUID> requeued = new ArrayList<>();
+
+        // the second process fails in the middle of the batch
+        List<JobRequest> result = Agent.prepareJobs(processes, 4, p -> {
+            if (p.getProcessId().equals(failed)) {
+                throw new IOException("no space left");
+            }
+            return jobRequest(p);
+        }, requeued::add);
+
+        // the rest of the batch is still started, the failed process goes back to the queue
+        assertEquals(Arrays.asList(processes.get(0).getProcessId(), processes.get(2).getProcessId(), processes.get(3).getProcessId()), instanceIds(result));
+        assertEquals(Arrays.asList(failed), requeued);
+    }
+
+    @Test
+    public void testMaxCount() {
+        List<ProcessResponse> processes = processes(5);
+        List<UUID> requeued = new ArrayList<>();
+
+        List<JobRequest> result = Agent.prepareJobs(processes, 2, AgentTest::jobRequest, requeued::add);
+
+        // only the acquired number of slots can be used, the rest goes back to the queue
+        assertEquals(ids(processes.subList(0, 2)), instanceIds(result));
+        assertEquals(ids(processes.subList(2, 5)), requeued);
+    }
+
+    @Test
+    public void testMaxCountWithFailures() {
+        List<ProcessResponse> processes = processes(3);
+        UUID failed = processes.get(0).getProcessId();
+        List<UUID> requeued = new ArrayList<>();
+
+        List<JobRequest> result = Agent.prepareJobs(processes, 2, p -> {
+            if (p.getProcessId().equals(failed)) {
+                throw new RuntimeException("boom");
+            }
+            return jobRequest(p);
+        }, requeued::add);
+
+        // a failed process doesn't take a slot
+        assertEquals(ids(processes.subList(1, 3)), instanceIds(result));
+        assertEquals(Arrays.asList(failed), requeued);
+    }
+
+    private static List<ProcessResponse> processes(int count) {
+        List<ProcessResponse> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(new ProcessResponse(1, UUID.randomUUID(), null, null, null, null, null, null));
+        }
+        return result;
+    }
+
+    private static JobRequest jobRequest(ProcessResponse resp) {
+        JobRequest r = mock(JobRequest.class);
+        when(r.getInstanceId()).thenReturn(resp.getProcessId());
+        return r;
+    }
+
+    private static List<UUID> ids(List<ProcessResponse> processes) {
+        return processes.stream().map(ProcessResponse::getProcessId).collect(Collectors.toList());
+    }
+
+    private static List<UUID> instanceIds(List<JobRequest> jobs) {
+        return jobs.stream().map(JobRequest::getInstanceId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,86 @@
+package com.walmartlabs.concord.agent;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.agent.cfg.StateCacheConfiguration;
+import com.walmartlabs.concord.common.IOUtils;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StateCacheTest {
+
+    @Test
+    public void testPutCopy() throws Exception {
+        StateCache cache = new StateCache(cfg(Files.createTempDirectory("test"), 1024));
+
+        Path src = file("hello");
+        String hash = IOUtils.sha256(src);
+
+        Path dst = Files.createTempDirectory("test").resolve("a/b.txt");
+        assertFalse(cache.copyTo(hash, dst, 0644));
+
+        cache.put(hash, src);
+        assertTrue(cache.copyTo(hash, dst, 0755));
+        assertEquals("hello", new String(Files.readAllBytes(dst)));
+        assertTrue(Files.isExecutable(dst));
+    }
+
+    @Test
+    public void testCleanup() throws Exception {
+        Path dir = Files.createTempDirectory("test");
+        StateCache cache = new StateCache(cfg(dir, 10));
+
+        Path a = file("aaaaaa");
+        String hashA = IOUtils.sha256(a);
+        cache.put(hashA, a);
+        Files.setLastModifiedTime(dir.resolve(hashA.substring(0, 2)).resolve(hashA), FileTime.fromMillis(System.currentTimeMillis() - 60000));
+
+        Path b = file("bbbbbb");
+        String hashB = IOUtils.sha256(b);
+        cache.put(hashB, b);
+
+        // the least recently used file is removed
+        Path dst = Files.createTempFile("test", ".txt");
+        assertFalse(cache.copyTo(hashA, dst, 0644));
+        assertTrue(cache.copyTo(hashB, dst, 0644));
+    }
+
+    private static Path file(String data) throws Exception {
+        Path p = Files.createTempFile("test", ".txt");
+        Files.write(p, data.getBytes());
+        return p;
+    }
+
+    private static StateCacheConfiguration cfg(Path dir, long maxSize) {
+        StateCacheConfiguration cfg = mock(StateCacheConfiguration.class);
+        when(cfg.isEnabled()).thenReturn(true);
+        when(cfg.getCacheDir()).thenReturn(dir);
+        when(cfg.getMaxSize()).thenReturn(maxSize);
+        return cfg;
+    }
+}
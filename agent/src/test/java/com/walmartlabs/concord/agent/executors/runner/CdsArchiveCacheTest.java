@@ -0,0 +1,108 @@
+package com.walmartlabs.concord.agent.executors.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.common.hash.HashCode;
+import com.walmartlabs.concord.agent.cfg.CdsConfiguration;
+import com.walmartlabs.concord.common.IOUtils;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CdsArchiveCacheTest {
+
+    private static final HashCode A = HashCode.fromInt(1);
+
+    @Test
+    public void testParseMajorVersion() {
+        assertEquals(8, CdsArchiveCache.parseMajorVersion("openjdk version \"1.8.0_252\"\nOpenJDK Runtime Environment"));
+        assertEquals(11, CdsArchiveCache.parseMajorVersion("openjdk version \"11.0.7\" 2020-04-14"));
+        assertEquals(14, CdsArchiveCache.parseMajorVersion("java version \"14\" 2020-03-17"));
+        assertEquals(15, CdsArchiveCache.parseMajorVersion("openjdk version \"15-ea\" 2020-09-15"));
+        assertEquals(-1, CdsArchiveCache.parseMajorVersion("java: command not found"));
+    }
+
+    @Test
+    public void testCanDump() throws Exception {
+        Path dir = IOUtils.createTempDir("test");
+        Path jar = Files.createFile(dir.resolve("runner.jar"));
+
+        assertTrue(CdsArchiveCache.canDump(new String[]{"java", "-cp", jar.toString(), "Main"}));
+        assertFalse(CdsArchiveCache.canDump(new String[]{"java", "-cp", dir.toString(), "Main"}));
+        assertFalse(CdsArchiveCache.canDump(new String[]{"java", "-cp", jar + ":" + dir.resolve("missing.jar"), "Main"}));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        CdsArchiveCache cache = new CdsArchiveCache(cfg(false, IOUtils.createTempDir("test")));
+
+        String[] cmd = {"java", "-cp", "runner.jar", "Main"};
+        assertArrayEquals(cmd, cache.prepare(A, cmd).getCmd());
+    }
+
+    @Test
+    public void testArchive() throws Exception {
+        String javaCmd = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        assumeTrue(CdsArchiveCache.parseMajorVersion("version \"" + System.getProperty("java.version") + "\"") >= 13);
+
+        Path archiveDir = IOUtils.createTempDir("test");
+        Path jar = Files.createFile(archiveDir.resolve("runner.jar"));
+        CdsArchiveCache cache = new CdsArchiveCache(cfg(true, archiveDir));
+
+        String[] cmd = {javaCmd, "-cp", jar.toString(), "Main"};
+
+        // no archive yet, the first process creates it
+        String[] a = cache.prepare(A, cmd).getCmd();
+        assertEquals(cmd.length + 1, a.length);
+        assertEquals(javaCmd, a[0]);
+        assertTrue(a[1].startsWith("-XX:ArchiveClassesAtExit=" + archiveDir));
+        assertEquals(Arrays.asList(cmd).subList(1, cmd.length), Arrays.asList(a).subList(2, a.length));
+
+        // the archive is being created, other processes run as usual
+        assertArrayEquals(cmd, cache.prepare(A, cmd).getCmd());
+
+        // the archive is ready
+        Files.write(archiveDir.resolve(A + ".jsa"), new byte[]{1});
+        String[] b = cache.prepare(A, cmd).getCmd();
+        assertEquals("-XX:SharedArchiveFile=" + archiveDir.resolve(A + ".jsa"), b[1]);
+
+        // the process specified its own CDS options
+        String[] own = {javaCmd, "-Xshare:off", "-cp", jar.toString(), "Main"};
+        assertArrayEquals(own, cache.prepare(A, own).getCmd());
+    }
+
+    private static CdsConfiguration cfg(boolean enabled, Path archiveDir) {
+        CdsConfiguration cfg = mock(CdsConfiguration.class);
+        when(cfg.isEnabled()).thenReturn(enabled);
+        when(cfg.getArchiveDir()).thenReturn(archiveDir);
+        when(cfg.getMaxUnusedAge()).thenReturn(TimeUnit.DAYS.toMillis(7));
+        return cfg;
+    }
+}
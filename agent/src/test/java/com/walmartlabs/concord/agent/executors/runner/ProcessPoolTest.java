@@ -0,0 +1,240 @@
+package com.walmartlabs.concord.agent.executors.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+
+import com.google.common.hash.HashCode;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.walmartlabs.concord.agent.cfg.PreForkConfiguration;
+import com.walmartlabs.concord.agent.executors.runner.ProcessPool.ProcessEntry;
+import com.walmartlabs.concord.agent.executors.runner.ProcessPool.ProcessLauncher;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ProcessPoolTest {
+
+    private static final HashCode A = HashCode.fromInt(1);
+    private static final HashCode B = HashCode.fromInt(2);
+
+    private final AtomicLong now = new AtomicLong(System.currentTimeMillis());
+    private final List<ProcessPool> pools = new ArrayList<>();
+
+    @After
+    public void tearDown() throws Exception {
+        for (ProcessPool p : pools) {
+            p.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTake() throws Exception {
+        // the real executor, the processes are started in background
+        ProcessPool pool = pool(new ProcessPool(cfg(2, 0, 2)));
+        CountingLauncher launcher = new CountingLauncher();
+
+        // nothing to take, a new process is started
+        ProcessEntry a = pool.take(A, launcher);
+        assertNotNull(a);
+        assertEquals(1, pool.getStats().getMissCount());
+
+        // a replacement is started in background
+        waitFor(() -> pool.getStats().getIdleCount() == 1);
+        assertEquals(2, launcher.started.get());
+        assertEquals(1, pool.getStats().getWarmUpCount());
+
+        ProcessEntry b = pool.take(A, launcher);
+        assertNotSame(a, b);
+        assertEquals(1, pool.getStats().getHitCount());
+        assertEquals(0.5, pool.getStats().getHitRatio(), 0.001);
+
+        waitFor(() -> pool.getStats().getIdleCount() == 1);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ProcessPool pool = directPool(cfg(1, 0, 1));
+        CountingLauncher launcher = new CountingLauncher();
+
+        pool.take(A, launcher);
+        assertEquals(1, pool.getStats().getIdleCount());
+
+        pool.take(A, launcher);
+        assertEquals(1, pool.getStats().getIdleCount());
+
+        // let A's demand decay a bit
+        now.addAndGet(10);
+
+        // B is less demanded than A, the pool is full
+        pool.take(B, launcher);
+        assertEquals(0, pool.getStats().getEvictionCount());
+        assertEquals(1, pool.getStats().getIdleCount());
+
+        // now B is more demanded, A's process is replaced
+        pool.take(B, launcher);
+        assertEquals(1, pool.getStats().getEvictionCount());
+        assertEquals(1, pool.getStats().getIdleCount());
+
+        // B gets the process
+        pool.take(B, launcher);
+        assertEquals(2, pool.getStats().getHitCount());
+    }
+
+    @Test
+    public void testDeadProcess() throws Exception {
+        ProcessPool pool = directPool(cfg(2, 0, 2));
+        CountingLauncher launcher = new CountingLauncher();
+
+        pool.take(A, launcher);
+        assertEquals(1, pool.getStats().getIdleCount());
+
+        launcher.last.alive = false;
+
+        pool.take(A, launcher);
+        assertEquals(0, pool.getStats().getHitCount());
+        assertEquals(1, pool.getStats().getExpiredCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testClose() throws Exception {
+        ProcessPool pool = new ProcessPool(cfg(2, 0, 2));
+        CountingLauncher launcher = new CountingLauncher();
+
+        pool.take(A, launcher);
+        waitFor(() -> pool.getStats().getIdleCount() == 1);
+        TestProcess idle = launcher.last;
+
+        assertTrue(pool.isMaintenanceRunning());
+
+        pool.close();
+
+        // the maintenance thread is stopped, the idle processes are killed
+        assertFalse(pool.isMaintenanceRunning());
+        assertEquals(0, pool.getStats().getIdleCount());
+        waitFor(() -> !idle.alive);
+
+        // the pool still works, but nothing is pre-forked anymore
+        assertNotNull(pool.take(A, launcher));
+        assertEquals(0, pool.getStats().getIdleCount());
+        assertEquals(0, pool.getStats().getStartingCount());
+
+        // closing twice is fine
+        pool.close();
+    }
+
+    private ProcessPool directPool(PreForkConfiguration cfg) {
+        // runs the warm-ups in the calling thread
+        return pool(new ProcessPool(cfg, MoreExecutors.newDirectExecutorService(), now::get));
+    }
+
+    private ProcessPool pool(ProcessPool pool) {
+        pools.add(pool);
+        return pool;
+    }
+
+    private static PreForkConfiguration cfg(int maxCount, int minIdle, int maxIdle) {
+        PreForkConfiguration cfg = mock(PreForkConfiguration.class);
+        when(cfg.getMaxAge()).thenReturn(TimeUnit.MINUTES.toMillis(1));
+        when(cfg.getMaxCount()).thenReturn(maxCount);
+        when(cfg.getMinIdle()).thenReturn(minIdle);
+        when(cfg.getMaxIdle()).thenReturn(maxIdle);
+        when(cfg.getDemandHalfLife()).thenReturn(TimeUnit.MINUTES.toMillis(5));
+        return cfg;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timeout waiting for the condition");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static class CountingLauncher implements ProcessLauncher {
+
+        private final AtomicInteger started = new AtomicInteger();
+        private volatile TestProcess last;
+
+        @Override
+        public ProcessEntry start() {
+            started.incrementAndGet();
+            last = new TestProcess();
+            return new ProcessEntry(last, Paths.get("/tmp"));
+        }
+    }
+
+    private static class TestProcess extends Process {
+
+        private volatile boolean alive = true;
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public int waitFor() {
+            return 0;
+        }
+
+        @Override
+        public int exitValue() {
+            return 0;
+        }
+
+        @Override
+        public void destroy() {
+            alive = false;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return alive;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.walmartlabs.concord.agent.executors.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.HashCode;
+import com.walmartlabs.concord.agent.cfg.RunnerDaemonConfiguration;
+import com.walmartlabs.concord.runtime.common.RunnerDaemonProtocol;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RunnerDaemonPoolTest {
+
+    private static final HashCode A = HashCode.fromInt(1);
+    private static final String TOKEN = "test-token";
+
+    private FakeDaemonServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeDaemonServer();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testReuse() throws Exception {
+        RunnerDaemonPool pool = new RunnerDaemonPool(cfg(10, 1));
+        CountingLauncher launcher = new CountingLauncher(server.port);
+
+        server.response = req -> response(0, false);
+
+        RunnerDaemon a = pool.take(A, launcher);
+        Process p = a.submit(UUID.randomUUID(), Paths.get("/tmp/a"), Paths.get("/tmp/a.log"), pool);
+        assertEquals(0, p.waitFor());
+        assertEquals(0, p.exitValue());
+        assertFalse(p.isAlive());
+
+        Map<String, Object> req = server.requests.get(0);
+        assertEquals(TOKEN, req.get(RunnerDaemonProtocol.TOKEN_KEY));
+        assertEquals("/tmp/a", req.get(RunnerDaemonProtocol.WORK_DIR_KEY));
+        assertEquals("/tmp/a.log", req.get(RunnerDaemonProtocol.LOG_FILE_KEY));
+
+        // the daemon is returned into the pool and reused
+        RunnerDaemon b = pool.take(A, launcher);
+        assertSame(a, b);
+        assertEquals(1, launcher.started.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testRecycle() throws Exception {
+        RunnerDaemonPool pool = new RunnerDaemonPool(cfg(10, 1));
+        CountingLauncher launcher = new CountingLauncher(server.port);
+
+        server.response = req -> response(1, true);
+
+        RunnerDaemon a = pool.take(A, launcher);
+        Process p = a.submit(UUID.randomUUID(), Paths.get("/tmp/a"), Paths.get("/tmp/a.log"), pool);
+        assertEquals(1, p.waitFor());
+
+        // the daemon asked to be recycled
+        assertFalse(a.isAlive());
+
+        RunnerDaemon b = pool.take(A, launcher);
+        assertNotSame(a, b);
+        assertEquals(2, launcher.started.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testMaxRuns() throws Exception {
+        RunnerDaemonPool pool = new RunnerDaemonPool(cfg(2, 1));
+        CountingLauncher launcher = new CountingLauncher(server.port);
+
+        server.response = req -> response(0, false);
+
+        RunnerDaemon a = pool.take(A, launcher);
+        a.submit(UUID.randomUUID(), Paths.get("/tmp/a"), Paths.get("/tmp/a.log"), pool).waitFor();
+        assertSame(a, pool.take(A, launcher));
+        a.submit(UUID.randomUUID(), Paths.get("/tmp/a"), Paths.get("/tmp/a.log"), pool).waitFor();
+
+        assertFalse(a.isAlive());
+        assertNotSame(a, pool.take(A, launcher));
+    }
+
+    @Test(timeout = 10000)
+    public void testNoResponse() throws Exception {
+        RunnerDaemonPool pool = new RunnerDaemonPool(cfg(10, 1));
+        CountingLauncher launcher = new CountingLauncher(server.port);
+
+        // the daemon closes the connection without a response, e.g. crashed
+        server.response = req -> null;
+
+        RunnerDaemon a = pool.take(A, launcher);
+        Process p = a.submit(UUID.randomUUID(), Paths.get("/tmp/a"), Paths.get("/tmp/a.log"), pool);
+        assertEquals(1, p.waitFor());
+        assertFalse(a.isAlive());
+    }
+
+    @Test(timeout = 10000)
+    public void testClose() throws Exception {
+        RunnerDaemonPool pool = new RunnerDaemonPool(cfg(10, 1));
+        CountingLauncher launcher = new CountingLauncher(server.port);
+
+        server.response = req -> response(0, false);
+
+        RunnerDaemon a = pool.take(A, launcher);
+        RunnerDaemon b = pool.take(A, launcher);
+        assertNotSame(a, b);
+        a.submit(UUID.randomUUID(), Paths.get("/tmp/a"), Paths.get("/tmp/a.log"), pool).waitFor();
+        assertTrue(a.isAlive());
+
+        // idle daemons are stopped immediately
+        pool.close();
+        assertFalse(a.isAlive());
+
+        // the daemons in use are stopped when their processes complete
+        assertTrue(b.isAlive());
+        b.submit(UUID.randomUUID(), Paths.get("/tmp/b"), Paths.get("/tmp/b.log"), pool).waitFor();
+        assertFalse(b.isAlive());
+    }
+
+    private static RunnerDaemonConfiguration cfg(int maxRuns, int maxIdle) {
+        RunnerDaemonConfiguration cfg = mock(RunnerDaemonConfiguration.class);
+        when(cfg.isEnabled()).thenReturn(false);
+        when(cfg.getMaxRuns()).thenReturn(maxRuns);
+        when(cfg.getMaxIdle()).thenReturn(maxIdle);
+        when(cfg.getMaxIdleTime()).thenReturn(60000L);
+        return cfg;
+    }
+
+    private static Map<String, Object> response(int exitCode, boolean recycle) {
+        Map<String, Object> m = new HashMap<>();
+        m.put(RunnerDaemonProtocol.EXIT_CODE_KEY, exitCode);
+        m.put(RunnerDaemonProtocol.RECYCLE_KEY, recycle);
+        return m;
+    }
+
+    private static class CountingLauncher implements RunnerDaemonPool.DaemonLauncher {
+
+        private final int port;
+        private final AtomicInteger started = new AtomicInteger();
+
+        private CountingLauncher(int port) {
+            this.port = port;
+        }
+
+        @Override
+        public RunnerDaemon start() throws IOException {
+            started.incrementAndGet();
+            Path daemonDir = Files.createTempDirectory("daemon-test");
+            return new RunnerDaemon(A, new FakeProcess(), daemonDir, TOKEN, port);
+        }
+    }
+
+    /**
+     * Accepts the requests and responds with whatever the test needs.
+     */
+    private static class FakeDaemonServer implements Closeable {
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+        private final ServerSocket socket;
+        private final int port;
+        private final List<Map<String, Object>> requests = Collections.synchronizedList(new ArrayList<>());
+
+        private volatile Function<Map<String, Object>, Map<String, Object>> response;
+
+        private FakeDaemonServer() throws IOException {
+            this.socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            this.port = socket.getLocalPort();
+
+            Thread t = new Thread(this::serve, "fake-daemon");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void serve() {
+            while (!socket.isClosed()) {
+                try (Socket s = socket.accept()) {
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                    Map<String, Object> req = objectMapper.readValue(reader.readLine(), Map.class);
+                    requests.add(req);
+
+                    Map<String, Object> resp = response.apply(req);
+                    if (resp != null) {
+                        Writer writer = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8);
+                        writer.write(objectMapper.writeValueAsString(resp));
+                        writer.write('\n');
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    private static class FakeProcess extends Process {
+
+        private volatile boolean alive = true;
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public int waitFor() {
+            return 0;
+        }
+
+        @Override
+        public int exitValue() {
+            if (alive) {
+                throw new IllegalThreadStateException();
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return alive;
+        }
+
+        @Override
+        public void destroy() {
+            alive = false;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.walmartlabs.concord.benchmarks;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.runtime.v2.runner.el.DefaultExpressionEvaluator;
+import com.walmartlabs.concord.runtime.v2.runner.el.ExpressionEvaluator;
+import com.walmartlabs.concord.runtime.v2.runner.el.Interpolator;
+import com.walmartlabs.concord.runtime.v2.runner.vars.GlobalVariablesImpl;
+import com.walmartlabs.concord.runtime.v2.sdk.Compiler;
+import com.walmartlabs.concord.runtime.v2.sdk.Context;
+import com.walmartlabs.concord.runtime.v2.sdk.Execution;
+import com.walmartlabs.concord.runtime.v2.sdk.GlobalVariables;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interpolates the input of a task called in a {@code withItems} loop,
+ * the same way the runtime v2 does it for each iteration:
+ * <pre>
+ * - task: http
+ *   in:
+ *     url: "https://example.com/api/${item.name}"
+ *     headers:
+ *       ...
+ *     body:
+ *       ...
+ *   withItems: ${items} # 10k items
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExpressionEvaluatorBenchmark {
+
+    private static final int ITEMS = 10_000;
+
+    private ExpressionEvaluator ee;
+    private Map<String, Object> variables;
+    private List<Map<String, Object>> items;
+    private Map<String, Object> input;
+
+    @Setup
+    public void setup() {
+        ee = new DefaultExpressionEvaluator();
+
+        variables = new HashMap<>();
+        variables.put("projectName", "benchmarks");
+        variables.put("baseUrl", "https://example.com/api");
+
+        items = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("name", "item-" + i);
+            item.put("tag", "tag-" + (i % 10));
+            item.put("value", i);
+            items.add(item);
+        }
+
+        Map<String, Object> headers = new LinkedHashMap<>();
+        headers.put("Accept", "application/json");
+        headers.put("X-Project", "${projectName}");
+        headers.put("X-Index", "${itemIndex}");
+
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("value", "${item.value * 2}");
+        nested.put("even", "${item.value % 2 == 0}");
+        nested.put("comment", "no expressions here");
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("name", "${item.name}");
+        body.put("tags", Arrays.asList("static", "${item.tag}"));
+        body.put("nested", nested);
+
+        input = new LinkedHashMap<>();
+        input.put("url", "${baseUrl}/${item.name}");
+        input.put("method", "POST");
+        input.put("headers", headers);
+        input.put("body", body);
+        input.put("timeout", 30);
+    }
+
+    @Benchmark
+    public void withItems(Blackhole bh) {
+        for (int i = 0; i < items.size(); i++) {
+            Map<String, Object> vars = new HashMap<>(variables);
+            vars.put("item", items.get(i));
+            vars.put("itemIndex", i);
+
+            Context ctx = new BenchmarkContext(new GlobalVariablesImpl(vars));
+            bh.consume(Interpolator.interpolate(ee, ctx, input, Map.class));
+        }
+    }
+
+    private static final class BenchmarkContext implements Context {
+
+        private final GlobalVariables globalVariables;
+
+        private BenchmarkContext(GlobalVariables globalVariables) {
+            this.globalVariables = globalVariables;
+        }
+
+        @Override
+        public GlobalVariables globalVariables() {
+            return globalVariables;
+        }
+
+        @Override
+        public Execution execution() {
+            throw new IllegalStateException("Not supported");
+        }
+
+        @Override
+        public Compiler compiler() {
+            throw new IllegalStateException("Not supported");
+        }
+
+        @Override
+        public <T> T interpolate(Object v, Class<T> type) {
+            throw new IllegalStateException("Not supported");
+        }
+    }
+}
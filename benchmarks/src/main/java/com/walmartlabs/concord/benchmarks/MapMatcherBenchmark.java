@@ -0,0 +1,104 @@
+package com.walmartlabs.concord.benchmarks;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.common.CompiledMapMatcher;
+import com.walmartlabs.concord.common.MapMatcher;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link MapMatcher} and {@link CompiledMapMatcher} on a typical
+ * dispatcher workload: a set of agent capabilities matched against
+ * the requirements of the enqueued processes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapMatcherBenchmark {
+
+    private List<Map<String, Object>> capabilities;
+    private List<Map<String, Object>> requirements;
+    private List<CompiledMapMatcher> compiled;
+
+    @Setup
+    public void setup() {
+        capabilities = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("flavor", "flavor-" + (i % 4));
+            m.put("os", i % 2 == 0 ? "linux" : "windows");
+            m.put("labels", Arrays.asList("a", "b", "c-" + i));
+            m.put("k8s", Collections.singletonMap("cluster", "cluster-" + (i % 3)));
+            capabilities.add(m);
+        }
+
+        requirements = new ArrayList<>();
+        requirements.add(Collections.singletonMap("flavor", "flavor-1"));
+        requirements.add(Collections.singletonMap("flavor", "flavor-.*"));
+        requirements.add(Collections.singletonMap("labels", Collections.singletonList("c-1.*")));
+        requirements.add(Collections.singletonMap("k8s", Collections.singletonMap("cluster", "cluster-[12]")));
+
+        Map<String, Object> m = new HashMap<>();
+        m.put("flavor", "flavor-3");
+        m.put("os", "windows");
+        requirements.add(m);
+
+        compiled = new ArrayList<>();
+        for (Map<String, Object> r : requirements) {
+            compiled.add(CompiledMapMatcher.compile(r));
+        }
+    }
+
+    @Benchmark
+    public void mapMatcher(Blackhole bh) {
+        for (Map<String, Object> r : requirements) {
+            for (Map<String, Object> c : capabilities) {
+                bh.consume(MapMatcher.matches(c, r));
+            }
+        }
+    }
+
+    @Benchmark
+    public void compiledMapMatcher(Blackhole bh) {
+        for (CompiledMapMatcher r : compiled) {
+            for (Map<String, Object> c : capabilities) {
+                bh.consume(r.matches(c));
+            }
+        }
+    }
+
+    @Benchmark
+    public void compileAndMatch(Blackhole bh) {
+        for (Map<String, Object> r : requirements) {
+            CompiledMapMatcher m = CompiledMapMatcher.compile(r);
+            for (Map<String, Object> c : capabilities) {
+                bh.consume(m.matches(c));
+            }
+        }
+    }
+}
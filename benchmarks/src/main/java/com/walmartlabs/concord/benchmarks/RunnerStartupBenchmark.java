@@ -0,0 +1,181 @@
+package com.walmartlabs.concord.benchmarks;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.runtime.common.cfg.ApiConfiguration;
+import com.walmartlabs.concord.runtime.common.cfg.RunnerConfiguration;
+import com.walmartlabs.concord.sdk.Constants;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time it takes to start the runner JVM and to execute
+ * a no-op flow, with and without an AppCDS archive. The archive is
+ * created the same way as the agent does it, using the first run with
+ * {@code -XX:ArchiveClassesAtExit}. Requires JDK 13+ for {@code cds=on}.
+ * <p>
+ * The runtime calls (process status, heartbeat, events) are served
+ * by a local stub HTTP server.
+ * <p>
+ * Paths to the runner JARs must be specified using system properties:
+ * <pre>
+ * java -Drunner.v1.path=runtime/v1/impl/target/concord-runtime-impl-v1-*-jar-with-dependencies.jar \
+ *      -Drunner.v2.path=runtime/v2/runner/target/concord-runner-v2-*-jar-with-dependencies.jar \
+ *      -jar benchmarks/target/concord-benchmarks-*-uber.jar RunnerStartupBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RunnerStartupBenchmark {
+
+    private static final Map<String, String> MAIN_CLASSES = new HashMap<>();
+
+    static {
+        MAIN_CLASSES.put("v1", "com.walmartlabs.concord.runner.Main");
+        MAIN_CLASSES.put("v2", "com.walmartlabs.concord.runtime.v2.runner.Main");
+    }
+
+    @Param({"v1", "v2"})
+    public String runtime;
+
+    @Param({"off", "on"})
+    public String cds;
+
+    private HttpServer server;
+    private Path workDir;
+    private Path runnerCfgFile;
+    private Path archive;
+    private Path payloadDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] ab = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, ab.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(ab);
+            }
+        });
+        server.start();
+
+        workDir = IOUtils.createTempDir("runnerStartup");
+
+        RunnerConfiguration runnerCfg = RunnerConfiguration.builder()
+                .agentId("benchmark")
+                .api(ApiConfiguration.builder()
+                        .baseUrl("http://localhost:" + server.getAddress().getPort())
+                        .build())
+                .build();
+
+        runnerCfgFile = workDir.resolve("runner.json");
+        new ObjectMapper().writeValue(runnerCfgFile.toFile(), runnerCfg);
+
+        if ("on".equals(cds)) {
+            archive = workDir.resolve("runner.jsa");
+            preparePayload();
+            exec("-XX:ArchiveClassesAtExit=" + archive);
+            cleanupPayload();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Setup(Level.Invocation)
+    public void preparePayload() throws IOException {
+        payloadDir = Files.createTempDirectory(workDir, "payload");
+
+        String flows = "v2".equals(runtime) ?
+                "configuration:\n  runtime: \"concord-v2\"\nflows:\n  default:\n    - log: \"noop\"\n" :
+                "flows:\n  default:\n    - log: \"noop\"\n";
+
+        Files.write(payloadDir.resolve("concord.yml"), flows.getBytes(StandardCharsets.UTF_8));
+        Files.write(payloadDir.resolve(Constants.Files.REQUEST_DATA_FILE_NAME), "{\"entryPoint\": \"default\"}".getBytes(StandardCharsets.UTF_8));
+        Files.write(payloadDir.resolve(Constants.Files.SESSION_TOKEN_FILE_NAME), "benchmark".getBytes(StandardCharsets.UTF_8));
+        Files.write(payloadDir.resolve(Constants.Files.INSTANCE_ID_FILE_NAME), UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown(Level.Invocation)
+    public void cleanupPayload() throws IOException {
+        IOUtils.deleteRecursively(payloadDir);
+    }
+
+    @Benchmark
+    public int startAndRun() throws Exception {
+        return exec(archive != null ? "-XX:SharedArchiveFile=" + archive : null);
+    }
+
+    private int exec(String cdsOption) throws Exception {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (cdsOption != null) {
+            cmd.add(cdsOption);
+        }
+        cmd.add("-Xmx128m");
+        cmd.add("-Duser.dir=" + payloadDir);
+        cmd.add("-Dfile.encoding=UTF-8");
+        cmd.add("-cp");
+        cmd.add(runnerPath());
+        cmd.add(MAIN_CLASSES.get(runtime));
+        cmd.add(runnerCfgFile.toString());
+
+        Process p = new ProcessBuilder(cmd)
+                .directory(payloadDir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(workDir.resolve("runner.log").toFile()))
+                .start();
+
+        int code = p.waitFor();
+        if (code != 0) {
+            throw new IllegalStateException("Runner exited with code " + code + ", see " + workDir.resolve("runner.log"));
+        }
+        return code;
+    }
+
+    private String runnerPath() {
+        String key = "runner." + runtime + ".path";
+        String s = System.getProperty(key);
+        if (s == null) {
+            throw new IllegalStateException("The '" + key + "' system property is required");
+        }
+        return Paths.get(s).toAbsolutePath().toString();
+    }
+}
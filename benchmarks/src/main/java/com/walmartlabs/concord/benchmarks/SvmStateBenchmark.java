@@ -0,0 +1,114 @@
+package com.walmartlabs.concord.benchmarks;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.svm.Runtime;
+import com.walmartlabs.concord.svm.State;
+import com.walmartlabs.concord.svm.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link InMemoryState} and {@link ConcurrentState} when accessed
+ * from multiple "vm" threads at once, e.g. by the branches of a {@code parallel}
+ * block. Each benchmark thread performs the same calls as {@link VM#eval}
+ * does for a single command.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class SvmStateBenchmark {
+
+    @org.openjdk.jmh.annotations.State(Scope.Benchmark)
+    public static class SharedState {
+
+        @Param({"inMemory", "concurrent"})
+        public String impl;
+
+        private State state;
+
+        @Setup
+        public void setup() {
+            Command noop = new Noop();
+            state = "inMemory".equals(impl) ? new InMemoryState(noop) : new ConcurrentState(noop);
+
+            // some unrelated threads, e.g. suspended branches
+            for (int i = 0; i < 100; i++) {
+                ThreadId id = state.nextThreadId();
+                state.fork(state.getRootThreadId(), id, noop);
+                state.setEventRef(id, "event-" + i);
+            }
+        }
+    }
+
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class ThreadState {
+
+        private ThreadId threadId;
+
+        @Setup
+        public void setup(SharedState shared) {
+            State state = shared.state;
+            threadId = state.nextThreadId();
+            state.fork(state.getRootThreadId(), threadId, new Noop());
+        }
+    }
+
+    @Benchmark
+    public void evalCommand(SharedState shared, ThreadState ts, Blackhole bh) {
+        State state = shared.state;
+        ThreadId id = ts.threadId;
+
+        bh.consume(state.getStatus(id));
+        bh.consume(state.peekFrame(id));
+
+        state.pushFrame(id, new Frame());
+        bh.consume(state.peekFrame(id));
+        state.popFrame(id);
+
+        state.setStatus(id, ThreadStatus.READY);
+        bh.consume(state.getParentThreadId(id));
+    }
+
+    @Benchmark
+    public void removeEventRef(SharedState shared, ThreadState ts, Blackhole bh) {
+        State state = shared.state;
+        ThreadId id = ts.threadId;
+
+        state.setEventRef(id, "event-" + id);
+        bh.consume(state.removeEventRef("event-" + id));
+    }
+
+    private static class Noop implements Command {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void eval(Runtime runtime, State state, ThreadId threadId) {
+            state.peekFrame(threadId).pop();
+        }
+    }
+}
@@ -87,6 +87,15 @@ public final class ClientUtils {
         return resp.getHeaders().get(name).get(0);
     }
 
+    public static <T> ApiResponse<T> getData(ApiClient client, String path, Type returnType) throws ApiException {
+        Set<String> auths = client.getAuthentications().keySet();
+        String[] authNames = auths.toArray(new String[0]);
+
+        Call call = client.buildCall(path, "GET", new ArrayList<>(), new ArrayList<>(),
+                null, new HashMap<>(), new HashMap<>(), authNames, null);
+        return client.execute(call, returnType);
+    }
+
     public static <T> ApiResponse<T> postData(ApiClient client, String path, Object data) throws ApiException {
         return postData(client, path, data, null);
     }
@@ -0,0 +1,368 @@
+package com.walmartlabs.concord.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Pre-compiled version of {@link MapMatcher}. The conditions are converted
+ * into a tree of matchers once, string conditions are compiled into
+ * {@link Pattern}s (or simple string comparisons for literal values).
+ * <p/>
+ * With the default options, {@code CompiledMapMatcher.compile(conditions).matches(data)}
+ * returns the same result as {@code MapMatcher.matches(data, conditions)}.
+ * <p/>
+ * Instances are immutable and thread-safe.
+ */
+public final class CompiledMapMatcher {
+
+    private static final String REGEX_METACHARACTERS = "\\.[]{}()<>*+-=!?^$|";
+
+    private static final CompiledMapMatcher MATCH_ALL = new CompiledMapMatcher(null, EnumSet.noneOf(Option.class));
+
+    public enum Option {
+
+        /**
+         * Compare string values ignoring the case (using {@link Pattern#CASE_INSENSITIVE}).
+         */
+        CASE_INSENSITIVE,
+
+        /**
+         * A missing (null) value never matches a string condition.
+         * By default it is treated as an empty string.
+         */
+        STRICT_NULLS,
+
+        /**
+         * Compare {@link UUID} values as strings.
+         */
+        UUID_AS_STRING
+    }
+
+    public static CompiledMapMatcher compile(Map<String, Object> conditions, Option... options) {
+        if (conditions == null || conditions.isEmpty()) {
+            return MATCH_ALL;
+        }
+
+        EnumSet<Option> opts = EnumSet.noneOf(Option.class);
+        opts.addAll(Arrays.asList(options));
+
+        return new CompiledMapMatcher(conditions, opts);
+    }
+
+    /**
+     * @return {@code true} if the string condition doesn't contain any regex
+     * metacharacters, i.e. it matches only the same string (when compared
+     * case-sensitively).
+     */
+    public static boolean isLiteral(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (REGEX_METACHARACTERS.indexOf(s.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final Node root;
+    private final Set<Option> options;
+
+    private CompiledMapMatcher(Map<String, Object> conditions, Set<Option> options) {
+        this.options = options;
+        this.root = conditions != null ? compileNode(conditions, options) : null;
+    }
+
+    public boolean matches(Map<String, Object> data) {
+        if (root == null) {
+            return true;
+        }
+
+        return root.matches(data);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Node compileNode(Object conditions, Set<Option> options) {
+        if (conditions == null) {
+            return Objects::isNull;
+        } else if (conditions instanceof Map) {
+            return new MapNode((Map<String, Object>) conditions, options);
+        } else if (conditions instanceof String) {
+            return new StringNode((String) conditions, options);
+        } else if (conditions instanceof Collection) {
+            return new CollectionNode((Collection<Object>) conditions, options);
+        } else {
+            return data -> data != null && data.equals(conditions);
+        }
+    }
+
+    /**
+     * Immutable copy of a conditions map, suitable as a cache key. Changes
+     * of the original map don't affect the key and the key's hash code is
+     * computed only once.
+     */
+    public static final class Key {
+
+        public static Key of(Map<String, Object> conditions) {
+            return new Key(conditions != null ? copyMap(conditions) : Collections.emptyMap());
+        }
+
+        private final Map<String, Object> conditions;
+        private final int hashCode;
+
+        private Key(Map<String, Object> conditions) {
+            this.conditions = conditions;
+            this.hashCode = conditions.hashCode();
+        }
+
+        /**
+         * @return the copy of the conditions, can be used to compile a matcher
+         */
+        public Map<String, Object> getConditions() {
+            return conditions;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key that = (Key) o;
+            return hashCode == that.hashCode && conditions.equals(that.conditions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Object copy(Object v) {
+            if (v instanceof Map) {
+                return copyMap((Map<String, Object>) v);
+            } else if (v instanceof Set) {
+                Set<Object> result = new LinkedHashSet<>();
+                ((Set<Object>) v).forEach(i -> result.add(copy(i)));
+                return Collections.unmodifiableSet(result);
+            } else if (v instanceof Collection) {
+                List<Object> result = new ArrayList<>();
+                ((Collection<Object>) v).forEach(i -> result.add(copy(i)));
+                return Collections.unmodifiableList(result);
+            }
+
+            // strings, numbers, booleans, UUIDs, etc
+            return v;
+        }
+
+        private static Map<String, Object> copyMap(Map<String, Object> m) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            m.forEach((k, v) -> result.put(k, copy(v)));
+            return Collections.unmodifiableMap(result);
+        }
+    }
+
+    private interface Node {
+
+        boolean matches(Object data);
+    }
+
+    private static final class MapNode implements Node {
+
+        private final String[] keys;
+        private final Node[] values;
+
+        private MapNode(Map<String, Object> conditions, Set<Option> options) {
+            int size = conditions.size();
+            this.keys = new String[size];
+            this.values = new Node[size];
+
+            int i = 0;
+            for (Map.Entry<String, Object> e : conditions.entrySet()) {
+                keys[i] = e.getKey();
+                values[i] = compileNode(e.getValue(), options);
+                i++;
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean matches(Object data) {
+            if (!(data instanceof Map)) {
+                return false;
+            }
+
+            Map<String, Object> m = (Map<String, Object>) data;
+            for (int i = 0; i < keys.length; i++) {
+                if (!values[i].matches(m.get(keys[i]))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private static final class StringNode implements Node {
+
+        private final String literal;
+        private final Pattern pattern;
+        private final boolean caseInsensitive;
+        private final boolean strictNulls;
+        private final boolean uuidAsString;
+
+        private StringNode(String condition, Set<Option> options) {
+            this.caseInsensitive = options.contains(Option.CASE_INSENSITIVE);
+
+            // non-ASCII characters are left to the Pattern's own case folding
+            if (isLiteral(condition) && (!caseInsensitive || isAscii(condition))) {
+                this.literal = condition;
+                this.pattern = null;
+            } else {
+                this.literal = null;
+                this.pattern = Pattern.compile(condition, caseInsensitive ? Pattern.CASE_INSENSITIVE : 0);
+            }
+
+            this.strictNulls = options.contains(Option.STRICT_NULLS);
+            this.uuidAsString = options.contains(Option.UUID_AS_STRING);
+        }
+
+        @Override
+        public boolean matches(Object data) {
+            if (data == null) {
+                return !strictNulls && test("");
+            } else if (data instanceof String) {
+                return test((String) data);
+            } else if (uuidAsString && data instanceof UUID) {
+                return test(data.toString());
+            }
+
+            return false;
+        }
+
+        private boolean test(String s) {
+            if (literal != null) {
+                return caseInsensitive ? equalsIgnoreAsciiCase(literal, s) : literal.equals(s);
+            }
+
+            return pattern.matcher(s).matches();
+        }
+
+        /**
+         * Same as {@link Pattern#CASE_INSENSITIVE} for an ASCII-only literal {@code a}.
+         */
+        private static boolean equalsIgnoreAsciiCase(String a, String b) {
+            if (a.length() != b.length()) {
+                return false;
+            }
+
+            for (int i = 0; i < a.length(); i++) {
+                char x = a.charAt(i);
+                char y = b.charAt(i);
+                if (x != y && (x >= 128 || y >= 128 || toLowerAscii(x) != toLowerAscii(y))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private static boolean isAscii(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) >= 128) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static char toLowerAscii(char c) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+    }
+
+    private static final class CollectionNode implements Node {
+
+        private final Collection<Object> conditions;
+        private final Node[] elements;
+        private final Set<Option> options;
+
+        private CollectionNode(Collection<Object> conditions, Set<Option> options) {
+            this.conditions = conditions;
+            this.options = options;
+
+            this.elements = new Node[conditions.size()];
+            int i = 0;
+            for (Object c : conditions) {
+                elements[i++] = compileNode(c, options);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean matches(Object data) {
+            if (data == null) {
+                return false;
+            }
+
+            if (data instanceof Collection) {
+                // every condition must match at least one of the data elements
+                Collection<Object> items = (Collection<Object>) data;
+                if (elements.length > items.size()) {
+                    return false;
+                }
+
+                for (Node e : elements) {
+                    if (!matchAny(e, items)) {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+
+            // a scalar value is matched against the list of conditions using the data value
+            // as the condition. This mirrors the MapMatcher's behaviour and can't be pre-compiled
+            Node n = compileNode(data, options);
+            for (Object c : conditions) {
+                if (n.matches(c)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private static boolean matchAny(Node condition, Collection<Object> items) {
+            for (Object i : items) {
+                if (condition.matches(i)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+}
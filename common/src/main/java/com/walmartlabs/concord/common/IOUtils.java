@@ -30,6 +30,8 @@ import java.io.*;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.PosixFilePermission;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 public final class IOUtils {
@@ -319,12 +321,46 @@ public final class IOUtils {
         return true;
     }
 
+    /**
+     * Opens the file for writing. Unlike {@link Files#newOutputStream(Path, OpenOption...)},
+     * an existing file is removed first instead of being truncated, so other
+     * hard links to the same file (e.g. repository snapshots) keep their data.
+     */
+    public static OutputStream newReplacingOutputStream(Path p) throws IOException {
+        Files.deleteIfExists(p);
+        return Files.newOutputStream(p, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
     public static byte[] toByteArray(InputStream src) throws IOException {
         ByteArrayOutputStream dst = new ByteArrayOutputStream();
         copy(src, dst);
         return dst.toByteArray();
     }
 
+    /**
+     * Returns the SHA-256 hash of the file's content as a lowercase hex string.
+     */
+    public static String sha256(Path p) throws IOException {
+        MessageDigest md = newSha256Digest();
+
+        byte[] buf = new byte[8192];
+        int read;
+        try (InputStream in = Files.newInputStream(p)) {
+            while ((read = in.read(buf)) > 0) {
+                md.update(buf, 0, read);
+            }
+        }
+
+        return toHex(md.digest());
+    }
+
+    /**
+     * Returns the SHA-256 hash of the data as a lowercase hex string.
+     */
+    public static String sha256(byte[] ab) {
+        return toHex(newSha256Digest().digest(ab));
+    }
+
     public static void delete(File f) {
         if (f == null || !f.exists()) {
             return;
@@ -335,6 +371,23 @@ public final class IOUtils {
         }
     }
 
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toHex(byte[] ab) {
+        StringBuilder sb = new StringBuilder(ab.length * 2);
+        for (byte b : ab) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
     private static String getEnv(String key, String defaultValue) {
         String s = System.getenv(key);
         if (s == null) {
@@ -0,0 +1,105 @@
+package com.walmartlabs.concord.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of parsed process definitions. The definitions are stored in
+ * serialized form and keyed by the content hash of their source files,
+ * see {@link #hash(String, Path, Collection)}.
+ */
+public interface ProcessDefinitionCache {
+
+    /**
+     * @return the serialized definition or {@code null} if not found
+     */
+    byte[] get(String hash);
+
+    void put(String hash, byte[] data);
+
+    /**
+     * Calculates the hash of the specified definition files. Includes
+     * the files' paths relative to {@code baseDir} and their content.
+     *
+     * @param kind type of the definition (e.g. the runtime version), included into the hash
+     */
+    static String hash(String kind, Path baseDir, Collection<Path> files) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+
+        md.update(kind.getBytes(StandardCharsets.UTF_8));
+
+        byte[] buf = new byte[8192];
+        for (Path f : files) {
+            md.update((byte) 0);
+            md.update(baseDir.relativize(f).toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+
+            try (InputStream in = Files.newInputStream(f)) {
+                int read;
+                while ((read = in.read(buf)) > 0) {
+                    md.update(buf, 0, read);
+                }
+            }
+        }
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(md.digest());
+    }
+
+    static byte[] serialize(Serializable value) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(baos))) {
+            out.writeObject(value);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Only the classes of the process definition models can be deserialized,
+     * see {@code ProcessDefinitionInputStream}.
+     *
+     * @return the deserialized value or {@code null} if the data is not
+     * compatible with the current classes (e.g. created by a different version)
+     * or contains classes that are not allowed
+     */
+    static <T> T deserialize(byte[] data, Class<T> type) {
+        try (ObjectInputStream in = new ProcessDefinitionInputStream(new GZIPInputStream(new ByteArrayInputStream(data)))) {
+            Object o = in.readObject();
+            return type.isInstance(o) ? type.cast(o) : null;
+        } catch (IOException | ClassNotFoundException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.walmartlabs.concord.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+/**
+ * Deserializes process definitions. Only the classes of the process
+ * definition models (and the JDK types they use) can be loaded,
+ * anything else fails the deserialization.
+ */
+class ProcessDefinitionInputStream extends ObjectInputStream {
+
+    private static final String[] ALLOWED_PACKAGES = {
+            "java.lang.",
+            "java.util.",
+            "java.time.",
+            "java.math.",
+            "com.walmartlabs.concord.",
+            "io.takari.bpm.",
+            "com.google.common.collect.",
+            "com.fasterxml.jackson.core."
+    };
+
+    ProcessDefinitionInputStream(InputStream in) throws IOException {
+        super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+        if (!isAllowed(desc.getName())) {
+            throw new InvalidClassException(desc.getName(), "not allowed in a process definition");
+        }
+        return super.resolveClass(desc);
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+        throw new InvalidClassException("proxy classes are not allowed in a process definition");
+    }
+
+    static boolean isAllowed(String className) {
+        String n = className;
+
+        // arrays: "[I", "[[Ljava.lang.String;"
+        while (n.startsWith("[")) {
+            n = n.substring(1);
+        }
+        if (n.length() == 1) {
+            // array of primitives
+            return true;
+        }
+        if (n.startsWith("L") && n.endsWith(";")) {
+            n = n.substring(1, n.length() - 1);
+        }
+
+        for (String p : ALLOWED_PACKAGES) {
+            if (n.startsWith(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
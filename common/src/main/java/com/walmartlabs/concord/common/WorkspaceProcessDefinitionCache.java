@@ -0,0 +1,158 @@
+package com.walmartlabs.concord.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.sdk.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Stores a single serialized process definition in the process' working
+ * directory. Allows the server to pass the parsed definition to the runtime,
+ * the runtime uses it only if the hash of its own definition files matches.
+ * <p>
+ * The working directory contains user files (e.g. repository files or
+ * templates), so the server must remove any existing file before the process
+ * is dispatched, see {@link #delete(Path)}. The file contains the format
+ * marker and the digest of the data, a file with a different marker or
+ * a mismatched digest is ignored.
+ */
+public class WorkspaceProcessDefinitionCache implements ProcessDefinitionCache {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkspaceProcessDefinitionCache.class);
+
+    public static final String FILE_NAME = "processDefinition.cache";
+
+    private static final String MARKER = "concord-process-definition-v1";
+    private static final int DIGEST_LENGTH = 32;
+
+    private final Path file;
+    private final boolean readOnly;
+
+    public WorkspaceProcessDefinitionCache(Path workDir) {
+        this(workDir, false);
+    }
+
+    /**
+     * @param readOnly if {@code true} the file is never created or updated
+     */
+    public WorkspaceProcessDefinitionCache(Path workDir, boolean readOnly) {
+        this.file = file(workDir);
+        this.readOnly = readOnly;
+    }
+
+    public static Path file(Path workDir) {
+        return workDir.resolve(Constants.Files.CONCORD_SYSTEM_DIR_NAME).resolve(FILE_NAME);
+    }
+
+    /**
+     * Removes the cache file from the specified working directory.
+     */
+    public static void delete(Path workDir) throws IOException {
+        Files.deleteIfExists(file(workDir));
+    }
+
+    @Override
+    public byte[] get(String hash) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (!MARKER.equals(in.readUTF())) {
+                log.warn("get ['{}'] -> unknown file format, ignoring {}", hash, file);
+                return null;
+            }
+
+            if (!hash.equals(in.readUTF())) {
+                return null;
+            }
+
+            int length = in.readInt();
+            if (length < 0 || length > Files.size(file)) {
+                log.warn("get ['{}'] -> invalid data length, ignoring {}", hash, file);
+                return null;
+            }
+
+            byte[] ab = new byte[length];
+            in.readFully(ab);
+
+            byte[] expectedDigest = new byte[DIGEST_LENGTH];
+            in.readFully(expectedDigest);
+
+            if (!MessageDigest.isEqual(expectedDigest, digest(hash, ab))) {
+                log.warn("get ['{}'] -> digest mismatch, ignoring {}", hash, file);
+                return null;
+            }
+
+            return ab;
+        } catch (IOException e) {
+            log.warn("get ['{}'] -> error while reading {}: {}", hash, file, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String hash, byte[] data) {
+        if (readOnly) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(file.getParent());
+
+            Path tmp = Files.createTempFile(file.getParent(), "processDefinition", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeUTF(MARKER);
+                out.writeUTF(hash);
+                out.writeInt(data.length);
+                out.write(data);
+                out.write(digest(hash, data));
+            }
+
+            // replaces the file (or a hard link to it) instead of overwriting
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("put ['{}'] -> error while writing {}: {}", hash, file, e.getMessage());
+        }
+    }
+
+    private static byte[] digest(String hash, byte[] data) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+
+        md.update(hash.getBytes(StandardCharsets.UTF_8));
+        md.update(data);
+        return md.digest();
+    }
+}
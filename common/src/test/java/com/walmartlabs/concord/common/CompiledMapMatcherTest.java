@@ -0,0 +1,137 @@
+package com.walmartlabs.concord.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledMapMatcherTest {
+
+    @Test
+    public void testSameAsMapMatcher() {
+        List<Map<String, Object>> data = Arrays.asList(
+                map("type", "push", "repo", "concord", "branch", "master"),
+                map("type", "pull_request", "repo", "concord", "labels", Arrays.asList("a", "b")),
+                map("type", "push", "payload", map("ref", "refs/heads/master", "size", 10)),
+                map("flavor", "k8s", "os", "linux"),
+                map(),
+                null);
+
+        List<Map<String, Object>> conditions = Arrays.asList(
+                map("type", "push"),
+                map("type", "pu.*"),
+                map("type", ".*", "missing", ".*"),
+                map("type", "push", "missing", "x"),
+                map("labels", Arrays.asList("a")),
+                map("labels", Arrays.asList("a", "c")),
+                map("type", Arrays.asList("push", "pull_request")),
+                map("payload", map("ref", "refs/heads/.*", "size", 10)),
+                map("payload", map("size", 11)),
+                map("flavor", "k8s"),
+                map("missing", null),
+                map("repo", "concord.io"),
+                map(),
+                null);
+
+        for (Map<String, Object> c : conditions) {
+            CompiledMapMatcher m = CompiledMapMatcher.compile(c);
+            for (Map<String, Object> d : data) {
+                assertEquals("conditions: " + c + ", data: " + d, MapMatcher.matches(d, c), m.matches(d));
+            }
+        }
+    }
+
+    @Test
+    public void testOptions() {
+        UUID id = UUID.randomUUID();
+
+        CompiledMapMatcher m = CompiledMapMatcher.compile(map("name", "FOO.*"));
+        assertFalse(m.matches(map("name", "foobar")));
+
+        m = CompiledMapMatcher.compile(map("name", "FOO.*"), CompiledMapMatcher.Option.CASE_INSENSITIVE);
+        assertTrue(m.matches(map("name", "foobar")));
+
+        m = CompiledMapMatcher.compile(map("name", ".*"));
+        assertTrue(m.matches(map()));
+
+        m = CompiledMapMatcher.compile(map("name", ".*"), CompiledMapMatcher.Option.STRICT_NULLS);
+        assertFalse(m.matches(map()));
+
+        m = CompiledMapMatcher.compile(map("id", id.toString()));
+        assertFalse(m.matches(map("id", id)));
+
+        m = CompiledMapMatcher.compile(map("id", id.toString()), CompiledMapMatcher.Option.UUID_AS_STRING);
+        assertTrue(m.matches(map("id", id)));
+    }
+
+    @Test
+    public void testCaseInsensitiveLiterals() {
+        CompiledMapMatcher m = CompiledMapMatcher.compile(map("name", "Foo_Bar"), CompiledMapMatcher.Option.CASE_INSENSITIVE);
+        assertTrue(m.matches(map("name", "foo_bar")));
+        assertTrue(m.matches(map("name", "FOO_BAR")));
+        assertFalse(m.matches(map("name", "foo_ba")));
+        assertFalse(m.matches(map("name", "foo_barx")));
+
+        // non-ASCII characters are compared the same way as Pattern.CASE_INSENSITIVE does it
+        for (String s : Arrays.asList("\u00e9T\u00e9", "\u00c9t\u00e9", "ete")) {
+            m = CompiledMapMatcher.compile(map("name", "\u00e9t\u00e9"), CompiledMapMatcher.Option.CASE_INSENSITIVE);
+            assertEquals(Pattern.compile("\u00e9t\u00e9", Pattern.CASE_INSENSITIVE).matcher(s).matches(), m.matches(map("name", s)));
+        }
+
+        // ASCII literals don't match non-ASCII characters
+        m = CompiledMapMatcher.compile(map("name", "kelvin"), CompiledMapMatcher.Option.CASE_INSENSITIVE);
+        assertFalse(m.matches(map("name", "\u212aelvin")));
+    }
+
+    @Test
+    public void testKey() {
+        List<Object> labels = new ArrayList<>(Arrays.asList("a", "b"));
+        Map<String, Object> conditions = map("type", "push", "labels", labels);
+
+        CompiledMapMatcher.Key k = CompiledMapMatcher.Key.of(conditions);
+        assertEquals(k, CompiledMapMatcher.Key.of(map("type", "push", "labels", Arrays.asList("a", "b"))));
+        assertEquals(k.hashCode(), CompiledMapMatcher.Key.of(map("type", "push", "labels", Arrays.asList("a", "b"))).hashCode());
+
+        // the key is a snapshot
+        labels.add("c");
+        conditions.put("repo", "concord");
+        assertEquals(2, k.getConditions().size());
+        assertEquals(Arrays.asList("a", "b"), k.getConditions().get("labels"));
+        assertNotEquals(k, CompiledMapMatcher.Key.of(conditions));
+
+        assertEquals(CompiledMapMatcher.Key.of(null), CompiledMapMatcher.Key.of(map()));
+    }
+
+    private static Map<String, Object> map(Object... kv) {
+        Map<String, Object> m = new HashMap<>();
+        for (int i = 0; i < kv.length; i += 2) {
+            m.put((String) kv[i], kv[i + 1]);
+        }
+        return m;
+    }
+}
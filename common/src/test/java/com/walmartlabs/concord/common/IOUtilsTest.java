@@ -24,11 +24,13 @@ import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -57,6 +59,33 @@ public class IOUtilsTest {
         assertTrue(Files.exists(dst.resolve("b").resolve("c.txt")));
     }
 
+    @Test
+    public void testReplacingOutputStream() throws Exception {
+        Path dir = Files.createTempDirectory("test");
+        Path a = dir.resolve("a.txt");
+        Files.write(a, "original".getBytes());
+
+        Path b = dir.resolve("b.txt");
+        Files.createLink(b, a);
+
+        try (OutputStream out = IOUtils.newReplacingOutputStream(b)) {
+            out.write("replaced".getBytes());
+        }
+
+        // the other link keeps the original data
+        assertEquals("original", new String(Files.readAllBytes(a)));
+        assertEquals("replaced", new String(Files.readAllBytes(b)));
+
+        // new files are created as usual
+        Path c = dir.resolve("c.txt");
+        try (OutputStream out = IOUtils.newReplacingOutputStream(c)) {
+            out.write("new".getBytes());
+        }
+        assertEquals("new", new String(Files.readAllBytes(c)));
+
+        IOUtils.deleteRecursively(dir);
+    }
+
     @Test
     public void testCopy() throws Exception {
         Path src = Files.createTempDirectory("test");
@@ -123,4 +152,15 @@ public class IOUtilsTest {
         } catch (IOException e) {
         }
     }
+
+    @Test
+    public void testSha256() throws Exception {
+        String expected = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+
+        assertEquals(expected, IOUtils.sha256("hello".getBytes()));
+
+        Path p = Files.createTempFile("test", ".txt");
+        Files.write(p, "hello".getBytes());
+        assertEquals(expected, IOUtils.sha256(p));
+    }
 }
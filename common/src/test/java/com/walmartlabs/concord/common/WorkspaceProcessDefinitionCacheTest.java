@@ -0,0 +1,157 @@
+package com.walmartlabs.concord.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.sdk.Constants;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WorkspaceProcessDefinitionCacheTest {
+
+    private Path workDir;
+
+    @Before
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        IOUtils.deleteRecursively(workDir);
+    }
+
+    @Test
+    public void testPutGet() throws Exception {
+        byte[] data = ProcessDefinitionCache.serialize(sample());
+
+        new WorkspaceProcessDefinitionCache(workDir).put("abc", data);
+
+        byte[] ab = new WorkspaceProcessDefinitionCache(workDir, true).get("abc");
+        assertArrayEquals(data, ab);
+        assertEquals(sample(), ProcessDefinitionCache.deserialize(ab, HashMap.class));
+    }
+
+    @Test
+    public void testReadOnly() throws Exception {
+        new WorkspaceProcessDefinitionCache(workDir, true).put("abc", ProcessDefinitionCache.serialize(sample()));
+        assertFalse(Files.exists(WorkspaceProcessDefinitionCache.file(workDir)));
+    }
+
+    @Test
+    public void testStaleFile() throws Exception {
+        new WorkspaceProcessDefinitionCache(workDir).put("abc", ProcessDefinitionCache.serialize(sample()));
+
+        // the definition files changed after the server wrote the file
+        assertNull(new WorkspaceProcessDefinitionCache(workDir, true).get("xyz"));
+    }
+
+    @Test
+    public void testTamperedFile() throws Exception {
+        byte[] data = ProcessDefinitionCache.serialize(sample());
+        new WorkspaceProcessDefinitionCache(workDir).put("abc", data);
+
+        Path f = WorkspaceProcessDefinitionCache.file(workDir);
+        byte[] ab = Files.readAllBytes(f);
+        // flip a byte of the serialized data, the digest no longer matches
+        ab[ab.length - 40] ^= 0x01;
+        Files.write(f, ab);
+
+        assertNull(new WorkspaceProcessDefinitionCache(workDir, true).get("abc"));
+
+        // truncated file
+        Files.write(f, Arrays.copyOf(ab, ab.length - 10));
+        assertNull(new WorkspaceProcessDefinitionCache(workDir, true).get("abc"));
+    }
+
+    @Test
+    public void testUnknownFormat() throws Exception {
+        // e.g. a file committed into the user's repository
+        Path f = WorkspaceProcessDefinitionCache.file(workDir);
+        Files.createDirectories(f.getParent());
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(f))) {
+            byte[] data = ProcessDefinitionCache.serialize(sample());
+            out.writeUTF("abc");
+            out.writeInt(data.length);
+            out.write(data);
+        }
+
+        assertNull(new WorkspaceProcessDefinitionCache(workDir, true).get("abc"));
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        new WorkspaceProcessDefinitionCache(workDir).put("abc", ProcessDefinitionCache.serialize(sample()));
+        assertTrue(Files.exists(workDir.resolve(Constants.Files.CONCORD_SYSTEM_DIR_NAME).resolve(WorkspaceProcessDefinitionCache.FILE_NAME)));
+
+        WorkspaceProcessDefinitionCache.delete(workDir);
+        assertFalse(Files.exists(WorkspaceProcessDefinitionCache.file(workDir)));
+        assertNull(new WorkspaceProcessDefinitionCache(workDir, true).get("abc"));
+
+        // no file - no error
+        WorkspaceProcessDefinitionCache.delete(workDir);
+    }
+
+    @Test
+    public void testDisallowedClasses() throws Exception {
+        List<Object> l = new ArrayList<>();
+        l.add("a");
+        l.add(new File("/tmp"));
+
+        // a valid file, but java.io.File is not a part of any definition model
+        new WorkspaceProcessDefinitionCache(workDir).put("abc", ProcessDefinitionCache.serialize((ArrayList<Object>) l));
+
+        byte[] ab = new WorkspaceProcessDefinitionCache(workDir, true).get("abc");
+        assertNotNull(ab);
+        assertNull(ProcessDefinitionCache.deserialize(ab, ArrayList.class));
+    }
+
+    @Test
+    public void testAllowedClassNames() {
+        assertTrue(ProcessDefinitionInputStream.isAllowed("java.util.HashMap"));
+        assertTrue(ProcessDefinitionInputStream.isAllowed("com.walmartlabs.concord.runtime.v2.model.ImmutableFlowCall"));
+        assertTrue(ProcessDefinitionInputStream.isAllowed("[B"));
+        assertTrue(ProcessDefinitionInputStream.isAllowed("[[Ljava.lang.String;"));
+
+        assertFalse(ProcessDefinitionInputStream.isAllowed("java.io.File"));
+        assertFalse(ProcessDefinitionInputStream.isAllowed("[Ljava.io.File;"));
+        assertFalse(ProcessDefinitionInputStream.isAllowed("org.apache.commons.collections.functors.InvokerTransformer"));
+    }
+
+    private static HashMap<String, Object> sample() {
+        HashMap<String, Object> m = new HashMap<>();
+        m.put("a", 1);
+        m.put("b", Arrays.asList("x", "y"));
+        return m;
+    }
+}
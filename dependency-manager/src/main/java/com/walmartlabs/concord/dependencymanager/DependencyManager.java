@@ -30,6 +30,7 @@ import org.eclipse.aether.collection.CollectRequest;
 import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
 import org.eclipse.aether.graph.Dependency;
 import org.eclipse.aether.impl.DefaultServiceLocator;
+import org.eclipse.aether.impl.SyncContextFactory;
 import org.eclipse.aether.repository.LocalRepository;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.repository.RepositoryPolicy;
@@ -69,6 +70,7 @@ public class DependencyManager {
     private static final long RETRY_INTERVAL = 5000;
 
     private static final String FILES_CACHE_DIR = "files";
+    private static final String MANIFESTS_CACHE_DIR = "manifests";
     public static final String MAVEN_SCHEME = "mvn";
 
     private static final MavenRepository MAVEN_CENTRAL = MavenRepository.builder()
@@ -82,10 +84,20 @@ public class DependencyManager {
 
     private static final List<MavenRepository> DEFAULT_REPOS = Collections.singletonList(MAVEN_CENTRAL);
 
+    /**
+     * Shared by all instances, the local repository is the same.
+     */
+    private static final LocalRepositorySyncContextFactory SYNC_CONTEXT_FACTORY = new LocalRepositorySyncContextFactory();
+
+    /**
+     * Locks for the direct link files and the manifest keys.
+     */
+    private static final KeyedLocks LOCKS = new KeyedLocks();
+
     private final Path cacheDir;
     private final Path localCacheDir;
     private final List<RemoteRepository> repositories;
-    private final Object mutex = new Object();
+    private final DependencyManifestCache manifestCache;
     private final RepositorySystem maven = newMavenRepositorySystem();
 
     public DependencyManager(Path cacheDir) throws IOException {
@@ -101,6 +113,8 @@ public class DependencyManager {
 
         log.info("init -> using repositories: {}", repositories);
         this.repositories = toRemote(repositories);
+
+        this.manifestCache = new DependencyManifestCache(cacheDir.resolve(MANIFESTS_CACHE_DIR), configKey(localCacheDir, repositories));
     }
 
     public Collection<DependencyEntity> resolve(Collection<URI> items) throws IOException {
@@ -130,6 +144,30 @@ public class DependencyManager {
         List<URI> uris = new ArrayList<>(items);
         Collections.sort(uris);
 
+        if (!isCacheable(uris)) {
+            return resolveUncached(uris);
+        }
+
+        // resolve the same set of dependencies only once at a time
+        String key = manifestCache.key(uris);
+        try (KeyedLocks.Handle ignored = LOCKS.lock("manifest:" + key)) {
+            Collection<DependencyEntity> result = manifestCache.get(key);
+            if (result != null) {
+                log.info("resolve -> using the cached results for {} dependencies", uris.size());
+                return result;
+            }
+
+            result = resolveUncached(uris);
+
+            if (result.stream().noneMatch(DependencyManager::isSnapshot)) {
+                manifestCache.put(key, result);
+            }
+
+            return result;
+        }
+    }
+
+    private Collection<DependencyEntity> resolveUncached(List<URI> uris) throws IOException {
         DependencyList deps = categorize(uris);
 
         Collection<DependencyEntity> result = new HashSet<>();
@@ -206,7 +244,7 @@ public class DependencyManager {
 
         Path dst = baseDir.resolve(name);
 
-        synchronized (mutex) {
+        try (KeyedLocks.Handle ignored = LOCKS.lock("file:" + dst)) {
             if (!skipCache && Files.exists(dst)) {
                 log.info("resolveFile -> using a cached copy of {}...", uri);
                 return dst;
@@ -240,32 +278,32 @@ public class DependencyManager {
     }
 
     private Artifact resolveMavenSingle(MavenDependency dep) throws IOException {
-        RepositorySystemSession session = newRepositorySystemSession(maven);
-
-        ArtifactRequest req = new ArtifactRequest();
-        req.setArtifact(dep.artifact);
-        req.setRepositories(repositories);
-
-        synchronized (mutex) {
-            try {
-                ArtifactResult r = maven.resolveArtifact(session, req);
-                return r.getArtifact();
-            } catch (ArtifactResolutionException e) {
-                throw new IOException(e);
-            }
-        }
+        return resolveMavenSingleDependencies(Collections.singletonList(dep)).iterator().next();
     }
 
     private Collection<Artifact> resolveMavenSingleDependencies(Collection<MavenDependency> deps) throws IOException {
-        Collection<Artifact> paths = new HashSet<>();
-        for (MavenDependency dep : deps) {
-            paths.add(resolveMavenSingle(dep));
+        if (deps.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        RepositorySystemSession session = newRepositorySystemSession(maven);
+
+        // resolve all artifacts in a single request, the missing artifacts are downloaded in parallel
+        List<ArtifactRequest> reqs = deps.stream()
+                .map(d -> new ArtifactRequest(d.artifact, repositories, null))
+                .collect(Collectors.toList());
+
+        try {
+            return maven.resolveArtifacts(session, reqs).stream()
+                    .map(ArtifactResult::getArtifact)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+        } catch (ArtifactResolutionException e) {
+            throw new IOException(e);
         }
-        return paths;
     }
 
     private Collection<Artifact> resolveMavenTransitiveDependencies(Collection<MavenDependency> deps) throws IOException {
-        RepositorySystem system = newMavenRepositorySystem();
+        RepositorySystem system = maven;
         RepositorySystemSession session = newRepositorySystemSession(system);
 
         CollectRequest req = new CollectRequest();
@@ -276,15 +314,13 @@ public class DependencyManager {
 
         DependencyRequest dependencyRequest = new DependencyRequest(req, null);
 
-        synchronized (mutex) {
-            try {
-                return system.resolveDependencies(session, dependencyRequest)
-                        .getArtifactResults().stream()
-                        .map(ArtifactResult::getArtifact)
-                        .collect(Collectors.toSet());
-            } catch (DependencyResolutionException e) {
-                throw new IOException(e);
-            }
+        try {
+            return system.resolveDependencies(session, dependencyRequest)
+                    .getArtifactResults().stream()
+                    .map(ArtifactResult::getArtifact)
+                    .collect(Collectors.toSet());
+        } catch (DependencyResolutionException e) {
+            throw new IOException(e);
         }
     }
 
@@ -316,6 +352,54 @@ public class DependencyManager {
         return session;
     }
 
+    /**
+     * Returns {@code true} if the resolution results for the specified
+     * dependencies can be cached, i.e. the dependencies can't change
+     * between runs.
+     */
+    private static boolean isCacheable(List<URI> uris) {
+        for (URI u : uris) {
+            if (shouldSkipCache(u)) {
+                return false;
+            }
+
+            if (MAVEN_SCHEME.equalsIgnoreCase(u.getScheme())) {
+                String id = u.getAuthority();
+                if (id == null) {
+                    return false;
+                }
+
+                String version = new DefaultArtifact(id).getVersion();
+                if (version.startsWith("[") || version.startsWith("(")
+                        || "LATEST".equals(version) || "RELEASE".equals(version)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isSnapshot(DependencyEntity e) {
+        DependencyEntity.Artifact a = e.getArtifact();
+        return a != null && a.getVersion() != null && a.getVersion().endsWith("SNAPSHOT");
+    }
+
+    private static String configKey(Path localCacheDir, List<MavenRepository> repositories) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(localCacheDir.toAbsolutePath()).append('\n');
+        for (MavenRepository r : repositories) {
+            sb.append(r.id()).append('|')
+                    .append(r.contentType()).append('|')
+                    .append(r.url()).append('|')
+                    .append(r.releasePolicy()).append('|')
+                    .append(r.snapshotPolicy()).append('|')
+                    .append(r.auth() != null ? hash(new TreeMap<>(r.auth()).toString()) : "")
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+
     private static DependencyEntity toDependency(Artifact artifact) {
         return new DependencyEntity(artifact.getFile().toPath(),
                 artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion());
@@ -351,6 +435,7 @@ public class DependencyManager {
         locator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
         locator.addService(TransporterFactory.class, FileTransporterFactory.class);
         locator.addService(TransporterFactory.class, HttpTransporterFactory.class);
+        locator.setServices(SyncContextFactory.class, SYNC_CONTEXT_FACTORY);
 
         locator.setErrorHandler(new DefaultServiceLocator.ErrorHandler() {
             @Override
@@ -0,0 +1,304 @@
+package com.walmartlabs.concord.dependencymanager;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Stores the results of dependency resolution: the list of resolved files
+ * for a specific set of dependency URIs and repository configuration.
+ * <p>
+ * The cached results are validated by checking the size and the modification
+ * time of each file. The SHA-256 checksum of a file is re-calculated only if
+ * its modification time changed.
+ */
+public class DependencyManifestCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DependencyManifestCache.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path dir;
+    private final String configKey;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param dir       directory to store the manifests in
+     * @param configKey a string representation of the resolution
+     *                  configuration (repositories, etc), becomes a part
+     *                  of the manifest key
+     */
+    public DependencyManifestCache(Path dir, String configKey) {
+        this.dir = dir;
+        this.configKey = configKey;
+    }
+
+    /**
+     * Returns the key for the specified dependencies.
+     * The order of the dependencies doesn't matter.
+     */
+    public String key(Collection<URI> uris) {
+        List<String> l = new ArrayList<>();
+        for (URI u : uris) {
+            l.add(u.toString());
+        }
+        Collections.sort(l);
+
+        MessageDigest md = sha256();
+        md.update(("v" + FORMAT_VERSION + "\n" + configKey + "\n").getBytes(StandardCharsets.UTF_8));
+        for (String s : l) {
+            md.update(s.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) '\n');
+        }
+        return DatatypeConverter.printHexBinary(md.digest()).toLowerCase();
+    }
+
+    /**
+     * Returns the cached results or {@code null} if there are no cached results
+     * for the key or if any of the previously resolved files changed.
+     */
+    public Collection<DependencyEntity> get(String key) {
+        Path p = dir.resolve(key + ".json");
+        if (!Files.exists(p)) {
+            return null;
+        }
+
+        Manifest m;
+        try (InputStream in = Files.newInputStream(p)) {
+            m = objectMapper.readValue(in, Manifest.class);
+        } catch (IOException e) {
+            log.warn("get ['{}'] -> can't read the manifest, ignoring: {}", key, e.getMessage());
+            return null;
+        }
+
+        if (m.version != FORMAT_VERSION || m.entries == null) {
+            return null;
+        }
+
+        Collection<DependencyEntity> result = new HashSet<>(m.entries.size());
+        for (Entry e : m.entries) {
+            Path f = Paths.get(e.path);
+            if (!isValid(f, e)) {
+                log.info("get ['{}'] -> {} is missing or changed, the manifest is ignored", key, f);
+                return null;
+            }
+
+            result.add(e.toDependency(f));
+        }
+
+        return result;
+    }
+
+    /**
+     * Saves the results. Calculates the checksums of all files.
+     */
+    public void put(String key, Collection<DependencyEntity> deps) throws IOException {
+        List<Entry> entries = new ArrayList<>(deps.size());
+        for (DependencyEntity d : deps) {
+            Path f = d.getPath();
+            entries.add(Entry.from(d, Files.size(f), Files.getLastModifiedTime(f).toMillis(), sha256(f)));
+        }
+
+        if (!Files.exists(dir)) {
+            Files.createDirectories(dir);
+        }
+
+        Path p = dir.resolve(key + ".json");
+        Path tmp = Files.createTempFile(dir, key, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                objectMapper.writeValue(out, new Manifest(FORMAT_VERSION, entries));
+            }
+            Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static boolean isValid(Path f, Entry e) {
+        try {
+            if (!Files.isRegularFile(f) || Files.size(f) != e.size) {
+                return false;
+            }
+
+            if (Files.getLastModifiedTime(f).toMillis() == e.lastModified) {
+                return true;
+            }
+
+            // the file was touched, verify the content
+            return sha256(f).equals(e.sha256);
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private static String sha256(Path f) throws IOException {
+        MessageDigest md = sha256();
+        try (InputStream in = Files.newInputStream(f)) {
+            byte[] ab = new byte[8192];
+            int read;
+            while ((read = in.read(ab)) > 0) {
+                md.update(ab, 0, read);
+            }
+        }
+        return DatatypeConverter.printHexBinary(md.digest()).toLowerCase();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private static final class Manifest {
+
+        private final int version;
+        private final List<Entry> entries;
+
+        @JsonCreator
+        private Manifest(@JsonProperty("version") int version,
+                         @JsonProperty("entries") List<Entry> entries) {
+            this.version = version;
+            this.entries = entries;
+        }
+
+        @JsonProperty("version")
+        public int getVersion() {
+            return version;
+        }
+
+        @JsonProperty("entries")
+        public List<Entry> getEntries() {
+            return entries;
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private static final class Entry {
+
+        private static Entry from(DependencyEntity d, long size, long lastModified, String sha256) {
+            DependencyEntity.Artifact a = d.getArtifact();
+            URI directLink = d.getDirectLink();
+            return new Entry(d.getPath().toAbsolutePath().toString(),
+                    a != null ? a.getGroupId() : null,
+                    a != null ? a.getArtifactId() : null,
+                    a != null ? a.getVersion() : null,
+                    directLink != null ? directLink.toString() : null,
+                    size, lastModified, sha256);
+        }
+
+        private final String path;
+        private final String groupId;
+        private final String artifactId;
+        private final String version;
+        private final String directLink;
+        private final long size;
+        private final long lastModified;
+        private final String sha256;
+
+        @JsonCreator
+        private Entry(@JsonProperty("path") String path,
+                      @JsonProperty("groupId") String groupId,
+                      @JsonProperty("artifactId") String artifactId,
+                      @JsonProperty("version") String version,
+                      @JsonProperty("directLink") String directLink,
+                      @JsonProperty("size") long size,
+                      @JsonProperty("lastModified") long lastModified,
+                      @JsonProperty("sha256") String sha256) {
+
+            this.path = path;
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.directLink = directLink;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.sha256 = sha256;
+        }
+
+        private DependencyEntity toDependency(Path f) {
+            if (directLink != null) {
+                return new DependencyEntity(f, URI.create(directLink));
+            }
+            return new DependencyEntity(f, groupId, artifactId, version);
+        }
+
+        @JsonProperty("path")
+        public String getPath() {
+            return path;
+        }
+
+        @JsonProperty("groupId")
+        public String getGroupId() {
+            return groupId;
+        }
+
+        @JsonProperty("artifactId")
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        @JsonProperty("version")
+        public String getVersion() {
+            return version;
+        }
+
+        @JsonProperty("directLink")
+        public String getDirectLink() {
+            return directLink;
+        }
+
+        @JsonProperty("size")
+        public long getSize() {
+            return size;
+        }
+
+        @JsonProperty("lastModified")
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        @JsonProperty("sha256")
+        public String getSha256() {
+            return sha256;
+        }
+    }
+}
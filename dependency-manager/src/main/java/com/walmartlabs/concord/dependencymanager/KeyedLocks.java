@@ -0,0 +1,89 @@
+package com.walmartlabs.concord.dependencymanager;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reentrant locks identified by string keys. The entries are reference
+ * counted and removed once no thread holds or waits for the lock, so
+ * the number of entries doesn't grow with the number of distinct keys.
+ */
+final class KeyedLocks {
+
+    private final Map<String, Entry> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Acquires the lock for the specified key. The lock must be released
+     * by closing the returned {@link Handle} in the same thread.
+     */
+    Handle lock(String key) {
+        Entry e = locks.compute(key, (k, v) -> {
+            if (v == null) {
+                v = new Entry();
+            }
+            v.refs++;
+            return v;
+        });
+
+        try {
+            e.lock.lock();
+        } catch (RuntimeException ex) {
+            release(key);
+            throw ex;
+        }
+
+        return () -> {
+            e.lock.unlock();
+            release(key);
+        };
+    }
+
+    /**
+     * @return number of keys currently held or waited for
+     */
+    int size() {
+        return locks.size();
+    }
+
+    private void release(String key) {
+        locks.computeIfPresent(key, (k, v) -> --v.refs <= 0 ? null : v);
+    }
+
+    interface Handle extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    private static final class Entry {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Number of the {@link #lock(String)} calls not yet released.
+         * Guarded by the map's compute methods.
+         */
+        private int refs;
+    }
+}
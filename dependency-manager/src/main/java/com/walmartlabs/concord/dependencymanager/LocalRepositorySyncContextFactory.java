@@ -0,0 +1,95 @@
+package com.walmartlabs.concord.dependencymanager;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SyncContext;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.impl.SyncContextFactory;
+import org.eclipse.aether.metadata.Metadata;
+
+import java.util.*;
+
+/**
+ * Serializes the access to the same artifacts and metadata in the local
+ * repository while allowing concurrent resolution of unrelated artifacts.
+ * <p>
+ * The locks are exclusive and reentrant: the resolver can acquire the same
+ * metadata in nested "shared" and "exclusive" contexts on the same thread.
+ * The keys are acquired in a stable order to avoid deadlocks between
+ * contexts that acquire multiple keys at once. The locks are removed once
+ * released, see {@link KeyedLocks}.
+ * <p>
+ * Only the threads of the current JVM are synchronized.
+ */
+public class LocalRepositorySyncContextFactory implements SyncContextFactory {
+
+    private final KeyedLocks locks = new KeyedLocks();
+
+    @Override
+    public SyncContext newInstance(RepositorySystemSession session, boolean shared) {
+        return new LockingSyncContext();
+    }
+
+    /**
+     * @return number of artifacts and metadata currently locked or waited for
+     */
+    int lockCount() {
+        return locks.size();
+    }
+
+    private static String key(Artifact a) {
+        // artifacts of the same GAV share the same directory (and the metadata files)
+        return "artifact:" + a.getGroupId() + ":" + a.getArtifactId() + ":" + a.getBaseVersion();
+    }
+
+    private static String key(Metadata m) {
+        return "metadata:" + m.getGroupId() + ":" + m.getArtifactId() + ":" + m.getVersion() + ":" + m.getType();
+    }
+
+    private class LockingSyncContext implements SyncContext {
+
+        private final Deque<KeyedLocks.Handle> acquired = new ArrayDeque<>();
+
+        @Override
+        public void acquire(Collection<? extends Artifact> artifacts, Collection<? extends Metadata> metadatas) {
+            SortedSet<String> keys = new TreeSet<>();
+            if (artifacts != null) {
+                artifacts.forEach(a -> keys.add(key(a)));
+            }
+            if (metadatas != null) {
+                metadatas.forEach(m -> keys.add(key(m)));
+            }
+
+            for (String k : keys) {
+                acquired.push(locks.lock(k));
+            }
+        }
+
+        @Override
+        public void close() {
+            while (!acquired.isEmpty()) {
+                acquired.pop().close();
+            }
+        }
+    }
+}
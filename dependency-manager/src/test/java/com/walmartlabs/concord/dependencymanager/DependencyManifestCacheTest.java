@@ -0,0 +1,100 @@
+package com.walmartlabs.concord.dependencymanager;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+
+import org.junit.Test;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class DependencyManifestCacheTest {
+
+    @Test
+    public void testKey() throws Exception {
+        Path tmpDir = Files.createTempDirectory("test");
+        DependencyManifestCache c = new DependencyManifestCache(tmpDir, "cfg");
+
+        URI a = new URI("mvn://com.walmartlabs.concord:a:1.0.0");
+        URI b = new URI("mvn://com.walmartlabs.concord:b:1.0.0");
+
+        assertEquals(c.key(Arrays.asList(a, b)), c.key(Arrays.asList(b, a)));
+        assertNotEquals(c.key(Arrays.asList(a, b)), c.key(Collections.singletonList(a)));
+        assertNotEquals(c.key(Arrays.asList(a, b)), new DependencyManifestCache(tmpDir, "other").key(Arrays.asList(a, b)));
+    }
+
+    @Test
+    public void testPutGet() throws Exception {
+        Path tmpDir = Files.createTempDirectory("test");
+        Path jar = tmpDir.resolve("a.jar");
+        Files.write(jar, "hello".getBytes());
+        Path file = tmpDir.resolve("b.txt");
+        Files.write(file, "world".getBytes());
+
+        URI link = new URI("http://localhost/b.txt");
+
+        DependencyManifestCache c = new DependencyManifestCache(tmpDir.resolve("manifests"), "cfg");
+        String key = c.key(Arrays.asList(new URI("mvn://com.walmartlabs.concord:a:1.0.0"), link));
+        assertNull(c.get(key));
+
+        c.put(key, Arrays.asList(new DependencyEntity(jar, "com.walmartlabs.concord", "a", "1.0.0"),
+                new DependencyEntity(file, link)));
+
+        Collection<DependencyEntity> result = c.get(key);
+        assertNotNull(result);
+        assertEquals(2, result.size());
+
+        DependencyEntity a = result.stream().filter(d -> d.getArtifact() != null).findFirst().orElseThrow(AssertionError::new);
+        assertEquals(jar.toAbsolutePath(), a.getPath());
+        assertEquals("a", a.getArtifact().getArtifactId());
+        assertEquals("1.0.0", a.getArtifact().getVersion());
+
+        DependencyEntity b = result.stream().filter(d -> d.getDirectLink() != null).findFirst().orElseThrow(AssertionError::new);
+        assertEquals(file.toAbsolutePath(), b.getPath());
+        assertEquals(link, b.getDirectLink());
+
+        // touched, same content
+
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() - 60000));
+        assertNotNull(c.get(key));
+
+        // same size, different content
+
+        Files.write(jar, "HELLO".getBytes());
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() - 120000));
+        assertNull(c.get(key));
+
+        // missing file
+
+        c.put(key, Collections.singletonList(new DependencyEntity(file, link)));
+        assertNotNull(c.get(key));
+
+        Files.delete(file);
+        assertNull(c.get(key));
+    }
+}
@@ -0,0 +1,171 @@
+package com.walmartlabs.concord.dependencymanager;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+
+import org.eclipse.aether.SyncContext;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.metadata.DefaultMetadata;
+import org.eclipse.aether.metadata.Metadata;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LocalRepositorySyncContextFactoryTest {
+
+    @Test(timeout = 30000)
+    public void testSameArtifact() throws Exception {
+        LocalRepositorySyncContextFactory factory = new LocalRepositorySyncContextFactory();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SyncContext a = acquire(factory, artifact("com.example:a:1.0"));
+
+            // the same GAV, different classifier - the same directory in the local repository
+            CountDownLatch acquired = new CountDownLatch(1);
+            Future<?> f = executor.submit(() -> {
+                try (SyncContext b = acquire(factory, artifact("com.example:a:jar:sources:1.0"))) {
+                    acquired.countDown();
+                }
+            });
+
+            assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+
+            a.close();
+            assertTrue(acquired.await(10, TimeUnit.SECONDS));
+            f.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, factory.lockCount());
+    }
+
+    @Test(timeout = 30000)
+    public void testDifferentArtifacts() throws Exception {
+        LocalRepositorySyncContextFactory factory = new LocalRepositorySyncContextFactory();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (SyncContext a = acquire(factory, artifact("com.example:a:1.0"))) {
+            // an unrelated artifact can be resolved while "a" is locked
+            Future<?> f = executor.submit(() -> {
+                try (SyncContext b = acquire(factory, artifact("com.example:b:1.0"))) {
+                    assertEquals(2, factory.lockCount());
+                }
+            });
+            f.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, factory.lockCount());
+    }
+
+    @Test
+    public void testNestedContexts() {
+        LocalRepositorySyncContextFactory factory = new LocalRepositorySyncContextFactory();
+        Metadata m = new DefaultMetadata("com.example", "a", "maven-metadata.xml", Metadata.Nature.RELEASE);
+
+        // the resolver acquires the same metadata in nested contexts on the same thread
+        try (SyncContext shared = factory.newInstance(null, true)) {
+            shared.acquire(null, Collections.singletonList(m));
+            try (SyncContext exclusive = factory.newInstance(null, false)) {
+                exclusive.acquire(null, Collections.singletonList(m));
+                assertEquals(1, factory.lockCount());
+            }
+            assertEquals(1, factory.lockCount());
+        }
+
+        assertEquals(0, factory.lockCount());
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentResolution() throws Exception {
+        LocalRepositorySyncContextFactory factory = new LocalRepositorySyncContextFactory();
+
+        int threads = 8;
+        int iterations = 200;
+        List<String> gavs = Arrays.asList("com.example:a:1.0", "com.example:b:1.0", "com.example:c:1.0");
+
+        ConcurrentMap<String, AtomicInteger> holders = new ConcurrentHashMap<>();
+        AtomicInteger violations = new AtomicInteger();
+        AtomicInteger distinctKeys = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        // a mix of shared artifacts and unique ones (never reused)
+                        String gav = i % 2 == 0 ? gavs.get((seed + i) % gavs.size()) : "com.example:unique-" + seed + "-" + i + ":1.0";
+                        if (i % 2 != 0) {
+                            distinctKeys.incrementAndGet();
+                        }
+
+                        try (SyncContext ctx = acquire(factory, artifact(gav))) {
+                            AtomicInteger h = holders.computeIfAbsent(gav, k -> new AtomicInteger());
+                            if (h.incrementAndGet() > 1) {
+                                violations.incrementAndGet();
+                            }
+                            Thread.yield();
+                            h.decrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // only one thread at a time per artifact
+        assertEquals(0, violations.get());
+
+        // the locks of all distinct artifacts are removed after use
+        assertTrue(distinctKeys.get() > 0);
+        assertEquals(0, factory.lockCount());
+    }
+
+    private static SyncContext acquire(LocalRepositorySyncContextFactory factory, Artifact... artifacts) {
+        SyncContext ctx = factory.newInstance(null, false);
+        ctx.acquire(Arrays.asList(artifacts), null);
+        return ctx;
+    }
+
+    private static Artifact artifact(String coords) {
+        return new DefaultArtifact(coords);
+    }
+}
@@ -22,7 +22,7 @@ package com.walmartlabs.concord.agentoperator.scheduler;
 
 import com.walmartlabs.concord.agentoperator.crd.AgentPoolConfiguration;
 import com.walmartlabs.concord.agentoperator.processqueue.ProcessQueueEntry;
-import com.walmartlabs.concord.common.MapMatcher;
+import com.walmartlabs.concord.common.CompiledMapMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,10 +58,11 @@ public class AutoScaler {
         }
 
         // the number of processes waiting for an agent in the current pool
+        CompiledMapMatcher queueSelector = CompiledMapMatcher.compile(cfg.getQueueSelector());
         int enqueuedCount = (int) queueEntries.stream()
                 .map(ProcessQueueEntry::getRequirements)
                 .filter(Objects::nonNull)
-                .filter(a -> MapMatcher.matches(a, cfg.getQueueSelector()))
+                .filter(queueSelector::matches)
                 .count();
 
         // count the currently running pods
@@ -48,7 +48,7 @@ public class ConcordTask extends AbstractConcordTask {
     private static final Logger log = LoggerFactory.getLogger(ConcordTask.class);
 
     private static final long DEFAULT_KILL_TIMEOUT = 10000;
-    private static final long DEFAULT_POLL_DELAY = 5000;
+    private static final long MAX_WAIT_TIME = 30000;
 
     /**
      * @deprecated use {@link #PAYLOAD_KEY}
@@ -185,40 +185,55 @@ public class ConcordTask extends AbstractConcordTask {
     }
 
     public <T> Map<String, T> waitForCompletion(@InjectVariable("context") Context ctx, List<String> ids, long timeout, Function<ProcessEntry, T> processor) {
-        Map<String, T> result = new HashMap<>();
-
-        ids.parallelStream().map(UUID::fromString).forEach(id -> {
-            log.info("Waiting for {}...", id);
-
-            long t1 = System.currentTimeMillis();
-            while (true) {
-                try {
-                    ProcessEntry e = ClientUtils.withRetry(3, 1000, () -> withClient(ctx, client -> {
-                        ProcessApi api = new ProcessApi(client);
-                        return api.get(id);
-                    }));
-
-                    ProcessEntry.StatusEnum s = e.getStatus();
+        List<UUID> instanceIds = ids.stream()
+                .map(UUID::fromString)
+                .collect(Collectors.toList());
+
+        log.info("Waiting for {}...", instanceIds);
+
+        long t1 = System.currentTimeMillis();
+        List<ProcessEntry> entries;
+        while (true) {
+            // the server holds the request until the processes are finished,
+            // keep the wait time below the client's read timeout
+            long waitTime = MAX_WAIT_TIME;
+            if (timeout > 0) {
+                long dt = System.currentTimeMillis() - t1;
+                if (dt >= timeout) {
+                    throw new RuntimeException(new TimeoutException("Timeout waiting for " + instanceIds + ": " + dt));
+                }
+                waitTime = Math.min(waitTime, timeout - dt);
+            }
 
-                    if (isFinalStatus(s)) {
-                        T t = processor.apply(e);
-                        if (t != null) {
-                            result.put(id.toString(), t);
-                        }
-                        break;
-                    } else {
-                        long t2 = System.currentTimeMillis();
-                        if (timeout > 0) {
-                            long dt = t2 - t1;
-                            if (dt >= timeout) {
-                                throw new TimeoutException("Timeout waiting for " + id + ": " + dt);
-                            }
+            long wt = waitTime;
+            try {
+                entries = ClientUtils.withRetry(3, 1000, () -> withClient(ctx, client -> {
+                    ProcessApi api = new ProcessApi(client);
+                    try {
+                        return api.batchWaitForCompletion(instanceIds, "ALL", wt);
+                    } catch (ApiException e) {
+                        if (e.getCode() == 408) {
+                            // not finished yet
+                            return null;
                         }
-
-                        Thread.sleep(DEFAULT_POLL_DELAY);
+                        throw e;
                     }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+                }));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            if (entries != null) {
+                break;
+            }
+        }
+
+        Map<String, T> result = new HashMap<>();
+        entries.parallelStream().forEach(e -> {
+            T t = processor.apply(e);
+            if (t != null) {
+                synchronized (result) {
+                    result.put(e.getInstanceId().toString(), t);
                 }
             }
         });
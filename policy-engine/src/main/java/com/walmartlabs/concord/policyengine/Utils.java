@@ -20,13 +20,14 @@ package com.walmartlabs.concord.policyengine;
  * =====
  */
 
+import com.walmartlabs.concord.common.CompiledMapMatcher;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -36,6 +37,15 @@ public final class Utils {
 
     private static final Pattern FILE_SIZE_PATTERN = Pattern.compile("([\\d.]+)(.*)");
 
+    private static final int MAX_CACHE_SIZE = 1024;
+
+    /**
+     * Policy rules are matched many times during the process' lifetime,
+     * cache the compiled patterns and conditions.
+     */
+    private static final Map<String, Pattern> patternCache = lruCache(MAX_CACHE_SIZE);
+    private static final Map<CompiledMapMatcher.Key, CompiledMapMatcher> matcherCache = lruCache(MAX_CACHE_SIZE);
+
     public static boolean matchAny(List<String> patterns, String value) {
         for (String p : patterns) {
             if (matches(p, value)) {
@@ -47,7 +57,11 @@ public final class Utils {
     }
 
     public static boolean matches(String pattern, String value) {
-        return Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).matcher(value).matches();
+        Pattern p;
+        synchronized (patternCache) {
+            p = patternCache.computeIfAbsent(pattern, k -> Pattern.compile(k, Pattern.CASE_INSENSITIVE));
+        }
+        return p.matcher(value).matches();
     }
 
     public static boolean matches(Map<String, Object> conditions, Map<String, Object> data) {
@@ -55,67 +69,17 @@ public final class Utils {
             return true;
         }
 
-        return compareNodes(data, conditions);
-    }
+        // a snapshot of the conditions, the map might be modified after the call
+        CompiledMapMatcher.Key key = CompiledMapMatcher.Key.of(conditions);
 
-    @SuppressWarnings("unchecked")
-    private static boolean compareNodes(Object data, Object conditions) {
-        if (data == null && conditions == null) {
-            return true;
-        } else if (data == null || conditions == null) {
-            return false;
-        }
-
-        if (conditions instanceof Map && data instanceof Map) {
-            return compareObjectNodes((Map<String, Object>) data, (Map<String, Object>) conditions);
-        } else if (conditions instanceof String && data instanceof UUID) {
-            return matches((String)conditions, data.toString());
-        } else if (conditions instanceof String && data instanceof String) {
-            return matches((String)conditions, (String)data);
-        } else if (conditions instanceof Collection && data instanceof Collection) {
-            return compareArrayNodes((Collection) data, (Collection) conditions);
-        } else if (conditions instanceof Collection) {
-            return matchAny(data, (Collection)conditions);
-        } else {
-            return data.equals(conditions);
+        CompiledMapMatcher m;
+        synchronized (matcherCache) {
+            m = matcherCache.computeIfAbsent(key, k -> CompiledMapMatcher.compile(k.getConditions(),
+                    CompiledMapMatcher.Option.CASE_INSENSITIVE,
+                    CompiledMapMatcher.Option.STRICT_NULLS,
+                    CompiledMapMatcher.Option.UUID_AS_STRING));
         }
-    }
-
-    private static boolean compareObjectNodes(Map<String, Object> data, Map<String, Object> conditions) {
-        for (Map.Entry<String, Object> e : conditions.entrySet()) {
-            Object dataItem = data.get(e.getKey());
-            if (!compareNodes(dataItem, e.getValue())) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
-    private static boolean compareArrayNodes(Collection<Object> dataElements, Collection<Object> conditionElements) {
-        if (conditionElements.size() > dataElements.size()) {
-            return false;
-        }
-
-        for (Object c : conditionElements) {
-            boolean matched = matchAny(c, dataElements);
-            if (!matched) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
-    private static boolean matchAny(Object condition, Collection<Object> nodes) {
-        for (Object n : nodes) {
-            boolean result = compareNodes(n, condition);
-            if (result) {
-                return true;
-            }
-        }
-
-        return false;
+        return m.matches(data);
     }
 
     public static Long parseFileSize(String v) {
@@ -186,6 +150,18 @@ public final class Utils {
         }
     }
 
+    private static <K, V> Map<K, V> lruCache(int maxSize) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
     private Utils() {
     }
 }
@@ -56,7 +56,7 @@ public class GitCliRepositoryProvider implements RepositoryProvider {
     }
 
     @Override
-    public void fetch(String uri, String branchOrNull, String commitId, Secret secret, Path dst) {
+    public void fetch(String uri, String branchOrNull, String commitId, String path, Secret secret, Path dst) {
         String branch = getBranchOrDefault(branchOrNull);
         RepositoryException lastException = null;
 
@@ -68,7 +68,7 @@ public class GitCliRepositoryProvider implements RepositoryProvider {
             }
 
             try {
-                client.fetch(uri, branch, commitId, secret, dst);
+                client.fetch(uri, branch, commitId, path, secret, dst);
                 return;
             } catch (RepositoryException e) {
                 lastException = e;
@@ -37,6 +37,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static java.nio.file.attribute.PosixFilePermission.OWNER_EXECUTE;
 import static java.nio.file.attribute.PosixFilePermission.OWNER_READ;
@@ -54,11 +56,15 @@ public class GitClient {
     private final GitClientConfiguration cfg;
 
     private final List<String> sensitiveData;
+    private final List<Pattern> partialCloneRepositories;
     private final ExecutorService executor;
 
     public GitClient(GitClientConfiguration cfg) {
         this.cfg = cfg;
         this.sensitiveData = cfg.oauthToken() != null ? Collections.singletonList(cfg.oauthToken()) : Collections.emptyList();
+        this.partialCloneRepositories = cfg.partialCloneRepositories().stream()
+                .map(Pattern::compile)
+                .collect(Collectors.toList());
         this.executor = Executors.newCachedThreadPool();
     }
 
@@ -77,18 +83,33 @@ public class GitClient {
         return new RepositoryInfo(id, message.toString(), author);
     }
 
-    public void fetch(String uri, String branch, String commitId, Secret secret, Path dest) {
+    /**
+     * @param path the repository path. If the repository is a partial clone,
+     *             only the files of the path (and the files in the repository's
+     *             root) are checked out. May be {@code null}.
+     */
+    public void fetch(String uri, String branch, String commitId, String path, Secret secret, Path dest) {
         // can use shallow clone only with branch/tag
         boolean shallow = commitId == null && cfg.shallowClone();
 
+        boolean partialCloneEnabled = isPartialCloneEnabled(uri);
+
         if (!hasGitRepo(dest)) {
-            cloneCommand(uri, secret, shallow, dest);
+            cloneCommand(uri, secret, shallow, partialCloneEnabled, dest);
         }
 
         launchCommand(dest, DEFAULT_TIMEOUT, "config", "remote.origin.url", uri);
 
+        // existing partial clones are reused even if the partial clone is disabled now,
+        // the missing objects are fetched on demand
+        Map<String, String> repoConfig = getConfig(dest);
+        boolean partial = "true".equals(repoConfig.get("remote.origin.promisor"));
+        if (partial && partialCloneEnabled) {
+            launchCommand(dest, DEFAULT_TIMEOUT, "config", "remote.origin.partialclonefilter", cfg.partialCloneFilter());
+        }
+
         List<RefSpec> refspecs = Collections.singletonList(new RefSpec("+refs/heads/*:refs/remotes/origin/*"));
-        fetchCommand(uri, refspecs, secret, shallow, dest);
+        fetchCommand(uri, refspecs, secret, shallow, partial, dest);
 
         ObjectId rev;
         if (commitId != null) {
@@ -97,7 +118,12 @@ public class GitClient {
             rev = getBranchRevision(branch, dest);
         }
 
-        checkoutCommand(rev.name(), dest);
+        if (partial) {
+            boolean sparse = "true".equals(repoConfig.get("core.sparsecheckout"));
+            sparseCheckoutCommand(uri, secret, partialCloneEnabled ? path : null, sparse, dest);
+        }
+
+        checkoutCommand(uri, secret, rev.name(), partial, dest);
 
         launchCommand(dest, DEFAULT_TIMEOUT, "clean", "-fdx");
 
@@ -112,10 +138,17 @@ public class GitClient {
                               List<RefSpec> refspecs,
                               Secret secret,
                               boolean shallow,
+                              boolean partial,
                               Path dest) {
         log.info("Fetching upstream changes from '{}'", hideSensitiveData(url));
 
         List<String> args = new ArrayList<>();
+        if (partial) {
+            // partial clones must be fetched using the promisor remote,
+            // the remote's filter is applied automatically
+            args.addAll(urlRewriteArgs(url, secret));
+        }
+
         args.add("fetch");
         if (shallow) {
             args.add("--depth=1");
@@ -123,7 +156,7 @@ public class GitClient {
 
         args.add("--tags");
 
-        args.add(processUrl(url, secret));
+        args.add(partial ? "origin" : processUrl(url, secret));
 
         for (RefSpec r : refspecs) {
             args.add(r.toString());
@@ -294,7 +327,7 @@ public class GitClient {
         return Files.exists(dest.resolve(".gitmodules"));
     }
 
-    private void cloneCommand(String url, Secret secret, boolean shallow, Path dest) {
+    private void cloneCommand(String url, Secret secret, boolean shallow, boolean partial, Path dest) {
         log.info("Cloning repository '{}' into '{}'", hideSensitiveData(url), dest.toString());
 
         try {
@@ -305,11 +338,21 @@ public class GitClient {
             // init
             launchCommand(dest, DEFAULT_TIMEOUT, "init");
 
+            launchCommand(dest, DEFAULT_TIMEOUT, "config", "remote.origin.url", url);
+
+            if (partial) {
+                log.info("Using partial clone with filter '{}'", cfg.partialCloneFilter());
+
+                // same as "git clone --filter" does
+                launchCommand(dest, DEFAULT_TIMEOUT, "config", "core.repositoryformatversion", "1");
+                launchCommand(dest, DEFAULT_TIMEOUT, "config", "extensions.partialclone", "origin");
+                launchCommand(dest, DEFAULT_TIMEOUT, "config", "remote.origin.promisor", "true");
+                launchCommand(dest, DEFAULT_TIMEOUT, "config", "remote.origin.partialclonefilter", cfg.partialCloneFilter());
+            }
+
             // fetch
             List<RefSpec> refspecs = Collections.singletonList(new RefSpec("+refs/heads/*:refs/remotes/origin/*"));
-            fetchCommand(url, refspecs, secret, shallow, dest);
-
-            launchCommand(dest, DEFAULT_TIMEOUT, "config", "remote.origin.url", url);
+            fetchCommand(url, refspecs, secret, shallow, partial, dest);
 
             for (RefSpec refSpec : refspecs) {
                 launchCommand(dest, DEFAULT_TIMEOUT, "config", "--add", "remote.origin.fetch", refSpec.toString());
@@ -327,10 +370,94 @@ public class GitClient {
         return url;
     }
 
-    private void checkoutCommand(String ref, Path dest) {
+    private void checkoutCommand(String url, Secret secret, String ref, boolean partial, Path dest) {
         log.info("Checking out revision '{}'", ref);
 
-        launchCommand(dest, DEFAULT_TIMEOUT,  "checkout", "-f", ref);
+        if (!partial) {
+            launchCommand(dest, DEFAULT_TIMEOUT, "checkout", "-f", ref);
+            return;
+        }
+
+        // the missing objects are fetched during the checkout
+        List<String> args = new ArrayList<>(urlRewriteArgs(url, secret));
+        args.add("checkout");
+        args.add("-f");
+        args.add(ref);
+        launchCommandWithCredentials(dest, cfg.fetchTimeout().toMillis(), args, secret);
+    }
+
+    /**
+     * Restricts the working tree of a partial clone to the specified path
+     * using the cone-mode sparse checkout. Disables the sparse checkout
+     * if the path is {@code null}.
+     */
+    private void sparseCheckoutCommand(String url, Secret secret, String path, boolean sparse, Path dest) {
+        List<String> args = new ArrayList<>(urlRewriteArgs(url, secret));
+        args.add("sparse-checkout");
+
+        if (path == null) {
+            if (!sparse) {
+                return;
+            }
+
+            log.info("Disabling sparse checkout");
+            args.add("disable");
+            launchCommandWithCredentials(dest, cfg.fetchTimeout().toMillis(), args, secret);
+            return;
+        }
+
+        log.info("Using sparse checkout of '{}'", path);
+
+        if (!sparse) {
+            List<String> initArgs = new ArrayList<>(args);
+            initArgs.add("init");
+            initArgs.add("--cone");
+            launchCommandWithCredentials(dest, cfg.fetchTimeout().toMillis(), initArgs, secret);
+        }
+
+        args.add("set");
+        args.add(path);
+        launchCommandWithCredentials(dest, cfg.fetchTimeout().toMillis(), args, secret);
+    }
+
+    private boolean isPartialCloneEnabled(String url) {
+        if (cfg.partialCloneFilter() == null) {
+            return false;
+        }
+
+        return partialCloneRepositories.stream().anyMatch(p -> p.matcher(url).matches());
+    }
+
+    /**
+     * Returns the repository's effective configuration. Keys are in lower case.
+     */
+    private Map<String, String> getConfig(Path dest) {
+        // not just --local, "sparse-checkout" may use the per-worktree config
+        String result = launchCommand(dest, DEFAULT_TIMEOUT, "config", "--list");
+
+        Map<String, String> m = new HashMap<>();
+        for (String line : result.split("\\r?\\n")) {
+            int idx = line.indexOf('=');
+            if (idx > 0) {
+                m.put(line.substring(0, idx).toLowerCase(), line.substring(idx + 1).trim().toLowerCase());
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Commands that use the "origin" remote (e.g. lazy fetches in partial clones)
+     * must use the same URL as the regular fetch, including the default OAuth token.
+     * The token is passed in the command line only, it is never saved into
+     * the repository's configuration.
+     */
+    private List<String> urlRewriteArgs(String url, Secret secret) {
+        String processedUrl = processUrl(url, secret);
+        if (processedUrl.equals(url)) {
+            return Collections.emptyList();
+        }
+
+        return Arrays.asList("-c", "url." + processedUrl + ".insteadOf=" + url);
     }
 
     private void launchCommandWithCredentials(Path workDir,
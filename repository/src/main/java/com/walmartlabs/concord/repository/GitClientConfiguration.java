@@ -24,6 +24,8 @@ import org.immutables.value.Value;
 
 import javax.annotation.Nullable;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
 
 @Value.Immutable
 public interface GitClientConfiguration {
@@ -36,6 +38,23 @@ public interface GitClientConfiguration {
         return true;
     }
 
+    /**
+     * Object filter to use for partial clones, e.g. {@code blob:none} or {@code tree:0}.
+     * Partial clones are disabled if {@code null}.
+     */
+    @Nullable
+    String partialCloneFilter();
+
+    /**
+     * Regular expressions matched against the repository URLs. Only
+     * the matching repositories are cloned using {@link #partialCloneFilter()}
+     * and the sparse checkout of the repository path.
+     */
+    @Value.Default
+    default List<String> partialCloneRepositories() {
+        return Collections.singletonList(".*");
+    }
+
     @Value.Default
     default Duration fetchTimeout() {
         return Duration.ofMinutes(10L);
@@ -32,7 +32,12 @@ public interface RepositoryProvider {
 
     boolean canHandle(String url);
 
-    void fetch(String uri, String branch, String commitId, Secret secret, Path dst);
+    /**
+     * @param path the repository path, a subdirectory of the repository
+     *             to be used by the caller. May be {@code null}. Providers may
+     *             skip the files outside of the path.
+     */
+    void fetch(String uri, String branch, String commitId, String path, Secret secret, Path dst);
 
     Snapshot export(Path src, Path dst, List<String> ignorePatterns) throws IOException;
 
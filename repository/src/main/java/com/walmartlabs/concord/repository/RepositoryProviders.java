@@ -36,13 +36,17 @@ public class RepositoryProviders {
 
     public Repository fetch(String url, String branch, String commitId, String path, Secret secret, Path destDir) {
         RepositoryProvider provider = getProvider(url);
-        provider.fetch(url, branch, commitId, secret, destDir);
+        provider.fetch(url, branch, commitId, normalizePath(path), secret, destDir);
 
         Path repoPath = repoPath(destDir, path);
 
         return new Repository(provider.getBranchOrDefault(branch), destDir, repoPath, provider);
     }
 
+    public String getBranchOrDefault(String url, String branch) {
+        return getProvider(url).getBranchOrDefault(branch);
+    }
+
     private RepositoryProvider getProvider(String url) {
         return providers.stream()
                 .filter(p -> p.canHandle(url))
@@ -0,0 +1,415 @@
+package com.walmartlabs.concord.repository;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.walmartlabs.concord.common.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Immutable snapshots of repository files keyed by (repository URL, credentials, commit ID, path).
+ * <p/>
+ * A snapshot is created once per commit from the repository cache and never
+ * modified afterwards. The snapshots are shared only between the callers
+ * which use the same credentials, i.e. the ones which were able to fetch
+ * the commit themselves. Workspaces are populated from the snapshots using
+ * hard links (when the snapshot directory and the workspace are on the same
+ * filesystem) or regular copies. Hard-linked files share the content with
+ * the snapshot, so the files in the workspace must be replaced rather than
+ * modified in place. The snapshot's files are read-only, writing into a
+ * hard-linked workspace file fails instead of changing the snapshot.
+ */
+public class RepositorySnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RepositorySnapshotStore.class);
+
+    private static final Pattern COMMIT_ID_PATTERN = Pattern.compile("^[0-9a-fA-F]{7,64}$");
+
+    private static final String FILES_DIR_NAME = "files";
+    private static final String INFO_FILE_NAME = "info.json";
+    private static final String TMP_DIR_NAME = ".tmp";
+    private static final int FULL_COMMIT_ID_LENGTH = 40;
+    private static final String ROOT_PATH_KEY = "_root";
+
+    private static final Set<PosixFilePermission> WRITE_PERMISSIONS = EnumSet.of(PosixFilePermission.OWNER_WRITE,
+            PosixFilePermission.GROUP_WRITE,
+            PosixFilePermission.OTHERS_WRITE);
+
+    private final Path baseDir;
+    private final Path tmpDir;
+    private final long maxAge;
+    private final boolean useHardLinks;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Exports hold the read lock, the cleanup holds the write lock.
+     */
+    private final ReadWriteLock cleanupLock = new ReentrantReadWriteLock();
+
+    private volatile long nextCleanup;
+
+    public RepositorySnapshotStore(Path baseDir, long maxAge, boolean useHardLinks, ObjectMapper objectMapper) throws IOException {
+        this.baseDir = Files.createDirectories(baseDir);
+        this.tmpDir = baseDir.resolve(TMP_DIR_NAME);
+        this.maxAge = maxAge;
+        this.useHardLinks = useHardLinks;
+        this.objectMapper = objectMapper;
+        this.nextCleanup = System.currentTimeMillis() + maxAge;
+
+        // leftovers of the snapshots which were being created when the previous instance stopped
+        if (Files.exists(tmpDir)) {
+            IOUtils.deleteRecursively(tmpDir);
+        }
+        Files.createDirectories(tmpDir);
+    }
+
+    public static boolean isValidCommitId(String commitId) {
+        return commitId != null && COMMIT_ID_PATTERN.matcher(commitId).matches();
+    }
+
+    /**
+     * @param credentials identity of the credentials used to fetch the repository,
+     *                    e.g. the secret's ID
+     * @param commitId    full or abbreviated commit ID
+     */
+    public Optional<Entry> get(String url, String credentials, String commitId, String path) {
+        if (!isValidCommitId(commitId)) {
+            return Optional.empty();
+        }
+
+        Path dir = snapshotDir(url, credentials, commitId, path);
+        Path infoFile = dir.resolve(INFO_FILE_NAME);
+        if (!Files.exists(infoFile) && commitId.length() < FULL_COMMIT_ID_LENGTH) {
+            // the snapshots are stored under the full commit IDs
+            dir = findByPrefix(url, credentials, commitId, path);
+            if (dir == null) {
+                return Optional.empty();
+            }
+            infoFile = dir.resolve(INFO_FILE_NAME);
+        }
+
+        if (!Files.exists(infoFile)) {
+            return Optional.empty();
+        }
+
+        try {
+            // used to determine the unused snapshots
+            Files.setLastModifiedTime(infoFile, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(new Entry(dir.resolve(FILES_DIR_NAME), readInfo(infoFile)));
+        } catch (IOException | RuntimeException e) {
+            // removed by the cleanup or a broken snapshot
+            log.warn("get ['{}', '{}', '{}', '{}'] -> error: {}", url, credentials, commitId, path, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Creates a new snapshot using the specified repository's files.
+     * The repository must not be modified during the call, i.e. the caller
+     * must hold the repository's lock.
+     */
+    public Entry put(String url, String credentials, String path, Repository repository) throws IOException {
+        RepositoryInfo info = repository.info();
+        if (info == null || !isValidCommitId(info.getCommitId())) {
+            throw new IllegalArgumentException("Can't create a snapshot of '" + url + "' without a valid commit ID");
+        }
+
+        Optional<Entry> existing = get(url, credentials, info.getCommitId(), path);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        Path dir = snapshotDir(url, credentials, info.getCommitId(), path);
+        Files.createDirectories(dir.getParent());
+
+        // on the same filesystem as the snapshots, the directory is moved atomically
+        Path tmp = IOUtils.createTempDir(tmpDir, "snapshot");
+        try {
+            Path files = Files.createDirectories(tmp.resolve(FILES_DIR_NAME));
+            repository.export(files);
+            makeReadOnly(files);
+            objectMapper.writeValue(tmp.resolve(INFO_FILE_NAME).toFile(), toMap(info));
+
+            try {
+                Files.move(tmp, dir, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                // created concurrently
+            }
+        } finally {
+            if (Files.exists(tmp)) {
+                IOUtils.deleteRecursively(tmp);
+            }
+        }
+
+        log.info("put ['{}', '{}', '{}', '{}'] -> done", url, credentials, info.getCommitId(), path);
+
+        return new Entry(dir.resolve(FILES_DIR_NAME), info);
+    }
+
+    /**
+     * Populates {@code dst} with the snapshot's files.
+     */
+    public Snapshot export(Entry entry, Path dst) throws IOException {
+        LastModifiedSnapshot snapshot = new LastModifiedSnapshot();
+
+        cleanupLock.readLock().lock();
+        try {
+            new Exporter(entry.path(), dst, snapshot).run();
+        } finally {
+            cleanupLock.readLock().unlock();
+        }
+
+        cleanup();
+
+        return snapshot;
+    }
+
+    private void cleanup() {
+        if (maxAge <= 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now < nextCleanup) {
+            return;
+        }
+
+        if (!cleanupLock.writeLock().tryLock()) {
+            return;
+        }
+
+        int count = 0;
+        try {
+            nextCleanup = now + maxAge;
+
+            List<Path> infoFiles;
+            try (Stream<Path> s = Files.find(baseDir, 5, (p, attrs) -> !p.startsWith(tmpDir) && p.getFileName().toString().equals(INFO_FILE_NAME))) {
+                infoFiles = s.collect(Collectors.toList());
+            }
+
+            for (Path p : infoFiles) {
+                if (Files.getLastModifiedTime(p).toMillis() + maxAge >= now) {
+                    continue;
+                }
+
+                Path dir = p.getParent();
+
+                // remove the info file first, the rest of the snapshot becomes invisible
+                Files.delete(p);
+                IOUtils.deleteRecursively(dir);
+                count++;
+            }
+
+            // snapshots which failed to be created and couldn't be removed at the time
+            try (Stream<Path> s = Files.list(tmpDir)) {
+                for (Path p : s.collect(Collectors.toList())) {
+                    if (Files.getLastModifiedTime(p).toMillis() + maxAge < now) {
+                        IOUtils.deleteRecursively(p);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("cleanup -> error: {}", e.getMessage());
+        } finally {
+            cleanupLock.writeLock().unlock();
+        }
+
+        log.info("cleanup -> {} snapshot(s) removed", count);
+    }
+
+    private static void makeReadOnly(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile()) {
+                    Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file);
+                    permissions.removeAll(WRITE_PERMISSIONS);
+                    Files.setPosixFilePermissions(file, permissions);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private Path findByPrefix(String url, String credentials, String commitId, String path) {
+        Path commitsDir = snapshotDir(url, credentials, commitId, path).getParent().getParent();
+        if (!Files.isDirectory(commitsDir)) {
+            return null;
+        }
+
+        String prefix = commitId.toLowerCase();
+        List<Path> candidates;
+        try (Stream<Path> s = Files.list(commitsDir)) {
+            candidates = s.filter(p -> p.getFileName().toString().startsWith(prefix))
+                    .map(p -> snapshotDir(url, credentials, p.getFileName().toString(), path))
+                    .filter(p -> Files.exists(p.resolve(INFO_FILE_NAME)))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.warn("findByPrefix ['{}', '{}', '{}', '{}'] -> error: {}", url, credentials, commitId, path, e.getMessage());
+            return null;
+        }
+
+        // ambiguous prefixes are resolved by fetching the repository
+        return candidates.size() == 1 ? candidates.get(0) : null;
+    }
+
+    private Path snapshotDir(String url, String credentials, String commitId, String path) {
+        String p = normalizePath(path);
+        return baseDir.resolve(encode(url))
+                .resolve(encode(credentials))
+                .resolve(commitId.toLowerCase())
+                .resolve(p != null ? encode(p) : ROOT_PATH_KEY);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RepositoryInfo readInfo(Path p) throws IOException {
+        Map<String, Object> m = objectMapper.readValue(p.toFile(), Map.class);
+        return new RepositoryInfo((String) m.get("commitId"), (String) m.get("message"), (String) m.get("author"));
+    }
+
+    private static Map<String, Object> toMap(RepositoryInfo info) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("commitId", info.getCommitId());
+        m.put("message", info.getMessage());
+        m.put("author", info.getAuthor());
+        return m;
+    }
+
+    private static String normalizePath(String s) {
+        if (s == null) {
+            return null;
+        }
+
+        s = s.trim();
+        while (s.startsWith("/")) {
+            s = s.substring(1);
+        }
+
+        while (s.endsWith("/")) {
+            s = s.substring(0, s.length() - 1);
+        }
+
+        return s.isEmpty() ? null : s;
+    }
+
+    private static String encode(String s) {
+        try {
+            return URLEncoder.encode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RepositoryException("Url encoding error", e);
+        }
+    }
+
+    public static final class Entry {
+
+        private final Path path;
+        private final RepositoryInfo info;
+
+        private Entry(Path path, RepositoryInfo info) {
+            this.path = path;
+            this.info = info;
+        }
+
+        /**
+         * The snapshot's files. Must not be modified.
+         */
+        public Path path() {
+            return path;
+        }
+
+        public RepositoryInfo info() {
+            return info;
+        }
+    }
+
+    private final class Exporter extends SimpleFileVisitor<Path> {
+
+        private final Path src;
+        private final Path dst;
+        private final LastModifiedSnapshot snapshot;
+
+        private boolean link = useHardLinks;
+
+        private Exporter(Path src, Path dst, LastModifiedSnapshot snapshot) {
+            this.src = src;
+            this.dst = dst;
+            this.snapshot = snapshot;
+        }
+
+        private void run() throws IOException {
+            Files.walkFileTree(src, this);
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            Files.createDirectories(dst.resolve(src.relativize(dir).toString()));
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            Path target = dst.resolve(src.relativize(file).toString());
+            Files.deleteIfExists(target);
+
+            if (attrs.isSymbolicLink()) {
+                Files.createSymbolicLink(target, Files.readSymbolicLink(file));
+                return FileVisitResult.CONTINUE;
+            }
+
+            if (link) {
+                try {
+                    Files.createLink(target, file);
+                } catch (UnsupportedOperationException | FileSystemException e) {
+                    // e.g. different filesystems, switch to copying
+                    log.warn("export ['{}'] -> can't create a hard link, copying the files instead: {}", dst, e.getMessage());
+                    link = false;
+                }
+            }
+
+            if (!link) {
+                Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+
+                // unlike the links, the copies can be writable
+                Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(target);
+                permissions.add(PosixFilePermission.OWNER_WRITE);
+                Files.setPosixFilePermissions(target, permissions);
+            }
+
+            snapshot.visit(file, target);
+            return FileVisitResult.CONTINUE;
+        }
+    }
+}
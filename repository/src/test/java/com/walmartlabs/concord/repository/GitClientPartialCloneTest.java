@@ -0,0 +1,162 @@
+package com.walmartlabs.concord.repository;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.common.TemporaryPath;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Uses a local repository, requires GIT 2.25+.
+ */
+public class GitClientPartialCloneTest {
+
+    private TemporaryPath origin;
+    private String originUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        origin = IOUtils.tempDir("git-origin");
+        Path dir = origin.path();
+
+        git(dir, "init");
+        git(dir, "symbolic-ref", "HEAD", "refs/heads/master");
+        git(dir, "config", "user.name", "test");
+        git(dir, "config", "user.email", "test@example.com");
+        // allow partial clones of a local repository
+        git(dir, "config", "uploadpack.allowFilter", "true");
+        git(dir, "config", "uploadpack.allowAnySHA1InWant", "true");
+
+        write(dir.resolve("README"), "root");
+        write(dir.resolve("flows/a/concord.yml"), "a");
+        write(dir.resolve("flows/b/concord.yml"), "b");
+        git(dir, "add", "-A");
+        git(dir, "commit", "-m", "first");
+
+        originUrl = dir.toUri().toString();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (origin != null) {
+            origin.close();
+        }
+    }
+
+    @Test
+    public void testSparseCheckout() throws Exception {
+        GitClient client = new GitClient(GitClientConfiguration.builder()
+                .partialCloneFilter("blob:none")
+                .build());
+
+        try (TemporaryPath repo = IOUtils.tempDir("git-client-test")) {
+            Path dst = repo.path();
+
+            client.fetch(originUrl, "master", null, "flows/a", null, dst);
+
+            assertEquals("true", git(dst, "config", "remote.origin.promisor").trim());
+            assertEquals("a", read(dst.resolve("flows/a/concord.yml")));
+            // the files in the root are always checked out
+            assertEquals("root", read(dst.resolve("README")));
+            assertFalse(Files.exists(dst.resolve("flows/b")));
+
+            String firstCommitId = git(origin.path(), "rev-parse", "HEAD").trim();
+
+            // the same clone is reused for another path and a new commit
+            write(origin.path().resolve("flows/b/concord.yml"), "b2");
+            git(origin.path(), "commit", "-am", "second");
+
+            client.fetch(originUrl, "master", null, "flows/b", null, dst);
+
+            assertEquals("b2", read(dst.resolve("flows/b/concord.yml")));
+            assertFalse(Files.exists(dst.resolve("flows/a")));
+
+            // an older commit
+            client.fetch(originUrl, null, firstCommitId, "flows/b", null, dst);
+
+            assertEquals("b", read(dst.resolve("flows/b/concord.yml")));
+
+            // no path, the whole tree is checked out
+            client.fetch(originUrl, "master", null, null, null, dst);
+
+            assertEquals("a", read(dst.resolve("flows/a/concord.yml")));
+            assertEquals("b2", read(dst.resolve("flows/b/concord.yml")));
+        }
+    }
+
+    @Test
+    public void testNotMatchingRepository() throws Exception {
+        GitClient client = new GitClient(GitClientConfiguration.builder()
+                .partialCloneFilter("blob:none")
+                .partialCloneRepositories(Arrays.asList("https://.*"))
+                .build());
+
+        try (TemporaryPath repo = IOUtils.tempDir("git-client-test")) {
+            Path dst = repo.path();
+
+            client.fetch(originUrl, "master", null, "flows/a", null, dst);
+
+            assertEquals("", git(dst, "config", "--local", "--get-regexp", "promisor"));
+            assertEquals("b", read(dst.resolve("flows/b/concord.yml")));
+        }
+    }
+
+    private static void write(Path p, String s) throws IOException {
+        Files.createDirectories(p.getParent());
+        Files.write(p, s.getBytes());
+    }
+
+    private static String read(Path p) throws IOException {
+        return new String(Files.readAllBytes(p)).trim();
+    }
+
+    private static String git(Path dir, String... args) throws Exception {
+        List<String> cmd = new ArrayList<>();
+        cmd.add("git");
+        cmd.addAll(Arrays.asList(args));
+
+        Path out = Files.createTempFile("git", ".out");
+        try {
+            Process p = new ProcessBuilder(cmd)
+                    .directory(dir.toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(out.toFile())
+                    .start();
+
+            assertTrue(p.waitFor(30, TimeUnit.SECONDS));
+            return new String(Files.readAllBytes(out));
+        } finally {
+            Files.delete(out);
+        }
+    }
+}
@@ -103,7 +103,7 @@ public class GitClientTest {
         // with default oauth token
         Secret secret = null;
         try (TemporaryPath repoPath = IOUtils.tempDir("git-client-test")) {
-            client.fetch(HTTPS_SUBMODULE_REPO_URL, branch, commitId, secret, repoPath.path());
+            client.fetch(HTTPS_SUBMODULE_REPO_URL, branch, commitId, null, secret, repoPath.path());
 
             assertEquals("master", new String(Files.readAllBytes(repoPath.path().resolve("test"))).trim());
             assertEquals("master", new String(Files.readAllBytes(repoPath.path().resolve("concord_poc").resolve("test"))).trim());
@@ -126,7 +126,7 @@ public class GitClientTest {
 
     private void assertFetch(String url, String branch, String commitId, Secret secret, String expectedContent) throws IOException {
         try (TemporaryPath repoPath = IOUtils.tempDir("git-client-test")) {
-            client.fetch(url, branch, commitId, secret, repoPath.path());
+            client.fetch(url, branch, commitId, null, secret, repoPath.path());
 
             assertEquals(expectedContent, new String(Files.readAllBytes(repoPath.path().resolve("test"))).trim());
         }
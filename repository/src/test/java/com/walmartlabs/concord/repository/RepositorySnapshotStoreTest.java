@@ -0,0 +1,246 @@
+package com.walmartlabs.concord.repository;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.sdk.Secret;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+public class RepositorySnapshotStoreTest {
+
+    private static final String URL = "https://example.com/test.git";
+    private static final String COMMIT_ID = "0123456789abcdef0123456789abcdef01234567";
+    private static final String CREDENTIALS = "org:secret";
+
+    private Path repoDir;
+    private Path storeDir;
+    private Path workDir;
+
+    @Before
+    public void setUp() throws Exception {
+        repoDir = IOUtils.createTempDir("test-repo");
+        storeDir = IOUtils.createTempDir("test-snapshots");
+        workDir = IOUtils.createTempDir("test-workspace");
+
+        Files.createDirectories(repoDir.resolve(".git"));
+        Files.write(repoDir.resolve(".git").resolve("HEAD"), "ref".getBytes());
+        Files.write(repoDir.resolve("concord.yml"), "flows: {}".getBytes());
+        Files.createDirectories(repoDir.resolve("a/b"));
+        Files.write(repoDir.resolve("a/b/c.txt"), "c".getBytes());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        IOUtils.deleteRecursively(repoDir);
+        IOUtils.deleteRecursively(storeDir);
+        IOUtils.deleteRecursively(workDir);
+    }
+
+    @Test
+    public void testPutAndExport() throws Exception {
+        RepositorySnapshotStore store = new RepositorySnapshotStore(storeDir, 0, true, new ObjectMapper());
+
+        assertFalse(store.get(URL, CREDENTIALS, COMMIT_ID, null).isPresent());
+
+        RepositorySnapshotStore.Entry e = store.put(URL, CREDENTIALS, null, repository(COMMIT_ID));
+        assertEquals(COMMIT_ID, e.info().getCommitId());
+
+        // the snapshot is immutable, changes in the repository cache are not visible
+        Files.write(repoDir.resolve("concord.yml"), "changed".getBytes());
+
+        Optional<RepositorySnapshotStore.Entry> cached = store.get(URL, CREDENTIALS, COMMIT_ID, null);
+        assertTrue(cached.isPresent());
+        assertEquals("me", cached.get().info().getAuthor());
+
+        Snapshot snapshot = store.export(cached.get(), workDir);
+        assertEquals("flows: {}", new String(Files.readAllBytes(workDir.resolve("concord.yml"))));
+        assertEquals("c", new String(Files.readAllBytes(workDir.resolve("a/b/c.txt"))));
+        assertFalse(Files.exists(workDir.resolve(".git")));
+        assertTrue(snapshot.contains(workDir.resolve("a/b/c.txt")));
+
+        // replacing a file in the workspace doesn't affect the snapshot
+        Path tmp = IOUtils.createTempFile("test", ".yml");
+        Files.write(tmp, "replaced".getBytes());
+        Files.move(tmp, workDir.resolve("concord.yml"), StandardCopyOption.REPLACE_EXISTING);
+        assertEquals("flows: {}", new String(Files.readAllBytes(cached.get().path().resolve("concord.yml"))));
+    }
+
+    @Test
+    public void testReadOnlyFiles() throws Exception {
+        RepositorySnapshotStore store = new RepositorySnapshotStore(storeDir, 0, true, new ObjectMapper());
+        RepositorySnapshotStore.Entry e = store.put(URL, CREDENTIALS, null, repository(COMMIT_ID));
+
+        Path snapshotFile = e.path().resolve("concord.yml");
+        assertFalse(Files.getPosixFilePermissions(snapshotFile).contains(PosixFilePermission.OWNER_WRITE));
+
+        // the copies are writable
+        Path copyDir = IOUtils.createTempDir("test-workspace");
+        try {
+            new RepositorySnapshotStore(storeDir, 0, false, new ObjectMapper()).export(e, copyDir);
+            assertTrue(Files.getPosixFilePermissions(copyDir.resolve("concord.yml")).contains(PosixFilePermission.OWNER_WRITE));
+        } finally {
+            IOUtils.deleteRecursively(copyDir);
+        }
+
+        store.export(e, workDir);
+        Path workspaceFile = workDir.resolve("concord.yml");
+        assumeTrue("hard links are not supported", Files.isSameFile(workspaceFile, snapshotFile));
+        assumeFalse("the permissions are not enforced", Files.isWritable(workspaceFile));
+
+        // a writer which doesn't replace the file fails instead of changing the snapshot
+        try {
+            Files.write(workspaceFile, "changed".getBytes(), StandardOpenOption.TRUNCATE_EXISTING);
+            fail("exception expected");
+        } catch (AccessDeniedException ex) {
+            // expected
+        }
+
+        assertEquals("flows: {}", new String(Files.readAllBytes(snapshotFile)));
+    }
+
+    @Test
+    public void testPath() throws Exception {
+        RepositorySnapshotStore store = new RepositorySnapshotStore(storeDir, 0, false, new ObjectMapper());
+
+        store.put(URL, CREDENTIALS, "/a/", repository(COMMIT_ID, repoDir.resolve("a")));
+
+        assertTrue(store.get(URL, CREDENTIALS, COMMIT_ID, "a").isPresent());
+        assertFalse(store.get(URL, CREDENTIALS, COMMIT_ID, null).isPresent());
+
+        store.export(store.get(URL, CREDENTIALS, COMMIT_ID, "a").get(), workDir);
+        assertTrue(Files.exists(workDir.resolve("b/c.txt")));
+    }
+
+    @Test
+    public void testCredentials() throws Exception {
+        RepositorySnapshotStore store = new RepositorySnapshotStore(storeDir, 0, true, new ObjectMapper());
+        store.put(URL, CREDENTIALS, null, repository(COMMIT_ID));
+
+        // fetched using other credentials, not shared
+        assertFalse(store.get(URL, "other:secret", COMMIT_ID, null).isPresent());
+        assertFalse(store.get(URL, "_none", COMMIT_ID, null).isPresent());
+    }
+
+    @Test
+    public void testAbbreviatedCommitId() throws Exception {
+        RepositorySnapshotStore store = new RepositorySnapshotStore(storeDir, 0, true, new ObjectMapper());
+
+        assertFalse(store.get(URL, CREDENTIALS, "0123456", null).isPresent());
+
+        store.put(URL, CREDENTIALS, null, repository(COMMIT_ID));
+
+        Optional<RepositorySnapshotStore.Entry> e = store.get(URL, CREDENTIALS, "0123456", null);
+        assertTrue(e.isPresent());
+        assertEquals(COMMIT_ID, e.get().info().getCommitId());
+
+        assertFalse(store.get(URL, CREDENTIALS, "0123457", null).isPresent());
+
+        // ambiguous
+        store.put(URL, CREDENTIALS, null, repository("0123456789abcdef0123456789abcdef01234568"));
+        assertFalse(store.get(URL, CREDENTIALS, "0123456", null).isPresent());
+        assertTrue(store.get(URL, CREDENTIALS, COMMIT_ID, null).isPresent());
+    }
+
+    @Test
+    public void testTmpCleanup() throws Exception {
+        Path tmp = Files.createDirectories(storeDir.resolve(".tmp").resolve("snapshot123"));
+        Files.write(tmp.resolve("concord.yml"), "flows: {}".getBytes());
+
+        new RepositorySnapshotStore(storeDir, 0, true, new ObjectMapper());
+
+        assertFalse(Files.exists(tmp));
+    }
+
+    @Test
+    public void testInvalidCommitId() throws Exception {
+        RepositorySnapshotStore store = new RepositorySnapshotStore(storeDir, 0, true, new ObjectMapper());
+
+        assertFalse(store.get(URL, CREDENTIALS, "../../etc", null).isPresent());
+
+        try {
+            store.put(URL, CREDENTIALS, null, repository("../../etc"));
+            fail("exception expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private Repository repository(String commitId) {
+        return repository(commitId, repoDir);
+    }
+
+    private Repository repository(String commitId, Path repoPath) {
+        return new Repository("master", repoDir, repoPath, new TestProvider(commitId));
+    }
+
+    private static class TestProvider implements RepositoryProvider {
+
+        private final String commitId;
+
+        private TestProvider(String commitId) {
+            this.commitId = commitId;
+        }
+
+        @Override
+        public String getBranchOrDefault(String branch) {
+            return branch;
+        }
+
+        @Override
+        public boolean canHandle(String url) {
+            return true;
+        }
+
+        @Override
+        public void fetch(String uri, String branch, String commitId, String path, Secret secret, Path dst) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Snapshot export(Path src, Path dst, List<String> ignorePatterns) throws IOException {
+            LastModifiedSnapshot snapshot = new LastModifiedSnapshot();
+            IOUtils.copy(src, dst, "^\\.git$", snapshot, StandardCopyOption.REPLACE_EXISTING);
+            return snapshot;
+        }
+
+        @Override
+        public RepositoryInfo getInfo(Path path) {
+            return new RepositoryInfo(commitId, "test", "me");
+        }
+    }
+}
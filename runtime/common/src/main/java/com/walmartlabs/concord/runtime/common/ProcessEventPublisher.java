@@ -0,0 +1,255 @@
+package com.walmartlabs.concord.runtime.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.walmartlabs.concord.ApiException;
+import com.walmartlabs.concord.client.ClientUtils;
+import com.walmartlabs.concord.client.ProcessEventRequest;
+import com.walmartlabs.concord.client.ProcessEventsApi;
+import com.walmartlabs.concord.runtime.common.cfg.EventConfiguration;
+import com.walmartlabs.concord.runtime.common.cfg.EventConfiguration.OverflowPolicy;
+import com.walmartlabs.concord.runtime.common.cfg.RunnerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Sends process events to the server asynchronously.
+ * <p/>
+ * The events are queued and sent in batches by a background thread using
+ * the {@code /eventBatch} endpoint. A batch is sent when it contains
+ * {@link EventConfiguration#batchSize()} events or when the oldest event
+ * in the queue is older than {@link EventConfiguration#batchFlushInterval()}.
+ * When the queue is full, {@link #publish(ProcessEventRequest)} either blocks
+ * or drops the oldest event, depending on {@link EventConfiguration#overflowPolicy()}.
+ * <p/>
+ * {@link #close()} sends all remaining events and must be called before
+ * the runner exits. The events published after that are sent immediately.
+ * <p/>
+ * The event's data is serialized when the event is published, so the caller
+ * can keep modifying the original (e.g. task's variables) afterwards.
+ */
+public class ProcessEventPublisher implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessEventPublisher.class);
+
+    private final UUID instanceId;
+    private final ProcessEventsApi eventsApi;
+    private final Gson gson;
+
+    private final int batchSize;
+    private final long batchFlushInterval;
+    private final int maxQueueSize;
+    private final OverflowPolicy overflowPolicy;
+    private final int retryCount;
+    private final long retryInterval;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<ProcessEventRequest> queue = new ArrayDeque<>();
+
+    /**
+     * Time when the oldest event in the queue was added.
+     */
+    private long oldestEventTime;
+    private long dropped;
+    private boolean stopped;
+
+    private final Thread worker;
+
+    public ProcessEventPublisher(RunnerConfiguration cfg, UUID instanceId, ProcessEventsApi eventsApi) {
+        this.instanceId = instanceId;
+        this.eventsApi = eventsApi;
+        this.gson = eventsApi.getApiClient().getJSON().getGson();
+
+        EventConfiguration eventCfg = cfg.events();
+        this.batchSize = Math.max(1, eventCfg.batchSize());
+        this.batchFlushInterval = eventCfg.batchFlushInterval();
+        this.maxQueueSize = Math.max(1, eventCfg.maxQueueSize());
+        this.overflowPolicy = eventCfg.overflowPolicy();
+        this.retryCount = cfg.api().retryCount();
+        this.retryInterval = cfg.api().retryInterval();
+
+        this.worker = new Thread(this::run, "process-event-publisher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Adds a copy of the event to the queue.
+     */
+    public void publish(ProcessEventRequest event) {
+        try {
+            event = snapshot(event);
+        } catch (RuntimeException e) {
+            log.warn("publish ['{}'] -> error while serializing the event, the event is lost: {}", instanceId, e.getMessage());
+            return;
+        }
+
+        synchronized (lock) {
+            while (!stopped && queue.size() >= maxQueueSize) {
+                if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                    queue.pollFirst();
+                    if (dropped++ == 0) {
+                        log.warn("publish ['{}'] -> the event queue is full, dropping the oldest events", instanceId);
+                    }
+                    break;
+                }
+
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("publish ['{}'] -> interrupted, the event is lost", instanceId);
+                    return;
+                }
+            }
+
+            if (!stopped) {
+                if (queue.isEmpty()) {
+                    oldestEventTime = System.currentTimeMillis();
+                }
+
+                queue.add(event);
+
+                if (queue.size() >= batchSize) {
+                    lock.notifyAll();
+                }
+
+                return;
+            }
+        }
+
+        // the publisher is closed, send the event directly
+        send(Collections.singletonList(event));
+    }
+
+    /**
+     * Sends all queued events and stops the background thread.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (stopped) {
+                return;
+            }
+
+            stopped = true;
+            lock.notifyAll();
+        }
+
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (lock) {
+            if (dropped > 0) {
+                log.warn("close ['{}'] -> {} event(s) were dropped due to the queue overflow", instanceId, dropped);
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+            List<ProcessEventRequest> batch;
+            boolean last;
+
+            synchronized (lock) {
+                try {
+                    while (!stopped && queue.isEmpty()) {
+                        lock.wait();
+                    }
+
+                    // wait until the batch is full or the oldest event is too old
+                    while (!stopped && queue.size() < batchSize) {
+                        long timeout = oldestEventTime + batchFlushInterval - System.currentTimeMillis();
+                        if (timeout <= 0) {
+                            break;
+                        }
+                        lock.wait(timeout);
+                    }
+                } catch (InterruptedException e) {
+                    // send the remaining events and exit
+                    stopped = true;
+                }
+
+                int n = Math.min(batchSize, queue.size());
+                batch = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    batch.add(queue.pollFirst());
+                }
+
+                if (!queue.isEmpty()) {
+                    oldestEventTime = System.currentTimeMillis();
+                }
+
+                last = stopped && queue.isEmpty();
+
+                // wake up the blocked publishers
+                lock.notifyAll();
+            }
+
+            if (!batch.isEmpty()) {
+                send(batch);
+            }
+
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the event with the data converted into JSON trees.
+     * The trees are written as-is when the batch is sent.
+     */
+    private ProcessEventRequest snapshot(ProcessEventRequest event) {
+        ProcessEventRequest result = new ProcessEventRequest();
+        result.setEventType(event.getEventType());
+        result.setEventDate(event.getEventDate());
+
+        Map<String, Object> data = event.getData();
+        if (data != null) {
+            Map<String, Object> m = new LinkedHashMap<>(data.size());
+            for (Map.Entry<String, JsonElement> e : gson.toJsonTree(data).getAsJsonObject().entrySet()) {
+                m.put(e.getKey(), e.getValue());
+            }
+            result.setData(m);
+        }
+
+        return result;
+    }
+
+    private void send(List<ProcessEventRequest> batch) {
+        try {
+            ClientUtils.withRetry(retryCount, retryInterval, () -> {
+                eventsApi.batchEvent(instanceId, batch);
+                return null;
+            });
+        } catch (ApiException e) {
+            log.warn("send ['{}'] -> error while sending {} event(s) to the server: {}", instanceId, batch.size(), e.getMessage());
+        }
+    }
+}
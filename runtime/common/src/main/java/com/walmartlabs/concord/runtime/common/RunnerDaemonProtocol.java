@@ -0,0 +1,67 @@
+package com.walmartlabs.concord.runtime.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+/**
+ * Constants shared by the agent and the runner daemon.
+ * <p>
+ * The agent connects to the daemon's local port and sends a single line
+ * JSON request per process. The daemon executes the process and responds with
+ * a single line JSON containing the process' exit code and whether the daemon
+ * must be recycled. Requests without the daemon's token are ignored.
+ */
+public final class RunnerDaemonProtocol {
+
+    /**
+     * Environment variable with the daemon's secret token.
+     */
+    public static final String TOKEN_ENV_KEY = "_CONCORD_DAEMON_TOKEN";
+
+    /**
+     * Environment variable with the path to the file where the daemon
+     * saves its port number.
+     */
+    public static final String PORT_FILE_ENV_KEY = "_CONCORD_DAEMON_PORT_FILE";
+
+    /**
+     * Environment variable with the max heap usage ratio (0..1). The daemon
+     * requests recycling if its heap usage after a process exceeds the ratio.
+     */
+    public static final String MAX_HEAP_USAGE_ENV_KEY = "_CONCORD_DAEMON_MAX_HEAP_USAGE";
+
+    /**
+     * Environment variable with the max time (ms) the daemon waits for a new
+     * request. The daemon exits if nobody connects during that time,
+     * e.g. when the agent is gone. Zero or missing means "wait forever".
+     */
+    public static final String MAX_IDLE_TIME_ENV_KEY = "_CONCORD_DAEMON_MAX_IDLE_TIME";
+
+    public static final String TOKEN_KEY = "token";
+    public static final String INSTANCE_ID_KEY = "instanceId";
+    public static final String WORK_DIR_KEY = "workDir";
+    public static final String LOG_FILE_KEY = "logFile";
+
+    public static final String EXIT_CODE_KEY = "exitCode";
+    public static final String RECYCLE_KEY = "recycle";
+
+    private RunnerDaemonProtocol() {
+    }
+}
@@ -78,7 +78,53 @@ public interface EventConfiguration {
         return Collections.emptyList();
     }
 
+    /**
+     * Max number of events sent in a single request.
+     */
+    @Value.Default
+    default int batchSize() {
+        return 50;
+    }
+
+    /**
+     * Max time (in ms) an event can wait in the queue before it is sent,
+     * even if the batch is not full.
+     */
+    @Value.Default
+    default long batchFlushInterval() {
+        return 1000;
+    }
+
+    /**
+     * Max number of events waiting to be sent.
+     */
+    @Value.Default
+    default int maxQueueSize() {
+        return 10000;
+    }
+
+    /**
+     * What to do when the event queue is full.
+     */
+    @Value.Default
+    default OverflowPolicy overflowPolicy() {
+        return OverflowPolicy.BLOCK;
+    }
+
     static ImmutableEventConfiguration.Builder builder() {
         return ImmutableEventConfiguration.builder();
     }
+
+    enum OverflowPolicy {
+
+        /**
+         * Wait until there's space in the queue.
+         */
+        BLOCK,
+
+        /**
+         * Drop the oldest event in the queue.
+         */
+        DROP_OLDEST
+    }
 }
@@ -0,0 +1,261 @@
+package com.walmartlabs.concord.runtime.common.injector;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.common.hash.Hashing;
+import org.eclipse.sisu.space.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Finds {@code @Named} (and other qualified) classes without scanning
+ * every class of every JAR.
+ * <p>
+ * For JARs with a Sisu index ({@code META-INF/sisu/javax.inject.Named},
+ * generated by {@code sisu-maven-plugin} at build time) the index is used as is.
+ * JARs without an index are scanned and the result is saved in {@code cacheDir},
+ * keyed by the JAR's path, size and modification time. Directories are always scanned.
+ * <p>
+ * Usage: {@code new SpaceModule(new URLClassSpace(cl), new IndexedClassFinder(cacheDir, true))}
+ */
+public class IndexedClassFinder implements ClassFinder {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexedClassFinder.class);
+
+    public static final String INDEX_NAME = "META-INF/sisu/javax.inject.Named";
+
+    /**
+     * Name of the scan results directory inside of the dependency cache directory.
+     */
+    public static final String CACHE_DIR_NAME = "classIndex";
+
+    private static final String CACHE_FILE_EXT = ".named";
+
+    private final Path cacheDir;
+    private final boolean useIndex;
+
+    /**
+     * @param cacheDir directory to store the scan results, scan results are not cached if {@code null}
+     * @param useIndex if {@code false} the JAR indexes are ignored, e.g. for "uber" JARs
+     *                 with an incomplete index
+     */
+    public IndexedClassFinder(Path cacheDir, boolean useIndex) {
+        this.cacheDir = cacheDir;
+        this.useIndex = useIndex;
+    }
+
+    @Override
+    public Enumeration<URL> findClasses(ClassSpace space) {
+        if (!(space instanceof URLClassSpace)) {
+            return new DefaultClassFinder().findClasses(space);
+        }
+
+        // the class files are loaded from the entries they were found in, not via
+        // the (parent-first) class loader, the same way the default ClassFinder does
+        Set<String> classNames = new HashSet<>();
+        List<URL> result = new ArrayList<>();
+        for (URL url : ((URLClassSpace) space).getURLs()) {
+            Path p = toPath(url);
+            if (p == null) {
+                continue;
+            }
+
+            for (String n : findClassNames(space, url, p)) {
+                if (!classNames.add(n)) {
+                    continue;
+                }
+
+                URL u = classUrl(url, p, n);
+                if (u != null) {
+                    result.add(u);
+                }
+            }
+        }
+        return Collections.enumeration(result);
+    }
+
+    private List<String> findClassNames(ClassSpace space, URL url, Path p) {
+        if (Files.isDirectory(p)) {
+            return scan(space, directoryEntries(p));
+        }
+
+        if (!Files.isRegularFile(p)) {
+            return Collections.emptyList();
+        }
+
+        try {
+            if (useIndex) {
+                List<String> indexed = readIndex(p);
+                if (indexed != null) {
+                    return indexed;
+                }
+            }
+
+            if (cacheDir == null) {
+                return scan(space, jarEntries(url, p));
+            }
+
+            Path cached = cacheDir.resolve(cacheKey(p) + CACHE_FILE_EXT);
+            if (Files.exists(cached)) {
+                return Files.readAllLines(cached, StandardCharsets.UTF_8);
+            }
+
+            List<String> result = scan(space, jarEntries(url, p));
+            save(cached, result);
+            return result;
+        } catch (IOException e) {
+            log.warn("findClassNames ['{}'] -> error, scanning the JAR: {}", url, e.getMessage());
+            return scan(space, jarEntries(url, p));
+        }
+    }
+
+    /**
+     * JARs in the dependency cache are never modified in place, so the path,
+     * the size and the modification time are enough to identify a JAR.
+     * No need to read the whole file.
+     */
+    private static String cacheKey(Path jar) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(jar, BasicFileAttributes.class);
+        return Hashing.sha256().newHasher()
+                .putString(jar.toAbsolutePath().normalize().toString(), StandardCharsets.UTF_8)
+                .putLong(attrs.size())
+                .putLong(attrs.lastModifiedTime().toMillis())
+                .hash()
+                .toString();
+    }
+
+    private static URL classUrl(URL url, Path p, String className) {
+        String name = className.replace('.', '/') + ".class";
+        try {
+            if (Files.isDirectory(p)) {
+                Path f = p.resolve(name);
+                return Files.isRegularFile(f) ? f.toUri().toURL() : null;
+            }
+            return new URL("jar:" + url.toExternalForm() + "!/" + name);
+        } catch (MalformedURLException e) {
+            log.warn("classUrl ['{}', '{}'] -> error: {}", url, className, e.getMessage());
+            return null;
+        }
+    }
+
+    private void save(Path dst, List<String> classNames) {
+        try {
+            Files.createDirectories(cacheDir);
+
+            Path tmp = Files.createTempFile(cacheDir, "scan", ".tmp");
+            Files.write(tmp, classNames, StandardCharsets.UTF_8);
+            Files.move(tmp, dst, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("save ['{}'] -> error while saving the scan results: {}", dst, e.getMessage());
+        }
+    }
+
+    /**
+     * Scans the specified class files using the same visitor {@link SpaceModule} uses.
+     */
+    private static List<String> scan(ClassSpace space, List<URL> classFiles) {
+        List<String> result = new ArrayList<>();
+        ClassFinder finder = s -> Collections.enumeration(classFiles);
+        new SpaceScanner(space, finder).accept(new QualifiedTypeVisitor((type, source) -> result.add(type.getName())));
+        return result;
+    }
+
+    /**
+     * @return the list of class names from the JAR's index or {@code null} if there's no index
+     */
+    private static List<String> readIndex(Path jar) throws IOException {
+        try (JarFile f = new JarFile(jar.toFile())) {
+            JarEntry e = f.getJarEntry(INDEX_NAME);
+            if (e == null) {
+                return null;
+            }
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(f.getInputStream(e), StandardCharsets.UTF_8))) {
+                return reader.lines()
+                        .map(String::trim)
+                        .filter(s -> !s.isEmpty() && !s.startsWith("#"))
+                        // skip the stale entries, the classes must be in the same JAR
+                        .filter(s -> f.getJarEntry(s.replace('.', '/') + ".class") != null)
+                        .collect(Collectors.toList());
+            }
+        }
+    }
+
+    private static List<URL> jarEntries(URL url, Path jar) {
+        try (JarFile f = new JarFile(jar.toFile())) {
+            List<URL> result = new ArrayList<>();
+            Enumeration<JarEntry> entries = f.entries();
+            while (entries.hasMoreElements()) {
+                String n = entries.nextElement().getName();
+                if (n.endsWith(".class")) {
+                    result.add(new URL("jar:" + url.toExternalForm() + "!/" + n));
+                }
+            }
+            return result;
+        } catch (IOException e) {
+            log.warn("jarEntries ['{}'] -> error: {}", jar, e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private static List<URL> directoryEntries(Path dir) {
+        try (Stream<Path> s = Files.walk(dir)) {
+            List<URL> result = new ArrayList<>();
+            for (Path p : (Iterable<Path>) s::iterator) {
+                if (p.toString().endsWith(".class")) {
+                    result.add(p.toUri().toURL());
+                }
+            }
+            return result;
+        } catch (IOException e) {
+            log.warn("directoryEntries ['{}'] -> error: {}", dir, e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private static Path toPath(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return Paths.get(url.getPath());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.walmartlabs.concord.runtime.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.ApiClient;
+import com.walmartlabs.concord.client.ProcessEventRequest;
+import com.walmartlabs.concord.client.ProcessEventsApi;
+import com.walmartlabs.concord.runtime.common.cfg.ApiConfiguration;
+import com.walmartlabs.concord.runtime.common.cfg.EventConfiguration;
+import com.walmartlabs.concord.runtime.common.cfg.RunnerConfiguration;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProcessEventPublisherTest {
+
+    @Test(timeout = 30000)
+    public void testBatches() {
+        RecordingEventsApi api = new RecordingEventsApi();
+
+        // the flush interval is long enough, the batches are sent only when they are full or on close
+        try (ProcessEventPublisher publisher = new ProcessEventPublisher(cfg(3, 60000), UUID.randomUUID(), api)) {
+            for (int i = 0; i < 7; i++) {
+                publisher.publish(event(Collections.singletonMap("n", i)));
+            }
+        }
+
+        assertEquals(Arrays.asList(3, 3, 1), api.batchSizes());
+        assertEquals(7, api.events().size());
+    }
+
+    @Test(timeout = 30000)
+    public void testFlushOnClose() {
+        RecordingEventsApi api = new RecordingEventsApi();
+
+        ProcessEventPublisher publisher = new ProcessEventPublisher(cfg(100, 60000), UUID.randomUUID(), api);
+        publisher.publish(event(Collections.singletonMap("n", 1)));
+        publisher.publish(event(Collections.singletonMap("n", 2)));
+
+        // nothing is sent yet, the batch is not full and the flush interval hasn't passed
+        assertEquals(0, api.events().size());
+
+        publisher.close();
+        assertEquals(Collections.singletonList(2), api.batchSizes());
+
+        // the events published after close() are sent immediately
+        publisher.publish(event(Collections.singletonMap("n", 3)));
+        assertEquals(Arrays.asList(2, 1), api.batchSizes());
+    }
+
+    @Test(timeout = 30000)
+    public void testFlushInterval() throws Exception {
+        RecordingEventsApi api = new RecordingEventsApi();
+
+        try (ProcessEventPublisher publisher = new ProcessEventPublisher(cfg(100, 100), UUID.randomUUID(), api)) {
+            publisher.publish(event(Collections.singletonMap("n", 1)));
+
+            // the incomplete batch is sent after the flush interval
+            long deadline = System.currentTimeMillis() + 10000;
+            while (api.events().isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, api.events().size());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testDataIsCopied() {
+        RecordingEventsApi api = new RecordingEventsApi();
+
+        Map<String, Object> in = new HashMap<>();
+        in.put("x", "a");
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("in", in);
+
+        try (ProcessEventPublisher publisher = new ProcessEventPublisher(cfg(100, 60000), UUID.randomUUID(), api)) {
+            publisher.publish(event(data));
+
+            // the caller keeps modifying its variables while the event is waiting in the queue
+            in.put("x", "b");
+            in.put("y", "c");
+            data.put("z", "d");
+        }
+
+        assertEquals(1, api.events().size());
+        assertEquals("{\"in\":{\"x\":\"a\"}}", api.json(api.events().get(0).getData()));
+    }
+
+    private static RunnerConfiguration cfg(int batchSize, long batchFlushInterval) {
+        return RunnerConfiguration.builder()
+                .api(ApiConfiguration.builder()
+                        .baseUrl("http://localhost:8001")
+                        .retryCount(0)
+                        .build())
+                .events(EventConfiguration.builder()
+                        .batchSize(batchSize)
+                        .batchFlushInterval(batchFlushInterval)
+                        .build())
+                .build();
+    }
+
+    private static ProcessEventRequest event(Map<String, Object> data) {
+        ProcessEventRequest req = new ProcessEventRequest();
+        req.setEventType("ELEMENT");
+        req.setData(data);
+        return req;
+    }
+
+    private static class RecordingEventsApi extends ProcessEventsApi {
+
+        private final List<List<ProcessEventRequest>> batches = new CopyOnWriteArrayList<>();
+
+        private RecordingEventsApi() {
+            super(new ApiClient());
+        }
+
+        @Override
+        public void batchEvent(UUID processInstanceId, List<ProcessEventRequest> data) {
+            batches.add(new ArrayList<>(data));
+        }
+
+        List<Integer> batchSizes() {
+            List<Integer> result = new ArrayList<>();
+            for (List<ProcessEventRequest> b : batches) {
+                result.add(b.size());
+            }
+            return result;
+        }
+
+        List<ProcessEventRequest> events() {
+            List<ProcessEventRequest> result = new ArrayList<>();
+            batches.forEach(result::addAll);
+            return result;
+        }
+
+        String json(Object o) {
+            return getApiClient().getJSON().serialize(o);
+        }
+    }
+}
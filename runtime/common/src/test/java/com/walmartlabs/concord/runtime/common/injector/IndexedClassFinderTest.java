@@ -0,0 +1,207 @@
+package com.walmartlabs.concord.runtime.common.injector;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.common.IOUtils;
+import org.eclipse.sisu.space.URLClassSpace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.inject.Named;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class IndexedClassFinderTest {
+
+    private Path tmpDir;
+    private Path cacheDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("test");
+        cacheDir = tmpDir.resolve(IndexedClassFinder.CACHE_DIR_NAME);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        IOUtils.deleteRecursively(tmpDir);
+    }
+
+    @Test
+    public void testIndexedJar() throws Exception {
+        // the index is used as is: NotIndexed is not in the index and the missing class is skipped
+        Path jar = jar("indexed.jar", index(IndexedA.class.getName(), "com.example.Missing"), IndexedA.class, NotIndexed.class);
+
+        List<String> urls = findClasses(new IndexedClassFinder(cacheDir, true), jar);
+
+        // the classes are loaded from the JAR, even if the parent class loader has the same classes
+        assertEquals(Collections.singletonList(jarUrl(jar, IndexedA.class)), urls);
+
+        // nothing to cache
+        assertEquals(0, cacheFiles().size());
+    }
+
+    @Test
+    public void testIgnoreIndex() throws Exception {
+        Path jar = jar("indexed.jar", index(IndexedA.class.getName()), IndexedA.class, NotIndexed.class);
+
+        List<String> urls = findClasses(new IndexedClassFinder(cacheDir, false), jar);
+        assertEquals(set(jarUrl(jar, IndexedA.class), jarUrl(jar, NotIndexed.class)), new HashSet<>(urls));
+    }
+
+    @Test
+    public void testUnindexedJar() throws Exception {
+        Path jar = jar("unindexed.jar", null, NamedB.class, Plain.class);
+        IndexedClassFinder finder = new IndexedClassFinder(cacheDir, true);
+
+        // the JAR is scanned and the results are saved
+        assertEquals(Collections.singletonList(jarUrl(jar, NamedB.class)), findClasses(finder, jar));
+
+        List<Path> cached = cacheFiles();
+        assertEquals(1, cached.size());
+        assertTrue(cached.get(0).getFileName().toString().endsWith(".named"));
+        assertEquals(Collections.singletonList(NamedB.class.getName()), Files.readAllLines(cached.get(0), StandardCharsets.UTF_8));
+
+        // the cached results are used for the same JAR
+        Files.write(cached.get(0), Collections.singletonList(Plain.class.getName()), StandardCharsets.UTF_8);
+        assertEquals(Collections.singletonList(jarUrl(jar, Plain.class)), findClasses(finder, jar));
+
+        // the JAR changed, the cached results are ignored
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() + 60000));
+        assertEquals(Collections.singletonList(jarUrl(jar, NamedB.class)), findClasses(finder, jar));
+        assertEquals(2, cacheFiles().size());
+    }
+
+    @Test
+    public void testDirectory() throws Exception {
+        Path dir = tmpDir.resolve("classes");
+        copyClass(NamedB.class, dir);
+        copyClass(Plain.class, dir);
+
+        List<String> urls = findClasses(new IndexedClassFinder(cacheDir, true), dir);
+
+        Path expected = dir.resolve(NamedB.class.getName().replace('.', '/') + ".class");
+        assertEquals(Collections.singletonList(expected.toUri().toURL().toExternalForm()), urls);
+
+        // directories are always scanned
+        assertEquals(0, cacheFiles().size());
+    }
+
+    private static List<String> findClasses(IndexedClassFinder finder, Path p) throws IOException {
+        URL[] urls = {p.toUri().toURL()};
+        URLClassLoader cl = new URLClassLoader(urls, IndexedClassFinderTest.class.getClassLoader());
+        try {
+            return Collections.list(finder.findClasses(new URLClassSpace(cl, urls))).stream()
+                    .map(URL::toExternalForm)
+                    .collect(Collectors.toList());
+        } finally {
+            cl.close();
+        }
+    }
+
+    private List<Path> cacheFiles() throws IOException {
+        if (!Files.exists(cacheDir)) {
+            return Collections.emptyList();
+        }
+
+        try (Stream<Path> s = Files.list(cacheDir)) {
+            return s.collect(Collectors.toList());
+        }
+    }
+
+    private Path jar(String name, String index, Class<?>... classes) throws IOException {
+        Path jar = tmpDir.resolve(name);
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            if (index != null) {
+                out.putNextEntry(new JarEntry(IndexedClassFinder.INDEX_NAME));
+                out.write(index.getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+
+            for (Class<?> c : classes) {
+                out.putNextEntry(new JarEntry(classFile(c)));
+                try (InputStream in = classBytes(c)) {
+                    IOUtils.copy(in, out);
+                }
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    private static void copyClass(Class<?> c, Path dir) throws IOException {
+        Path dst = dir.resolve(classFile(c));
+        Files.createDirectories(dst.getParent());
+        try (InputStream in = classBytes(c); OutputStream out = Files.newOutputStream(dst)) {
+            IOUtils.copy(in, out);
+        }
+    }
+
+    private static String index(String... classNames) {
+        return "# generated\n" + String.join("\n", classNames) + "\n";
+    }
+
+    private static String jarUrl(Path jar, Class<?> c) throws IOException {
+        return "jar:" + jar.toUri().toURL().toExternalForm() + "!/" + classFile(c);
+    }
+
+    private static String classFile(Class<?> c) {
+        return c.getName().replace('.', '/') + ".class";
+    }
+
+    private static InputStream classBytes(Class<?> c) {
+        return IndexedClassFinderTest.class.getClassLoader().getResourceAsStream(classFile(c));
+    }
+
+    private static Set<String> set(String... items) {
+        return new HashSet<>(Arrays.asList(items));
+    }
+
+    @Named
+    public static class IndexedA {
+    }
+
+    @Named
+    public static class NotIndexed {
+    }
+
+    @Named
+    public static class NamedB {
+    }
+
+    public static class Plain {
+    }
+}
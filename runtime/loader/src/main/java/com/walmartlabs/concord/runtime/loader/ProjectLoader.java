@@ -23,6 +23,7 @@ package com.walmartlabs.concord.runtime.loader;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.walmartlabs.concord.common.ProcessDefinitionCache;
 import com.walmartlabs.concord.imports.ImportManager;
 import com.walmartlabs.concord.repository.Snapshot;
 import com.walmartlabs.concord.runtime.loader.model.ProcessDefinition;
@@ -58,11 +59,18 @@ public class ProjectLoader {
     }
 
     public Result loadProject(Path workDir, ImportsNormalizer importsNormalizer) throws Exception {
+        return loadProject(workDir, importsNormalizer, null);
+    }
+
+    /**
+     * @param cache optional cache of parsed process definitions
+     */
+    public Result loadProject(Path workDir, ImportsNormalizer importsNormalizer, ProcessDefinitionCache cache) throws Exception {
         if (isV2(workDir)) {
-            return toResult(v2.load(workDir, importsNormalizer::normalize));
+            return toResult(v2.load(workDir, importsNormalizer::normalize, cache));
         }
 
-        return toResult(v1.loadProject(workDir, importsNormalizer::normalize));
+        return toResult(v1.loadProject(workDir, importsNormalizer::normalize, cache));
     }
 
     private static Result toResult(com.walmartlabs.concord.project.ProjectLoader.Result r) {
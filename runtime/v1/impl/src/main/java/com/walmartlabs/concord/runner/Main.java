@@ -27,10 +27,13 @@ import com.google.inject.*;
 import com.google.inject.matcher.AbstractMatcher;
 import com.google.inject.spi.TypeEncounter;
 import com.google.inject.spi.TypeListener;
+import com.walmartlabs.concord.ApiClient;
 import com.walmartlabs.concord.client.ApiClientConfiguration;
 import com.walmartlabs.concord.client.ApiClientFactory;
 import com.walmartlabs.concord.client.ProcessEntry;
+import com.walmartlabs.concord.client.ProcessEventsApi;
 import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.common.WorkspaceProcessDefinitionCache;
 import com.walmartlabs.concord.imports.NoopImportManager;
 import com.walmartlabs.concord.policyengine.PolicyEngine;
 import com.walmartlabs.concord.policyengine.PolicyEngineRules;
@@ -40,12 +43,13 @@ import com.walmartlabs.concord.project.ProjectLoader;
 import com.walmartlabs.concord.project.model.ProjectDefinition;
 import com.walmartlabs.concord.runner.engine.EngineFactory;
 import com.walmartlabs.concord.runner.engine.ProcessErrorProcessor;
+import com.walmartlabs.concord.runtime.common.ProcessEventPublisher;
 import com.walmartlabs.concord.runtime.common.StateManager;
 import com.walmartlabs.concord.runtime.common.cfg.RunnerConfiguration;
+import com.walmartlabs.concord.runtime.common.injector.IndexedClassFinder;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.sdk.Task;
 import io.takari.bpm.api.*;
-import org.eclipse.sisu.space.BeanScanning;
 import org.eclipse.sisu.space.SpaceModule;
 import org.eclipse.sisu.space.URLClassSpace;
 import org.eclipse.sisu.wire.WireModule;
@@ -118,11 +122,12 @@ public class Main {
         String sessionToken = getSessionToken(baseDir);
         heartbeat.start(instanceId, sessionToken);
 
-        ProcessApiClient processApiClient = new ProcessApiClient(runnerCfg,
-                apiClientFactory.create(ApiClientConfiguration.builder()
-                        .sessionToken(sessionToken)
-                        .txId(instanceId)
-                        .build()));
+        ApiClient apiClient = apiClientFactory.create(ApiClientConfiguration.builder()
+                .sessionToken(sessionToken)
+                .txId(instanceId)
+                .build());
+
+        ProcessApiClient processApiClient = new ProcessApiClient(runnerCfg, apiClient);
 
         processApiClient.updateStatus(instanceId, runnerCfg.agentId(), ProcessEntry.StatusEnum.RUNNING);
 
@@ -133,10 +138,12 @@ public class Main {
             log.info("Ready to start in {}ms", (t3 - t2));
         }
 
-        executeProcess(instanceId.toString(), checkpointManager, baseDir);
+        try (ProcessEventPublisher eventPublisher = new ProcessEventPublisher(runnerCfg, instanceId, new ProcessEventsApi(apiClient))) {
+            executeProcess(instanceId.toString(), checkpointManager, eventPublisher, baseDir);
+        }
     }
 
-    private void executeProcess(String instanceId, CheckpointManager checkpointManager, Path baseDir) throws ExecutionException {
+    private void executeProcess(String instanceId, CheckpointManager checkpointManager, ProcessEventPublisher eventPublisher, Path baseDir) throws ExecutionException {
         // read the request data
         Map<String, Object> req = readRequest(baseDir);
 
@@ -149,7 +156,7 @@ public class Main {
         // read the list of metadata variables
         Set<String> metaVariables = getMetaVariables(req);
 
-        Engine engine = engineFactory.create(project, baseDir, activeProfiles, metaVariables);
+        Engine engine = engineFactory.create(project, baseDir, activeProfiles, metaVariables, eventPublisher);
 
         Map<String, Object> resumeCheckpointReq = null;
         while (true) {
@@ -260,8 +267,9 @@ public class Main {
     private static ProjectDefinition loadProject(Path baseDir) throws ExecutionException {
         try {
             // assume all imports were processed by the agent
+            // the server might've already parsed the same files
             return new ProjectLoader(new NoopImportManager())
-                    .loadProject(baseDir, new NoopImportsNormalizer())
+                    .loadProject(baseDir, new NoopImportsNormalizer(), new WorkspaceProcessDefinitionCache(baseDir, true))
                     .getProjectDefinition();
         } catch (Exception e) {
             throw new ExecutionException("Error while loading a project", e);
@@ -557,6 +565,7 @@ public class Main {
 
     private static Injector createInjector(RunnerConfiguration runnerCfg, ClassLoader depsClassLoader) {
         ClassLoader cl = Main.class.getClassLoader();
+        Path indexCacheDir = getIndexCacheDir(runnerCfg);
 
         Module cfg = new AbstractModule() {
             @Override
@@ -593,12 +602,21 @@ public class Main {
                 cfg,
                 tasks,
                 taskCallModule,
-                new SpaceModule(new URLClassSpace(cl), BeanScanning.CACHE),
-                new SpaceModule(new URLClassSpace(depsClassLoader), BeanScanning.CACHE));
+                // the runner's JAR includes all its dependencies, its index is incomplete
+                new SpaceModule(new URLClassSpace(cl), new IndexedClassFinder(indexCacheDir, false)),
+                new SpaceModule(new URLClassSpace(depsClassLoader), new IndexedClassFinder(indexCacheDir, true)));
 
         return Guice.createInjector(m);
     }
 
+    private static Path getIndexCacheDir(RunnerConfiguration runnerCfg) {
+        String s = runnerCfg.dependencyManager().cacheDir();
+        if (s == null) {
+            return null;
+        }
+        return Paths.get(s).resolve(IndexedClassFinder.CACHE_DIR_NAME);
+    }
+
     private static void saveLastError(Path baseDir, Throwable t) {
         Path attachmentsDir = baseDir.resolve(InternalConstants.Files.JOB_ATTACHMENTS_DIR_NAME);
 
@@ -20,10 +20,8 @@ package com.walmartlabs.concord.runner.engine;
  * =====
  */
 
-import com.walmartlabs.concord.client.ApiClientConfiguration;
-import com.walmartlabs.concord.client.ApiClientFactory;
 import com.walmartlabs.concord.client.ProcessEventRequest;
-import com.walmartlabs.concord.client.ProcessEventsApi;
+import com.walmartlabs.concord.runtime.common.ProcessEventPublisher;
 import io.takari.bpm.ProcessDefinitionProvider;
 import io.takari.bpm.ProcessDefinitionUtils;
 import io.takari.bpm.api.ExecutionException;
@@ -39,18 +37,17 @@ import java.time.Instant;
 import java.time.ZoneOffset;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 import java.util.function.Predicate;
 
 public class ElementEventProcessor {
 
     private static final Logger log = LoggerFactory.getLogger(ElementEventProcessor.class);
 
-    private final ApiClientFactory apiClientFactory;
+    private final ProcessEventPublisher eventPublisher;
     private final ProcessDefinitionProvider processDefinitionProvider;
 
-    public ElementEventProcessor(ApiClientFactory apiClientFactory, ProcessDefinitionProvider processDefinitionProvider) {
-        this.apiClientFactory = apiClientFactory;
+    public ElementEventProcessor(ProcessEventPublisher eventPublisher, ProcessDefinitionProvider processDefinitionProvider) {
+        this.eventPublisher = eventPublisher;
         this.processDefinitionProvider = processDefinitionProvider;
     }
 
@@ -95,14 +92,9 @@ public class ElementEventProcessor {
             req.setData(e);
             req.setEventDate(Instant.now().atOffset(ZoneOffset.UTC));
 
-            ProcessEventsApi client = new ProcessEventsApi(apiClientFactory.create(
-                    ApiClientConfiguration.builder()
-                            .sessionToken(event.getSessionToken())
-                            .txId(UUID.fromString(event.getInstanceId()))
-                            .build()));
-            client.event(UUID.fromString(event.getInstanceId()), req);
+            eventPublisher.publish(req);
         } catch (Exception e) {
-            log.warn("process ['{}'] -> transfer error: {}", event.getInstanceId(), e.getMessage());
+            log.warn("process ['{}'] -> error while preparing the event: {}", event.getInstanceId(), e.getMessage());
         }
     }
 
@@ -29,6 +29,7 @@ import com.walmartlabs.concord.runner.PolicyEngineHolder;
 import com.walmartlabs.concord.runner.VariablesSnapshotListener;
 import com.walmartlabs.concord.runner.engine.el.InjectVariableELResolver;
 import com.walmartlabs.concord.runner.engine.el.TaskResolver;
+import com.walmartlabs.concord.runtime.common.ProcessEventPublisher;
 import com.walmartlabs.concord.runtime.common.cfg.RunnerConfiguration;
 import com.walmartlabs.concord.sdk.Context;
 import com.walmartlabs.concord.sdk.Task;
@@ -88,7 +89,8 @@ public class EngineFactory {
     public Engine create(ProjectDefinition project,
                          Path baseDir,
                          Collection<String> activeProfiles,
-                         Set<String> metaVariables) {
+                         Set<String> metaVariables,
+                         ProcessEventPublisher eventPublisher) {
 
         Path attachmentsDir = baseDir.resolve(InternalConstants.Files.JOB_ATTACHMENTS_DIR_NAME);
         Path stateDir = attachmentsDir.resolve(InternalConstants.Files.JOB_STATE_DIR_NAME);
@@ -142,7 +144,7 @@ public class EngineFactory {
         cfg.setWrapAllExceptionsAsBpmnErrors(true);
         cfg.setCopyAllCallActivityOutVariables(true);
 
-        ElementEventProcessor eventProcessor = new ElementEventProcessor(apiClientFactory, adapter.processes());
+        ElementEventProcessor eventProcessor = new ElementEventProcessor(eventPublisher, adapter.processes());
         ProcessOutVariables outVariables = new ProcessOutVariables(contextFactory);
 
         List<TaskInterceptor> taskInterceptors = new ArrayList<>();
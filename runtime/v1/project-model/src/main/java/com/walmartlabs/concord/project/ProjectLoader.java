@@ -21,6 +21,7 @@ package com.walmartlabs.concord.project;
  */
 
 import com.walmartlabs.concord.common.ConfigurationUtils;
+import com.walmartlabs.concord.common.ProcessDefinitionCache;
 import com.walmartlabs.concord.imports.ImportManager;
 import com.walmartlabs.concord.imports.Imports;
 import com.walmartlabs.concord.project.model.Profile;
@@ -45,9 +46,12 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.stream.Collectors;
 
 public class ProjectLoader {
 
+    private static final String CACHE_KIND = "concord-v1";
+
     private final ImportManager importManager;
     private final YamlParser parser = new YamlParser();
 
@@ -74,56 +78,49 @@ public class ProjectLoader {
      *                      checkouts.
      */
     public Result loadProject(Path workDir, ImportsNormalizer importsNormalizer) throws Exception {
+        return loadProject(workDir, importsNormalizer, null);
+    }
+
+    /**
+     * Same as {@link #loadProject(Path, ImportsNormalizer)}, but uses
+     * the specified cache of parsed definitions. If the hash of the project
+     * files (including the imported ones) matches a cached definition,
+     * the files are not parsed.
+     */
+    public Result loadProject(Path workDir, ImportsNormalizer importsNormalizer, ProcessDefinitionCache cache) throws Exception {
         workDir = workDir.normalize().toAbsolutePath();
 
         ProjectDefinition initial = initialLoad(workDir);
-        Resources resources = initial.getResources();
 
         Imports imports = importsNormalizer.normalize(initial.getImports());
         List<Snapshot> snapshots = importManager.process(imports, workDir);
 
-        ProjectDefinitionBuilder b = new ProjectDefinitionBuilder(parser);
-
-        List<String> projectPaths = resources.getProjectFilePaths();
-        if (projectPaths != null) {
-            for (String n : projectPaths) {
-                Path p = assertLocal(workDir, workDir.resolve(n));
-                if (Files.exists(p)) {
-                    b.addProjects(p);
-                }
-            }
-        }
+        List<ProjectFile> files = listProjectFiles(workDir, initial.getResources());
 
-        for (String n : Constants.Files.PROJECT_ROOT_FILE_NAMES) {
-            Path p = assertLocal(workDir, workDir.resolve(n));
-            if (Files.exists(p)) {
-                b.addProjectFile(workDir, p);
-                break;
-            }
-        }
+        String hash = null;
+        if (cache != null) {
+            hash = ProcessDefinitionCache.hash(CACHE_KIND, workDir, files.stream()
+                    .map(ProjectFile::getPath)
+                    .collect(Collectors.toList()));
 
-        List<String> definitionPaths = resources.getDefinitionPaths();
-        if (definitionPaths != null) {
-            for (String n : definitionPaths) {
-                Path p = assertLocal(workDir, workDir.resolve(n));
-                if (Files.exists(p)) {
-                    b.addDefinitions(p);
-                }
+            byte[] cached = cache.get(hash);
+            ProjectDefinition pd = cached != null ? ProcessDefinitionCache.deserialize(cached, ProjectDefinition.class) : null;
+            if (pd != null) {
+                return new Result(snapshots, new ProjectDefinition(pd, imports));
             }
         }
 
-        List<String> profilesPaths = resources.getProfilesPaths();
-        if (profilesPaths != null) {
-            for (String n : profilesPaths) {
-                Path p = assertLocal(workDir, workDir.resolve(n));
-                if (Files.exists(p)) {
-                    b.addProfiles(p);
-                }
-            }
+        ProjectDefinitionBuilder b = new ProjectDefinitionBuilder(parser);
+        for (ProjectFile f : files) {
+            b.load(workDir, f);
         }
 
         ProjectDefinition pd = b.build();
 
+        if (cache != null) {
+            cache.put(hash, ProcessDefinitionCache.serialize(pd));
+        }
+
         // save the normalized imports, so the exact same workDir structure
         // can be re-created later (e.g. by the Agent)
         pd = new ProjectDefinition(pd, imports);
@@ -160,6 +157,72 @@ public class ProjectLoader {
         return b.build();
     }
 
+    /**
+     * Lists all files that must be loaded by {@link #loadProject(Path, ImportsNormalizer)},
+     * in the order of loading.
+     */
+    private static List<ProjectFile> listProjectFiles(Path workDir, Resources resources) throws IOException {
+        List<ProjectFile> result = new ArrayList<>();
+
+        List<String> projectPaths = resources.getProjectFilePaths();
+        if (projectPaths != null) {
+            for (String n : projectPaths) {
+                List<Path> files = listYamlFiles(assertLocal(workDir, workDir.resolve(n)));
+                Collections.sort(files);
+                add(result, ProjectFile.Type.PROJECT, files);
+            }
+        }
+
+        for (String n : Constants.Files.PROJECT_ROOT_FILE_NAMES) {
+            Path p = assertLocal(workDir, workDir.resolve(n));
+            if (Files.exists(p)) {
+                result.add(new ProjectFile(ProjectFile.Type.PROJECT, p));
+                break;
+            }
+        }
+
+        List<String> definitionPaths = resources.getDefinitionPaths();
+        if (definitionPaths != null) {
+            for (String n : definitionPaths) {
+                add(result, ProjectFile.Type.DEFINITIONS, listYamlFiles(assertLocal(workDir, workDir.resolve(n))));
+            }
+        }
+
+        List<String> profilesPaths = resources.getProfilesPaths();
+        if (profilesPaths != null) {
+            for (String n : profilesPaths) {
+                add(result, ProjectFile.Type.PROFILES, listYamlFiles(assertLocal(workDir, workDir.resolve(n))));
+            }
+        }
+
+        return result;
+    }
+
+    private static void add(List<ProjectFile> result, ProjectFile.Type type, List<Path> files) {
+        for (Path f : files) {
+            result.add(new ProjectFile(type, f));
+        }
+    }
+
+    private static List<Path> listYamlFiles(Path path) throws IOException {
+        List<Path> result = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return result;
+        }
+
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (ProjectDefinitionBuilder.isYaml(file)) {
+                    result.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return result;
+    }
+
     private static Path assertLocal(Path baseDir, Path p) throws IOException {
         if (!p.normalize().toAbsolutePath().startsWith(baseDir)) {
             throw new IOException("Invalid resource path, points outside of the base directory: " + p);
@@ -199,51 +262,22 @@ public class ProjectLoader {
 
         }
 
-        public void addDefinitions(Path path) throws IOException {
-            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    if (!isYaml(file)) {
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                    loadDefinitions(path, file);
-                    return FileVisitResult.CONTINUE;
+        public void load(Path baseDir, ProjectFile f) throws IOException {
+            switch (f.getType()) {
+                case PROJECT: {
+                    addProjectFile(baseDir, f.getPath());
+                    break;
                 }
-            });
-        }
-
-        public void addProfiles(Path path) throws IOException {
-            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    if (!isYaml(file)) {
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                    loadProfiles(path, file);
-                    return FileVisitResult.CONTINUE;
+                case DEFINITIONS: {
+                    loadDefinitions(baseDir, f.getPath());
+                    break;
                 }
-            });
-        }
-
-        public void addProjects(Path path) throws IOException {
-            List<Path> files = new ArrayList<>();
-
-            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                    if (isYaml(file)) {
-                        files.add(file);
-                    }
-                    return FileVisitResult.CONTINUE;
+                case PROFILES: {
+                    loadProfiles(baseDir, f.getPath());
+                    break;
                 }
-            });
-
-            Collections.sort(files);
-
-            for (Path f : files) {
-                addProjectFile(path, f);
+                default:
+                    throw new IllegalArgumentException("Unknown file type: " + f.getType());
             }
         }
 
@@ -441,4 +475,29 @@ public class ProjectLoader {
             return projectDefinition;
         }
     }
+
+    private static final class ProjectFile {
+
+        private enum Type {
+            PROJECT,
+            DEFINITIONS,
+            PROFILES
+        }
+
+        private final Type type;
+        private final Path path;
+
+        private ProjectFile(Type type, Path path) {
+            this.type = type;
+            this.path = path;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+    }
 }
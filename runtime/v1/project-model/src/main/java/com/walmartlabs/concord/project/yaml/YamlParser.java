@@ -32,8 +32,10 @@ import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.walmartlabs.concord.project.yaml.model.*;
 import org.yaml.snakeyaml.error.MarkedYAMLException;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 public class YamlParser {
@@ -59,7 +61,7 @@ public class YamlParser {
 
     public YamlProject parseProject(Path baseDir, Path file) throws YamlParserException {
         try {
-            return objectMapper.readValue(file.toFile(), YamlProject.class);
+            return read(baseDir, file, YamlProject.class);
         } catch (IOException e) {
             if (e instanceof JsonProcessingException) {
                 JsonProcessingException jpe = (JsonProcessingException) e;
@@ -71,7 +73,7 @@ public class YamlParser {
 
     public YamlDefinitionFile parseDefinitionFile(Path baseDir, Path path) throws YamlParserException {
         try {
-            return objectMapper.readValue(path.toFile(), YamlDefinitionFile.class);
+            return read(baseDir, path, YamlDefinitionFile.class);
         } catch (IOException e) {
             if (e instanceof JsonProcessingException) {
                 JsonProcessingException jpe = (JsonProcessingException) e;
@@ -95,7 +97,7 @@ public class YamlParser {
 
     public YamlProfileFile parseProfileFile(Path baseDir, Path path) throws YamlParserException {
         try {
-            return objectMapper.readValue(path.toFile(), YamlProfileFile.class);
+            return read(baseDir, path, YamlProfileFile.class);
         } catch (IOException e) {
             if (e instanceof MismatchedInputException) {
                 throw new YamlParserException("Error while loading profiles: " + baseDir.relativize(path) + ". " + e.getMessage());
@@ -104,9 +106,38 @@ public class YamlParser {
         }
     }
 
+    /**
+     * Reads the file using its path relative to {@code baseDir} as the source name.
+     * The name ends up in the {@link JsonLocation}s and the process definition's
+     * source maps, so they don't depend on the location of the working directory.
+     */
+    private <T> T read(Path baseDir, Path file, Class<T> type) throws IOException {
+        try (InputStream in = new SourceInputStream(Files.newInputStream(file), baseDir.relativize(file).toString())) {
+            return objectMapper.readValue(in, type);
+        }
+    }
+
     private static YamlParserException toErr(String msg, JsonProcessingException jpe) {
         JsonLocation loc = jpe.getLocation();
         String originalMsg = jpe.getOriginalMessage();
-        return new YamlParserException(msg + " @ " + loc + ". " + originalMsg);
+        if (loc == null) {
+            return new YamlParserException(msg + ". " + originalMsg);
+        }
+        return new YamlParserException(msg + " @ [Source: " + loc.getSourceRef() + "; line: " + loc.getLineNr() + ", column: " + loc.getColumnNr() + "]. " + originalMsg);
+    }
+
+    private static final class SourceInputStream extends FilterInputStream {
+
+        private final String name;
+
+        private SourceInputStream(InputStream in, String name) {
+            super(in);
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
     }
 }
@@ -20,6 +20,7 @@ package com.walmartlabs.concord.project;
  * =====
  */
 
+import com.walmartlabs.concord.common.ProcessDefinitionCache;
 import com.walmartlabs.concord.imports.ImportManager;
 import com.walmartlabs.concord.project.model.ProjectDefinition;
 import com.walmartlabs.concord.project.yaml.YamlConverterException;
@@ -28,6 +29,7 @@ import org.junit.Test;
 
 import java.net.URI;
 import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.*;
@@ -132,4 +134,51 @@ public class ProjectLoaderTest {
         assertEquals("ttt", ((Map<String, Object>) cfg.get("arguments")).get("abc"));
         assertEquals("234", ((Map<String, Object>) ((Map<String, Object>) cfg.get("arguments")).get("nested")).get("value"));
     }
+
+    @Test
+    public void testCache() throws Exception {
+        ProjectLoader loader = new ProjectLoader(mock(ImportManager.class));
+
+        Map<String, byte[]> data = new HashMap<>();
+        Map<String, Integer> hits = new HashMap<>();
+        ProcessDefinitionCache cache = new ProcessDefinitionCache() {
+            @Override
+            public byte[] get(String hash) {
+                byte[] ab = data.get(hash);
+                if (ab != null) {
+                    hits.merge(hash, 1, Integer::sum);
+                }
+                return ab;
+            }
+
+            @Override
+            public void put(String hash, byte[] ab) {
+                data.put(hash, ab);
+            }
+        };
+
+        URI uri = ClassLoader.getSystemResource("multiProjectFile").toURI();
+
+        ProjectDefinition a = loader.loadProject(Paths.get(uri), new NoopImportsNormalizer(), cache).getProjectDefinition();
+        assertEquals(1, data.size());
+        assertTrue(hits.isEmpty());
+
+        ProjectDefinition b = loader.loadProject(Paths.get(uri), new NoopImportsNormalizer(), cache).getProjectDefinition();
+        assertEquals(1, data.size());
+        assertEquals(Integer.valueOf(1), hits.values().iterator().next());
+
+        assertEquals(a.getFlows().keySet(), b.getFlows().keySet());
+        assertEquals(a.getForms().keySet(), b.getForms().keySet());
+        assertEquals(a.getTriggers().size(), b.getTriggers().size());
+        assertEquals(a.getConfiguration(), b.getConfiguration());
+
+        // source maps don't depend on the workDir's location
+        assertEquals("concord/0.yml", a.getTriggers().get(0).getSourceMap().getSource());
+        assertEquals("concord/0.yml", b.getTriggers().get(0).getSourceMap().getSource());
+
+        // different files - different hash
+        URI other = ClassLoader.getSystemResource("simple").toURI();
+        loader.loadProject(Paths.get(other), new NoopImportsNormalizer(), cache);
+        assertEquals(2, data.size());
+    }
 }
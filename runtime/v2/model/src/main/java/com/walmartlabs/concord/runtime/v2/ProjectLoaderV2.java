@@ -20,6 +20,7 @@ package com.walmartlabs.concord.runtime.v2;
  * =====
  */
 
+import com.walmartlabs.concord.common.ProcessDefinitionCache;
 import com.walmartlabs.concord.imports.ImportManager;
 import com.walmartlabs.concord.imports.Imports;
 import com.walmartlabs.concord.repository.Snapshot;
@@ -40,6 +41,8 @@ import java.util.stream.Stream;
 // TODO rename to ProcessDefinitionLoader?
 public class ProjectLoaderV2 {
 
+    private static final String CACHE_KIND = "concord-v2";
+
     private final ImportManager importManager;
 
     public ProjectLoaderV2(ImportManager importManager) {
@@ -47,6 +50,15 @@ public class ProjectLoaderV2 {
     }
 
     public Result load(Path baseDir, ImportsNormalizer importsNormalizer) throws Exception {
+        return load(baseDir, importsNormalizer, null);
+    }
+
+    /**
+     * @param cache optional cache of parsed definitions. If the hash of
+     *              the definition files (including the imported ones) matches
+     *              a cached definition, the files are not parsed
+     */
+    public Result load(Path baseDir, ImportsNormalizer importsNormalizer, ProcessDefinitionCache cache) throws Exception {
         YamlParserV2 parser = new YamlParserV2();
 
         ProcessDefinition root = loadRoot(parser, baseDir);
@@ -70,6 +82,23 @@ public class ProjectLoaderV2 {
 
         Collections.sort(files);
 
+        String hash = null;
+        if (cache != null) {
+            List<Path> allFiles = new ArrayList<>(files);
+            Path rootFile = findRoot(baseDir);
+            if (rootFile != null) {
+                allFiles.add(rootFile);
+            }
+
+            hash = ProcessDefinitionCache.hash(CACHE_KIND, baseDir, allFiles);
+
+            byte[] cached = cache.get(hash);
+            ProcessDefinition pd = cached != null ? ProcessDefinitionCache.deserialize(cached, ProcessDefinition.class) : null;
+            if (pd != null) {
+                return new Result(snapshots, pd);
+            }
+        }
+
         List<ProcessDefinition> definitions = new ArrayList<>();
         for (Path p : files) {
             definitions.add(parser.parse(baseDir, p));
@@ -85,14 +114,28 @@ public class ProjectLoaderV2 {
 
         // ./concord/forms/**/index.html
 
-        return new Result(snapshots, merge(definitions));
+        ProcessDefinition pd = merge(definitions);
+
+        if (cache != null) {
+            cache.put(hash, ProcessDefinitionCache.serialize(pd));
+        }
+
+        return new Result(snapshots, pd);
     }
 
     private ProcessDefinition loadRoot(YamlParserV2 parser, Path baseDir) throws IOException {
+        Path p = findRoot(baseDir);
+        if (p != null) {
+            return parser.parse(baseDir, p);
+        }
+        return null;
+    }
+
+    private static Path findRoot(Path baseDir) {
         for (String fileName : Constants.Files.PROJECT_ROOT_FILE_NAMES) {
             Path p = baseDir.resolve(fileName);
             if (Files.exists(p)) {
-                return parser.parse(baseDir, p);
+                return p;
             }
         }
         return null;
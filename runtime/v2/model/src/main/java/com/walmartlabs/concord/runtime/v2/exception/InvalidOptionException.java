@@ -0,0 +1,44 @@
+package com.walmartlabs.concord.runtime.v2.exception;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.core.JsonLocation;
+
+/**
+ * An option which is valid on its own, but not in combination with
+ * the step's other options.
+ */
+public class InvalidOptionException extends YamlProcessingException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String message;
+
+    public InvalidOptionException(String message, JsonLocation location) {
+        super(location);
+        this.message = message;
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+}
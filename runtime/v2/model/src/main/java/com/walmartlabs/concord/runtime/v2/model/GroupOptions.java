@@ -41,6 +41,13 @@ public interface GroupOptions extends StepOptions {
     @Nullable
     WithItems withItems();
 
+    /**
+     * Maximum number of items processed at the same time.
+     * Applies only to {@code parallelWithItems}.
+     */
+    @Nullable
+    Integer parallelism();
+
     static ImmutableGroupOptions.Builder builder() {
         return ImmutableGroupOptions.builder();
     }
@@ -21,17 +21,15 @@ package com.walmartlabs.concord.runtime.v2.model;
  */
 
 import com.fasterxml.jackson.core.JsonLocation;
-import com.walmartlabs.concord.runtime.v2.parser.SimpleOptions;
-
 import java.util.List;
 
-public class ParallelBlock extends AbstractStep<SimpleOptions> {
+public class ParallelBlock extends AbstractStep<ParallelBlockOptions> {
 
     private static final long serialVersionUID = 1L;
 
     private final List<Step> steps;
 
-    public ParallelBlock(JsonLocation location, SimpleOptions options, List<Step> steps) {
+    public ParallelBlock(JsonLocation location, ParallelBlockOptions options, List<Step> steps) {
         super(location, options);
         this.steps = steps;
     }
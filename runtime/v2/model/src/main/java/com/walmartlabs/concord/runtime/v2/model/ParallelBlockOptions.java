@@ -0,0 +1,43 @@
+package com.walmartlabs.concord.runtime.v2.model;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.runtime.v2.parser.StepOptions;
+import org.immutables.value.Value;
+
+import javax.annotation.Nullable;
+
+@Value.Immutable
+@Value.Style(jdkOnly = true)
+public interface ParallelBlockOptions extends StepOptions {
+
+    long serialVersionUID = 1L;
+
+    /**
+     * Maximum number of the block's steps running at the same time.
+     */
+    @Nullable
+    Integer maxParallelism();
+
+    static ImmutableParallelBlockOptions.Builder builder() {
+        return ImmutableParallelBlockOptions.builder();
+    }
+}
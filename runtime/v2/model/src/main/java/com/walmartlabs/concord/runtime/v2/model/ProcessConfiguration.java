@@ -83,6 +83,13 @@ public interface ProcessConfiguration extends Serializable {
         return Collections.emptyMap();
     }
 
+    /**
+     * Maximum number of the process' threads (e.g. {@code parallel} block
+     * branches) running at the same time.
+     */
+    @Nullable
+    Integer maxParallelism();
+
     static ImmutableProcessConfiguration.Builder builder() {
         return ImmutableProcessConfiguration.builder();
     }
@@ -95,6 +102,7 @@ public interface ProcessConfiguration extends Serializable {
                 .arguments(ConfigurationUtils.deepMerge(a.arguments(), b.arguments()))
                 .initiator(b.initiator() != null ? b.initiator() : a.initiator())
                 .currentUser(b.currentUser() != null ? b.currentUser() : a.currentUser())
+                .maxParallelism(b.maxParallelism() != null ? b.maxParallelism() : a.maxParallelism())
                 .build();
     }
 }
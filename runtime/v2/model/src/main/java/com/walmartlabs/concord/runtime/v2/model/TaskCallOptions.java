@@ -47,6 +47,13 @@ public interface TaskCallOptions extends StepOptions {
     @Nullable
     WithItems withItems();
 
+    /**
+     * Maximum number of items processed at the same time.
+     * Applies only to {@code parallelWithItems}.
+     */
+    @Nullable
+    Integer parallelism();
+
     @Nullable
     Retry retry();
 
@@ -34,6 +34,28 @@ public interface WithItems extends Serializable {
         return ImmutableWithItems.of(items);
     }
 
+    static WithItems parallel(Serializable items) {
+        return ImmutableWithItems.of(items).withMode(Mode.PARALLEL);
+    }
+
     @Value.Parameter
     Serializable value();
+
+    @Value.Default
+    default Mode mode() {
+        return Mode.SERIAL;
+    }
+
+    enum Mode {
+
+        /**
+         * The items are processed one by one.
+         */
+        SERIAL,
+
+        /**
+         * Each item is processed in a separate thread.
+         */
+        PARALLEL
+    }
 }
@@ -27,8 +27,7 @@ import io.takari.parc.Parser;
 
 import static com.walmartlabs.concord.runtime.v2.parser.ExpressionGrammar.expression;
 import static com.walmartlabs.concord.runtime.v2.parser.GrammarMisc.*;
-import static com.walmartlabs.concord.runtime.v2.parser.GrammarOptions.optional;
-import static com.walmartlabs.concord.runtime.v2.parser.GrammarOptions.options;
+import static com.walmartlabs.concord.runtime.v2.parser.GrammarOptions.*;
 import static com.walmartlabs.concord.runtime.v2.parser.GrammarV2.mapVal;
 import static com.walmartlabs.concord.runtime.v2.parser.GrammarV2.maybeInt;
 import static io.takari.parc.Combinators.or;
@@ -48,6 +47,14 @@ public final class CommonGrammar {
     public static final Parser<Atom, Retry> retryVal =
             orError(retry, YamlValueType.RETRY);
 
+    /**
+     * {@code withItems} and {@code parallelWithItems} are mutually exclusive,
+     * {@code parallelism} is only valid with {@code parallelWithItems}.
+     */
+    public static <O> Parser<Atom, O> withItemsOptions(Parser<Atom, O> p) {
+        return requires(exclusive(p, "withItems", "parallelWithItems"), "parallelism", "parallelWithItems");
+    }
+
     private CommonGrammar() {
     }
 }
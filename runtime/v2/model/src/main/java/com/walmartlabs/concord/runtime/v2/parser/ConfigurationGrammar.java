@@ -42,7 +42,8 @@ public final class ConfigurationGrammar {
                                     optional("runtime", stringVal.map(o::runtime)),
                                     optional("entryPoint", stringVal.map(o::entryPoint)),
                                     optional("dependencies", stringArrayVal.map(o::dependencies)),
-                                    optional("arguments", mapVal.map(o::arguments))))
+                                    optional("arguments", mapVal.map(o::arguments)),
+                                    optional("maxParallelism", positiveIntVal.map(o::maxParallelism))))
                             .map(ImmutableProcessConfiguration.Builder::build));
 
     public static final Parser<Atom, ProcessConfiguration> processCfgVal =
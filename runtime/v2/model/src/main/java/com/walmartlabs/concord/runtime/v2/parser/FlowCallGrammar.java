@@ -27,6 +27,7 @@ import com.walmartlabs.concord.runtime.v2.model.WithItems;
 import io.takari.parc.Parser;
 
 import static com.walmartlabs.concord.runtime.v2.parser.CommonGrammar.retryVal;
+import static com.walmartlabs.concord.runtime.v2.parser.CommonGrammar.withItemsOptions;
 import static com.walmartlabs.concord.runtime.v2.parser.GrammarMisc.satisfyField;
 import static com.walmartlabs.concord.runtime.v2.parser.GrammarMisc.with;
 import static com.walmartlabs.concord.runtime.v2.parser.GrammarOptions.optional;
@@ -37,13 +38,15 @@ public final class FlowCallGrammar {
 
     private static final Parser<Atom, FlowCallOptions> callOptions =
             with(FlowCallOptions::builder,
-                    o -> options(
+                    o -> withItemsOptions(options(
                             optional("in", mapVal.map(o::input)),
                             optional("out", stringVal.map(o::out)),
                             optional("meta", mapVal.map(o::meta)),
                             optional("withItems", nonNullVal.map(v -> o.withItems(WithItems.of(v)))),
+                            optional("parallelWithItems", nonNullVal.map(v -> o.withItems(WithItems.parallel(v)))),
+                            optional("parallelism", positiveIntVal.map(o::parallelism)),
                             optional("retry", retryVal.map(o::retry))
-                    ))
+                    )))
                     .map(ImmutableFlowCallOptions.Builder::build);
 
     public static final Parser<Atom, FlowCall> callFull =
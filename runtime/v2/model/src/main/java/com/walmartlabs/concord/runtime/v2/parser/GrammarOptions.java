@@ -21,6 +21,7 @@ package com.walmartlabs.concord.runtime.v2.parser;
  */
 
 import com.fasterxml.jackson.core.JsonToken;
+import com.walmartlabs.concord.runtime.v2.exception.InvalidOptionException;
 import com.walmartlabs.concord.runtime.v2.exception.MandatoryFieldNotFoundException;
 import com.walmartlabs.concord.runtime.v2.exception.UnknownOptionException;
 import io.takari.parc.Input;
@@ -173,6 +174,53 @@ public final class GrammarOptions {
         };
     }
 
+    /**
+     * Fails if more than one of the specified options is present.
+     */
+    public static <O> Parser<Atom, O> exclusive(Parser<Atom, O> p, String... names) {
+        List<String> exclusive = Arrays.asList(names);
+        return in -> {
+            Result<Atom, List<KV<String, YamlValue>>> yamlOptions = unparsedOptionsVal.apply(in);
+            if (yamlOptions.isSuccess()) {
+                List<KV<String, YamlValue>> found = yamlOptions.toSuccess().getResult().stream()
+                        .filter(kv -> exclusive.contains(kv.getKey()))
+                        .collect(Collectors.toList());
+
+                if (found.size() > 1) {
+                    throw new InvalidOptionException("Options " + quote(found.stream().map(KV::getKey).collect(Collectors.toList())) +
+                            " can't be used together", found.get(1).getValue().getLocation());
+                }
+            }
+
+            return p.apply(in);
+        };
+    }
+
+    /**
+     * Fails if the {@code option} is present without the {@code required} option.
+     */
+    public static <O> Parser<Atom, O> requires(Parser<Atom, O> p, String option, String required) {
+        return in -> {
+            Result<Atom, List<KV<String, YamlValue>>> yamlOptions = unparsedOptionsVal.apply(in);
+            if (yamlOptions.isSuccess()) {
+                List<KV<String, YamlValue>> opts = yamlOptions.toSuccess().getResult();
+                boolean hasRequired = opts.stream().anyMatch(kv -> kv.getKey().equals(required));
+
+                Optional<KV<String, YamlValue>> o = opts.stream().filter(kv -> kv.getKey().equals(option)).findFirst();
+                if (o.isPresent() && !hasRequired) {
+                    throw new InvalidOptionException("Option '" + option + "' can only be used with '" + required + "'",
+                            o.get().getValue().getLocation());
+                }
+            }
+
+            return p.apply(in);
+        };
+    }
+
+    private static String quote(List<String> names) {
+        return names.stream().map(n -> "'" + n + "'").collect(Collectors.joining(" and "));
+    }
+
     private static <O> void assertMandatoryOptions(Set<String> yamlOptions, List<Option<? extends O>> options) {
         List<String> notFoundMandatoryOptions = new ArrayList<>();
         for (Option<? extends O> o : options) {
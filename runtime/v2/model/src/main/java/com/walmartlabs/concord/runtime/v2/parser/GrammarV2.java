@@ -55,6 +55,7 @@ public final class GrammarV2 {
 
     public static final Parser<Atom, Serializable> anyVal = value.map(YamlValue::getValue);
     public static final Parser<Atom, Integer> intVal = value.map(v -> v.getValue(YamlValueType.INT));
+    public static final Parser<Atom, Integer> positiveIntVal = value.map(GrammarV2::positiveIntConverter);
     public static final Parser<Atom, String> stringVal = value.map(v -> v.getValue(YamlValueType.STRING));
     public static final Parser<Atom, Boolean> booleanVal = value.map(v -> v.getValue(YamlValueType.BOOLEAN));
     public static final Parser<Atom, Map<String, Serializable>> mapVal = value.map(v -> v.getValue(YamlValueType.OBJECT));
@@ -201,6 +202,24 @@ public final class GrammarV2 {
         }
     }
 
+    private static Integer positiveIntConverter(YamlValue v) {
+        if (v.getType() != YamlValueType.INT) {
+            // will throw exception
+            v.getValue(YamlValueType.POSITIVE_INT);
+        }
+
+        Integer i = v.getValue(YamlValueType.INT);
+        if (i <= 0) {
+            throw new InvalidValueTypeException.Builder()
+                    .location(v.getLocation())
+                    .expected(YamlValueType.POSITIVE_INT)
+                    .actual(v.getType())
+                    .message("the value must be greater than zero, got: " + i)
+                    .build();
+        }
+        return i;
+    }
+
     private GrammarV2() {
     }
 }
@@ -23,6 +23,7 @@ package com.walmartlabs.concord.runtime.v2.parser;
 import com.walmartlabs.concord.runtime.v2.model.*;
 import io.takari.parc.Parser;
 
+import static com.walmartlabs.concord.runtime.v2.parser.CommonGrammar.withItemsOptions;
 import static com.walmartlabs.concord.runtime.v2.parser.GrammarMisc.satisfyField;
 import static com.walmartlabs.concord.runtime.v2.parser.GrammarMisc.with;
 import static com.walmartlabs.concord.runtime.v2.parser.GrammarOptions.optional;
@@ -34,11 +35,13 @@ public final class GroupGrammar {
 
     private static final Parser<Atom, GroupOptions> groupOptions =
             with(GroupOptions::builder,
-                    o -> options(
+                    o -> withItemsOptions(options(
                             optional("error", stepsVal.map(o::errorSteps)),
                             optional("withItems", nonNullVal.map(v -> o.withItems(WithItems.of(v)))),
+                            optional("parallelWithItems", nonNullVal.map(v -> o.withItems(WithItems.parallel(v)))),
+                            optional("parallelism", positiveIntVal.map(o::parallelism)),
                             optional("meta", mapVal.map(o::meta))
-                    ))
+                    )))
                     .map(ImmutableGroupOptions.Builder::build);
 
     private static final Parser<Atom, GroupOfSteps> groupDef(Atom a) {
@@ -28,6 +28,7 @@ import com.walmartlabs.concord.runtime.v2.model.WithItems;
 import io.takari.parc.Parser;
 
 import static com.walmartlabs.concord.runtime.v2.parser.CommonGrammar.retryVal;
+import static com.walmartlabs.concord.runtime.v2.parser.CommonGrammar.withItemsOptions;
 import static com.walmartlabs.concord.runtime.v2.parser.GrammarMisc.*;
 import static com.walmartlabs.concord.runtime.v2.parser.GrammarOptions.optional;
 import static com.walmartlabs.concord.runtime.v2.parser.GrammarOptions.options;
@@ -37,13 +38,15 @@ public final class TaskGrammar {
 
     private static final Parser<Atom, TaskCallOptions> taskOptions =
             with(TaskCallOptions::builder,
-                    o -> options(
+                    o -> withItemsOptions(options(
                             optional("in", mapVal.map(o::input)),
                             optional("out", stringVal.map(o::out)),
                             optional("meta", mapVal.map(o::meta)),
                             optional("withItems", nonNullVal.map(v -> o.withItems(WithItems.of(v)))),
+                            optional("parallelWithItems", nonNullVal.map(v -> o.withItems(WithItems.parallel(v)))),
+                            optional("parallelism", positiveIntVal.map(o::parallelism)),
                             optional("retry", retryVal.map(o::retry))
-                    ))
+                    )))
                     .map(ImmutableTaskCallOptions.Builder::build);
 
     private static final Parser<Atom, TaskCallOptions> taskShortOptions =
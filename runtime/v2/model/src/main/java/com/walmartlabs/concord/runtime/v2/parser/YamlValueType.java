@@ -33,6 +33,7 @@ public final class YamlValueType<T> {
     public static final YamlValueType<Object> NON_NULL = type("NON_NULL");
 
     public static final YamlValueType<Integer> INT = type("INT");
+    public static final YamlValueType<Integer> POSITIVE_INT = type("POSITIVE_INT");
     public static final YamlValueType<Float> FLOAT = type("FLOAT");
     public static final YamlValueType<Boolean> BOOLEAN = type("BOOLEAN");
     public static final YamlValueType<String> STRING = type("STRING");
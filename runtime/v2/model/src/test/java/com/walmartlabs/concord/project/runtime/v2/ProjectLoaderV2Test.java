@@ -20,6 +20,9 @@ package com.walmartlabs.concord.project.runtime.v2;
  * =====
  */
 
+import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.common.ProcessDefinitionCache;
+import com.walmartlabs.concord.common.WorkspaceProcessDefinitionCache;
 import com.walmartlabs.concord.imports.ImportManager;
 import com.walmartlabs.concord.runtime.v2.NoopImportsNormalizer;
 import com.walmartlabs.concord.runtime.v2.ProjectLoaderV2;
@@ -28,11 +31,13 @@ import com.walmartlabs.concord.runtime.v2.model.ProcessDefinition;
 import org.junit.Test;
 
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
 
 public class ProjectLoaderV2Test {
@@ -56,4 +61,72 @@ public class ProjectLoaderV2Test {
         assertEquals("ttt", cfg.arguments().get("abc"));
         assertEquals("234", ((Map<String, Object>) cfg.arguments().get("nested")).get("value"));
     }
+
+    @Test
+    public void testWorkspaceCache() throws Exception {
+        ProjectLoaderV2 loader = new ProjectLoaderV2(mock(ImportManager.class));
+
+        Path workDir = Files.createTempDirectory("test");
+        try {
+            IOUtils.copy(Paths.get(ClassLoader.getSystemResource("multiProjectFile").toURI()), workDir);
+
+            // the server parses the files and saves the definition into the workspace
+            ProcessDefinition a = loader.load(workDir, new NoopImportsNormalizer(), new WorkspaceProcessDefinitionCache(workDir)).getProjectDefinition();
+            assertTrue(Files.exists(WorkspaceProcessDefinitionCache.file(workDir)));
+
+            // the runtime uses the saved definition
+            CountingCache cache = new CountingCache(workDir);
+            ProcessDefinition b = loader.load(workDir, new NoopImportsNormalizer(), cache).getProjectDefinition();
+            assertEquals(1, cache.hits.get());
+            assertEquals(a.flows().keySet(), b.flows().keySet());
+            assertEquals(a.forms().keySet(), b.forms().keySet());
+            assertEquals(a.configuration().arguments(), b.configuration().arguments());
+
+            // tampered file - the files are parsed again
+            Path f = WorkspaceProcessDefinitionCache.file(workDir);
+            byte[] ab = Files.readAllBytes(f);
+            ab[ab.length - 40] ^= 0x01;
+            Files.write(f, ab);
+
+            cache = new CountingCache(workDir);
+            ProcessDefinition c = loader.load(workDir, new NoopImportsNormalizer(), cache).getProjectDefinition();
+            assertEquals(0, cache.hits.get());
+            assertEquals(a.flows().keySet(), c.flows().keySet());
+
+            // stale file - the definition files were modified after the file was saved
+            loader.load(workDir, new NoopImportsNormalizer(), new WorkspaceProcessDefinitionCache(workDir));
+            Files.write(workDir.resolve("concord").resolve("3.concord.yml"), "flows:\n  other:\n  - log: \"bye!\"\n".getBytes());
+
+            cache = new CountingCache(workDir);
+            ProcessDefinition d = loader.load(workDir, new NoopImportsNormalizer(), cache).getProjectDefinition();
+            assertEquals(0, cache.hits.get());
+            assertNotNull(d.flows().get("other"));
+        } finally {
+            IOUtils.deleteRecursively(workDir);
+        }
+    }
+
+    private static class CountingCache implements ProcessDefinitionCache {
+
+        private final ProcessDefinitionCache delegate;
+        private final AtomicInteger hits = new AtomicInteger();
+
+        private CountingCache(Path workDir) {
+            this.delegate = new WorkspaceProcessDefinitionCache(workDir, true);
+        }
+
+        @Override
+        public byte[] get(String hash) {
+            byte[] result = delegate.get(hash);
+            if (result != null) {
+                hits.incrementAndGet();
+            }
+            return result;
+        }
+
+        @Override
+        public void put(String hash, byte[] data) {
+            delegate.put(hash, data);
+        }
+    }
 }
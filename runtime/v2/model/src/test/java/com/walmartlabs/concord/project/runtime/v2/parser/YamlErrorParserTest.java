@@ -693,7 +693,7 @@ public class YamlErrorParserTest extends AbstractParserTest {
     @Test
     public void test215() throws Exception {
         String msg =
-                "(015.yml): Error @ line: 15, col: 14. Unknown options: ['trash' [STRING] @ line: 15, col: 14], expected: [in, out, meta, withItems, retry]. Remove invalid options and/or fix indentation\n" +
+                "(015.yml): Error @ line: 15, col: 14. Unknown options: ['trash' [STRING] @ line: 15, col: 14], expected: [in, out, meta, withItems, parallelWithItems, parallelism, retry]. Remove invalid options and/or fix indentation\n" +
                         "\twhile processing steps:\n" +
                         "\t'task' @ line: 3, col: 7\n" +
                         "\t\t'main' @ line: 2, col: 3\n" +
@@ -742,6 +742,30 @@ public class YamlErrorParserTest extends AbstractParserTest {
         assertErrorMessage("errors/tasks/018.yml", msg);
     }
 
+    @Test
+    public void test219() throws Exception {
+        String msg =
+                "(019.yml): Error @ line: 5, col: 26. Options 'withItems' and 'parallelWithItems' can't be used together\n" +
+                        "\twhile processing steps:\n" +
+                        "\t'task' @ line: 3, col: 7\n" +
+                        "\t\t'main' @ line: 2, col: 3\n" +
+                        "\t\t\t'flows' @ line: 1, col: 1";
+
+        assertErrorMessage("errors/tasks/019.yml", msg);
+    }
+
+    @Test
+    public void test220() throws Exception {
+        String msg =
+                "(020.yml): Error @ line: 5, col: 20. Option 'parallelism' can only be used with 'parallelWithItems'\n" +
+                        "\twhile processing steps:\n" +
+                        "\t'task' @ line: 3, col: 7\n" +
+                        "\t\t'main' @ line: 2, col: 3\n" +
+                        "\t\t\t'flows' @ line: 1, col: 1";
+
+        assertErrorMessage("errors/tasks/020.yml", msg);
+    }
+
     @Test
     public void test300() throws Exception {
         String msg =
@@ -941,7 +965,7 @@ public class YamlErrorParserTest extends AbstractParserTest {
     @Test
     public void test315() throws Exception {
         String msg =
-                "(015.yml): Error @ line: 15, col: 14. Unknown options: ['trash' [STRING] @ line: 15, col: 14], expected: [in, out, meta, withItems, retry]. Remove invalid options and/or fix indentation\n" +
+                "(015.yml): Error @ line: 15, col: 14. Unknown options: ['trash' [STRING] @ line: 15, col: 14], expected: [in, out, meta, withItems, parallelWithItems, parallelism, retry]. Remove invalid options and/or fix indentation\n" +
                         "\twhile processing steps:\n" +
                         "\t'call' @ line: 3, col: 7\n" +
                         "\t\t'main' @ line: 2, col: 3\n" +
@@ -976,6 +1000,18 @@ public class YamlErrorParserTest extends AbstractParserTest {
         assertErrorMessage("errors/flowCall/017.yml", msg);
     }
 
+    @Test
+    public void test318() throws Exception {
+        String msg =
+                "(018.yml): Error @ line: 5, col: 18. Options 'parallelWithItems' and 'withItems' can't be used together\n" +
+                        "\twhile processing steps:\n" +
+                        "\t'call' @ line: 3, col: 7\n" +
+                        "\t\t'main' @ line: 2, col: 3\n" +
+                        "\t\t\t'flows' @ line: 1, col: 1";
+
+        assertErrorMessage("errors/flowCall/018.yml", msg);
+    }
+
     @Test
     public void test400() throws Exception {
         String msg =
@@ -1241,7 +1277,7 @@ public class YamlErrorParserTest extends AbstractParserTest {
     @Test
     public void test703() throws Exception {
         String msg =
-                "(003.yml): Error @ line: 5, col: 13. Unknown options: ['trash' [NULL] @ line: 5, col: 13], expected: [error, withItems, meta]. Remove invalid options and/or fix indentation\n" +
+                "(003.yml): Error @ line: 5, col: 13. Unknown options: ['trash' [NULL] @ line: 5, col: 13], expected: [error, withItems, parallelWithItems, parallelism, meta]. Remove invalid options and/or fix indentation\n" +
                         "\twhile processing steps:\n" +
                         "\t'try' @ line: 3, col: 7\n" +
                         "\t\t'main' @ line: 2, col: 3\n" +
@@ -1292,7 +1328,7 @@ public class YamlErrorParserTest extends AbstractParserTest {
     @Test
     public void test707() throws Exception {
         String msg =
-                "(007.yml): Error @ line: 11, col: 13. Unknown options: ['trash' [NULL] @ line: 11, col: 13], expected: [error, withItems, meta]. Remove invalid options and/or fix indentation\n" +
+                "(007.yml): Error @ line: 11, col: 13. Unknown options: ['trash' [NULL] @ line: 11, col: 13], expected: [error, withItems, parallelWithItems, parallelism, meta]. Remove invalid options and/or fix indentation\n" +
                         "\twhile processing steps:\n" +
                         "\t'try' @ line: 3, col: 7\n" +
                         "\t\t'main' @ line: 2, col: 3\n" +
@@ -1313,6 +1349,18 @@ public class YamlErrorParserTest extends AbstractParserTest {
         assertErrorMessage("errors/group/008.yml", msg);
     }
 
+    @Test
+    public void test709() throws Exception {
+        String msg =
+                "(009.yml): Error @ line: 5, col: 20. Option 'parallelism' can only be used with 'parallelWithItems'\n" +
+                        "\twhile processing steps:\n" +
+                        "\t'block' @ line: 3, col: 7\n" +
+                        "\t\t'main' @ line: 2, col: 3\n" +
+                        "\t\t\t'flows' @ line: 1, col: 1";
+
+        assertErrorMessage("errors/group/009.yml", msg);
+    }
+
     @Test
     public void test800() throws Exception {
         String msg =
@@ -1352,7 +1400,7 @@ public class YamlErrorParserTest extends AbstractParserTest {
     @Test
     public void test803() throws Exception {
         String msg =
-                "(003.yml): Error @ line: 5, col: 13. Unknown options: ['trash' [NULL] @ line: 5, col: 13], expected: [meta]. Remove invalid options and/or fix indentation\n" +
+                "(003.yml): Error @ line: 5, col: 13. Unknown options: ['trash' [NULL] @ line: 5, col: 13], expected: [maxParallelism, meta]. Remove invalid options and/or fix indentation\n" +
                         "\twhile processing steps:\n" +
                         "\t'parallel' @ line: 3, col: 7\n" +
                         "\t\t'main' @ line: 2, col: 3\n" +
@@ -1377,7 +1425,7 @@ public class YamlErrorParserTest extends AbstractParserTest {
     @Test
     public void test805() throws Exception {
         String msg =
-                "(005.yml): Error @ line: 7, col: 13. Unknown options: ['trash' [NULL] @ line: 7, col: 13], expected: [meta]. Remove invalid options and/or fix indentation\n" +
+                "(005.yml): Error @ line: 7, col: 13. Unknown options: ['trash' [NULL] @ line: 7, col: 13], expected: [maxParallelism, meta]. Remove invalid options and/or fix indentation\n" +
                         "\twhile processing steps:\n" +
                         "\t'parallel' @ line: 3, col: 7\n" +
                         "\t\t'main' @ line: 2, col: 3\n" +
@@ -1386,6 +1434,19 @@ public class YamlErrorParserTest extends AbstractParserTest {
         assertErrorMessage("errors/parallel/005.yml", msg);
     }
 
+    @Test
+    public void test806() throws Exception {
+        String msg =
+                "(006.yml): Error @ line: 5, col: 23. Invalid value type, expected: POSITIVE_INT, got: INT. Error info: the value must be greater than zero, got: -1\n" +
+                        "\twhile processing steps:\n" +
+                        "\t'maxParallelism' @ line: 5, col: 7\n" +
+                        "\t\t'parallel' @ line: 3, col: 7\n" +
+                        "\t\t\t'main' @ line: 2, col: 3\n" +
+                        "\t\t\t\t'flows' @ line: 1, col: 1";
+
+        assertErrorMessage("errors/parallel/006.yml", msg);
+    }
+
     @Test
     public void test900() throws Exception {
         String msg =
@@ -1768,13 +1829,24 @@ public class YamlErrorParserTest extends AbstractParserTest {
     @Test
     public void test1306() throws Exception {
         String msg =
-                "(006.yml): Error @ line: 8, col: 9. Unknown options: ['trash' [NULL] @ line: 8, col: 9], expected: [runtime, entryPoint, dependencies, arguments]. Remove invalid options and/or fix indentation\n" +
+                "(006.yml): Error @ line: 8, col: 9. Unknown options: ['trash' [NULL] @ line: 8, col: 9], expected: [runtime, entryPoint, dependencies, arguments, maxParallelism]. Remove invalid options and/or fix indentation\n" +
                         "\twhile processing steps:\n" +
                         "\t'configuration' @ line: 1, col: 1";
 
         assertErrorMessage("errors/configuration/006.yml", msg);
     }
 
+    @Test
+    public void test1307() throws Exception {
+        String msg =
+                "(007.yml): Error @ line: 3, col: 19. Invalid value type, expected: POSITIVE_INT, got: INT. Error info: the value must be greater than zero, got: 0\n" +
+                        "\twhile processing steps:\n" +
+                        "\t'maxParallelism' @ line: 3, col: 3\n" +
+                        "\t\t'configuration' @ line: 1, col: 1";
+
+        assertErrorMessage("errors/configuration/007.yml", msg);
+    }
+
     private void assertErrorMessage(String resource, String expectedError) throws Exception {
         try {
             load(resource);
@@ -313,6 +313,23 @@ public class YamlOkParserTest extends AbstractParserTest {
         assertEquals("oneops", t.name());
     }
 
+    // Parallel Block Options
+    @Test
+    public void test010() throws Exception {
+        ProcessDefinition pd = load("010.yml");
+
+        assertEquals(Integer.valueOf(10), pd.configuration().maxParallelism());
+
+        List<Step> main = pd.flows().get("main");
+        assertEquals(1, main.size());
+
+        assertTrue(main.get(0) instanceof ParallelBlock);
+        ParallelBlock p = (ParallelBlock) main.get(0);
+        assertEquals(2, p.getSteps().size());
+        assertEquals(Integer.valueOf(1), p.getOptions().maxParallelism());
+        assertMeta(p.getOptions());
+    }
+
     private static void assertMeta(StepOptions o) {
         assertNotNull(o.meta());
         assertEquals(Collections.singletonMap("m1", (Serializable)"v1"), o.meta());
@@ -0,0 +1,295 @@
+package com.walmartlabs.concord.runtime.v2.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Injector;
+import com.walmartlabs.concord.runtime.common.cfg.RunnerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.walmartlabs.concord.runtime.common.RunnerDaemonProtocol.*;
+
+/**
+ * Long-living runner JVM which executes multiple processes one after another.
+ * <p>
+ * Each process gets its own injector and the dependencies' class loader,
+ * the class loader is closed after the process. The working directory
+ * is passed explicitly and {@code user.dir} points to it during the process.
+ * The process' output is redirected into the log file specified in the request.
+ * <p>
+ * The daemon requests recycling if a process leaves any threads running
+ * (daemon or not, except the JVM's own threads and a few known shared pools)
+ * or if the heap usage after a process exceeds the configured ratio.
+ * The daemon exits if it doesn't receive any requests during the configured
+ * max idle time, e.g. when the agent is gone.
+ * <p>
+ * Not isolated between processes: static state of the runner's own classes,
+ * system properties and other JVM-wide singletons. Relative paths opened
+ * without {@code user.dir} (e.g. by native code or {@link Path#toAbsolutePath()})
+ * still resolve against the daemon's original working directory.
+ *
+ * @see com.walmartlabs.concord.runtime.common.RunnerDaemonProtocol
+ */
+public class DaemonMain {
+
+    private static final Logger log = LoggerFactory.getLogger(DaemonMain.class);
+
+    private static final long THREAD_LEAK_TIMEOUT = 5000;
+
+    /**
+     * JVM-wide pools which outlive the processes but don't hold any per-process state.
+     */
+    private static final String[] SHARED_THREAD_PREFIXES = {
+            "ForkJoinPool.commonPool-worker",
+            "OkHttp ConnectionPool"
+    };
+
+    private final RunnerConfiguration runnerCfg;
+    private final String token;
+    private final double maxHeapUsage;
+    private final long maxIdleTime;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param maxIdleTime max time (ms) to wait for a new request, {@code 0} - wait forever
+     */
+    public DaemonMain(RunnerConfiguration runnerCfg, String token, double maxHeapUsage, long maxIdleTime) {
+        this.runnerCfg = runnerCfg;
+        this.token = token;
+        this.maxHeapUsage = maxHeapUsage;
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    public static void main(String[] args) throws Exception {
+        RunnerConfiguration runnerCfg = Main.readRunnerConfiguration(args);
+
+        String token = getRequiredEnv(TOKEN_ENV_KEY);
+        Path portFile = Paths.get(getRequiredEnv(PORT_FILE_ENV_KEY));
+        double maxHeapUsage = Double.parseDouble(System.getenv().getOrDefault(MAX_HEAP_USAGE_ENV_KEY, "1.0"));
+        long maxIdleTime = Long.parseLong(System.getenv().getOrDefault(MAX_IDLE_TIME_ENV_KEY, "0"));
+
+        new DaemonMain(runnerCfg, token, maxHeapUsage, maxIdleTime).serve(portFile);
+
+        // force exit (helps with runaway threads)
+        System.exit(0);
+    }
+
+    public void serve(Path portFile) throws IOException {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout((int) Math.min(maxIdleTime, Integer.MAX_VALUE));
+
+            // write the port number atomically, the agent waits for the file to appear
+            Path tmp = Files.createTempFile(portFile.getParent(), "port", ".tmp");
+            Files.write(tmp, String.valueOf(server.getLocalPort()).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, portFile, StandardCopyOption.ATOMIC_MOVE);
+
+            log.info("serve -> listening on {}", server.getLocalPort());
+
+            while (true) {
+                Socket s;
+                try {
+                    s = server.accept();
+                } catch (SocketTimeoutException e) {
+                    log.info("serve -> no requests in {}ms, exiting", maxIdleTime);
+                    return;
+                }
+
+                try (Socket ignored = s) {
+                    if (!handle(s)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} if the daemon must be recycled
+     */
+    @SuppressWarnings("unchecked")
+    private boolean handle(Socket s) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+        String line = reader.readLine();
+        if (line == null) {
+            return true;
+        }
+
+        Map<String, Object> req = objectMapper.readValue(line, Map.class);
+        if (!isValidToken(req.get(TOKEN_KEY))) {
+            log.warn("handle -> invalid token, ignoring the request");
+            return true;
+        }
+
+        String instanceId = (String) req.get(INSTANCE_ID_KEY);
+        Path workDir = Paths.get((String) req.get(WORK_DIR_KEY));
+        Path logFile = Paths.get((String) req.get(LOG_FILE_KEY));
+
+        log.info("handle ['{}'] -> starting in {}", instanceId, workDir);
+
+        Set<Thread> threadsBefore = liveThreads();
+
+        int exitCode = run(workDir, logFile);
+
+        boolean recycle = false;
+
+        Set<Thread> leaked = waitForLeakedThreads(threadsBefore, THREAD_LEAK_TIMEOUT);
+        if (!leaked.isEmpty()) {
+            log.warn("handle ['{}'] -> the process left some threads running, recycling: {}", instanceId,
+                    leaked.stream().map(Thread::getName).collect(Collectors.joining(", ")));
+            recycle = true;
+        }
+
+        double heapUsage = heapUsage();
+        if (heapUsage > maxHeapUsage) {
+            log.warn("handle ['{}'] -> heap usage {} exceeds {}, recycling", instanceId, heapUsage, maxHeapUsage);
+            recycle = true;
+        }
+
+        log.info("handle ['{}'] -> done, exit code: {}", instanceId, exitCode);
+
+        Map<String, Object> resp = new HashMap<>();
+        resp.put(EXIT_CODE_KEY, exitCode);
+        resp.put(RECYCLE_KEY, recycle);
+
+        Writer writer = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8);
+        writer.write(objectMapper.writeValueAsString(resp));
+        writer.write('\n');
+        writer.flush();
+
+        return !recycle;
+    }
+
+    private boolean isValidToken(Object value) {
+        if (!(value instanceof String)) {
+            return false;
+        }
+
+        return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                ((String) value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int run(Path workDir, Path logFile) {
+        PrintStream prevOut = System.out;
+        PrintStream prevErr = System.err;
+        ClassLoader prevClassLoader = Thread.currentThread().getContextClassLoader();
+        String prevUserDir = System.getProperty("user.dir");
+
+        try (PrintStream out = new PrintStream(new FileOutputStream(logFile.toFile(), true), true, "UTF-8")) {
+            System.setOut(out);
+            System.setErr(out);
+            // for the code which resolves the working directory using the system property
+            System.setProperty("user.dir", workDir.toAbsolutePath().toString());
+
+            try (InjectorFactory injectorFactory = new InjectorFactory(Main.class.getClassLoader(),
+                    new WorkingDirectory(workDir),
+                    runnerCfg,
+                    new DefaultProcessConfigurationProvider(workDir),
+                    new DefaultServicesModule())) {
+
+                Injector injector = injectorFactory.create();
+                Main.run(injector);
+                return 0;
+            } catch (Throwable t) { // catch both errors and exceptions, same as the regular runner would
+                t.printStackTrace(out);
+                return 1;
+            } finally {
+                System.setOut(prevOut);
+                System.setErr(prevErr);
+                System.setProperty("user.dir", prevUserDir);
+                Thread.currentThread().setContextClassLoader(prevClassLoader);
+            }
+        } catch (IOException e) {
+            log.error("run -> can't open the log file {}: {}", logFile, e.getMessage());
+            return 1;
+        }
+    }
+
+    static Set<Thread> waitForLeakedThreads(Set<Thread> before, long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            Set<Thread> leaked = liveThreads();
+            leaked.removeAll(before);
+            leaked.removeIf(DaemonMain::isShared);
+            if (leaked.isEmpty() || System.currentTimeMillis() >= deadline) {
+                return leaked;
+            }
+
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return leaked;
+            }
+        }
+    }
+
+    static Set<Thread> liveThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(Thread::isAlive)
+                .collect(Collectors.toSet());
+    }
+
+    private static boolean isShared(Thread t) {
+        // the JVM's own threads (reference handler, process reaper, etc.) live in the system group
+        ThreadGroup g = t.getThreadGroup();
+        if (g == null || g.getParent() == null || "InnocuousThreadGroup".equals(g.getName())) {
+            return true;
+        }
+
+        String name = t.getName();
+        for (String p : SHARED_THREAD_PREFIXES) {
+            if (name.startsWith(p)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static double heapUsage() {
+        Runtime rt = Runtime.getRuntime();
+        rt.gc();
+        return (double) (rt.totalMemory() - rt.freeMemory()) / rt.maxMemory();
+    }
+
+    private static String getRequiredEnv(String key) {
+        String s = System.getenv(key);
+        if (s == null) {
+            throw new IllegalArgumentException("Environment variable " + key + " is required");
+        }
+        return s;
+    }
+}
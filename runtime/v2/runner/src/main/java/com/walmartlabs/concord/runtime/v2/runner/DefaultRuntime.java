@@ -21,30 +21,25 @@ package com.walmartlabs.concord.runtime.v2.runner;
  */
 
 import com.walmartlabs.concord.svm.Runtime;
-import com.walmartlabs.concord.svm.State;
-import com.walmartlabs.concord.svm.ThreadId;
-import com.walmartlabs.concord.svm.VM;
+import com.walmartlabs.concord.svm.*;
 
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class DefaultRuntime implements Runtime {
 
     private final VM vm;
     private final Map<Class<?>, ?> services;
-    private final ExecutorService executor;
+    private final Scheduler scheduler;
 
-    public DefaultRuntime(VM vm, Map<Class<?>, ?> services) {
+    public DefaultRuntime(VM vm, Map<Class<?>, ?> services, Scheduler scheduler) {
         this.vm = vm;
         this.services = services;
-
-        this.executor = Executors.newCachedThreadPool();
+        this.scheduler = scheduler;
     }
 
     @Override
     public void spawn(State state, ThreadId threadId) {
-        executor.submit(() -> {
+        scheduler.submit(() -> {
             vm.eval(this, state, threadId);
             return null;
         });
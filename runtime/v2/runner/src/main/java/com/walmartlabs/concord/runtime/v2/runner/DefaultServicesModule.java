@@ -23,17 +23,22 @@ package com.walmartlabs.concord.runtime.v2.runner;
 import com.google.inject.AbstractModule;
 import com.google.inject.multibindings.Multibinder;
 import com.walmartlabs.concord.ApiClient;
+import com.walmartlabs.concord.runtime.common.ProcessEventPublisher;
 import com.walmartlabs.concord.runtime.v2.runner.remote.ApiClientProvider;
+import com.walmartlabs.concord.runtime.v2.runner.remote.ProcessEventPublisherProvider;
 import com.walmartlabs.concord.runtime.v2.runner.remote.TaskCallEventRecordingListener;
 import com.walmartlabs.concord.runtime.v2.runner.snapshots.DefaultSnapshotService;
 import com.walmartlabs.concord.runtime.v2.runner.snapshots.SnapshotService;
 import com.walmartlabs.concord.runtime.v2.runner.tasks.TaskCallListener;
 
+import javax.inject.Singleton;
+
 public class DefaultServicesModule extends AbstractModule {
 
     @Override
     protected void configure() {
         bind(ApiClient.class).toProvider(ApiClientProvider.class);
+        bind(ProcessEventPublisher.class).toProvider(ProcessEventPublisherProvider.class).in(Singleton.class);
 
         bind(SnapshotService.class).to(DefaultSnapshotService.class);
         // TODO bind(DockerService.class)
@@ -25,6 +25,7 @@ import com.google.inject.matcher.AbstractMatcher;
 import com.google.inject.spi.TypeEncounter;
 import com.google.inject.spi.TypeListener;
 import com.walmartlabs.concord.runtime.common.cfg.RunnerConfiguration;
+import com.walmartlabs.concord.runtime.common.injector.IndexedClassFinder;
 import com.walmartlabs.concord.runtime.v2.model.ProcessConfiguration;
 import com.walmartlabs.concord.runtime.v2.runner.tasks.TaskHolder;
 import com.walmartlabs.concord.runtime.v2.sdk.Task;
@@ -50,7 +51,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 // TODO refactor as a builder?
-public class InjectorFactory {
+public class InjectorFactory implements AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(InjectorFactory.class);
 
@@ -70,6 +71,8 @@ public class InjectorFactory {
     private final Module[] modules;
     private final Provider<ProcessConfiguration> processConfigurationProvider;
 
+    private URLClassLoader dependenciesClassLoader;
+
     public InjectorFactory(ClassLoader parentClassLoader,
                            WorkingDirectory workDir,
                            RunnerConfiguration runnerCfg,
@@ -85,7 +88,8 @@ public class InjectorFactory {
 
     public Injector create() throws IOException {
         Collection<String> dependencies = runnerCfg.dependencies();
-        ClassLoader dependenciesClassLoader = loadDependencies(dependencies);
+        URLClassLoader dependenciesClassLoader = loadDependencies(dependencies);
+        this.dependenciesClassLoader = dependenciesClassLoader;
 
         Module tasks = new AbstractModule() {
             @Override
@@ -108,8 +112,10 @@ public class InjectorFactory {
         l.add(new ConfigurationModule(workDir, runnerCfg, processConfigurationProvider));
         l.add(tasks);
         l.add(new TaskCallInterceptorModule());
-        l.add(new SpaceModule(new URLClassSpace(parentClassLoader)));
-        l.add(new SpaceModule(new URLClassSpace(dependenciesClassLoader)));
+        Path indexCacheDir = getIndexCacheDir();
+        // the runner's JAR includes all its dependencies, its index is incomplete
+        l.add(new SpaceModule(new URLClassSpace(parentClassLoader), new IndexedClassFinder(indexCacheDir, false)));
+        l.add(new SpaceModule(new URLClassSpace(dependenciesClassLoader), new IndexedClassFinder(indexCacheDir, true)));
         if (modules != null) {
             l.addAll(Arrays.asList(modules));
         }
@@ -119,6 +125,26 @@ public class InjectorFactory {
         return Guice.createInjector(m);
     }
 
+    /**
+     * Closes the dependencies' class loader created by {@link #create()}.
+     * Only for JVMs which outlive the process, e.g. {@link DaemonMain}.
+     */
+    @Override
+    public void close() throws IOException {
+        if (dependenciesClassLoader != null) {
+            dependenciesClassLoader.close();
+            dependenciesClassLoader = null;
+        }
+    }
+
+    private Path getIndexCacheDir() {
+        String s = runnerCfg.dependencyManager().cacheDir();
+        if (s == null) {
+            return null;
+        }
+        return Paths.get(s).resolve(IndexedClassFinder.CACHE_DIR_NAME);
+    }
+
     private URLClassLoader loadDependencies(Collection<String> dependencies) throws IOException {
         List<URL> urls = toURLs(dependencies);
         return new URLClassLoader(urls.toArray(new URL[0]), InjectorFactory.class.getClassLoader());
@@ -22,6 +22,7 @@ package com.walmartlabs.concord.runtime.v2.runner;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Injector;
+import com.walmartlabs.concord.runtime.common.ProcessEventPublisher;
 import com.walmartlabs.concord.runtime.common.StateManager;
 import com.walmartlabs.concord.runtime.common.cfg.RunnerConfiguration;
 import com.walmartlabs.concord.runtime.v2.model.ProcessConfiguration;
@@ -51,6 +52,14 @@ public class Main {
         ClassLoader parentClassLoader = Main.class.getClassLoader();
         Injector injector = InjectorFactory.createDefault(parentClassLoader, runnerCfg);
 
+        run(injector);
+    }
+
+    /**
+     * Executes the process using the specified injector.
+     * Also used by {@link DaemonMain} to run multiple processes in the same JVM.
+     */
+    static void run(Injector injector) throws Exception {
         ProcessConfiguration cfg = injector.getInstance(ProcessConfiguration.class);
         validate(cfg);
 
@@ -68,11 +77,16 @@ public class Main {
                 .build();
 
         ProcessSnapshot snapshot;
-        Set<String> events = StateManager.readResumeEvents(workDir.getValue()); // TODO make it an interface
-        if (events == null || events.isEmpty()) {
-            snapshot = start(runner, cfg, processArgs);
-        } else {
-            snapshot = resume(runner, workDir.getValue(), cfg, processArgs, events);
+        try {
+            Set<String> events = StateManager.readResumeEvents(workDir.getValue()); // TODO make it an interface
+            if (events == null || events.isEmpty()) {
+                snapshot = start(runner, cfg, processArgs);
+            } else {
+                snapshot = resume(runner, workDir.getValue(), cfg, processArgs, events);
+            }
+        } finally {
+            // send all remaining events before the process status is updated
+            injector.getInstance(ProcessEventPublisher.class).close();
         }
 
         if (isSuspended(snapshot)) {
@@ -111,7 +125,7 @@ public class Main {
         return state;
     }
 
-    private static RunnerConfiguration readRunnerConfiguration(String[] args) throws IOException {
+    static RunnerConfiguration readRunnerConfiguration(String[] args) throws IOException {
         Path src;
         if (args.length > 0) {
             src = Paths.get(args[0]);
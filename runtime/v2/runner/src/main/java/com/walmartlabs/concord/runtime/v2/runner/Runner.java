@@ -21,10 +21,13 @@ package com.walmartlabs.concord.runtime.v2.runner;
  */
 
 import com.google.inject.Injector;
+import com.walmartlabs.concord.common.ProcessDefinitionCache;
+import com.walmartlabs.concord.common.WorkspaceProcessDefinitionCache;
 import com.walmartlabs.concord.imports.NoopImportManager;
 import com.walmartlabs.concord.runtime.common.FormService;
 import com.walmartlabs.concord.runtime.v2.NoopImportsNormalizer;
 import com.walmartlabs.concord.runtime.v2.ProjectLoaderV2;
+import com.walmartlabs.concord.runtime.v2.model.ProcessConfiguration;
 import com.walmartlabs.concord.runtime.v2.model.ProcessDefinition;
 import com.walmartlabs.concord.runtime.v2.runner.compiler.CompilerUtils;
 import com.walmartlabs.concord.runtime.v2.runner.context.ContextFactory;
@@ -57,6 +60,7 @@ public class Runner {
     private final FormService formService;
     private final ProcessStatusCallback statusCallback;
     private final Collection<ExecutionListener> listeners;
+    private final ProcessConfiguration processConfiguration;
 
     private Runner(Builder b) {
         this.instanceId = b.instanceId;
@@ -69,6 +73,7 @@ public class Runner {
         this.formService = b.formService;
         this.statusCallback = b.statusCallback;
         this.listeners = b.listeners;
+        this.processConfiguration = b.processConfiguration;
     }
 
     public ProcessSnapshot start(String entryPoint, Map<String, Object> input) throws Exception {
@@ -77,20 +82,22 @@ public class Runner {
 
         // assume all imports were processed by the agent
         ProjectLoaderV2 loader = new ProjectLoaderV2(new NoopImportManager());
-        ProcessDefinition processDefinition = loader.load(workDir, new NoopImportsNormalizer()).getProjectDefinition();
+        // the server might've already parsed the same files
+        ProcessDefinitionCache cache = new WorkspaceProcessDefinitionCache(workDir, true);
+        ProcessDefinition processDefinition = loader.load(workDir, new NoopImportsNormalizer(), cache).getProjectDefinition();
 
         Command cmd = CompilerUtils.compile(compiler, processDefinition, entryPoint);
-        State state = new InMemoryState(cmd);
+        State state = new ConcurrentState(cmd);
 
         GlobalVariables globalVariables = new GlobalVariablesImpl();
 
-        VM vm = createVM(processDefinition, globalVariables);
-        // update the global variables using the input map by running a special command
-        vm.run(state, new UpdateGlobalVariablesCommand(input));
-        // start the normal execution
-        vm.start(state);
-
-        log.debug("start ['{}'] -> done", entryPoint);
+        try (Scheduler scheduler = createScheduler(processDefinition)) {
+            VM vm = createVM(processDefinition, globalVariables, scheduler);
+            // update the global variables using the input map by running a special command
+            vm.run(state, new UpdateGlobalVariablesCommand(input));
+            // start the normal execution
+            vm.start(state);
+        }
 
         return ProcessSnapshot.builder()
                 .vmState(state)
@@ -106,13 +113,13 @@ public class Runner {
         State state = snapshot.vmState();
         GlobalVariables globalVariables = new GlobalVariablesImpl(snapshot.globalVariables().toMap());
 
-        VM vm = createVM(snapshot.processDefinition(), globalVariables);
-        // update the global variables using the input map by running a special command
-        vm.run(state, new UpdateGlobalVariablesCommand(input));
-        // resume normally
-        vm.resume(state, eventRef);
-
-        log.debug("resume ['{}'] -> done", eventRef);
+        try (Scheduler scheduler = createScheduler(snapshot.processDefinition())) {
+            VM vm = createVM(snapshot.processDefinition(), globalVariables, scheduler);
+            // update the global variables using the input map by running a special command
+            vm.run(state, new UpdateGlobalVariablesCommand(input));
+            // resume normally
+            vm.resume(state, eventRef);
+        }
 
         return ProcessSnapshot.builder()
                 .from(snapshot)
@@ -120,7 +127,17 @@ public class Runner {
                 .build();
     }
 
-    private RuntimeFactory createRuntimeFactory(ProcessDefinition processDefinition, GlobalVariables globalVariables) {
+    private Scheduler createScheduler(ProcessDefinition processDefinition) {
+        // the process' request configuration takes precedence over the project's one
+        Integer maxParallelism = processConfiguration != null ? processConfiguration.maxParallelism() : null;
+        if (maxParallelism == null) {
+            maxParallelism = processDefinition.configuration().maxParallelism();
+        }
+
+        return Scheduler.create(maxParallelism != null ? maxParallelism : Scheduler.DEFAULT_MAX_PARALLELISM);
+    }
+
+    private RuntimeFactory createRuntimeFactory(ProcessDefinition processDefinition, GlobalVariables globalVariables, Scheduler scheduler) {
         Map<Class<?>, Object> m = new HashMap<>();
 
         // collect all "services" that we might need in runtime
@@ -134,11 +151,11 @@ public class Runner {
         m.put(FormService.class, formService);
 
         Map<Class<?>, ?> services = Collections.unmodifiableMap(m);
-        return vm -> new DefaultRuntime(vm, services);
+        return vm -> new DefaultRuntime(vm, services, scheduler);
     }
 
-    private VM createVM(ProcessDefinition processDefinition, GlobalVariables globalVariables) {
-        return new VM(createRuntimeFactory(processDefinition, globalVariables), listeners);
+    private VM createVM(ProcessDefinition processDefinition, GlobalVariables globalVariables, Scheduler scheduler) {
+        return new VM(createRuntimeFactory(processDefinition, globalVariables, scheduler), listeners);
     }
 
     public static class Builder {
@@ -157,6 +174,7 @@ public class Runner {
 
         private ProcessStatusCallback statusCallback;
         private Collection<ExecutionListener> listeners;
+        private ProcessConfiguration processConfiguration;
 
         public Builder injector(Injector injector) {
             this.injector = injector;
@@ -208,6 +226,11 @@ public class Runner {
             return this;
         }
 
+        public Builder processConfiguration(ProcessConfiguration processConfiguration) {
+            this.processConfiguration = processConfiguration;
+            return this;
+        }
+
         public Builder listeners(Collection<ExecutionListener> listeners) {
             this.listeners = new ArrayList<>(listeners);
             return this;
@@ -267,6 +290,10 @@ public class Runner {
                 listeners = Collections.emptyList();
             }
 
+            if (processConfiguration == null && injector != null) {
+                processConfiguration = injector.getInstance(ProcessConfiguration.class);
+            }
+
             return new Runner(this);
         }
 
@@ -22,6 +22,9 @@ package com.walmartlabs.concord.runtime.v2.runner.compiler;
 
 import com.walmartlabs.concord.runtime.v2.model.ProcessDefinition;
 import com.walmartlabs.concord.runtime.v2.model.Step;
+import com.walmartlabs.concord.runtime.v2.model.WithItems;
+import com.walmartlabs.concord.runtime.v2.runner.vm.ParallelWithItemsWrapper;
+import com.walmartlabs.concord.runtime.v2.runner.vm.WithItemsWrapper;
 import com.walmartlabs.concord.runtime.v2.sdk.Compiler;
 import com.walmartlabs.concord.svm.Command;
 import com.walmartlabs.concord.svm.commands.Block;
@@ -41,6 +44,20 @@ public final class CompilerUtils {
         return new Block(commands);
     }
 
+    /**
+     * Wraps the command into a {@code withItems} or {@code parallelWithItems} loop.
+     *
+     * @param out the task's {@code out} variable. Used to collect the results
+     *            of {@code parallelWithItems}
+     */
+    public static Command withItems(Command cmd, WithItems withItems, Integer parallelism, String out) {
+        if (withItems.mode() == WithItems.Mode.PARALLEL) {
+            return new ParallelWithItemsWrapper(cmd, withItems, parallelism, out);
+        }
+
+        return new WithItemsWrapper(cmd, withItems);
+    }
+
     private CompilerUtils() {
     }
 }
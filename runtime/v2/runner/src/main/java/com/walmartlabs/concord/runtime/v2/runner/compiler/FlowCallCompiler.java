@@ -23,7 +23,6 @@ package com.walmartlabs.concord.runtime.v2.runner.compiler;
 import com.walmartlabs.concord.runtime.v2.model.*;
 import com.walmartlabs.concord.runtime.v2.runner.vm.FlowCallCommand;
 import com.walmartlabs.concord.runtime.v2.runner.vm.RetryWrapper;
-import com.walmartlabs.concord.runtime.v2.runner.vm.WithItemsWrapper;
 import com.walmartlabs.concord.svm.Command;
 
 import javax.inject.Named;
@@ -57,7 +56,7 @@ public class FlowCallCompiler implements StepCompiler<FlowCall> {
         // add "withItems" if needed
         WithItems withItems = options != null ? options.withItems() : null;
         if (withItems != null) {
-            cmd = new WithItemsWrapper(cmd, withItems);
+            cmd = CompilerUtils.withItems(cmd, withItems, options.parallelism(), null);
         }
 
         return cmd;
@@ -25,7 +25,6 @@ import com.walmartlabs.concord.runtime.v2.model.GroupOptions;
 import com.walmartlabs.concord.runtime.v2.model.Step;
 import com.walmartlabs.concord.runtime.v2.model.WithItems;
 import com.walmartlabs.concord.runtime.v2.runner.vm.ErrorWrapper;
-import com.walmartlabs.concord.runtime.v2.runner.vm.WithItemsWrapper;
 import com.walmartlabs.concord.svm.Command;
 import com.walmartlabs.concord.svm.commands.Block;
 
@@ -57,7 +56,7 @@ public final class GroupOfStepsCompiler implements StepCompiler<GroupOfSteps> {
         // add "withItems" if needed
         WithItems withItems = options != null ? options.withItems() : null;
         if (withItems != null) {
-            return new WithItemsWrapper(cmd, withItems);
+            return CompilerUtils.withItems(cmd, withItems, options.parallelism(), null);
         }
 
         return cmd;
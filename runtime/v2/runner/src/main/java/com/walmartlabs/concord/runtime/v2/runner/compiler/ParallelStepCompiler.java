@@ -21,6 +21,7 @@ package com.walmartlabs.concord.runtime.v2.runner.compiler;
  */
 
 import com.walmartlabs.concord.runtime.v2.model.ParallelBlock;
+import com.walmartlabs.concord.runtime.v2.model.ParallelBlockOptions;
 import com.walmartlabs.concord.runtime.v2.model.Step;
 import com.walmartlabs.concord.svm.Command;
 import com.walmartlabs.concord.svm.commands.Parallel;
@@ -43,6 +44,9 @@ public class ParallelStepCompiler implements StepCompiler<ParallelBlock> {
                 .map(s -> context.compiler().compile(context.processDefinition(), s))
                 .collect(Collectors.toList());
 
-        return new Parallel(steps);
+        ParallelBlockOptions options = step.getOptions();
+        Integer maxParallelism = options != null ? options.maxParallelism() : null;
+
+        return new Parallel(steps, maxParallelism != null ? maxParallelism : 0);
     }
 }
@@ -23,7 +23,6 @@ package com.walmartlabs.concord.runtime.v2.runner.compiler;
 import com.walmartlabs.concord.runtime.v2.model.*;
 import com.walmartlabs.concord.runtime.v2.runner.vm.RetryWrapper;
 import com.walmartlabs.concord.runtime.v2.runner.vm.TaskCallCommand;
-import com.walmartlabs.concord.runtime.v2.runner.vm.WithItemsWrapper;
 import com.walmartlabs.concord.svm.Command;
 
 import javax.inject.Named;
@@ -51,7 +50,7 @@ public final class TaskCallCompiler implements StepCompiler<TaskCall> {
         // add "withItems" if needed
         WithItems withItems = options != null ? options.withItems() : null;
         if (withItems != null) {
-            cmd = new WithItemsWrapper(cmd, withItems);
+            cmd = CompilerUtils.withItems(cmd, withItems, options.parallelism(), options.out());
         }
 
         // TODO add "error"
@@ -20,15 +20,27 @@ package com.walmartlabs.concord.runtime.v2.runner.el;
  * =====
  */
 
-import com.walmartlabs.concord.runtime.v2.runner.tasks.TaskProvider;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.walmartlabs.concord.runtime.v2.sdk.Context;
 import com.walmartlabs.concord.sdk.Constants;
-import com.walmartlabs.concord.svm.Runtime;
 import org.eclipse.sisu.Typed;
 
 import javax.el.*;
 import javax.inject.Named;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 
+/**
+ * Evaluates EL expressions.
+ * <p/>
+ * Parsed expressions are cached process-wide, using the expression text and
+ * the expected type as the key. Parsed expressions don't hold any references
+ * to the {@link Context} they were parsed in: the context variables are resolved
+ * using the {@link ELContext} of the current evaluation (see {@link ContextVariable}).
+ * The resolvers are stateless and shared between all evaluations.
+ */
 @Named
 @Typed
 public class DefaultExpressionEvaluator implements ExpressionEvaluator {
@@ -36,40 +48,254 @@ public class DefaultExpressionEvaluator implements ExpressionEvaluator {
     // TODO deprecate "execution"? what about scripts - they can't use "context"?
     private static final String[] CONTEXT_VARIABLE_NAMES = {Constants.Context.CONTEXT_KEY, "execution"};
 
+    private static final int MAX_CACHED_EXPRESSIONS = 1000;
+
+    private static final Cache<ExpressionKey, ValueExpression> expressionCache = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_EXPRESSIONS)
+            .build();
+
+    private static final VariableMapper contextVariables = createContextVariables();
+
     private final ExpressionFactory expressionFactory = ExpressionFactory.newInstance();
+    private final ELResolver resolver = createResolver(expressionFactory);
 
     @Override
     public <T> T eval(Context ctx, String expr, Class<T> type) {
-        ELResolver r = createResolver(ctx);
+        if (type.isAssignableFrom(String.class) && !hasExpression(expr)) {
+            // plain strings are returned as is
+            return type.cast(expr);
+        }
 
-        StandardELContext sc = new StandardELContext(expressionFactory);
-        sc.putContext(ExpressionFactory.class, expressionFactory);
-        sc.addELResolver(r);
+        ValueExpression x = parse(expr, type);
 
-        // save the context as a variable
-        VariableMapper vm = sc.getVariableMapper();
-        for (String k : CONTEXT_VARIABLE_NAMES) {
-            vm.setVariable(k, expressionFactory.createValueExpression(ctx, Context.class));
-        }
+        EvalContext ec = new EvalContext(resolver);
+        ec.putContext(ExpressionFactory.class, expressionFactory);
+        ec.putContext(Context.class, ctx);
 
-        ValueExpression x = expressionFactory.createValueExpression(sc, expr, type);
         try {
-            Object v = x.getValue(sc);
+            Object v = x.getValue(ec);
             return type.cast(v);
         } catch (PropertyNotFoundException e) {
             throw new RuntimeException("Can't find a variable in '" + expr + "'. Check if it is defined in the current scope. Details: " + e.getMessage());
         }
     }
 
-    private ELResolver createResolver(Context ctx) {
+    private ValueExpression parse(String expr, Class<?> type) {
+        ExpressionKey k = new ExpressionKey(expr, type);
+
+        ValueExpression x = expressionCache.getIfPresent(k);
+        if (x != null) {
+            return x;
+        }
+
+        StandardELContext sc = new StandardELContext(expressionFactory);
+        sc.putContext(ExpressionFactory.class, expressionFactory);
+
+        VariableMapper vm = sc.getVariableMapper();
+        for (String n : CONTEXT_VARIABLE_NAMES) {
+            vm.setVariable(n, contextVariables.resolveVariable(n));
+        }
+
+        x = expressionFactory.createValueExpression(sc, expr, type);
+        expressionCache.put(k, x);
+        return x;
+    }
+
+    private static boolean hasExpression(String s) {
+        return s.contains("${") || s.contains("#{");
+    }
+
+    /**
+     * Creates the resolver chain shared by all evaluations. Mirrors the chain
+     * of {@link StandardELContext} with the Concord-specific resolvers added.
+     */
+    private static ELResolver createResolver(ExpressionFactory expressionFactory) {
         CompositeELResolver composite = new CompositeELResolver();
         composite.add(new InjectVariableResolver());
-        composite.add(new GlobalVariableResolver(ctx.globalVariables()));
+        composite.add(new GlobalVariableResolver());
+        composite.add(new TaskResolver());
 
-        Runtime rt = ctx.execution().runtime();
-        TaskProvider taskProvider = rt.getService(TaskProvider.class);
-        composite.add(new TaskResolver(taskProvider));
+        ELResolver streamResolver = expressionFactory.getStreamELResolver();
+        if (streamResolver != null) {
+            composite.add(streamResolver);
+        }
 
+        composite.add(new StaticFieldELResolver());
+        composite.add(new MapELResolver());
+        composite.add(new ResourceBundleELResolver());
+        composite.add(new ListELResolver());
+        composite.add(new ArrayELResolver());
+        composite.add(new BeanELResolver());
         return composite;
     }
+
+    private static VariableMapper createContextVariables() {
+        VariableMapper vm = new ContextVariables();
+        for (String n : CONTEXT_VARIABLE_NAMES) {
+            vm.setVariable(n, new ContextVariable());
+        }
+        return vm;
+    }
+
+    /**
+     * Lightweight per-evaluation {@link ELContext}. Uses the shared resolver chain
+     * and keeps the local beans (e.g. created by assignments like {@code ${x = 1}})
+     * separately, same as {@link StandardELContext}.
+     */
+    private static final class EvalContext extends ELContext {
+
+        private final ELResolver resolver;
+
+        private EvalContext(ELResolver sharedResolver) {
+            CompositeELResolver composite = new CompositeELResolver();
+            composite.add(new BeanNameELResolver(new LocalBeans()));
+            composite.add(sharedResolver);
+            this.resolver = composite;
+        }
+
+        @Override
+        public ELResolver getELResolver() {
+            return resolver;
+        }
+
+        @Override
+        public FunctionMapper getFunctionMapper() {
+            // functions are resolved when the expression is parsed
+            return null;
+        }
+
+        @Override
+        public VariableMapper getVariableMapper() {
+            return contextVariables;
+        }
+    }
+
+    private static final class LocalBeans extends BeanNameResolver {
+
+        private final Map<String, Object> beans = new HashMap<>();
+
+        @Override
+        public boolean isNameResolved(String beanName) {
+            return beans.containsKey(beanName);
+        }
+
+        @Override
+        public Object getBean(String beanName) {
+            return beans.get(beanName);
+        }
+
+        @Override
+        public void setBeanValue(String beanName, Object value) {
+            beans.put(beanName, value);
+        }
+
+        @Override
+        public boolean isReadOnly(String beanName) {
+            return false;
+        }
+
+        @Override
+        public boolean canCreateBean(String beanName) {
+            return true;
+        }
+    }
+
+    /**
+     * Read-only set of the context variables.
+     */
+    private static final class ContextVariables extends VariableMapper {
+
+        private final Map<String, ValueExpression> variables = new HashMap<>();
+
+        @Override
+        public ValueExpression resolveVariable(String variable) {
+            return variables.get(variable);
+        }
+
+        @Override
+        public ValueExpression setVariable(String variable, ValueExpression expression) {
+            return variables.put(variable, expression);
+        }
+    }
+
+    /**
+     * Resolves to the {@link Context} of the current evaluation.
+     */
+    private static final class ContextVariable extends ValueExpression {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Object getValue(ELContext context) {
+            return context.getContext(Context.class);
+        }
+
+        @Override
+        public void setValue(ELContext context, Object value) {
+            throw new PropertyNotWritableException("The context variable is read-only");
+        }
+
+        @Override
+        public boolean isReadOnly(ELContext context) {
+            return true;
+        }
+
+        @Override
+        public Class<?> getType(ELContext context) {
+            return Context.class;
+        }
+
+        @Override
+        public Class<?> getExpectedType() {
+            return Context.class;
+        }
+
+        @Override
+        public String getExpressionString() {
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj == this;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+
+        @Override
+        public boolean isLiteralText() {
+            return false;
+        }
+    }
+
+    private static final class ExpressionKey {
+
+        private final String expr;
+        private final Class<?> type;
+
+        private ExpressionKey(String expr, Class<?> type) {
+            this.expr = expr;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ExpressionKey that = (ExpressionKey) o;
+            return expr.equals(that.expr) && type.equals(that.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(expr, type);
+        }
+    }
 }
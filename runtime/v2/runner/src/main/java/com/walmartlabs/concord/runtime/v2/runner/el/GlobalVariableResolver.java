@@ -29,12 +29,6 @@ import java.util.Iterator;
 
 public class GlobalVariableResolver extends ELResolver {
 
-    private final GlobalVariables globalVariables;
-
-    public GlobalVariableResolver(GlobalVariables globalVariables) {
-        this.globalVariables = globalVariables;
-    }
-
     @Override
     public Class<?> getCommonPropertyType(ELContext context, Object base) {
         return Object.class;
@@ -55,6 +49,7 @@ public class GlobalVariableResolver extends ELResolver {
         if (base == null && property instanceof String) {
             String k = (String) property;
 
+            GlobalVariables globalVariables = ResolverUtils.getContext(context).globalVariables();
             if (globalVariables.containsKey(k)) {
                 context.setPropertyResolved(true);
                 return globalVariables.get(k);
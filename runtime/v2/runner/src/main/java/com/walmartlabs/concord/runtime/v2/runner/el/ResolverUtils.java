@@ -31,11 +31,9 @@ import javax.el.VariableMapper;
 public final class ResolverUtils {
 
     public static Context getContext(ELContext context) {
-        VariableMapper varMapper = ((EvaluationContext) context).getELContext().getVariableMapper();
-
-        ValueExpression v = varMapper.resolveVariable(Constants.Context.CONTEXT_KEY);
-        if (v != null) {
-            return (Context) v.getValue(context);
+        Context ctx = (Context) context.getContext(Context.class);
+        if (ctx != null) {
+            return ctx;
         }
 
         throw new IllegalStateException("Can't find the Concord context variable in the current ELContext: " + context);
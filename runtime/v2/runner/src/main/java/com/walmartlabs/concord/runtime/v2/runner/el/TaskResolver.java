@@ -30,12 +30,6 @@ import java.util.Iterator;
 
 public class TaskResolver extends ELResolver {
 
-    private final TaskProvider taskProvider;
-
-    public TaskResolver(TaskProvider taskProvider) {
-        this.taskProvider = taskProvider;
-    }
-
     @Override
     public Class<?> getCommonPropertyType(ELContext context, Object base) {
         return Object.class;
@@ -57,6 +51,7 @@ public class TaskResolver extends ELResolver {
             String key = (String) property;
 
             Context ctx = ResolverUtils.getContext(context);
+            TaskProvider taskProvider = ctx.execution().runtime().getService(TaskProvider.class);
             Object o = taskProvider.createTask(ctx, key);
             if (o != null) {
                 context.setPropertyResolved(true);
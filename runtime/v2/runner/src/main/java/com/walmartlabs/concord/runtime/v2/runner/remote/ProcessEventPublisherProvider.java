@@ -0,0 +1,49 @@
+package com.walmartlabs.concord.runtime.v2.runner.remote;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.ApiClient;
+import com.walmartlabs.concord.client.ProcessEventsApi;
+import com.walmartlabs.concord.runtime.common.ProcessEventPublisher;
+import com.walmartlabs.concord.runtime.common.cfg.RunnerConfiguration;
+import com.walmartlabs.concord.runtime.v2.runner.InstanceId;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+public class ProcessEventPublisherProvider implements Provider<ProcessEventPublisher> {
+
+    private final RunnerConfiguration runnerCfg;
+    private final ApiClient apiClient;
+    private final InstanceId instanceId;
+
+    @Inject
+    public ProcessEventPublisherProvider(RunnerConfiguration runnerCfg, ApiClient apiClient, InstanceId instanceId) {
+        this.runnerCfg = runnerCfg;
+        this.apiClient = apiClient;
+        this.instanceId = instanceId;
+    }
+
+    @Override
+    public ProcessEventPublisher get() {
+        return new ProcessEventPublisher(runnerCfg, instanceId.getValue(), new ProcessEventsApi(apiClient));
+    }
+}
@@ -21,19 +21,14 @@ package com.walmartlabs.concord.runtime.v2.runner.remote;
  */
 
 import com.fasterxml.jackson.core.JsonLocation;
-import com.walmartlabs.concord.ApiClient;
-import com.walmartlabs.concord.ApiException;
 import com.walmartlabs.concord.client.ProcessEventRequest;
-import com.walmartlabs.concord.client.ProcessEventsApi;
+import com.walmartlabs.concord.runtime.common.ProcessEventPublisher;
 import com.walmartlabs.concord.runtime.common.cfg.EventConfiguration;
 import com.walmartlabs.concord.runtime.common.cfg.RunnerConfiguration;
 import com.walmartlabs.concord.runtime.v2.model.ProcessDefinition;
 import com.walmartlabs.concord.runtime.v2.model.Step;
-import com.walmartlabs.concord.runtime.v2.runner.InstanceId;
 import com.walmartlabs.concord.runtime.v2.runner.tasks.TaskCallEvent;
 import com.walmartlabs.concord.runtime.v2.runner.tasks.TaskCallListener;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import java.time.Instant;
@@ -45,16 +40,12 @@ import java.util.Map;
 
 public class TaskCallEventRecordingListener implements TaskCallListener {
 
-    private static final Logger log = LoggerFactory.getLogger(TaskCallEventRecordingListener.class);
-
-    private final ProcessEventsApi eventsApi;
-    private final InstanceId processInstanceId;
+    private final ProcessEventPublisher eventPublisher;
     private final EventConfiguration eventConfiguration;
 
     @Inject
-    public TaskCallEventRecordingListener(ApiClient apiClient, InstanceId processInstanceId, RunnerConfiguration runnerConfiguration) {
-        this.eventsApi = new ProcessEventsApi(apiClient);
-        this.processInstanceId = processInstanceId;
+    public TaskCallEventRecordingListener(ProcessEventPublisher eventPublisher, RunnerConfiguration runnerConfiguration) {
+        this.eventPublisher = eventPublisher;
         this.eventConfiguration = runnerConfiguration.events();
     }
 
@@ -119,11 +110,7 @@ public class TaskCallEventRecordingListener implements TaskCallListener {
         req.setData(event);
         req.setEventDate(Instant.now().atOffset(ZoneOffset.UTC));
 
-        try {
-            eventsApi.event(processInstanceId.getValue(), req);
-        } catch (ApiException e) {
-            log.warn("send [{}] -> error while sending an event to the server: {}", event, e.getMessage());
-        }
+        eventPublisher.publish(req);
     }
 
     private static Object maskVars(Map<String, Object> vars, Collection<String> blackList) {
@@ -0,0 +1,204 @@
+package com.walmartlabs.concord.runtime.v2.runner.vm;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.runtime.v2.model.WithItems;
+import com.walmartlabs.concord.runtime.v2.sdk.GlobalVariables;
+import com.walmartlabs.concord.svm.Runtime;
+import com.walmartlabs.concord.svm.*;
+import com.walmartlabs.concord.svm.commands.Parallel;
+
+import java.io.Serializable;
+import java.util.*;
+
+import static com.walmartlabs.concord.runtime.v2.runner.vm.WithItemsWrapper.*;
+
+/**
+ * Wraps a command into a {@code parallelWithItems} loop. Each item is processed
+ * in a separate thread (see {@link Parallel}) with its own copy of the current
+ * frame-local variables and the {@code item}, {@code itemIndex} and {@code items}
+ * variables. At most {@code parallelism} items are processed at the same time.
+ * <p/>
+ * If {@code out} is specified, the results of the wrapped task calls are
+ * collected into a list (in the same order as the items) and stored
+ * as the {@code out} variable after all items are processed.
+ */
+public class ParallelWithItemsWrapper implements Command {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String RESULT_SLOT_KEY = "__withItems_resultSlot";
+
+    /**
+     * Stores the result of a task call into the current item's result slot.
+     *
+     * @return {@code false} if the current thread is not a {@code parallelWithItems}
+     * thread or the result must be stored as a normal variable.
+     */
+    public static boolean storeResult(State state, ThreadId threadId, String out, Serializable result) {
+        for (Frame f : state.getFrames(threadId)) {
+            ResultSlot slot = (ResultSlot) f.getLocal(RESULT_SLOT_KEY);
+            if (slot == null) {
+                continue;
+            }
+
+            if (!slot.out.equals(out)) {
+                return false;
+            }
+
+            synchronized (slot.results) {
+                slot.results.set(slot.index, result);
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    private final Command cmd;
+    private final WithItems withItems;
+    private final int parallelism;
+    private final String out;
+
+    /**
+     * @param parallelism maximum number of items processed at the same time,
+     *                    {@code null} for no limit (other than the process' {@code maxParallelism})
+     * @param out         the variable to store the collected results of the task calls,
+     *                    can be {@code null}
+     */
+    public ParallelWithItemsWrapper(Command cmd, WithItems withItems, Integer parallelism, String out) {
+        this.cmd = cmd;
+        this.withItems = withItems;
+        this.parallelism = parallelism != null ? parallelism : 0;
+        this.out = out;
+    }
+
+    @Override
+    public void eval(Runtime runtime, State state, ThreadId threadId) {
+        Frame frame = state.peekFrame(threadId);
+        frame.pop();
+
+        ArrayList<Serializable> items = evalItems(runtime, state, threadId, cmd, withItems);
+        if (items == null || items.isEmpty()) {
+            // no items, nothing to do
+            return;
+        }
+
+        // the forked threads don't see the parent's frames, so each item gets a copy of the current variables
+        // use HashMap because it is Serializable
+        HashMap<String, Object> locals = new HashMap<>(VMUtils.getLocalOverrides(state, threadId));
+
+        ArrayList<Serializable> results = null;
+        if (out != null) {
+            results = new ArrayList<>(Collections.nCopies(items.size(), null));
+            // executed after all items are processed
+            frame.push(new StoreResults(out, results));
+        }
+
+        List<Command> commands = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            ResultSlot slot = results != null ? new ResultSlot(out, results, i) : null;
+            commands.add(new Item(cmd, locals, items, i, slot));
+        }
+
+        frame.push(new Parallel(commands, parallelism));
+    }
+
+    /**
+     * Runs the wrapped command for a single item.
+     */
+    public static class Item implements Command {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Command cmd;
+        private final HashMap<String, Object> locals;
+        private final ArrayList<Serializable> items;
+        private final int index;
+        private final ResultSlot slot;
+
+        Item(Command cmd, HashMap<String, Object> locals, ArrayList<Serializable> items, int index, ResultSlot slot) {
+            this.cmd = cmd;
+            this.locals = locals;
+            this.items = items;
+            this.index = index;
+            this.slot = slot;
+        }
+
+        @Override
+        public void eval(Runtime runtime, State state, ThreadId threadId) {
+            Frame frame = state.peekFrame(threadId);
+            frame.pop();
+
+            VMUtils.putLocalOverrides(frame, locals);
+            VMUtils.putLocalOverride(frame, CURRENT_ITEMS, items);
+            VMUtils.putLocalOverride(frame, CURRENT_INDEX, index);
+            VMUtils.putLocalOverride(frame, CURRENT_ITEM, items.get(index));
+
+            if (slot != null) {
+                frame.setLocal(RESULT_SLOT_KEY, slot);
+            }
+
+            frame.push(cmd);
+        }
+    }
+
+    public static class StoreResults implements Command {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String out;
+        private final ArrayList<Serializable> results;
+
+        StoreResults(String out, ArrayList<Serializable> results) {
+            this.out = out;
+            this.results = results;
+        }
+
+        @Override
+        public void eval(Runtime runtime, State state, ThreadId threadId) {
+            state.peekFrame(threadId).pop();
+
+            ArrayList<Serializable> value;
+            synchronized (results) {
+                value = new ArrayList<>(results);
+            }
+
+            GlobalVariables gv = runtime.getService(GlobalVariables.class);
+            gv.put(out, value);
+        }
+    }
+
+    public static class ResultSlot implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String out;
+        private final ArrayList<Serializable> results;
+        private final int index;
+
+        ResultSlot(String out, ArrayList<Serializable> results, int index) {
+            this.out = out;
+            this.results = results;
+            this.index = index;
+        }
+    }
+}
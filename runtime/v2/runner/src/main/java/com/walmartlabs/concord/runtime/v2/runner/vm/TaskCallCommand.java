@@ -85,7 +85,7 @@ public class TaskCallCommand extends StepCommand<TaskCall> {
         }
 
         String out = opts.out();
-        if (out != null) {
+        if (out != null && !ParallelWithItemsWrapper.storeResult(state, threadId, out, result)) {
             GlobalVariables gv = runtime.getService(GlobalVariables.class);
             gv.put(out, result); // TODO a custom result structure
         }
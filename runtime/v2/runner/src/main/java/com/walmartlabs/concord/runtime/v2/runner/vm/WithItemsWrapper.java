@@ -56,15 +56,40 @@ public class WithItemsWrapper implements Command {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public void eval(Runtime runtime, State state, ThreadId threadId) {
         Frame frame = state.peekFrame(threadId);
         frame.pop();
 
+        ArrayList<Serializable> items = evalItems(runtime, state, threadId, cmd, withItems);
+        if (items == null || items.isEmpty()) {
+            // no items, nothing to do
+            return;
+        }
+
+        // TODO verify that each item is serializable
+
+        Frame loop = new Frame();
+
+        VMUtils.putLocalOverride(loop, CURRENT_ITEMS, items);
+        VMUtils.putLocalOverride(loop, CURRENT_INDEX, 0);
+        VMUtils.putLocalOverride(loop, CURRENT_ITEM, items.get(0));
+
+        loop.push(new WithItemsNext(cmd)); // next iteration
+        loop.push(cmd); // the wrapped command
+
+        state.pushFrame(threadId, loop);
+    }
+
+    /**
+     * Evaluates the {@code withItems} value and returns the list of items.
+     * Returns {@code null} if the value is {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    static ArrayList<Serializable> evalItems(Runtime runtime, State state, ThreadId threadId, Command cmd, WithItems withItems) {
         Serializable value = withItems.value();
         if (value == null) {
             // value is null, not going to run the wrapped command at all
-            return;
+            return null;
         }
 
         ContextFactory contextFactory = runtime.getService(ContextFactory.class);
@@ -79,38 +104,19 @@ public class WithItemsWrapper implements Command {
 
         // prepare items
         // store items in an ArrayList because it is Serializable
-        ArrayList<Serializable> items;
         if (value instanceof Collection) {
             Collection<Serializable> v = (Collection<Serializable>) value;
-            if (v.isEmpty()) {
-                // no items, nothing to do
-                return;
-            }
-
-            items = new ArrayList<>(v);
+            return new ArrayList<>(v);
         } else if (value instanceof Map) {
             Map<Serializable, Serializable> m = (Map<Serializable, Serializable>) value;
-            items = m.entrySet().stream()
+            return m.entrySet().stream()
                     .map(e -> new SerializableEntry(e.getKey(), e.getValue()))
                     .collect(Collectors.toCollection(ArrayList::new));
         } else if (value.getClass().isArray()) {
-            items = new ArrayList<>(Arrays.asList((Serializable[]) value));
+            return new ArrayList<>(Arrays.asList((Serializable[]) value));
         } else {
             throw new IllegalArgumentException("'withItems' accepts only Lists of items, Java Maps or arrays of values. Got: " + value.getClass());
         }
-
-        // TODO verify that each item is serializable
-
-        Frame loop = new Frame();
-
-        VMUtils.putLocalOverride(loop, CURRENT_ITEMS, items);
-        VMUtils.putLocalOverride(loop, CURRENT_INDEX, 0);
-        VMUtils.putLocalOverride(loop, CURRENT_ITEM, items.get(0));
-
-        loop.push(new WithItemsNext(cmd)); // next iteration
-        loop.push(cmd); // the wrapped command
-
-        state.pushFrame(threadId, loop);
     }
 
     public static class WithItemsNext implements Command {
@@ -0,0 +1,114 @@
+package com.walmartlabs.concord.runtime.v2.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DaemonMainTest {
+
+    @Test
+    public void testLeakedThreads() throws Exception {
+        Set<Thread> before = DaemonMain.liveThreads();
+
+        CountDownLatch stop = new CountDownLatch(1);
+        Thread daemon = start("test-daemon", true, stop);
+        Thread nonDaemon = start("test-non-daemon", false, stop);
+        Thread shared = start("OkHttp ConnectionPool", true, stop);
+        Thread finished = start("test-finished", true, new CountDownLatch(0));
+
+        try {
+            Set<Thread> leaked = DaemonMain.waitForLeakedThreads(before, 1000);
+            assertEquals(2, leaked.size());
+            assertTrue(leaked.contains(daemon));
+            assertTrue(leaked.contains(nonDaemon));
+        } finally {
+            stop.countDown();
+            daemon.join();
+            nonDaemon.join();
+            shared.join();
+            finished.join();
+        }
+
+        assertTrue(DaemonMain.waitForLeakedThreads(before, 1000).isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleTimeout() throws Exception {
+        Path dir = Files.createTempDirectory("daemon-test");
+        Path portFile = dir.resolve("port");
+
+        Thread t = new Thread(() -> {
+            try {
+                new DaemonMain(null, "test-token", 1.0, 1000).serve(portFile);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        t.start();
+
+        while (!Files.exists(portFile)) {
+            Thread.sleep(10);
+        }
+        int port = Integer.parseInt(new String(Files.readAllBytes(portFile), StandardCharsets.UTF_8).trim());
+
+        // requests with a wrong token are ignored
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            Writer writer = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8);
+            writer.write("{\"token\":\"wrong-token\"}\n");
+            writer.flush();
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            assertNull(reader.readLine());
+        }
+
+        // nobody else connects, the daemon stops waiting
+        t.join();
+    }
+
+    private static Thread start(String name, boolean daemon, CountDownLatch stop) {
+        Thread t = new Thread(() -> {
+            try {
+                stop.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, name);
+        t.setDaemon(daemon);
+        t.start();
+        return t;
+    }
+}
@@ -37,6 +37,7 @@ import com.walmartlabs.concord.runtime.v2.sdk.DefaultVariables;
 import com.walmartlabs.concord.runtime.v2.sdk.Task;
 import com.walmartlabs.concord.runtime.v2.sdk.TaskContext;
 import com.walmartlabs.concord.sdk.Constants;
+import com.walmartlabs.concord.svm.MultiException;
 import org.immutables.value.Value;
 import org.junit.After;
 import org.junit.Before;
@@ -52,10 +53,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
 public class MainTest {
@@ -91,6 +94,10 @@ public class MainTest {
         wireMock.stubFor(post(urlPathEqualTo("/api/v1/process/" + instanceId + "/event"))
                 .willReturn(aResponse()
                         .withStatus(201)));
+
+        wireMock.stubFor(post(urlPathEqualTo("/api/v1/process/" + instanceId + "/eventBatch"))
+                .willReturn(aResponse()
+                        .withStatus(201)));
     }
 
     @After
@@ -116,6 +123,9 @@ public class MainTest {
 
         verify(postRequestedFor(urlPathEqualTo("/api/v1/process/" + instanceId + "/status"))
                 .withRequestBody(equalTo("RUNNING")));
+
+        // the events are sent in batches
+        verify(postRequestedFor(urlPathEqualTo("/api/v1/process/" + instanceId + "/eventBatch")));
     }
 
     @Test
@@ -144,6 +154,66 @@ public class MainTest {
         assertLog(log, ".*After.*John Smith.*");
     }
 
+    @Test
+    public void testParallelWithItems() throws Exception {
+        deploy("parallelWithItems");
+
+        save(newProcessConfiguration()
+                .build());
+
+        byte[] log = start();
+        assertLog(log, ".*" + Pattern.quote("results: [a-0, b-1, c-2]") + ".*");
+    }
+
+    @Test
+    public void testParallelWithItemsErrors() throws Exception {
+        deploy("parallelWithItemsErrors");
+
+        save(newProcessConfiguration()
+                .build());
+
+        try {
+            start();
+            fail("exception expected");
+        } catch (Exception e) {
+            MultiException me = findCause(e, MultiException.class);
+            assertNotNull("expected a MultiException, got: " + e, me);
+
+            // the errors of all failed items are reported, not only the first one
+            Set<String> messages = new HashSet<>();
+            for (Exception cause : me.getCauses()) {
+                messages.add(cause.getMessage());
+            }
+            assertEquals(new HashSet<>(Arrays.asList("fail: a", "fail: b")), messages);
+        }
+    }
+
+    @Test
+    public void testParallelWithItemsLimit() throws Exception {
+        deploy("parallelWithItemsLimit");
+
+        save(newProcessConfiguration()
+                .build());
+
+        TestConcurrency.reset();
+
+        byte[] log = start();
+        assertLog(log, ".*Done.*");
+
+        assertEquals(6, TestConcurrency.TOTAL.get());
+        assertEquals(2, TestConcurrency.MAX.get());
+    }
+
+    private static <T extends Throwable> T findCause(Throwable t, Class<T> klass) {
+        while (t != null) {
+            if (klass.isInstance(t)) {
+                return klass.cast(t);
+            }
+            t = t.getCause();
+        }
+        return null;
+    }
+
     private void deploy(String resource) throws URISyntaxException, IOException {
         Path src = Paths.get(MainTest.class.getResource(resource).toURI());
         IOUtils.copy(src, workDir);
@@ -254,6 +324,56 @@ public class MainTest {
         }
     }
 
+    @Named("testEcho")
+    static class TestEcho implements Task {
+
+        @Override
+        public Serializable execute(TaskContext ctx) {
+            return (Serializable) ctx.input().get("value");
+        }
+    }
+
+    @Named("testFail")
+    static class TestFail implements Task {
+
+        @Override
+        public Serializable execute(TaskContext ctx) {
+            Object value = ctx.input().get("value");
+            if ("ok".equals(value)) {
+                return null;
+            }
+            throw new RuntimeException("fail: " + value);
+        }
+    }
+
+    @Named("testConcurrency")
+    static class TestConcurrency implements Task {
+
+        private static final AtomicInteger CURRENT = new AtomicInteger();
+        private static final AtomicInteger MAX = new AtomicInteger();
+        private static final AtomicInteger TOTAL = new AtomicInteger();
+
+        static void reset() {
+            CURRENT.set(0);
+            MAX.set(0);
+            TOTAL.set(0);
+        }
+
+        @Override
+        public Serializable execute(TaskContext ctx) throws Exception {
+            int current = CURRENT.incrementAndGet();
+            MAX.accumulateAndGet(current, Math::max);
+            try {
+                // give other items a chance to start
+                Thread.sleep(100);
+            } finally {
+                CURRENT.decrementAndGet();
+                TOTAL.incrementAndGet();
+            }
+            return null;
+        }
+    }
+
     @Named("testDefaults")
     static class TestDefaults implements Task {
 
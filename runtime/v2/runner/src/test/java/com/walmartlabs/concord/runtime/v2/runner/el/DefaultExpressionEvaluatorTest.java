@@ -0,0 +1,65 @@
+package com.walmartlabs.concord.runtime.v2.runner.el;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.runtime.v2.runner.vars.GlobalVariablesImpl;
+import com.walmartlabs.concord.runtime.v2.sdk.Context;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class DefaultExpressionEvaluatorTest {
+
+    @Test
+    public void testCachedExpressions() {
+        ExpressionEvaluator ee = new DefaultExpressionEvaluator();
+
+        Context a = new DummyContext(new GlobalVariablesImpl(Collections.singletonMap("x", "a")));
+        Context b = new DummyContext(new GlobalVariablesImpl(Collections.singletonMap("x", "b")));
+
+        // the same expressions must be evaluated using the current context
+        assertEquals("a", ee.eval(a, "${x}", String.class));
+        assertEquals("b", ee.eval(b, "${x}", String.class));
+
+        assertEquals("a", ee.eval(a, "${context.globalVariables().get('x')}", String.class));
+        assertEquals("b", ee.eval(b, "${context.globalVariables().get('x')}", String.class));
+
+        // same text, different expected types
+        Context c = new DummyContext(new GlobalVariablesImpl(Collections.singletonMap("x", "123")));
+        assertEquals("123", ee.eval(c, "${x}", String.class));
+        assertEquals(Integer.valueOf(123), ee.eval(c, "${x}", Integer.class));
+    }
+
+    @Test
+    public void testPlainStrings() {
+        ExpressionEvaluator ee = new DefaultExpressionEvaluator();
+        Context ctx = new DummyContext(new GlobalVariablesImpl());
+
+        String s = "no expressions here";
+        assertSame(s, ee.eval(ctx, s, Object.class));
+
+        // plain strings are still coerced to the expected type
+        assertEquals(Boolean.TRUE, ee.eval(ctx, "true", Boolean.class));
+    }
+}
@@ -0,0 +1,138 @@
+package com.walmartlabs.concord.runtime.v2.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.gson.Gson;
+import com.walmartlabs.concord.ApiClient;
+import com.walmartlabs.concord.client.ProcessEventRequest;
+import com.walmartlabs.concord.client.ProcessEventsApi;
+import com.walmartlabs.concord.runtime.common.ProcessEventPublisher;
+import com.walmartlabs.concord.runtime.common.cfg.EventConfiguration;
+import com.walmartlabs.concord.runtime.common.cfg.RunnerConfiguration;
+import com.walmartlabs.concord.runtime.v2.model.ProcessDefinition;
+import com.walmartlabs.concord.runtime.v2.runner.tasks.TaskCallEvent;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class TaskCallEventRecordingListenerTest {
+
+    @Test
+    public void testMaskedVars() {
+        RunnerConfiguration cfg = cfg(EventConfiguration.builder()
+                .recordTaskInVars(true)
+                .inVarsBlacklist(Collections.singletonList("password"))
+                .build());
+
+        Map<String, Object> input = new HashMap<>();
+        input.put("password", "secret");
+        input.put("x", "a");
+
+        List<ProcessEventRequest> events = record(cfg, input, null);
+
+        assertEquals(1, events.size());
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("password", "***");
+        expected.put("x", "a");
+        assertEquals(expected, roundtrip(events.get(0).getData().get("in")));
+
+        // the task's input is not modified
+        assertEquals("secret", input.get("password"));
+    }
+
+    @Test
+    public void testUnmaskedVars() {
+        RunnerConfiguration cfg = cfg(EventConfiguration.builder()
+                .recordTaskOutVars(true)
+                .build());
+
+        Map<String, Object> out = new HashMap<>();
+        out.put("x", "a");
+
+        List<ProcessEventRequest> events = record(cfg, Collections.emptyMap(), out, () -> {
+            // the process keeps modifying the variables while the event is waiting in the queue
+            out.put("x", "b");
+            out.put("y", "c");
+        });
+
+        assertEquals(1, events.size());
+        assertEquals(Collections.singletonMap("x", "a"), roundtrip(events.get(0).getData().get("out")));
+    }
+
+    private static List<ProcessEventRequest> record(RunnerConfiguration cfg, Map<String, Object> input, Object out) {
+        return record(cfg, input, out, () -> {
+        });
+    }
+
+    private static List<ProcessEventRequest> record(RunnerConfiguration cfg, Map<String, Object> input, Object out, Runnable afterEvent) {
+        RecordingEventsApi api = new RecordingEventsApi();
+
+        try (ProcessEventPublisher publisher = new ProcessEventPublisher(cfg, UUID.randomUUID(), api)) {
+            TaskCallEventRecordingListener listener = new TaskCallEventRecordingListener(publisher, cfg);
+            listener.onEvent(TaskCallEvent.builder()
+                    .phase(TaskCallEvent.Phase.POST)
+                    .processDefinition(ProcessDefinition.builder().build())
+                    .taskName("test")
+                    .methodName("execute")
+                    .input(input)
+                    .correlationId(UUID.randomUUID())
+                    .out(out)
+                    .build());
+
+            afterEvent.run();
+        }
+
+        return api.events;
+    }
+
+    private static RunnerConfiguration cfg(EventConfiguration events) {
+        return RunnerConfiguration.builder()
+                .events(EventConfiguration.builder().from(events)
+                        // send the events only on close
+                        .batchFlushInterval(60000)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Returns the data as it is received by the server.
+     */
+    private static Object roundtrip(Object o) {
+        Gson gson = new ApiClient().getJSON().getGson();
+        return gson.fromJson(gson.toJson(o), Object.class);
+    }
+
+    private static class RecordingEventsApi extends ProcessEventsApi {
+
+        private final List<ProcessEventRequest> events = Collections.synchronizedList(new ArrayList<>());
+
+        private RecordingEventsApi() {
+            super(new ApiClient());
+        }
+
+        @Override
+        public void batchEvent(UUID processInstanceId, List<ProcessEventRequest> data) {
+            events.addAll(data);
+        }
+    }
+}
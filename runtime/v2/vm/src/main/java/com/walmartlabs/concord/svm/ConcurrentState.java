@@ -0,0 +1,243 @@
+package com.walmartlabs.concord.svm;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link State} implementation without a global lock.
+ * <p/>
+ * Each thread has its own stack of frames, which is normally accessed only
+ * by the thread itself. Statuses, errors and event references are kept in
+ * concurrent maps, parent threads and event references have reverse indexes,
+ * so the lookups don't require scanning all threads.
+ */
+public class ConcurrentState implements Serializable, State {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrentState.class);
+
+    private final ConcurrentMap<ThreadId, Deque<Frame>> frames = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ThreadId, ThreadStatus> threadStatus = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ThreadId, Set<ThreadId>> children = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ThreadId, ThreadId> parents = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ThreadId, String> eventRefs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ThreadId> eventRefIndex = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ThreadId, Exception> threadErrors = new ConcurrentHashMap<>();
+
+    private final AtomicLong threadIdSeq = new AtomicLong();
+
+    private transient volatile long statusVersion;
+
+    private final ThreadId rootThreadId;
+
+    public ConcurrentState(Command cmd) {
+        rootThreadId = nextThreadId();
+        pushFrame(rootThreadId, new Frame(cmd));
+    }
+
+    @Override
+    public void pushFrame(ThreadId threadId, Frame frame) {
+        log.trace("pushFrame {}", threadId);
+
+        frames.computeIfAbsent(threadId, key -> new ConcurrentLinkedDeque<>())
+                .addFirst(frame);
+    }
+
+    @Override
+    public Frame peekFrame(ThreadId threadId) {
+        Deque<Frame> l = frames.get(threadId);
+        if (l == null) {
+            return null;
+        }
+
+        return l.peekFirst();
+    }
+
+    @Override
+    public void popFrame(ThreadId threadId) {
+        log.trace("popFrame {}", threadId);
+
+        Deque<Frame> l = frames.get(threadId);
+        if (l == null) {
+            throw new IllegalStateException("Call frame doesn't exist: " + threadId);
+        }
+
+        l.pollFirst();
+    }
+
+    @Override
+    public List<Frame> getFrames(ThreadId threadId) {
+        Deque<Frame> l = frames.get(threadId);
+        if (l == null) {
+            throw new IllegalStateException("Call frame doesn't exist: " + threadId);
+        }
+
+        return Collections.unmodifiableList(new ArrayList<>(l));
+    }
+
+    @Override
+    public void dropAllFrames() {
+        frames.clear();
+    }
+
+    @Override
+    public void setStatus(ThreadId threadId, ThreadStatus status) {
+        threadStatus.put(threadId, status);
+
+        // the status map doubles as the monitor for the waiting threads (see Join)
+        synchronized (threadStatus) {
+            statusVersion++;
+            threadStatus.notifyAll();
+        }
+    }
+
+    @Override
+    public long getStatusVersion() {
+        return statusVersion;
+    }
+
+    @Override
+    public void awaitStatusChange(long version, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        synchronized (threadStatus) {
+            while (statusVersion == version) {
+                long t = deadline - System.currentTimeMillis();
+                if (t <= 0) {
+                    return;
+                }
+                threadStatus.wait(t);
+            }
+        }
+    }
+
+    @Override
+    public ThreadStatus getStatus(ThreadId threadId) {
+        return threadStatus.get(threadId);
+    }
+
+    @Override
+    public ThreadId getRootThreadId() {
+        return rootThreadId;
+    }
+
+    @Override
+    public void fork(ThreadId parentThreadId, ThreadId threadId, Command cmd) {
+        pushFrame(threadId, new Frame(cmd));
+
+        children.computeIfAbsent(parentThreadId, k -> ConcurrentHashMap.newKeySet())
+                .add(threadId);
+        parents.put(threadId, parentThreadId);
+
+        // the status goes last, other threads consider the thread started once it is set
+        setStatus(threadId, ThreadStatus.READY);
+    }
+
+    @Override
+    public Map<ThreadId, ThreadStatus> threadStatus() {
+        return new HashMap<>(threadStatus);
+    }
+
+    @Override
+    public ThreadId nextThreadId() {
+        return new ThreadId(threadIdSeq.getAndIncrement());
+    }
+
+    @Override
+    public ThreadId getParentThreadId(ThreadId id) {
+        return parents.get(id);
+    }
+
+    @Override
+    public void setEventRef(ThreadId threadId, String eventRef) {
+        // TODO check for uniqueness
+
+        String old = eventRefs.putIfAbsent(threadId, eventRef);
+        if (old != null) {
+            throw new IllegalStateException("Thread " + threadId + " already had an unprocessed event ref registered: " + old);
+        }
+
+        eventRefIndex.put(eventRef, threadId);
+    }
+
+    @Override
+    public ThreadId removeEventRef(String eventRef) {
+        ThreadId threadId = eventRefIndex.remove(eventRef);
+        if (threadId == null) {
+            return null;
+        }
+
+        eventRefs.remove(threadId, eventRef);
+        return threadId;
+    }
+
+    @Override
+    public Map<ThreadId, String> getEventRefs() {
+        return Collections.unmodifiableMap(eventRefs);
+    }
+
+    @Override
+    public void setThreadError(ThreadId threadId, Exception error) {
+        threadErrors.put(threadId, error);
+    }
+
+    @Override
+    public Exception clearThreadError(ThreadId threadId) {
+        return threadErrors.remove(threadId);
+    }
+
+    @Override
+    public void gc() {
+        // avoid races by eagerly calculating the list of IDs
+        List<ThreadId> ids = new ArrayList<>();
+        threadStatus.forEach((k, v) -> {
+            if (v == ThreadStatus.DONE || (v == ThreadStatus.FAILED && !threadErrors.containsKey(k))) {
+                ids.add(k);
+            }
+        });
+
+        for (ThreadId k : ids) {
+            threadErrors.remove(k);
+            threadStatus.remove(k);
+            frames.remove(k);
+
+            String eventRef = eventRefs.remove(k);
+            if (eventRef != null) {
+                eventRefIndex.remove(eventRef, k);
+            }
+
+            Set<ThreadId> c = children.remove(k);
+            if (c != null) {
+                c.forEach(id -> parents.remove(id, k));
+            }
+        }
+    }
+}
@@ -47,6 +47,8 @@ public class InMemoryState implements Serializable, State {
 
     private long threadIdSeq = 0;
 
+    private transient long statusVersion;
+
     public InMemoryState(Command cmd) {
         rootThreadId = nextThreadId();
         pushFrame(rootThreadId, new Frame(cmd));
@@ -111,6 +113,30 @@ public class InMemoryState implements Serializable, State {
     public void setStatus(ThreadId threadId, ThreadStatus status) {
         synchronized (this) {
             threadStatus.put(threadId, status);
+            statusVersion++;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public long getStatusVersion() {
+        synchronized (this) {
+            return statusVersion;
+        }
+    }
+
+    @Override
+    public void awaitStatusChange(long version, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        synchronized (this) {
+            while (statusVersion == version) {
+                long t = deadline - System.currentTimeMillis();
+                if (t <= 0) {
+                    return;
+                }
+                wait(t);
+            }
         }
     }
 
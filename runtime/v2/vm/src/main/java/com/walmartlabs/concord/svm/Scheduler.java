@@ -0,0 +1,163 @@
+package com.walmartlabs.concord.svm;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+
+/**
+ * Runs the forked "vm" threads.
+ * <p/>
+ * At most {@code maxParallelism} threads are running at the same time,
+ * the rest are queued. On JDKs with virtual threads each "vm" thread gets its
+ * own virtual thread, otherwise a work-stealing {@link ForkJoinPool} is used.
+ * <p/>
+ * A thread waiting for its children (see {@link #sleep(long)}) doesn't count
+ * towards the limit, so nested {@code parallel} blocks can't starve the scheduler.
+ */
+public class Scheduler implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(Scheduler.class);
+
+    public static final int DEFAULT_MAX_PARALLELISM = 64;
+
+    /**
+     * The scheduler which holds a running permit for the current thread, if any.
+     */
+    private static final ThreadLocal<Scheduler> permitHolder = new ThreadLocal<>();
+
+    public static Scheduler create(int maxParallelism) {
+        if (maxParallelism <= 0) {
+            throw new IllegalArgumentException("maxParallelism must be a positive number: " + maxParallelism);
+        }
+
+        ExecutorService virtualThreads = newVirtualThreadExecutor();
+        if (virtualThreads != null) {
+            log.debug("create -> using virtual threads, maxParallelism: {}", maxParallelism);
+            return new Scheduler(virtualThreads, new Semaphore(maxParallelism));
+        }
+
+        log.debug("create -> using a fork-join pool, maxParallelism: {}", maxParallelism);
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        ForkJoinPool pool = new ForkJoinPool(maxParallelism, p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("svm-" + t.getName());
+            t.setContextClassLoader(cl);
+            return t;
+        }, null, true);
+        return new Scheduler(pool, null);
+    }
+
+    /**
+     * Sleeps for the specified amount of time. If called from a "vm" thread,
+     * the thread's slot can be used by other "vm" threads while it's sleeping.
+     */
+    public static void sleep(long ms) throws InterruptedException {
+        block(() -> Thread.sleep(ms));
+    }
+
+    /**
+     * Runs a blocking operation. Same as {@link #sleep(long)}, the thread's slot
+     * can be used by other "vm" threads while the operation is blocked.
+     */
+    public static void block(Blocker blocker) throws InterruptedException {
+        Scheduler s = permitHolder.get();
+        if (s != null) {
+            s.permits.release();
+            try {
+                blocker.block();
+            } finally {
+                s.permits.acquireUninterruptibly();
+            }
+            return;
+        }
+
+        // compensates the blocked worker if called from a ForkJoinPool thread
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+
+            private boolean done;
+
+            @Override
+            public boolean block() throws InterruptedException {
+                blocker.block();
+                done = true;
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return done;
+            }
+        });
+    }
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    private Scheduler(ExecutorService executor, Semaphore permits) {
+        this.executor = executor;
+        this.permits = permits;
+    }
+
+    public void submit(Callable<?> task) {
+        executor.submit(() -> {
+            if (permits != null) {
+                permits.acquireUninterruptibly();
+                permitHolder.set(this);
+            }
+
+            try {
+                return task.call();
+            } finally {
+                if (permits != null) {
+                    permitHolder.remove();
+                    permits.release();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    public interface Blocker {
+
+        void block() throws InterruptedException;
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (Exception e) {
+            // e.g. a preview feature on older JDKs
+            log.debug("newVirtualThreadExecutor -> not available: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -65,6 +65,22 @@ public interface State {
      */
     ThreadStatus getStatus(ThreadId threadId);
 
+    /**
+     * Returns a counter incremented on each {@link #setStatus(ThreadId, ThreadStatus)} call.
+     * Use with {@link #awaitStatusChange(long, long)}.
+     */
+    default long getStatusVersion() {
+        return 0;
+    }
+
+    /**
+     * Waits until the status of any thread changes, i.e. until {@link #getStatusVersion()}
+     * is different from the specified value, or until the timeout expires.
+     */
+    default void awaitStatusChange(long version, long timeout) throws InterruptedException {
+        Thread.sleep(timeout);
+    }
+
     /**
      * Returns the root thread ID of the current {@link State} instance.
      */
@@ -135,9 +135,10 @@ public class VM {
             Frame frame = state.peekFrame(threadId);
             if (frame == null) {
                 // no more frames to unwind, looks like there was no exception handler
-                state.setStatus(threadId, ThreadStatus.FAILED);
+                // the error goes first, the joining thread collects it as soon as the status changes
                 log.error("Unhandled exception in the SVM thread {}: {}", threadId, cause.getMessage());
                 state.setThreadError(threadId, cause);
+                state.setStatus(threadId, ThreadStatus.FAILED);
                 throw cause;
             }
 
@@ -25,8 +25,7 @@ import com.walmartlabs.concord.svm.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
-import java.util.Map;
+import java.util.*;
 import java.util.stream.Collectors;
 
 public class Join implements Command {
@@ -36,24 +35,56 @@ public class Join implements Command {
 
     private final Collection<ThreadId> ids;
 
+    /**
+     * Threads that are not forked yet.
+     */
+    private final LinkedList<Map.Entry<ThreadId, Command>> pending;
+    private final int maxParallelism;
+
     public Join(Collection<ThreadId> ids) {
+        this(ids, Collections.emptyList(), 0);
+    }
+
+    /**
+     * @param pending        threads to fork once the number of the running
+     *                       child threads drops below {@code maxParallelism}
+     * @param maxParallelism maximum number of the running child threads
+     */
+    public Join(Collection<ThreadId> ids, List<Map.Entry<ThreadId, Command>> pending, int maxParallelism) {
         this.ids = ids;
+        this.pending = new LinkedList<>(pending);
+        this.maxParallelism = maxParallelism;
     }
 
     @Override
     public void eval(Runtime runtime, State state, ThreadId threadId) {
         // Here's a very dumb but working solution to the problem
         // of monitoring the child "threads" state - just a loop
-        // waiting on a monitor . On each iteration it decides whether
+        // waiting for the status changes. On each iteration it decides whether
         // the join command can be removed from the stack (and thus
         // continuing the execution) or not.
         // We could've used futures instead, but it's way more
         // complicated - especially when suspend/resume are involved.
 
         while (true) {
+            // read before the statuses, so the changes made in the meantime wake up the wait below
+            long statusVersion = state.getStatusVersion();
             Map<ThreadId, ThreadStatus> status = state.threadStatus();
 
-            boolean allDone = status.entrySet().stream()
+            if (!pending.isEmpty()) {
+                long running = status.entrySet().stream()
+                        .filter(e -> ids.contains(e.getKey()))
+                        .filter(e -> e.getValue() == ThreadStatus.READY)
+                        .count();
+
+                if (running < maxParallelism) {
+                    forkPending(runtime, state, threadId, (int) (maxParallelism - running));
+                    continue;
+                }
+            }
+
+            // the pending threads are not in the status map yet
+            boolean allDone = pending.isEmpty() && status.entrySet().stream()
                     .map(e -> ids.contains(e.getKey()) ? e.getValue() : ThreadStatus.DONE)
                     .allMatch(e -> e == ThreadStatus.DONE);
 
@@ -86,15 +117,24 @@ public class Join implements Command {
                         .collect(Collectors.toList()));
             }
 
-            // some children are still running, wait for a bit and then check again
+            // some children are still running, wait until one of them is done
+            // (or for a bit, the timeout is just a safety net) and then check again
             try {
-                Thread.sleep(1000); // a "good enough™" value
+                Scheduler.block(() -> state.awaitStatusChange(statusVersion, 1000));
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
     }
 
+    private void forkPending(Runtime runtime, State state, ThreadId threadId, int count) {
+        for (int i = 0; i < count && !pending.isEmpty(); i++) {
+            Map.Entry<ThreadId, Command> f = pending.removeFirst();
+            state.fork(threadId, f.getKey(), f.getValue());
+            runtime.spawn(state, f.getKey());
+        }
+    }
+
     private static boolean anyMatch(Map<ThreadId, ThreadStatus> status, Collection<ThreadId> ids, ThreadStatus match) {
         return status.entrySet().stream()
                 .filter(e -> ids.contains(e.getKey()))
@@ -31,9 +31,19 @@ public class Parallel implements Command {
     private static final long serialVersionUID = 1L;
 
     private final List<Command> commands;
+    private final int maxParallelism;
 
     public Parallel(List<Command> commands) {
+        this(commands, 0);
+    }
+
+    /**
+     * @param maxParallelism maximum number of commands running at the same time,
+     *                       {@code 0} for no limit (other than the scheduler's one)
+     */
+    public Parallel(List<Command> commands, int maxParallelism) {
         this.commands = commands;
+        this.maxParallelism = maxParallelism;
     }
 
     @Override
@@ -48,7 +58,15 @@ public class Parallel implements Command {
                 .collect(Collectors.toList());
 
         Collection<ThreadId> forkIds = forks.stream().map(Map.Entry::getKey).collect(Collectors.toSet());
-        frame.push(new Join(forkIds));
+
+        if (maxParallelism > 0 && forks.size() > maxParallelism) {
+            // fork only the first N commands, the rest is started by the join when some of the threads are done
+            List<Map.Entry<ThreadId, Command>> pending = new ArrayList<>(forks.subList(maxParallelism, forks.size()));
+            forks = new ArrayList<>(forks.subList(0, maxParallelism));
+            frame.push(new Join(forkIds, pending, maxParallelism));
+        } else {
+            frame.push(new Join(forkIds));
+        }
 
         Collections.reverse(forks);
         forks.forEach(f -> frame.push(new Fork(f.getKey(), f.getValue())));
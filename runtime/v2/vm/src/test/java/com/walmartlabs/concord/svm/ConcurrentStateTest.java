@@ -0,0 +1,345 @@
+package com.walmartlabs.concord.svm;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.svm.commands.Parallel;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentStateTest {
+
+    @Test(timeout = 30000)
+    public void testStress() throws Exception {
+        int threads = 16;
+        int iterations = 2000;
+
+        ConcurrentState state = new ConcurrentState(new Noop());
+        ThreadId root = state.getRootThreadId();
+        Set<ThreadId> ids = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int n = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        ThreadId id = state.nextThreadId();
+                        assertTrue(ids.add(id));
+
+                        state.fork(root, id, new Noop());
+                        assertEquals(ThreadStatus.READY, state.getStatus(id));
+                        assertEquals(root, state.getParentThreadId(id));
+
+                        Frame f = new Frame();
+                        state.pushFrame(id, f);
+                        assertSame(f, state.peekFrame(id));
+                        assertEquals(2, state.getFrames(id).size());
+                        state.popFrame(id);
+                        state.popFrame(id);
+                        assertNull(state.peekFrame(id));
+
+                        String eventRef = "ev-" + n + "-" + i;
+                        state.setEventRef(id, eventRef);
+                        assertEquals(id, state.removeEventRef(eventRef));
+                        assertNull(state.removeEventRef(eventRef));
+
+                        state.setStatus(id, ThreadStatus.DONE);
+                        if (i % 100 == 0) {
+                            state.gc();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * iterations, ids.size());
+
+        // all forked threads are done and collected
+        state.gc();
+        assertTrue(state.threadStatus().isEmpty());
+        assertTrue(state.getEventRefs().isEmpty());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        ConcurrentState state = new ConcurrentState(new Noop());
+        ThreadId root = state.getRootThreadId();
+
+        ThreadId child = state.nextThreadId();
+        state.fork(root, child, new Noop());
+        state.setEventRef(child, "ev");
+        state.setStatus(child, ThreadStatus.SUSPENDED);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+            out.writeObject(state);
+        }
+
+        State restored;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            restored = (State) in.readObject();
+        }
+
+        assertEquals(root, restored.getRootThreadId());
+        assertEquals(root, restored.getParentThreadId(child));
+        assertEquals(ThreadStatus.SUSPENDED, restored.getStatus(child));
+        assertNotNull(restored.peekFrame(child));
+        assertEquals(child, restored.removeEventRef("ev"));
+
+        ThreadId next = restored.nextThreadId();
+        assertNotEquals(root, next);
+        assertNotEquals(child, next);
+    }
+
+    @Test(timeout = 30000)
+    public void testParallel() throws Exception {
+        int branches = 200;
+        AtomicInteger counter = new AtomicInteger();
+
+        List<Command> commands = new ArrayList<>();
+        for (int i = 0; i < branches; i++) {
+            commands.add(new Count());
+        }
+
+        ConcurrentState state = new ConcurrentState(new Parallel(commands));
+
+        try (Scheduler scheduler = Scheduler.create(16)) {
+            VM vm = new VM(v -> new TestRuntime(v, scheduler, counter), Collections.emptyList());
+            vm.start(state);
+        }
+
+        assertEquals(branches, counter.get());
+        // all threads are done and collected
+        assertTrue(state.threadStatus().isEmpty());
+    }
+
+    @Test(timeout = 30000)
+    public void testAwaitStatusChange() throws Exception {
+        ConcurrentState state = new ConcurrentState(new Noop());
+        ThreadId root = state.getRootThreadId();
+
+        // no changes, waits until the timeout
+        long version = state.getStatusVersion();
+        long t1 = System.currentTimeMillis();
+        state.awaitStatusChange(version, 100);
+        assertTrue(System.currentTimeMillis() - t1 >= 100);
+
+        // returns as soon as the status changes
+        Thread t = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            state.setStatus(root, ThreadStatus.DONE);
+        });
+        t.start();
+
+        t1 = System.currentTimeMillis();
+        state.awaitStatusChange(version, 20000);
+        assertTrue(System.currentTimeMillis() - t1 < 10000);
+        assertNotEquals(version, state.getStatusVersion());
+
+        t.join();
+    }
+
+    @Test(timeout = 30000)
+    public void testParallelWithLimit() throws Exception {
+        // each of the remaining branches is forked as soon as the previous one is done,
+        // the join doesn't wait for its polling interval (1s)
+        int branches = 10;
+        AtomicInteger counter = new AtomicInteger();
+
+        List<Command> commands = new ArrayList<>();
+        for (int i = 0; i < branches; i++) {
+            commands.add(new Count());
+        }
+
+        ConcurrentState state = new ConcurrentState(new Parallel(commands, 1));
+
+        long t1 = System.currentTimeMillis();
+        try (Scheduler scheduler = Scheduler.create(4)) {
+            VM vm = new VM(v -> new TestRuntime(v, scheduler, counter), Collections.emptyList());
+            vm.start(state);
+        }
+        long t2 = System.currentTimeMillis();
+
+        assertEquals(branches, counter.get());
+        assertTrue("took " + (t2 - t1) + "ms", t2 - t1 < 5000);
+    }
+
+    @Test(timeout = 30000)
+    public void testParallelErrors() throws Exception {
+        List<Command> commands = Arrays.asList(new Fail("a"), new Count(), new Fail("b"), new Fail("c"));
+
+        ConcurrentState state = new ConcurrentState(new Parallel(commands));
+        AtomicInteger counter = new AtomicInteger();
+
+        try (Scheduler scheduler = Scheduler.create(4)) {
+            VM vm = new VM(v -> new TestRuntime(v, scheduler, counter), Collections.emptyList());
+            vm.start(state);
+            fail("exception expected");
+        } catch (MultiException e) {
+            // the errors of all failed branches are reported
+            Set<String> messages = new HashSet<>();
+            for (Exception cause : e.getCauses()) {
+                messages.add(cause.getMessage());
+            }
+            assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), messages);
+        }
+
+        // the successful branch is executed anyway
+        assertEquals(1, counter.get());
+    }
+
+    @Test(timeout = 30000)
+    public void testParallelismLimit() throws Exception {
+        int branches = 8;
+        int limit = 2;
+        Concurrency concurrency = new Concurrency();
+
+        List<Command> commands = new ArrayList<>();
+        for (int i = 0; i < branches; i++) {
+            commands.add(new Track());
+        }
+
+        ConcurrentState state = new ConcurrentState(new Parallel(commands, limit));
+
+        // the scheduler allows more threads than the limit
+        try (Scheduler scheduler = Scheduler.create(branches)) {
+            VM vm = new VM(v -> new TestRuntime(v, scheduler, concurrency), Collections.emptyList());
+            vm.start(state);
+        }
+
+        assertEquals(branches, concurrency.total.get());
+        assertEquals(limit, concurrency.max.get());
+    }
+
+    private static class Noop implements Command {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void eval(Runtime runtime, State state, ThreadId threadId) {
+            state.peekFrame(threadId).pop();
+        }
+    }
+
+    private static class Count implements Command {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void eval(Runtime runtime, State state, ThreadId threadId) {
+            state.peekFrame(threadId).pop();
+            runtime.getService(AtomicInteger.class).incrementAndGet();
+        }
+    }
+
+    private static class Fail implements Command {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String message;
+
+        private Fail(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public void eval(Runtime runtime, State state, ThreadId threadId) {
+            state.peekFrame(threadId).pop();
+            throw new RuntimeException(message);
+        }
+    }
+
+    private static class Track implements Command {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void eval(Runtime runtime, State state, ThreadId threadId) {
+            state.peekFrame(threadId).pop();
+
+            Concurrency c = runtime.getService(Concurrency.class);
+            int current = c.current.incrementAndGet();
+            c.max.accumulateAndGet(current, Math::max);
+            try {
+                // give other branches a chance to start
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } finally {
+                c.current.decrementAndGet();
+                c.total.incrementAndGet();
+            }
+        }
+    }
+
+    private static class Concurrency {
+
+        private final AtomicInteger current = new AtomicInteger();
+        private final AtomicInteger max = new AtomicInteger();
+        private final AtomicInteger total = new AtomicInteger();
+    }
+
+    private static class TestRuntime implements Runtime {
+
+        private final VM vm;
+        private final Scheduler scheduler;
+        private final Object service;
+
+        private TestRuntime(VM vm, Scheduler scheduler, Object service) {
+            this.vm = vm;
+            this.scheduler = scheduler;
+            this.service = service;
+        }
+
+        @Override
+        public void spawn(State state, ThreadId threadId) {
+            scheduler.submit(() -> {
+                vm.eval(this, state, threadId);
+                return null;
+            });
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getService(Class<T> klass) {
+            return (T) service;
+        }
+    }
+}
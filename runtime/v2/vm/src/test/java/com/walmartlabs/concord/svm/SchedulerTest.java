@@ -0,0 +1,83 @@
+package com.walmartlabs.concord.svm;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SchedulerTest {
+
+    @Test(timeout = 10000)
+    public void testMaxParallelism() throws Exception {
+        int tasks = 10;
+        AtomicInteger current = new AtomicInteger();
+        AtomicInteger max = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(tasks);
+
+        try (Scheduler scheduler = Scheduler.create(2)) {
+            for (int i = 0; i < tasks; i++) {
+                scheduler.submit(() -> {
+                    max.accumulateAndGet(current.incrementAndGet(), Math::max);
+                    Thread.sleep(50);
+                    current.decrementAndGet();
+                    done.countDown();
+                    return null;
+                });
+            }
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            assertEquals(2, max.get());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testNested() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+
+        try (Scheduler scheduler = Scheduler.create(1)) {
+            // the parent waits for the child while occupying the only slot
+            scheduler.submit(() -> {
+                AtomicBoolean childDone = new AtomicBoolean();
+                scheduler.submit(() -> {
+                    childDone.set(true);
+                    return null;
+                });
+
+                while (!childDone.get()) {
+                    Scheduler.sleep(10);
+                }
+
+                done.countDown();
+                return null;
+            });
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
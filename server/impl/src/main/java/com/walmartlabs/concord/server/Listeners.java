@@ -34,7 +34,10 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -56,6 +59,8 @@ public class Listeners {
     private final ExecutorService logListenerExecutor;
     private final ExecutorService auditLogListenerExecutor;
 
+    private final Map<ProcessLogListener, CompletableFuture<?>> lastLogDelivery = new HashMap<>();
+
     @Inject
     public Listeners(Collection<ProcessEventListener> eventListeners,
                      Collection<ProcessLogListener> logListeners,
@@ -85,11 +90,44 @@ public class Listeners {
         logListeners.forEach(l -> logListenerExecutor.submit(() -> l.onAppend(processKey, msg)));
     }
 
+    /**
+     * Delivers a batch of log chunks. Each listener receives the chunks
+     * in the same order as they were added into the batch and all chunks
+     * of the previous batch are delivered before the chunks of the next one.
+     */
+    @WithTimer
+    public void onProcessLogAppend(Map<? extends ProcessKey, List<byte[]>> chunks) {
+        synchronized (lastLogDelivery) {
+            for (ProcessLogListener l : logListeners) {
+                Runnable task = () -> chunks.forEach((k, v) -> v.forEach(msg -> l.onAppend(k, msg)));
+
+                CompletableFuture<?> prev = lastLogDelivery.getOrDefault(l, CompletableFuture.completedFuture(null));
+                CompletableFuture<?> next = prev.handle((r, e) -> null).thenRunAsync(task, logListenerExecutor)
+                        .whenComplete((r, e) -> {
+                            if (e != null) {
+                                log.warn("onProcessLogAppend -> error in {}: {}", l, e.getMessage());
+                            }
+                        });
+
+                lastLogDelivery.put(l, next);
+            }
+        }
+    }
+
     @WithTimer
     public void onAuditEvent(AuditEvent event) {
         auditLogListeners.forEach(l -> auditLogListenerExecutor.submit(() -> l.onEvent(event)));
     }
 
+    /**
+     * Delivers a batch of audit events. Each listener receives the events
+     * in the same order as they were added into the batch.
+     */
+    @WithTimer
+    public void onAuditEvents(List<AuditEvent> events) {
+        auditLogListeners.forEach(l -> auditLogListenerExecutor.submit(() -> events.forEach(l::onEvent)));
+    }
+
     private static ExecutorService createExecutor() {
         ThreadPoolExecutor tpe = new ThreadPoolExecutor(1, MAX_LISTENER_THREADS, 30, TimeUnit.SECONDS, new SynchronousQueue<>());
         tpe.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
@@ -30,6 +30,8 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 
 /**
  * Locking mechanism based on DB (advisory) locks
@@ -38,7 +40,14 @@ import java.sql.CallableStatement;
 @Singleton
 public class Locks {
 
+    /**
+     * Namespace of the process state blob locks, see {@link #lockShared(DSLContext, int, int)}.
+     */
+    public static final int STATE_BLOB_NAMESPACE = 1;
+
     private static final String LOCK_SQL = "{ call pg_advisory_xact_lock(?) }";
+    private static final String LOCK_SHARED_SQL = "{ call pg_advisory_xact_lock_shared(?, ?) }";
+    private static final String TRY_LOCK_SQL = "select pg_try_advisory_xact_lock(?, ?)";
 
     private final LockingConfiguration cfg;
 
@@ -61,6 +70,43 @@ public class Locks {
         });
     }
 
+    /**
+     * Takes a shared lock. Multiple transactions can hold the same shared lock,
+     * but not together with an exclusive {@link #tryLock(DSLContext, int, int)}.
+     * <p>
+     * Uses the two-key form of the advisory locks, the keys are not folded into
+     * {@code maxAdvisoryLocks} and don't overlap with the {@link #lock(DSLContext, String)} keys.
+     *
+     * @param namespace one of the {@code *_NAMESPACE} constants
+     */
+    @WithTimer
+    public void lockShared(DSLContext tx, int namespace, int key) {
+        tx.connection(conn -> {
+            try (CallableStatement cs = conn.prepareCall(LOCK_SHARED_SQL)) {
+                cs.setInt(1, namespace);
+                cs.setInt(2, key);
+                cs.execute();
+            }
+        });
+    }
+
+    /**
+     * Takes an exclusive lock if it is available. Same keys as {@link #lockShared(DSLContext, int, int)}.
+     *
+     * @return {@code true} if the lock was acquired.
+     */
+    public boolean tryLock(DSLContext tx, int namespace, int key) {
+        return tx.connectionResult(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(TRY_LOCK_SQL)) {
+                ps.setInt(1, namespace);
+                ps.setInt(2, key);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() && rs.getBoolean(1);
+                }
+            }
+        });
+    }
+
     @SuppressWarnings("UnstableApiUsage")
     private long hash(String key) {
         HashCode hc = HashCode.fromBytes(key.getBytes());
@@ -20,6 +20,7 @@ package com.walmartlabs.concord.server.ansible;
  * =====
  */
 
+import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.common.secret.KeyPair;
 import com.walmartlabs.concord.server.org.OrganizationManager;
 import com.walmartlabs.concord.server.org.project.ProjectDao;
@@ -38,9 +39,8 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.OutputStream;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.Collection;
 import java.util.Map;
 import java.util.UUID;
@@ -103,8 +103,8 @@ public class PrivateKeyProcessor implements PayloadProcessor {
         Path workspace = payload.getHeader(Payload.WORKSPACE_DIR);
         Path dst = workspace.resolve(PRIVATE_KEY_FILE_NAME);
 
-        try {
-            Files.write(dst, keyPair.getPrivateKey(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        try (OutputStream out = IOUtils.newReplacingOutputStream(dst)) {
+            out.write(keyPair.getPrivateKey());
         } catch (IOException e) {
             logManager.error(processKey, "Error while copying a private key: " + dst, e);
             throw new ProcessException(processKey, "Error while copying a private key: " + dst, e);
@@ -0,0 +1,95 @@
+package com.walmartlabs.concord.server.audit;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.walmartlabs.concord.server.cfg.AuditConfiguration;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces {@link AuditAction#ACCESS} entries: at most one entry per user
+ * and realm is logged per {@code audit.accessLogInterval}.
+ */
+@Named
+@Singleton
+public class AccessLogLimiter {
+
+    /**
+     * The states of idle users are eventually dropped, the number of skipped
+     * entries is recorded on a best-effort basis.
+     */
+    private static final int STATE_TTL_INTERVALS = 10;
+
+    private final long interval;
+    private final Cache<String, State> states;
+
+    @Inject
+    public AccessLogLimiter(AuditConfiguration cfg) {
+        this.interval = cfg.getAccessLogInterval();
+        this.states = CacheBuilder.newBuilder()
+                .expireAfterAccess(Math.max(interval, 0) * STATE_TTL_INTERVALS, TimeUnit.MILLISECONDS)
+                .concurrencyLevel(32)
+                .build();
+    }
+
+    /**
+     * @return the number of entries skipped since the last logged entry or
+     * {@code -1} if the entry shouldn't be logged
+     */
+    public long acquire(UUID userId, String realm) {
+        if (interval <= 0) {
+            return 0;
+        }
+
+        State s;
+        try {
+            s = states.get(userId + "/" + realm, State::new);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (s) {
+            if (s.loggedAt > 0 && now - s.loggedAt < interval) {
+                s.skipped++;
+                return -1;
+            }
+
+            long skipped = s.skipped;
+            s.loggedAt = now;
+            s.skipped = 0;
+            return skipped;
+        }
+    }
+
+    private static final class State {
+
+        private long loggedAt;
+        private long skipped;
+    }
+}
@@ -26,16 +26,21 @@ import com.walmartlabs.concord.db.PgUtils;
 import com.walmartlabs.concord.server.ConcordObjectMapper;
 import com.walmartlabs.concord.server.jooq.tables.AuditLog;
 import com.walmartlabs.concord.server.jooq.tables.Users;
+import com.walmartlabs.concord.server.jooq.tables.records.AuditLogRecord;
 import com.walmartlabs.concord.server.org.EntityOwner;
 import com.walmartlabs.concord.server.user.UserType;
 import org.jooq.Configuration;
+import org.jooq.InsertSetMoreStep;
+import org.jooq.InsertSetStep;
 import org.jooq.JSONB;
 import org.jooq.Record9;
 import org.jooq.SelectOnConditionStep;
+import org.jooq.impl.DSL;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.sql.Timestamp;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -56,17 +61,36 @@ public class AuditDao extends AbstractDao {
         this.objectMapper = objectMapper;
     }
 
-    public void insert(UUID userId, AuditObject object, AuditAction action, Object details) {
-        tx(tx -> tx.insertInto(AUDIT_LOG)
-                .columns(AUDIT_LOG.USER_ID,
-                        AUDIT_LOG.ENTRY_OBJECT,
-                        AUDIT_LOG.ENTRY_ACTION,
-                        AUDIT_LOG.ENTRY_DETAILS)
-                .values(userId,
-                        object.toString(),
-                        action.toString(),
-                        objectMapper.toJSONB(details))
-                .execute());
+    public void insert(UUID userId, AuditObject object, AuditAction action, Map<String, Object> details) {
+        insert(Collections.singletonList(new Entry(userId, object.toString(), action.toString(), details)));
+    }
+
+    /**
+     * Inserts the entries using a single multi-row insert.
+     */
+    public void insert(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        tx(tx -> {
+            InsertSetStep<AuditLogRecord> q = tx.insertInto(AUDIT_LOG);
+            InsertSetMoreStep<AuditLogRecord> last = null;
+
+            for (Entry e : entries) {
+                if (last != null) {
+                    q = last.newRecord();
+                }
+
+                last = q.set(AUDIT_LOG.ENTRY_DATE, e.getEntryDate() != null ? DSL.val(e.getEntryDate()) : DSL.defaultValue(AUDIT_LOG.ENTRY_DATE))
+                        .set(AUDIT_LOG.USER_ID, e.getUserId())
+                        .set(AUDIT_LOG.ENTRY_OBJECT, e.getObject())
+                        .set(AUDIT_LOG.ENTRY_ACTION, e.getAction())
+                        .set(AUDIT_LOG.ENTRY_DETAILS, objectMapper.toJSONB(e.getDetails()));
+            }
+
+            last.execute();
+        });
     }
 
     public List<AuditLogEntry> list(AuditLogFilter filter) {
@@ -151,4 +175,50 @@ public class AuditDao extends AbstractDao {
 
         return b.build();
     }
+
+    /**
+     * A new audit log entry. Entries without a date use the DB's default
+     * ({@code current_timestamp}), the entries queued by {@link AuditLogWriter} are
+     * timestamped when they are created, regardless of when they are written.
+     */
+    public static final class Entry {
+
+        private final Timestamp entryDate;
+        private final UUID userId;
+        private final String object;
+        private final String action;
+        private final Map<String, Object> details;
+
+        public Entry(UUID userId, String object, String action, Map<String, Object> details) {
+            this(null, userId, object, action, details);
+        }
+
+        public Entry(Timestamp entryDate, UUID userId, String object, String action, Map<String, Object> details) {
+            this.entryDate = entryDate;
+            this.userId = userId;
+            this.object = object;
+            this.action = action;
+            this.details = details;
+        }
+
+        public Timestamp getEntryDate() {
+            return entryDate;
+        }
+
+        public UUID getUserId() {
+            return userId;
+        }
+
+        public String getObject() {
+            return object;
+        }
+
+        public String getAction() {
+            return action;
+        }
+
+        public Map<String, Object> getDetails() {
+            return details;
+        }
+    }
 }
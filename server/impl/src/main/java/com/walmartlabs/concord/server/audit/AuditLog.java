@@ -45,12 +45,14 @@ public class AuditLog {
     private final AuditConfiguration cfg;
     private final AuditDao auditDao;
     private final Listeners listeners;
+    private final AuditLogWriter writer;
 
     @Inject
-    public AuditLog(AuditConfiguration cfg, AuditDao auditDao, Listeners listeners) {
+    public AuditLog(AuditConfiguration cfg, AuditDao auditDao, Listeners listeners, AuditLogWriter writer) {
         this.cfg = cfg;
         this.auditDao = auditDao;
         this.listeners = listeners;
+        this.writer = writer;
     }
 
     public EntryBuilder add(AuditObject object, AuditAction action) {
@@ -139,6 +141,10 @@ public class AuditLog {
                 details.put("changes", changes);
             }
 
+            if (writer.append(userId, action, object, details)) {
+                return;
+            }
+
             auditDao.insert(userId, object, action, details);
 
             listeners.onAuditEvent(new AuditEvent(userId, object.name(), action.name(), details));
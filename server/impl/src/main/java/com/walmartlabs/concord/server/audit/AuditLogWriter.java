@@ -0,0 +1,527 @@
+package com.walmartlabs.concord.server.audit;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.Listeners;
+import com.walmartlabs.concord.server.audit.AuditDao.Entry;
+import com.walmartlabs.concord.server.cfg.AuditConfiguration;
+import com.walmartlabs.concord.server.sdk.BackgroundTask;
+import com.walmartlabs.concord.server.sdk.audit.AuditEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind writer for the audit log.
+ * <p/>
+ * The entries are kept in a bounded in-memory queue and written periodically
+ * (or as soon as the queue contains {@code flushSize} entries) using multi-row
+ * inserts. The {@link com.walmartlabs.concord.server.sdk.audit.AuditLogListener}s
+ * are notified after each batch is written.
+ * <p/>
+ * When the queue is full (e.g. the DB is slow) or a batch can't be written,
+ * the entries are appended to a journal in {@code journalDir}. The journal
+ * is replayed once the queue is drained, including the journal files left
+ * after a restart. The number of entries already written is saved next to
+ * each journal file, so a partially replayed file continues where it stopped.
+ * Without a journal, such entries are written by the caller immediately.
+ */
+@Named
+@Singleton
+public class AuditLogWriter implements BackgroundTask {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLogWriter.class);
+
+    private static final int MAX_ROWS_PER_INSERT = 500;
+    private static final int MAX_RETRIES = 3;
+    private static final long ERROR_DELAY = TimeUnit.SECONDS.toMillis(1);
+
+    private final AuditDao auditDao;
+    private final Listeners listeners;
+    private final ConcordObjectMapper objectMapper;
+
+    private final boolean enabled;
+    private final int maxQueueSize;
+    private final int flushSize;
+    private final long flushInterval;
+    private final Set<AuditAction> syncActions;
+    private final Journal journal;
+
+    private final Object lock = new Object();
+
+    private List<Entry> pending = new ArrayList<>();
+    private boolean running;
+    private boolean stopped;
+
+    private final Timer flushTimer;
+    private final Counter journaled;
+    private final Counter lost;
+
+    private Thread worker;
+
+    @Inject
+    public AuditLogWriter(AuditConfiguration cfg,
+                          AuditDao auditDao,
+                          Listeners listeners,
+                          ConcordObjectMapper objectMapper,
+                          MetricRegistry metricRegistry) {
+
+        this.auditDao = auditDao;
+        this.listeners = listeners;
+        this.objectMapper = objectMapper;
+
+        this.enabled = cfg.isEnabled() && cfg.isWriterEnabled();
+        this.maxQueueSize = cfg.getWriterMaxQueueSize();
+        this.flushSize = cfg.getWriterFlushSize();
+        this.flushInterval = cfg.getWriterFlushInterval();
+        this.syncActions = toActions(cfg.getWriterSyncActions());
+        this.journal = cfg.getWriterJournalDir() != null ? new Journal(Paths.get(cfg.getWriterJournalDir())) : null;
+
+        metricRegistry.register("audit-log-writer-queue-size", (Gauge<Integer>) this::queueSize);
+        this.flushTimer = metricRegistry.timer("audit-log-writer-flush");
+        this.journaled = metricRegistry.counter("audit-log-writer-journaled");
+        this.lost = metricRegistry.counter("audit-log-writer-lost");
+    }
+
+    /**
+     * Adds an entry to the queue.
+     *
+     * @return {@code false} if the entry must be written by the caller
+     * immediately: the action requires a synchronous write, the writer is
+     * not running or the queue is full and there is no journal
+     */
+    public boolean append(UUID userId, AuditAction action, AuditObject object, Map<String, Object> details) {
+        if (!enabled || syncActions.contains(action)) {
+            return false;
+        }
+
+        // a copy of the details, the values might be modified after the call
+        // the entry is timestamped now, not when it is written into the DB
+        Entry e = new Entry(new Timestamp(System.currentTimeMillis()), userId, object.toString(), action.toString(), objectMapper.convertToMap(details));
+
+        synchronized (lock) {
+            if (!running) {
+                return false;
+            }
+
+            if (pending.size() < maxQueueSize) {
+                pending.add(e);
+                if (pending.size() >= flushSize) {
+                    lock.notifyAll();
+                }
+                return true;
+            }
+
+            return journal(Collections.singletonList(e));
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (lock) {
+            running = true;
+        }
+
+        this.worker = new Thread(this::run, "audit-log-writer");
+        this.worker.start();
+        log.info("start -> done");
+    }
+
+    @Override
+    public void stop() {
+        if (worker == null) {
+            return;
+        }
+
+        synchronized (lock) {
+            stopped = true;
+            lock.notifyAll();
+        }
+
+        try {
+            // the worker writes all remaining entries before exiting
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        worker = null;
+        log.info("stop -> done");
+    }
+
+    private void run() {
+        if (journal != null) {
+            // the entries left after the previous run
+            try {
+                replay();
+            } catch (Exception e) {
+                log.warn("run -> journal replay error: {}", e.getMessage());
+            }
+        }
+
+        while (true) {
+            List<Entry> batch;
+            boolean last;
+
+            synchronized (lock) {
+                long deadline = System.currentTimeMillis() + flushInterval;
+                while (!stopped && pending.size() < flushSize) {
+                    long timeout = deadline - System.currentTimeMillis();
+                    if (timeout <= 0) {
+                        break;
+                    }
+
+                    try {
+                        lock.wait(timeout);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        stopped = true;
+                    }
+                }
+
+                batch = pending;
+                pending = new ArrayList<>();
+                last = stopped;
+                if (last) {
+                    // the remaining entries are written by the callers
+                    running = false;
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                try {
+                    flush(batch);
+                } catch (Exception e) {
+                    log.error("run -> flush error: {}", e.getMessage(), e);
+                }
+            }
+
+            if (last) {
+                if (journal != null) {
+                    synchronized (lock) {
+                        journal.close();
+                    }
+                }
+                return;
+            }
+
+            if (journal != null && batch.size() < flushSize) {
+                // caught up, replay the journaled entries (if any)
+                try {
+                    replay();
+                } catch (Exception e) {
+                    log.warn("run -> journal replay error: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void flush(List<Entry> batch) {
+        for (int i = 0; i < batch.size(); i += MAX_ROWS_PER_INSERT) {
+            List<Entry> part = batch.subList(i, Math.min(i + MAX_ROWS_PER_INSERT, batch.size()));
+
+            if (!write(part)) {
+                boolean saved;
+                synchronized (lock) {
+                    saved = journal(part);
+                }
+
+                if (!saved) {
+                    writeEach(part);
+                }
+            }
+        }
+    }
+
+    private void replay() throws IOException {
+        List<Path> files;
+        synchronized (lock) {
+            files = journal.rotate();
+        }
+
+        for (Path f : files) {
+            List<Entry> entries = journal.read(f);
+            int offset = journal.readOffset(f);
+            for (int i = offset; i < entries.size(); i += MAX_ROWS_PER_INSERT) {
+                List<Entry> part = entries.subList(i, Math.min(i + MAX_ROWS_PER_INSERT, entries.size()));
+                if (!write(part)) {
+                    // the DB is still unavailable, will try again later
+                    return;
+                }
+
+                journal.writeOffset(f, i + part.size());
+            }
+
+            journal.delete(f);
+            log.info("replay ['{}'] -> done, {} entries ({} written previously)", f, entries.size(), offset);
+        }
+    }
+
+    /**
+     * Writes the entries using a single insert, retries on errors.
+     */
+    private boolean write(List<Entry> entries) {
+        for (int attempt = 1; ; attempt++) {
+            try (Timer.Context ignored = flushTimer.time()) {
+                auditDao.insert(entries);
+                break;
+            } catch (Exception e) {
+                if (attempt >= MAX_RETRIES) {
+                    log.warn("write -> batch insert failed after {} attempts: {}", attempt, e.getMessage());
+                    return false;
+                }
+
+                log.warn("write -> batch insert error: {}. Will retry in {}ms...", e.getMessage(), ERROR_DELAY);
+                sleep(ERROR_DELAY);
+            }
+        }
+
+        notifyListeners(entries);
+        return true;
+    }
+
+    /**
+     * Fallback: writes each entry separately so that a single bad entry
+     * doesn't block the rest.
+     */
+    private void writeEach(List<Entry> entries) {
+        List<Entry> written = new ArrayList<>();
+        for (Entry e : entries) {
+            try {
+                auditDao.insert(Collections.singletonList(e));
+                written.add(e);
+            } catch (Exception ex) {
+                lost.inc();
+                log.error("writeEach ['{}', '{}', '{}'] -> error, the entry is lost: {}", e.getUserId(), e.getObject(), e.getAction(), ex.getMessage());
+            }
+        }
+
+        notifyListeners(written);
+    }
+
+    private void notifyListeners(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        listeners.onAuditEvents(entries.stream()
+                .map(e -> new AuditEvent(e.getUserId(), e.getObject(), e.getAction(), e.getDetails()))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Must be called while holding the {@link #lock}.
+     */
+    private boolean journal(List<Entry> entries) {
+        if (journal == null) {
+            return false;
+        }
+
+        try {
+            journal.append(entries);
+            journaled.inc(entries.size());
+            return true;
+        } catch (IOException e) {
+            log.warn("journal -> error: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private int queueSize() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    private static Set<AuditAction> toActions(List<String> l) {
+        Set<AuditAction> result = EnumSet.noneOf(AuditAction.class);
+        if (l != null) {
+            l.forEach(a -> result.add(AuditAction.valueOf(a)));
+        }
+        return result;
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Append-only file of JSON lines. The current file is "rotated" before
+     * each replay, the rotated files are deleted after they are written into
+     * the DB. Each rotated file can have an "offset" file with the number of
+     * its entries already written into the DB.
+     */
+    private final class Journal {
+
+        private static final String CURRENT_FILE = "audit.journal";
+        private static final String REPLAY_SUFFIX = ".replay";
+        private static final String OFFSET_SUFFIX = ".offset";
+
+        private final Path dir;
+        private BufferedWriter writer;
+        private long seq;
+
+        private Journal(Path dir) {
+            this.dir = dir;
+        }
+
+        private void append(List<Entry> entries) throws IOException {
+            if (writer == null) {
+                Files.createDirectories(dir);
+                writer = Files.newBufferedWriter(dir.resolve(CURRENT_FILE), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+
+            for (Entry e : entries) {
+                Map<String, Object> m = new HashMap<>();
+                m.put("entryDate", e.getEntryDate().getTime());
+                m.put("userId", e.getUserId());
+                m.put("object", e.getObject());
+                m.put("action", e.getAction());
+                m.put("details", e.getDetails());
+
+                writer.write(objectMapper.toString(m));
+                writer.newLine();
+            }
+
+            writer.flush();
+        }
+
+        private void close() {
+            if (writer == null) {
+                return;
+            }
+
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("close -> error: {}", e.getMessage());
+            }
+
+            writer = null;
+        }
+
+        /**
+         * @return all files waiting to be replayed, oldest first
+         */
+        private List<Path> rotate() throws IOException {
+            if (!Files.exists(dir)) {
+                return Collections.emptyList();
+            }
+
+            close();
+
+            Path current = dir.resolve(CURRENT_FILE);
+            if (Files.exists(current)) {
+                String name = String.format("audit-%d-%06d%s", System.currentTimeMillis(), seq++, REPLAY_SUFFIX);
+                Files.move(current, dir.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            try (Stream<Path> s = Files.list(dir)) {
+                return s.filter(p -> p.getFileName().toString().endsWith(REPLAY_SUFFIX))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+
+        private int readOffset(Path p) throws IOException {
+            Path f = offsetFile(p);
+            if (!Files.exists(f)) {
+                return 0;
+            }
+
+            return Integer.parseInt(new String(Files.readAllBytes(f), StandardCharsets.UTF_8).trim());
+        }
+
+        private void writeOffset(Path p, int offset) throws IOException {
+            Path f = offsetFile(p);
+            Path tmp = f.resolveSibling(f.getFileName() + ".tmp");
+            Files.write(tmp, String.valueOf(offset).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, f, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        private void delete(Path p) throws IOException {
+            Files.delete(p);
+            Files.deleteIfExists(offsetFile(p));
+        }
+
+        private Path offsetFile(Path p) {
+            return p.resolveSibling(p.getFileName() + OFFSET_SUFFIX);
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<Entry> read(Path p) throws IOException {
+            List<Entry> result = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(p, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+
+                    Map<String, Object> m;
+                    try {
+                        m = objectMapper.fromString(line, Map.class);
+                    } catch (Exception e) {
+                        // e.g. a partially written line
+                        lost.inc();
+                        log.warn("read ['{}'] -> invalid entry, skipping: {}", p, e.getMessage());
+                        continue;
+                    }
+
+                    Object userId = m.get("userId");
+                    result.add(new Entry(new Timestamp(((Number) m.get("entryDate")).longValue()),
+                            userId != null ? UUID.fromString(userId.toString()) : null,
+                            (String) m.get("object"),
+                            (String) m.get("action"),
+                            (Map<String, Object>) m.get("details")));
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -26,8 +26,8 @@ import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.server.cfg.SecretStoreConfiguration;
 import com.walmartlabs.concord.server.org.secret.SecretUtils;
 import com.walmartlabs.concord.server.sdk.metrics.InjectMeter;
+import com.walmartlabs.concord.server.security.AuthenticationCache;
 import com.walmartlabs.concord.server.security.apikey.ApiKey;
-import com.walmartlabs.concord.server.security.apikey.ApiKeyDao;
 import com.walmartlabs.concord.server.security.sessionkey.SessionKey;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.authc.AuthenticationException;
@@ -71,7 +71,7 @@ public class ConcordAuthenticatingFilter extends AuthenticatingFilter {
             "/api/service/console/whoami"
     };
 
-    private final ApiKeyDao apiKeyDao;
+    private final AuthenticationCache authCache;
     private final SecretStoreConfiguration secretCfg;
     private final Set<AuthenticationHandler> authenticationHandlers;
 
@@ -82,13 +82,13 @@ public class ConcordAuthenticatingFilter extends AuthenticatingFilter {
     private final Meter failedAuths;
 
     @Inject
-    public ConcordAuthenticatingFilter(ApiKeyDao apiKeyDao,
+    public ConcordAuthenticatingFilter(AuthenticationCache authCache,
                                        SecretStoreConfiguration secretCfg,
                                        Set<AuthenticationHandler> authenticationHandlers,
                                        Meter successAuths,
                                        Meter failedAuths) {
 
-        this.apiKeyDao = apiKeyDao;
+        this.authCache = authCache;
         this.secretCfg = secretCfg;
         this.authenticationHandlers = authenticationHandlers;
         this.successAuths = successAuths;
@@ -198,7 +198,7 @@ public class ConcordAuthenticatingFilter extends AuthenticatingFilter {
 
             validateApiKey(h);
 
-            UUID userId = apiKeyDao.findUserId(h);
+            UUID userId = authCache.findApiKeyUserId(h);
             if (userId == null) {
                 return new UsernamePasswordToken();
             }
@@ -21,11 +21,13 @@ package com.walmartlabs.concord.server.cfg;
  */
 
 import com.walmartlabs.ollie.config.Config;
+import org.eclipse.sisu.Nullable;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import java.io.Serializable;
+import java.util.List;
 
 @Named
 @Singleton
@@ -43,6 +45,35 @@ public class AuditConfiguration implements Serializable {
     @Config("audit.maxLogAge")
     private long maxLogAge;
 
+    @Inject
+    @Config("audit.accessLogInterval")
+    private long accessLogInterval;
+
+    @Inject
+    @Config("audit.writer.enabled")
+    private boolean writerEnabled;
+
+    @Inject
+    @Config("audit.writer.maxQueueSize")
+    private int writerMaxQueueSize;
+
+    @Inject
+    @Config("audit.writer.flushSize")
+    private int writerFlushSize;
+
+    @Inject
+    @Config("audit.writer.flushInterval")
+    private long writerFlushInterval;
+
+    @Inject
+    @Config("audit.writer.syncActions")
+    private List<String> writerSyncActions;
+
+    @Inject
+    @Config("audit.writer.journalDir")
+    @Nullable
+    private String writerJournalDir;
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -54,4 +85,32 @@ public class AuditConfiguration implements Serializable {
     public long getMaxLogAge() {
         return maxLogAge;
     }
+
+    public long getAccessLogInterval() {
+        return accessLogInterval;
+    }
+
+    public boolean isWriterEnabled() {
+        return writerEnabled;
+    }
+
+    public int getWriterMaxQueueSize() {
+        return writerMaxQueueSize;
+    }
+
+    public int getWriterFlushSize() {
+        return writerFlushSize;
+    }
+
+    public long getWriterFlushInterval() {
+        return writerFlushInterval;
+    }
+
+    public List<String> getWriterSyncActions() {
+        return writerSyncActions;
+    }
+
+    public String getWriterJournalDir() {
+        return writerJournalDir;
+    }
 }
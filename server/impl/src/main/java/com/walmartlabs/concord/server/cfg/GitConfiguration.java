@@ -28,6 +28,7 @@ import javax.inject.Named;
 import javax.inject.Singleton;
 import java.io.Serializable;
 import java.time.Duration;
+import java.util.List;
 
 @Named
 @Singleton
@@ -42,6 +43,15 @@ public class GitConfiguration implements Serializable {
     @Config("git.shallowClone")
     private boolean shallowClone;
 
+    @Inject
+    @Config("git.partialCloneFilter")
+    @Nullable
+    private String partialCloneFilter;
+
+    @Inject
+    @Config("git.partialCloneRepositories")
+    private List<String> partialCloneRepositories;
+
     @Inject
     @Config("git.fetchTimeout")
     private Duration fetchTimeout;
@@ -66,6 +76,14 @@ public class GitConfiguration implements Serializable {
         return shallowClone;
     }
 
+    public String getPartialCloneFilter() {
+        return partialCloneFilter;
+    }
+
+    public List<String> getPartialCloneRepositories() {
+        return partialCloneRepositories;
+    }
+
     public Duration getFetchTimeout() {
         return fetchTimeout;
     }
@@ -86,6 +86,55 @@ public class ProcessConfiguration implements Serializable {
     @Config("process.checkLogPermissions")
     private boolean checkLogPermissions;
 
+    @Inject
+    @Config("process.logBuffer.enabled")
+    private boolean logBufferEnabled;
+
+    @Inject
+    @Config("process.logBuffer.maxSize")
+    private long logBufferMaxSize;
+
+    @Inject
+    @Config("process.logBuffer.flushSize")
+    private long logBufferFlushSize;
+
+    @Inject
+    @Config("process.logBuffer.flushInterval")
+    private long logBufferFlushInterval;
+
+    @Inject
+    @Config("process.logBuffer.maxBlockTime")
+    private long logBufferMaxBlockTime;
+
+    @Inject
+    @Config("process.logStream.pollInterval")
+    private long logStreamPollInterval;
+
+    @Inject
+    @Config("process.logStream.keepAliveInterval")
+    private long logStreamKeepAliveInterval;
+
+    @Inject
+    @Config("process.logStream.maxPendingBytes")
+    private int logStreamMaxPendingBytes;
+
+    @Inject
+    @Config("process.stateStore.type")
+    private String stateStoreType;
+
+    @Inject
+    @Config("process.stateStore.fs.path")
+    @Nullable
+    private String stateStoreFsPath;
+
+    @Inject
+    @Config("process.definitionCache.enabled")
+    private boolean definitionCacheEnabled;
+
+    @Inject
+    @Config("process.definitionCache.maxSize")
+    private long definitionCacheMaxSize;
+
     @Inject
     public ProcessConfiguration(@Config("process.signingKeyPath") @Nullable String signingKeyPath) {
         this.signingKeyPath = signingKeyPath != null ? Paths.get(signingKeyPath) : null;
@@ -147,4 +196,52 @@ public class ProcessConfiguration implements Serializable {
     public boolean isCheckLogPermissions() {
         return checkLogPermissions;
     }
+
+    public boolean isLogBufferEnabled() {
+        return logBufferEnabled;
+    }
+
+    public long getLogBufferMaxSize() {
+        return logBufferMaxSize;
+    }
+
+    public long getLogBufferFlushSize() {
+        return logBufferFlushSize;
+    }
+
+    public long getLogBufferFlushInterval() {
+        return logBufferFlushInterval;
+    }
+
+    public long getLogBufferMaxBlockTime() {
+        return logBufferMaxBlockTime;
+    }
+
+    public long getLogStreamPollInterval() {
+        return logStreamPollInterval;
+    }
+
+    public long getLogStreamKeepAliveInterval() {
+        return logStreamKeepAliveInterval;
+    }
+
+    public int getLogStreamMaxPendingBytes() {
+        return logStreamMaxPendingBytes;
+    }
+
+    public String getStateStoreType() {
+        return stateStoreType;
+    }
+
+    public String getStateStoreFsPath() {
+        return stateStoreFsPath;
+    }
+
+    public boolean isDefinitionCacheEnabled() {
+        return definitionCacheEnabled;
+    }
+
+    public long getDefinitionCacheMaxSize() {
+        return definitionCacheMaxSize;
+    }
 }
@@ -39,6 +39,14 @@ public class ProcessQueueConfiguration implements Serializable {
     @Config("queue.dispatcher.batchSize")
     private int dispatcherBatchSize;
 
+    @Inject
+    @Config("queue.dispatcher.useIndex")
+    private boolean dispatcherUseIndex;
+
+    @Inject
+    @Config("queue.dispatcher.indexReloadInterval")
+    private long dispatcherIndexReloadInterval;
+
     public long getDispatcherPollDelay() {
         return dispatcherPollDelay;
     }
@@ -46,4 +54,12 @@ public class ProcessQueueConfiguration implements Serializable {
     public int getDispatcherBatchSize() {
         return dispatcherBatchSize;
     }
+
+    public boolean isDispatcherUseIndex() {
+        return dispatcherUseIndex;
+    }
+
+    public long getDispatcherIndexReloadInterval() {
+        return dispatcherIndexReloadInterval;
+    }
 }
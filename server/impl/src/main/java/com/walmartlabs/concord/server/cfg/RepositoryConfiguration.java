@@ -43,6 +43,16 @@ public class RepositoryConfiguration {
 
     private final Path cacheInfoDir;
 
+    private final Path snapshotDir;
+
+    @Inject
+    @Config("repositoryCache.snapshots.enabled")
+    private boolean snapshotsEnabled;
+
+    @Inject
+    @Config("repositoryCache.snapshots.useHardLinks")
+    private boolean snapshotHardLinks;
+
     @Inject
     @Config("repositoryCache.concordFileValidationEnabled")
     private boolean concordFileValidationEnabled;
@@ -61,10 +71,12 @@ public class RepositoryConfiguration {
 
     @Inject
     public RepositoryConfiguration(@Config("repositoryCache.cacheDir") @Nullable String cacheDir,
-                                   @Config("repositoryCache.cacheInfoDir") @Nullable String cacheInfoDir) throws IOException {
+                                   @Config("repositoryCache.cacheInfoDir") @Nullable String cacheInfoDir,
+                                   @Config("repositoryCache.snapshots.dir") @Nullable String snapshotDir) throws IOException {
 
         this.cacheDir = getPath(cacheDir, "repoCache");
         this.cacheInfoDir = getPath(cacheInfoDir, "repoCacheInfo");
+        this.snapshotDir = getPath(snapshotDir, "repoSnapshots");
 
         log.info("init -> using {} ({}) to cache repositories", this.cacheDir, this.cacheInfoDir);
     }
@@ -92,4 +104,16 @@ public class RepositoryConfiguration {
     public Path getCacheInfoDir() {
         return cacheInfoDir;
     }
+
+    public boolean isSnapshotsEnabled() {
+        return snapshotsEnabled;
+    }
+
+    public Path getSnapshotDir() {
+        return snapshotDir;
+    }
+
+    public boolean isSnapshotHardLinks() {
+        return snapshotHardLinks;
+    }
 }
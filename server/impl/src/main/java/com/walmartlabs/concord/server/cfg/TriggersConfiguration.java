@@ -48,6 +48,14 @@ public class TriggersConfiguration {
     @Config("triggers.defaultConfiguration")
     private Map<String, Object> defaultConfiguration;
 
+    @Inject
+    @Config("triggers.useIndex")
+    private boolean useIndex;
+
+    @Inject
+    @Config("triggers.indexReloadInterval")
+    private long indexReloadInterval;
+
     public boolean isDisableAll() {
         return disableAll;
     }
@@ -64,4 +72,12 @@ public class TriggersConfiguration {
         return defaultConfiguration;
     }
 
+    public boolean isUseIndex() {
+        return useIndex;
+    }
+
+    public long getIndexReloadInterval() {
+        return indexReloadInterval;
+    }
+
 }
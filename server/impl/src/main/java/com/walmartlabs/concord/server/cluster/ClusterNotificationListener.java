@@ -0,0 +1,38 @@
+package com.walmartlabs.concord.server.cluster;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+public interface ClusterNotificationListener {
+
+    /**
+     * Called for each notification received on the subscribed channel.
+     * Invoked on the notification thread, implementations must not block.
+     */
+    void onNotification(String payload);
+
+    /**
+     * Called after the notification connection was (re-)established.
+     * Notifications sent while the connection was down are lost, so
+     * the listeners should assume that their state is stale.
+     */
+    default void onReconnect() {
+    }
+}
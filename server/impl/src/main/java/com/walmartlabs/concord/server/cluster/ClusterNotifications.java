@@ -0,0 +1,172 @@
+package com.walmartlabs.concord.server.cluster;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.server.sdk.BackgroundTask;
+import org.jooq.DSLContext;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.jooq.impl.DSL.field;
+
+/**
+ * Cluster-wide notifications based on PostgreSQL's LISTEN/NOTIFY.
+ * <p/>
+ * Notifications are delivered only after the sending transaction commits
+ * and only to the currently connected listeners, i.e. they are a hint,
+ * not a durable message. The subscribers must be able to recover their
+ * state on {@link ClusterNotificationListener#onReconnect()}.
+ * <p/>
+ * The listening connection is opened only after the first subscription,
+ * the subscribers are expected to subscribe only if their features are enabled.
+ */
+@Named
+@Singleton
+public class ClusterNotifications implements BackgroundTask {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterNotifications.class);
+
+    private static final int POLL_TIMEOUT = 1000;
+    private static final long ERROR_DELAY = TimeUnit.SECONDS.toMillis(5);
+
+    private final DataSource dataSource;
+    private final Map<String, List<ClusterNotificationListener>> listeners = new ConcurrentHashMap<>();
+
+    private Thread worker;
+
+    @Inject
+    public ClusterNotifications(@MainDB DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Subscribes the listener to the specified channel. Can be called
+     * before or after the notification thread is started.
+     */
+    public void subscribe(String channel, ClusterNotificationListener listener) {
+        listeners.computeIfAbsent(channel, k -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Sends a notification. The notification is delivered to all
+     * subscribers (including the current server) after {@code tx} commits.
+     */
+    public void publish(DSLContext tx, String channel, String payload) {
+        tx.select(field("pg_notify(?, ?)", channel, payload)).execute();
+    }
+
+    @Override
+    public void start() {
+        this.worker = new Thread(this::run, "cluster-notifications");
+        this.worker.start();
+        log.info("start -> done");
+    }
+
+    @Override
+    public void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+        log.info("stop -> done");
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            // the features using the notifications are optional,
+            // don't hold a connection if nobody is subscribed
+            if (listeners.isEmpty()) {
+                sleep(POLL_TIMEOUT);
+                continue;
+            }
+
+            try (Connection conn = dataSource.getConnection()) {
+                listen(conn);
+            } catch (Exception e) {
+                log.warn("run -> error: {}. Will retry in {}ms...", e.getMessage(), ERROR_DELAY);
+                sleep(ERROR_DELAY);
+            }
+        }
+    }
+
+    private void listen(Connection conn) throws SQLException {
+        conn.setAutoCommit(true);
+        PGConnection pgConn = conn.unwrap(PGConnection.class);
+
+        Set<String> channels = new HashSet<>();
+        boolean connected = false;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            // subscribe to the channels added since the last iteration
+            for (String channel : listeners.keySet()) {
+                if (channels.add(channel)) {
+                    try (Statement st = conn.createStatement()) {
+                        st.execute("LISTEN \"" + channel + "\"");
+                    }
+                }
+            }
+
+            if (!connected) {
+                connected = true;
+                listeners.values().forEach(l -> l.forEach(ClusterNotificationListener::onReconnect));
+            }
+
+            PGNotification[] notifications = pgConn.getNotifications(POLL_TIMEOUT);
+            if (notifications == null) {
+                continue;
+            }
+
+            for (PGNotification n : notifications) {
+                List<ClusterNotificationListener> l = listeners.getOrDefault(n.getName(), Collections.emptyList());
+                for (ClusterNotificationListener listener : l) {
+                    try {
+                        listener.onNotification(n.getParameter());
+                    } catch (Exception e) {
+                        log.warn("listen -> error while processing a notification on '{}': {}", n.getName(), e.getMessage(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
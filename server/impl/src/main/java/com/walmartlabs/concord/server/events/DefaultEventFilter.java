@@ -20,7 +20,9 @@ package com.walmartlabs.concord.server.events;
  * =====
  */
 
-import com.walmartlabs.concord.common.MapMatcher;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.walmartlabs.concord.common.CompiledMapMatcher;
 import com.walmartlabs.concord.server.org.triggers.TriggerEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,9 +33,35 @@ public final class DefaultEventFilter {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultEventFilter.class);
 
+    /**
+     * Compiled trigger conditions. The same trigger conditions are matched
+     * against every incoming event of the trigger's type. The cache is keyed
+     * by a snapshot of the conditions, so triggers with the same conditions
+     * share the matcher.
+     */
+    private static final Cache<CompiledMapMatcher.Key, CompiledMapMatcher> matchers = CacheBuilder.newBuilder()
+            .maximumSize(10 * 1024L)
+            .concurrencyLevel(32)
+            .build();
+
+    /**
+     * Matchers of the trigger instances, e.g. the ones kept in the trigger
+     * index. Uses the instances' identity, so the lookup doesn't need to hash
+     * the conditions.
+     */
+    private static final Cache<TriggerEntry, CompiledMapMatcher> triggerMatchers = CacheBuilder.newBuilder()
+            .maximumSize(10 * 1024L)
+            .concurrencyLevel(32)
+            .weakKeys()
+            .build();
+
     public static boolean filter(Map<String, Object> conditions, TriggerEntry t) {
         try {
-            return MapMatcher.matches(conditions, t.getConditions());
+            CompiledMapMatcher m = triggerMatchers.get(t, () -> {
+                CompiledMapMatcher.Key k = CompiledMapMatcher.Key.of(t.getConditions());
+                return matchers.get(k, () -> CompiledMapMatcher.compile(k.getConditions()));
+            });
+            return m.matches(conditions);
         } catch (Exception e) {
             log.warn("filter [{}, {}] -> error while matching events: {}", conditions, t, e.getMessage());
             return false;
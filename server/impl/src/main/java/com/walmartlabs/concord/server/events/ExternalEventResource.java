@@ -24,7 +24,7 @@ import com.walmartlabs.concord.server.cfg.ExternalEventsConfiguration;
 import com.walmartlabs.concord.server.cfg.TriggersConfiguration;
 import com.walmartlabs.concord.server.events.externalevent.ExternalEventTriggerProcessor;
 import com.walmartlabs.concord.server.org.project.ProjectDao;
-import com.walmartlabs.concord.server.org.project.RepositoryDao;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
 import com.walmartlabs.concord.server.process.PartialProcessKey;
 import com.walmartlabs.concord.server.process.ProcessManager;
 import com.walmartlabs.concord.server.process.ProcessSecurityContext;
@@ -72,13 +72,13 @@ public class ExternalEventResource extends AbstractEventResource implements Reso
     public ExternalEventResource(ExternalEventsConfiguration cfg,
                                  ProcessManager processManager,
                                  ProjectDao projectDao,
-                                 RepositoryDao repositoryDao,
+                                 TriggerIndex triggerIndex,
                                  TriggersConfiguration triggersCfg,
                                  UserManager userManager,
                                  ProcessSecurityContext processSecurityContext,
                                  List<ExternalEventTriggerProcessor> processors) {
 
-        super(cfg, processManager, projectDao, repositoryDao, triggersCfg, userManager, processSecurityContext);
+        super(cfg, processManager, projectDao, triggerIndex, triggersCfg, userManager, processSecurityContext);
         this.processors = processors;
     }
 
@@ -31,7 +31,7 @@ import com.walmartlabs.concord.server.cfg.TriggersConfiguration;
 import com.walmartlabs.concord.server.events.github.GithubTriggerProcessor;
 import com.walmartlabs.concord.server.events.github.Payload;
 import com.walmartlabs.concord.server.org.project.ProjectDao;
-import com.walmartlabs.concord.server.org.project.RepositoryDao;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
 import com.walmartlabs.concord.server.org.triggers.TriggerUtils;
 import com.walmartlabs.concord.server.process.ProcessManager;
 import com.walmartlabs.concord.server.process.ProcessSecurityContext;
@@ -86,7 +86,7 @@ public class GithubEventResource extends AbstractEventResource implements Resour
     @Inject
     public GithubEventResource(ExternalEventsConfiguration cfg,
                                ProjectDao projectDao,
-                               RepositoryDao repositoryDao,
+                               TriggerIndex triggerIndex,
                                ProcessManager processManager,
                                TriggersConfiguration triggersConfiguration,
                                GithubConfiguration githubCfg,
@@ -96,7 +96,7 @@ public class GithubEventResource extends AbstractEventResource implements Resour
                                AuditLog auditLog,
                                List<GithubTriggerProcessor> processors) {
 
-        super(cfg, processManager, projectDao, repositoryDao, triggersConfiguration, userManager, processSecurityContext);
+        super(cfg, processManager, projectDao, triggerIndex, triggersConfiguration, userManager, processSecurityContext);
 
         this.githubCfg = githubCfg;
         this.ldapManager = ldapManager;
@@ -20,9 +20,8 @@ package com.walmartlabs.concord.server.events.externalevent;
  * =====
  */
 
-import com.walmartlabs.concord.server.events.DefaultEventFilter;
 import com.walmartlabs.concord.server.org.triggers.TriggerEntry;
-import com.walmartlabs.concord.server.org.triggers.TriggersDao;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
 
 import javax.inject.Inject;
 import java.util.Collections;
@@ -32,12 +31,12 @@ import java.util.Map;
 
 public abstract class ExternalEventTriggerProcessor {
 
-    private final TriggersDao dao;
+    private final TriggerIndex triggerIndex;
     private final int version;
 
     @Inject
-    public ExternalEventTriggerProcessor(TriggersDao dao, int version) {
-        this.dao = dao;
+    public ExternalEventTriggerProcessor(TriggerIndex triggerIndex, int version) {
+        this.triggerIndex = triggerIndex;
         this.version = version;
     }
 
@@ -47,7 +46,7 @@ public abstract class ExternalEventTriggerProcessor {
         Map<String, Object> updatedEvent = buildEvent(event);
 
         for (TriggerEntry t : triggers) {
-            if (DefaultEventFilter.filter(updatedEvent, t)) {
+            if (triggerIndex.filter(updatedEvent, t)) {
                 result.add(ExternalEventTriggerProcessor.Result.from(updatedEvent, t));
             }
         }
@@ -60,7 +59,7 @@ public abstract class ExternalEventTriggerProcessor {
     }
 
     private List<TriggerEntry> listTriggers(String eventName) {
-        return dao.list(eventName, version, null);
+        return triggerIndex.list(null, eventName, version);
     }
 
     public static class Result {
@@ -26,7 +26,7 @@ import com.walmartlabs.concord.server.org.project.ProjectDao;
 import com.walmartlabs.concord.server.org.project.ProjectEntry;
 import com.walmartlabs.concord.server.org.project.RepositoryDao;
 import com.walmartlabs.concord.server.org.triggers.TriggerEntry;
-import com.walmartlabs.concord.server.org.triggers.TriggersDao;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
 import com.walmartlabs.concord.server.security.GithubAuthenticatingFilter;
 import com.walmartlabs.concord.server.security.github.GithubKey;
 
@@ -56,20 +56,20 @@ public class GithubTriggerV1Processor implements GithubTriggerProcessor {
 
     private final RepositoryDao repositoryDao;
     private final ProjectDao projectDao;
-    private final TriggersDao triggersDao;
+    private final TriggerIndex triggerIndex;
     private final GithubConfiguration githubCfg;
     private final GithubTriggerDefinitionEnricher triggerDefinitionEnricher;
 
     @Inject
     public GithubTriggerV1Processor(RepositoryDao repositoryDao,
                                     ProjectDao projectDao,
-                                    TriggersDao triggersDao,
+                                    TriggerIndex triggerIndex,
                                     GithubConfiguration githubCfg,
                                     GithubTriggerDefinitionEnricher triggerDefinitionEnricher) {
 
         this.repositoryDao = repositoryDao;
         this.projectDao = projectDao;
-        this.triggersDao = triggersDao;
+        this.triggerIndex = triggerIndex;
         this.githubCfg = githubCfg;
         this.triggerDefinitionEnricher = triggerDefinitionEnricher;
     }
@@ -110,7 +110,7 @@ public class GithubTriggerV1Processor implements GithubTriggerProcessor {
     }
 
     private List<TriggerEntry> listTriggers(UUID projectId) {
-        return triggersDao.list(projectId, EVENT_SOURCE, VERSION_ID, null);
+        return triggerIndex.list(projectId, EVENT_SOURCE, VERSION_ID);
     }
 
     private List<RepositoryItem> findRepos(String repoName, String branch, UUID hookProjectId) {
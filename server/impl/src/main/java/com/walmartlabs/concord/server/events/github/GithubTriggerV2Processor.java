@@ -22,11 +22,10 @@ package com.walmartlabs.concord.server.events.github;
 
 import com.walmartlabs.concord.repository.GitCliRepositoryProvider;
 import com.walmartlabs.concord.sdk.MapUtils;
-import com.walmartlabs.concord.server.events.DefaultEventFilter;
 import com.walmartlabs.concord.server.org.project.RepositoryDao;
 import com.walmartlabs.concord.server.org.project.RepositoryEntry;
 import com.walmartlabs.concord.server.org.triggers.TriggerEntry;
-import com.walmartlabs.concord.server.org.triggers.TriggersDao;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
 import com.walmartlabs.concord.server.security.github.GithubKey;
 
 import javax.inject.Inject;
@@ -43,12 +42,12 @@ public class GithubTriggerV2Processor implements GithubTriggerProcessor {
 
     private static final int VERSION_ID = 2;
 
-    private final TriggersDao dao;
+    private final TriggerIndex triggerIndex;
     private final List<EventEnricher> eventEnrichers;
 
     @Inject
-    public GithubTriggerV2Processor(TriggersDao dao, List<EventEnricher> eventEnrichers) {
-        this.dao = dao;
+    public GithubTriggerV2Processor(TriggerIndex triggerIndex, List<EventEnricher> eventEnrichers) {
+        this.triggerIndex = triggerIndex;
         this.eventEnrichers = eventEnrichers;
     }
 
@@ -57,12 +56,12 @@ public class GithubTriggerV2Processor implements GithubTriggerProcessor {
         GithubKey githubKey = GithubKey.getCurrent();
         UUID projectId = githubKey.getProjectId();
 
-        List<TriggerEntry> triggers = listTriggers(projectId, payload.getOrg(), payload.getRepo());
+        List<TriggerEntry> triggers = triggerIndex.listGithub(projectId, EVENT_SOURCE, VERSION_ID, payload.getOrg(), payload.getRepo());
         for (TriggerEntry t : triggers) {
             Map<String, Object> event = buildEvent(eventName, payload);
             enrichEventConditions(payload, t, event);
 
-            if (DefaultEventFilter.filter(event, t)) {
+            if (triggerIndex.filter(event, t)) {
                 result.add(Result.from(event, t));
             }
         }
@@ -74,20 +73,6 @@ public class GithubTriggerV2Processor implements GithubTriggerProcessor {
         }
     }
 
-    private List<TriggerEntry> listTriggers(UUID projectId, String org, String repo) {
-        Map<String, String> conditions = new HashMap<>();
-
-        if (org != null) {
-            conditions.put(GITHUB_ORG_KEY, org);
-        }
-
-        if (repo != null) {
-            conditions.put(GITHUB_REPO_KEY, repo);
-        }
-
-        return dao.list(projectId, EVENT_SOURCE, VERSION_ID, conditions);
-    }
-
     private Map<String, Object> buildEvent(String eventName, Payload payload) {
         Map<String, Object> result = new HashMap<>();
 
@@ -20,9 +20,8 @@ package com.walmartlabs.concord.server.events.oneops;
  * =====
  */
 
-import com.walmartlabs.concord.server.events.DefaultEventFilter;
 import com.walmartlabs.concord.server.org.triggers.TriggerEntry;
-import com.walmartlabs.concord.server.org.triggers.TriggersDao;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
 
 import java.util.*;
 
@@ -42,23 +41,23 @@ public abstract class OneOpsTriggerProcessor {
     private static final String AUTHOR_KEY = "author";
     private static final String EVENT_SOURCE = "oneops";
 
-    private final TriggersDao triggersDao;
+    private final TriggerIndex triggerIndex;
     private final int version;
 
-    public OneOpsTriggerProcessor(TriggersDao triggersDao, int version) {
-        this.triggersDao = triggersDao;
+    public OneOpsTriggerProcessor(TriggerIndex triggerIndex, int version) {
+        this.triggerIndex = triggerIndex;
         this.version = version;
     }
 
     public void process(Map<String, Object> event, List<Result> result) {
-        List<TriggerEntry> triggers = triggersDao.list(EVENT_SOURCE, version);
+        List<TriggerEntry> triggers = triggerIndex.list(null, EVENT_SOURCE, version);
 
         Map<String, Object> triggerConditions = buildConditions(event);
         enrichTriggerConditions(triggerConditions, version);
         Map<String, Object> triggerEvent = buildTriggerEvent(event, triggerConditions);
 
         for (TriggerEntry triggerEntry : triggers) {
-            if (DefaultEventFilter.filter(triggerConditions, triggerEntry)) {
+            if (triggerIndex.filter(triggerConditions, triggerEntry)) {
                 result.add(Result.from(triggerEvent, triggerEntry));
             }
         }
@@ -20,7 +20,7 @@ package com.walmartlabs.concord.server.events.oneops;
  * =====
  */
 
-import com.walmartlabs.concord.server.org.triggers.TriggersDao;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -38,7 +38,7 @@ import javax.inject.Singleton;
 public class OneOpsTriggerV1Processor extends OneOpsTriggerProcessor {
 
     @Inject
-    public OneOpsTriggerV1Processor(TriggersDao triggersDao) {
-        super(triggersDao, 1);
+    public OneOpsTriggerV1Processor(TriggerIndex triggerIndex) {
+        super(triggerIndex, 1);
     }
 }
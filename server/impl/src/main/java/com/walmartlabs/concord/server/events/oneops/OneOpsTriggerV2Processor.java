@@ -20,7 +20,7 @@ package com.walmartlabs.concord.server.events.oneops;
  * =====
  */
 
-import com.walmartlabs.concord.server.org.triggers.TriggersDao;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -37,7 +37,7 @@ import javax.inject.Singleton;
 public class OneOpsTriggerV2Processor extends OneOpsTriggerProcessor {
 
     @Inject
-    public OneOpsTriggerV2Processor(TriggersDao triggersDao) {
-        super(triggersDao, 2);
+    public OneOpsTriggerV2Processor(TriggerIndex triggerIndex) {
+        super(triggerIndex, 2);
     }
 }
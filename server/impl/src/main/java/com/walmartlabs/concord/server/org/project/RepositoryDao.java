@@ -29,9 +29,7 @@ import org.jooq.impl.DSL;
 
 import javax.inject.Inject;
 import javax.inject.Named;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
 
 import static com.walmartlabs.concord.server.jooq.tables.Repositories.REPOSITORIES;
 import static com.walmartlabs.concord.server.jooq.tables.Secrets.SECRETS;
@@ -73,6 +71,24 @@ public class RepositoryDao extends AbstractDao {
         }
     }
 
+    /**
+     * Returns the IDs of the disabled repositories, optionally only
+     * of the specified projects.
+     */
+    public Set<UUID> listDisabled(Collection<UUID> projectIds) {
+        try (DSLContext tx = DSL.using(cfg)) {
+            Condition c = REPOSITORIES.IS_DISABLED.isTrue();
+            if (projectIds != null) {
+                c = c.and(REPOSITORIES.PROJECT_ID.in(projectIds));
+            }
+
+            return new HashSet<>(tx.select(REPOSITORIES.REPO_ID)
+                    .from(REPOSITORIES)
+                    .where(c)
+                    .fetch(REPOSITORIES.REPO_ID));
+        }
+    }
+
     public RepositoryEntry get(UUID projectId, UUID repoId) {
         return txResult(tx -> get(tx, projectId, repoId));
     }
@@ -0,0 +1,488 @@
+package com.walmartlabs.concord.server.org.triggers;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.common.CompiledMapMatcher;
+import com.walmartlabs.concord.server.cfg.TriggersConfiguration;
+import com.walmartlabs.concord.server.cluster.ClusterNotificationListener;
+import com.walmartlabs.concord.server.cluster.ClusterNotifications;
+import com.walmartlabs.concord.server.events.DefaultEventFilter;
+import com.walmartlabs.concord.server.org.project.RepositoryDao;
+import com.walmartlabs.concord.server.org.project.RepositoryEntry;
+import com.walmartlabs.concord.server.sdk.BackgroundTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.walmartlabs.concord.server.events.github.Constants.GITHUB_ORG_KEY;
+import static com.walmartlabs.concord.server.events.github.Constants.GITHUB_REPO_KEY;
+
+/**
+ * In-memory index of the triggers used to route the external events.
+ * <p/>
+ * The triggers are grouped by their event source and version, the GitHub
+ * triggers are additionally grouped by their (literal) {@code githubOrg}
+ * and {@code githubRepo} conditions. Each trigger's conditions are compiled
+ * once and the state of its repository is kept alongside.
+ * <p/>
+ * The index is updated incrementally (per project) using the {@link #CHANNEL}
+ * notifications sent by the {@code TRIGGERS}, {@code REPOSITORIES},
+ * {@code PROJECTS} and {@code ORGANIZATIONS} table triggers, i.e. on every
+ * trigger refresh or change made on any server. It is also periodically
+ * reloaded to recover from any missed notifications.
+ * <p/>
+ * The updates are made on a background thread, the callers always get
+ * the latest available snapshot without waiting for the DB. Only the very
+ * first call waits for the initial load.
+ * <p/>
+ * If the index is disabled ({@code triggers.useIndex}), the triggers are
+ * loaded from the DB on every call.
+ */
+@Named
+@Singleton
+public class TriggerIndex implements ClusterNotificationListener, BackgroundTask {
+
+    private static final Logger log = LoggerFactory.getLogger(TriggerIndex.class);
+
+    public static final String CHANNEL = "triggers";
+
+    private static final String ALL_PROJECTS = "*";
+    private static final String WILDCARD = "*";
+    private static final String VERSION_KEY = "version";
+
+    /**
+     * If there are more pending updates than this value, the index is reloaded
+     * completely instead.
+     */
+    private static final int MAX_INCREMENTAL_UPDATE = 100;
+
+    private final TriggersDao triggersDao;
+    private final RepositoryDao repositoryDao;
+    private final boolean enabled;
+    private final long reloadInterval;
+
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+    private final Object syncLock = new Object();
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "trigger-index-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Histogram sizeHistogram;
+    private final Histogram updateSizeHistogram;
+
+    private volatile boolean stale = true;
+    private volatile Snapshot snapshot;
+    private volatile long lastReloadAt;
+
+    @Inject
+    public TriggerIndex(TriggersConfiguration cfg,
+                        TriggersDao triggersDao,
+                        RepositoryDao repositoryDao,
+                        ClusterNotifications notifications,
+                        MetricRegistry metricRegistry) {
+
+        this.triggersDao = triggersDao;
+        this.repositoryDao = repositoryDao;
+        this.enabled = cfg.isUseIndex();
+        this.reloadInterval = cfg.getIndexReloadInterval();
+
+        this.sizeHistogram = metricRegistry.histogram("trigger-index-size");
+        this.updateSizeHistogram = metricRegistry.histogram("trigger-index-update-size");
+
+        if (enabled) {
+            notifications.subscribe(CHANNEL, this);
+        }
+    }
+
+    @Override
+    public void onNotification(String payload) {
+        // "projectId" or "*"
+        if (ALL_PROJECTS.equals(payload)) {
+            stale = true;
+        } else {
+            try {
+                pending.add(UUID.fromString(payload));
+            } catch (IllegalArgumentException e) {
+                log.warn("onNotification -> invalid payload: {}", payload);
+                return;
+            }
+        }
+
+        scheduleRefresh();
+    }
+
+    @Override
+    public void onReconnect() {
+        stale = true;
+        scheduleRefresh();
+    }
+
+    @Override
+    public void stop() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Returns the triggers with the specified event source, same as
+     * {@link TriggersDao#list(UUID, String, Integer, Map)} without conditions.
+     *
+     * @param projectId optional project ID
+     * @param version   optional trigger version, {@code 1} includes
+     *                  the triggers without the {@code version} condition
+     */
+    public List<TriggerEntry> list(UUID projectId, String eventSource, Integer version) {
+        if (!enabled) {
+            return triggersDao.list(projectId, eventSource, version, null);
+        }
+
+        return filterByProject(sync().find(eventSource, version), projectId);
+    }
+
+    /**
+     * Returns the GitHub triggers (with the specified event source)
+     * which can match the specified {@code githubOrg} and {@code githubRepo}
+     * values. The result must be filtered using the trigger conditions.
+     */
+    public List<TriggerEntry> listGithub(UUID projectId, String eventSource, Integer version, String org, String repo) {
+        if (!enabled) {
+            Map<String, String> conditions = new HashMap<>();
+            if (org != null) {
+                conditions.put(GITHUB_ORG_KEY, org);
+            }
+            if (repo != null) {
+                conditions.put(GITHUB_REPO_KEY, repo);
+            }
+            return triggersDao.list(projectId, eventSource, version, conditions);
+        }
+
+        Snapshot s = sync();
+        if (org == null || repo == null) {
+            return filterByProject(s.find(eventSource, version), projectId);
+        }
+
+        List<TriggerEntry> result = new ArrayList<>();
+        for (Group g : s.groups(eventSource, version)) {
+            for (String o : new String[]{org, WILDCARD}) {
+                Map<String, List<Item>> byRepo = g.github.get(o);
+                if (byRepo == null) {
+                    continue;
+                }
+
+                for (String r : new String[]{repo, WILDCARD}) {
+                    List<Item> l = byRepo.get(r);
+                    if (l != null) {
+                        l.forEach(i -> result.add(i.entry));
+                    }
+                }
+            }
+        }
+
+        return filterByProject(result, projectId);
+    }
+
+    /**
+     * Matches the event against the trigger's conditions. Uses the pre-compiled
+     * conditions if the trigger was returned by the index.
+     *
+     * @see DefaultEventFilter#filter(Map, TriggerEntry)
+     */
+    public boolean filter(Map<String, Object> event, TriggerEntry t) {
+        Snapshot s = snapshot;
+        Item i = s != null ? s.items.get(t.getId()) : null;
+        if (i == null || i.entry != t || i.matcher == null) {
+            return DefaultEventFilter.filter(event, t);
+        }
+
+        try {
+            return i.matcher.matches(event);
+        } catch (Exception e) {
+            log.warn("filter [{}, {}] -> error while matching events: {}", event, t, e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean isRepositoryDisabled(UUID repoId) {
+        if (enabled) {
+            Boolean disabled = sync().repositories.get(repoId);
+            if (disabled != null) {
+                return disabled;
+            }
+        }
+
+        RepositoryEntry r = repositoryDao.get(repoId);
+        return r == null || r.isDisabled();
+    }
+
+    private Snapshot sync() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            // the initial load
+            synchronized (syncLock) {
+                if (snapshot == null) {
+                    refresh();
+                }
+                return snapshot;
+            }
+        }
+
+        if (stale || !pending.isEmpty() || System.currentTimeMillis() - lastReloadAt >= reloadInterval) {
+            scheduleRefresh();
+        }
+
+        return s;
+    }
+
+    private void scheduleRefresh() {
+        if (!refreshPending.compareAndSet(false, true)) {
+            // the refresh is already scheduled and will see the latest changes
+            return;
+        }
+
+        try {
+            refreshExecutor.execute(() -> {
+                refreshPending.set(false);
+
+                try {
+                    synchronized (syncLock) {
+                        refresh();
+                    }
+                } catch (Exception e) {
+                    // will be retried on the next call
+                    log.warn("refresh -> error: {}", e.getMessage(), e);
+                }
+            });
+        } catch (Exception e) {
+            // the executor is shut down
+            refreshPending.set(false);
+        }
+    }
+
+    private void refresh() {
+        long now = System.currentTimeMillis();
+        if (snapshot == null || stale || pending.size() > MAX_INCREMENTAL_UPDATE || now - lastReloadAt >= reloadInterval) {
+            reload(now);
+        } else if (!pending.isEmpty()) {
+            update();
+        }
+    }
+
+    private void reload(long now) {
+        // any notification received after this point will be applied on the next refresh
+        stale = false;
+        pending.clear();
+
+        List<TriggerEntry> triggers;
+        Set<UUID> disabledRepos;
+        try {
+            triggers = triggersDao.listByProjects(null);
+            disabledRepos = repositoryDao.listDisabled(null);
+        } catch (RuntimeException e) {
+            stale = true;
+            throw e;
+        }
+
+        Map<UUID, Item> items = new HashMap<>();
+        triggers.forEach(t -> items.put(t.getId(), new Item(t, disabledRepos.contains(t.getRepositoryId()))));
+
+        snapshot = new Snapshot(items);
+        lastReloadAt = now;
+
+        sizeHistogram.update(items.size());
+        log.info("reload -> done, {} trigger(s)", items.size());
+    }
+
+    private void update() {
+        Set<UUID> projectIds = new HashSet<>();
+        for (Iterator<UUID> i = pending.iterator(); i.hasNext(); ) {
+            projectIds.add(i.next());
+            i.remove();
+        }
+
+        updateSizeHistogram.update(projectIds.size());
+
+        List<TriggerEntry> triggers;
+        Set<UUID> disabledRepos;
+        try {
+            triggers = triggersDao.listByProjects(projectIds);
+            disabledRepos = repositoryDao.listDisabled(projectIds);
+        } catch (RuntimeException e) {
+            // retry the same projects next time
+            pending.addAll(projectIds);
+            throw e;
+        }
+
+        Map<UUID, Item> items = new HashMap<>(snapshot.items);
+        items.values().removeIf(i -> projectIds.contains(i.entry.getProjectId()));
+        triggers.forEach(t -> items.put(t.getId(), new Item(t, disabledRepos.contains(t.getRepositoryId()))));
+
+        snapshot = new Snapshot(items);
+
+        sizeHistogram.update(items.size());
+    }
+
+    private static List<TriggerEntry> filterByProject(List<TriggerEntry> l, UUID projectId) {
+        if (projectId == null) {
+            return l;
+        }
+
+        List<TriggerEntry> result = new ArrayList<>();
+        for (TriggerEntry t : l) {
+            if (projectId.equals(t.getProjectId())) {
+                result.add(t);
+            }
+        }
+        return result;
+    }
+
+    private static String getVersion(Map<String, Object> conditions) {
+        Object v = conditions != null ? conditions.get(VERSION_KEY) : null;
+        return v != null ? v.toString() : null;
+    }
+
+    private static CompiledMapMatcher compile(Map<String, Object> conditions) {
+        try {
+            return CompiledMapMatcher.compile(conditions);
+        } catch (Exception e) {
+            // invalid conditions, will be reported by DefaultEventFilter
+            return null;
+        }
+    }
+
+    private static String getGithubKey(Map<String, Object> conditions, String key) {
+        Object v = conditions != null ? conditions.get(key) : null;
+        if (v instanceof String && CompiledMapMatcher.isLiteral((String) v)) {
+            return (String) v;
+        }
+        return WILDCARD;
+    }
+
+    /**
+     * Immutable state of the index.
+     */
+    private static final class Snapshot {
+
+        private final Map<UUID, Item> items;
+
+        /**
+         * Event source -> version (or {@code null} if not specified) -> group.
+         */
+        private final Map<String, Map<String, Group>> groups = new HashMap<>();
+
+        private final Map<UUID, Boolean> repositories = new HashMap<>();
+
+        private Snapshot(Map<UUID, Item> items) {
+            this.items = items;
+
+            for (Item i : items.values()) {
+                TriggerEntry t = i.entry;
+
+                Group g = groups.computeIfAbsent(t.getEventSource(), k -> new HashMap<>())
+                        .computeIfAbsent(i.version, k -> new Group());
+
+                g.items.add(i);
+                g.github.computeIfAbsent(getGithubKey(t.getConditions(), GITHUB_ORG_KEY), k -> new HashMap<>())
+                        .computeIfAbsent(getGithubKey(t.getConditions(), GITHUB_REPO_KEY), k -> new ArrayList<>())
+                        .add(i);
+
+                if (t.getRepositoryId() != null) {
+                    repositories.put(t.getRepositoryId(), i.repositoryDisabled);
+                }
+            }
+        }
+
+        private List<Group> groups(String eventSource, Integer version) {
+            Map<String, Group> m = groups.get(eventSource);
+            if (m == null) {
+                return Collections.emptyList();
+            }
+
+            if (version == null) {
+                return new ArrayList<>(m.values());
+            }
+
+            List<Group> result = new ArrayList<>(2);
+
+            Group g = m.get(String.valueOf(version));
+            if (g != null) {
+                result.add(g);
+            }
+
+            // triggers without a version are considered v1
+            if (version == 1) {
+                g = m.get(null);
+                if (g != null) {
+                    result.add(g);
+                }
+            }
+
+            return result;
+        }
+
+        private List<TriggerEntry> find(String eventSource, Integer version) {
+            List<TriggerEntry> result = new ArrayList<>();
+            for (Group g : groups(eventSource, version)) {
+                g.items.forEach(i -> result.add(i.entry));
+            }
+            return result;
+        }
+    }
+
+    private static final class Group {
+
+        private final List<Item> items = new ArrayList<>();
+
+        /**
+         * {@code githubOrg} -> {@code githubRepo} -> triggers. Non-literal
+         * (regex) or missing conditions are grouped under {@link #WILDCARD}.
+         */
+        private final Map<String, Map<String, List<Item>>> github = new HashMap<>();
+    }
+
+    private static final class Item {
+
+        private final TriggerEntry entry;
+        private final String version;
+        private final CompiledMapMatcher matcher;
+        private final boolean repositoryDisabled;
+
+        private Item(TriggerEntry entry, boolean repositoryDisabled) {
+            Map<String, Object> conditions = entry.getConditions() != null ? entry.getConditions() : Collections.emptyMap();
+
+            this.entry = entry;
+            this.version = getVersion(conditions);
+            this.matcher = compile(conditions);
+            this.repositoryDisabled = repositoryDisabled;
+        }
+    }
+}
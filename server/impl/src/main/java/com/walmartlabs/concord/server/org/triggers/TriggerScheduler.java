@@ -22,7 +22,6 @@ package com.walmartlabs.concord.server.org.triggers;
 
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.server.cfg.TriggersConfiguration;
-import com.walmartlabs.concord.server.org.project.RepositoryDao;
 import com.walmartlabs.concord.server.process.*;
 import com.walmartlabs.concord.server.sdk.ScheduledTask;
 import org.slf4j.Logger;
@@ -48,21 +47,21 @@ public class TriggerScheduler implements ScheduledTask {
 
     private final Date startedAt;
     private final TriggerScheduleDao scheduleDao;
-    private final RepositoryDao repositoryDao;
+    private final TriggerIndex triggerIndex;
     private final ProcessManager processManager;
     private final ProcessSecurityContext processSecurityContext;
     private final TriggersConfiguration triggerCfg;
 
     @Inject
     public TriggerScheduler(TriggerScheduleDao scheduleDao,
-                            RepositoryDao repositoryDao,
+                            TriggerIndex triggerIndex,
                             ProcessManager processManager,
                             ProcessSecurityContext processSecurityContext,
                             TriggersConfiguration triggerCfg) {
 
         this.startedAt = new Date();
         this.scheduleDao = scheduleDao;
-        this.repositoryDao = repositoryDao;
+        this.triggerIndex = triggerIndex;
         this.processManager = processManager;
         this.processSecurityContext = processSecurityContext;
         this.triggerCfg = triggerCfg;
@@ -148,7 +147,7 @@ public class TriggerScheduler implements ScheduledTask {
     }
 
     private boolean isRepositoryDisabled(TriggerSchedulerEntry t) {
-        return repositoryDao.get(t.getRepositoryId()).isDisabled();
+        return triggerIndex.isRepositoryDisabled(t.getRepositoryId());
     }
 
     private boolean isDisabled(String eventName) {
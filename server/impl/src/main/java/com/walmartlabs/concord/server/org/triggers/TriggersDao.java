@@ -34,6 +34,7 @@ import org.jooq.impl.DSL;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -144,6 +145,21 @@ public class TriggersDao extends AbstractDao {
                 .fetch(this::toEntity);
     }
 
+    /**
+     * Returns all triggers, optionally only of the specified projects.
+     */
+    public List<TriggerEntry> listByProjects(Collection<UUID> projectIds) {
+        try (DSLContext tx = DSL.using(cfg)) {
+            SelectJoinStep<Record12<UUID, UUID, String, UUID, String, UUID, String, String, String[], JSONB, JSONB, JSONB>> query = selectTriggers(tx);
+
+            if (projectIds != null) {
+                query.where(TRIGGERS.PROJECT_ID.in(projectIds));
+            }
+
+            return query.fetch(this::toEntity);
+        }
+    }
+
     public List<TriggerEntry> list(UUID orgId, UUID projectId, UUID repositoryId, String type) {
         try (DSLContext tx = DSL.using(cfg)) {
             SelectJoinStep<Record12<UUID, UUID, String, UUID, String, UUID, String, String, String[], JSONB, JSONB, JSONB>> query = selectTriggers(tx);
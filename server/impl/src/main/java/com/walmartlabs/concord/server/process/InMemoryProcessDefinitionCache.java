@@ -0,0 +1,72 @@
+package com.walmartlabs.concord.server.process;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.walmartlabs.concord.common.ProcessDefinitionCache;
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * LRU cache of serialized process definitions, limited by the total size
+ * of the cached data ({@code process.definitionCache.maxSize}).
+ */
+@Named
+@Singleton
+public class InMemoryProcessDefinitionCache implements ProcessDefinitionCache {
+
+    private final boolean enabled;
+    private final Cache<String, byte[]> cache;
+
+    @Inject
+    public InMemoryProcessDefinitionCache(ProcessConfiguration cfg, MetricRegistry metricRegistry) {
+        this.enabled = cfg.isDefinitionCacheEnabled();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(Math.max(cfg.getDefinitionCacheMaxSize(), 0))
+                .weigher((String k, byte[] v) -> v.length)
+                .concurrencyLevel(16)
+                .recordStats()
+                .build();
+
+        metricRegistry.register("process-definition-cache-size", (Gauge<Long>) cache::size);
+        metricRegistry.register("process-definition-cache-hit-rate", (Gauge<Double>) () -> cache.stats().hitRate());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public byte[] get(String hash) {
+        return cache.getIfPresent(hash);
+    }
+
+    @Override
+    public void put(String hash, byte[] data) {
+        cache.put(hash, data);
+    }
+}
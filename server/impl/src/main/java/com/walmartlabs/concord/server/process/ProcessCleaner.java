@@ -22,10 +22,15 @@ package com.walmartlabs.concord.server.process;
 
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.server.Locks;
 import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+import com.walmartlabs.concord.server.process.state.ProcessStateManager;
+import com.walmartlabs.concord.server.process.state.StateStore;
+import com.walmartlabs.concord.server.process.state.StateStoreProvider;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
 import com.walmartlabs.concord.server.sdk.ScheduledTask;
 import org.jooq.Configuration;
+import org.jooq.DSLContext;
 import org.jooq.Record1;
 import org.jooq.SelectConditionStep;
 import org.jooq.SelectJoinStep;
@@ -35,14 +40,20 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.io.IOException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import static com.walmartlabs.concord.server.jooq.tables.ProcessCheckpoints.PROCESS_CHECKPOINTS;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessEvents.PROCESS_EVENTS;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessLogs.PROCESS_LOGS;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessState.PROCESS_STATE;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessStateBlobs.PROCESS_STATE_BLOBS;
+import static org.jooq.impl.DSL.selectOne;
 
 @Named("process-cleaner")
 @Singleton
@@ -56,13 +67,24 @@ public class ProcessCleaner implements ScheduledTask {
             ProcessStatus.RESUMING.toString()
     };
 
+    /**
+     * Unused state blobs younger than this are kept, the new ones might
+     * be referenced by a process state that is being imported.
+     */
+    private static final long BLOB_GRACE_PERIOD = TimeUnit.HOURS.toMillis(1);
+
+    private static final int BLOB_DELETE_BATCH_SIZE = 1000;
+    private static final int EXTERNAL_BLOB_DELETE_BATCH_SIZE = 100;
+
     private final ProcessConfiguration cfg;
     private final CleanerDao cleanerDao;
+    private final StateStoreProvider stateStoreProvider;
 
     @Inject
-    public ProcessCleaner(ProcessConfiguration cfg, CleanerDao cleanerDao) {
+    public ProcessCleaner(ProcessConfiguration cfg, CleanerDao cleanerDao, StateStoreProvider stateStoreProvider) {
         this.cfg = cfg;
         this.cleanerDao = cleanerDao;
+        this.stateStoreProvider = stateStoreProvider;
     }
 
     @Override
@@ -75,14 +97,21 @@ public class ProcessCleaner implements ScheduledTask {
         Timestamp cutoff = new Timestamp(System.currentTimeMillis() - cfg.getMaxStateAge());
         cleanerDao.deleteOldState(cutoff, cfg);
         cleanerDao.deleteOrphans(cfg);
+
+        if (cfg.isStateCleanup()) {
+            cleanerDao.deleteUnusedBlobs(new Timestamp(System.currentTimeMillis() - BLOB_GRACE_PERIOD), stateStoreProvider.get());
+        }
     }
 
     @Named
-    private static class CleanerDao extends AbstractDao {
+    static class CleanerDao extends AbstractDao {
+
+        private final Locks locks;
 
         @Inject
-        protected CleanerDao(@MainDB Configuration cfg) {
+        protected CleanerDao(@MainDB Configuration cfg, Locks locks) {
             super(cfg);
+            this.locks = locks;
         }
 
         void deleteOldState(Timestamp cutoff, ProcessConfiguration jobCfg) {
@@ -178,5 +207,76 @@ public class ProcessCleaner implements ScheduledTask {
             long t2 = System.currentTimeMillis();
             log.info("deleteOrphans -> took {}ms", (t2 - t1));
         }
+
+        void deleteUnusedBlobs(Timestamp cutoff, StateStore store) {
+            long t1 = System.currentTimeMillis();
+
+            // the external stores hold an advisory lock per blob until the end of the transaction
+            int batchSize = store.isInline() ? BLOB_DELETE_BATCH_SIZE : EXTERNAL_BLOB_DELETE_BATCH_SIZE;
+
+            int blobs = 0;
+            while (true) {
+                int deleted = txResult(tx -> deleteUnusedBlobs(tx, cutoff, store, batchSize));
+
+                blobs += deleted;
+                // the skipped blobs are retried on the next run
+                if (deleted < batchSize) {
+                    break;
+                }
+            }
+
+            long t2 = System.currentTimeMillis();
+            log.info("deleteUnusedBlobs -> removed {} unused state blob(s) older than {}, took {}ms", blobs, cutoff, (t2 - t1));
+        }
+
+        /**
+         * Removes the metadata and the data of unused blobs in the same transaction.
+         * The rows are locked, so the imports can't start reusing the blobs. The data
+         * in an external store is removed under the exclusive blob lock: the imports
+         * of new blobs hold the shared lock while storing the data and the metadata.
+         */
+        private int deleteUnusedBlobs(DSLContext tx, Timestamp cutoff, StateStore store, int batchSize) {
+            // skip the blobs locked by the state imports
+            List<String> hashes = tx.select(PROCESS_STATE_BLOBS.BLOB_HASH)
+                    .from(PROCESS_STATE_BLOBS)
+                    .where(PROCESS_STATE_BLOBS.CREATED_AT.lessThan(cutoff)
+                            .andNotExists(selectOne()
+                                    .from(PROCESS_STATE)
+                                    .where(PROCESS_STATE.BLOB_HASH.eq(PROCESS_STATE_BLOBS.BLOB_HASH))))
+                    .limit(batchSize)
+                    .forUpdate()
+                    .skipLocked()
+                    .fetch(PROCESS_STATE_BLOBS.BLOB_HASH);
+
+            List<String> deleted = hashes;
+            if (!store.isInline()) {
+                deleted = new ArrayList<>(hashes.size());
+                for (String h : hashes) {
+                    // don't wait for the imports (and avoid deadlocks), the blob is retried on the next run
+                    if (!locks.tryLock(tx, Locks.STATE_BLOB_NAMESPACE, ProcessStateManager.blobLockKey(h))) {
+                        log.info("deleteUnusedBlobs ['{}'] -> the blob is being imported, skipping", h);
+                        continue;
+                    }
+
+                    try {
+                        store.delete(h);
+                    } catch (IOException e) {
+                        // keep the metadata, retry on the next run
+                        log.warn("deleteUnusedBlobs ['{}'] -> error while removing the data: {}", h, e.getMessage());
+                        continue;
+                    }
+
+                    deleted.add(h);
+                }
+            }
+
+            if (!deleted.isEmpty()) {
+                tx.deleteFrom(PROCESS_STATE_BLOBS)
+                        .where(PROCESS_STATE_BLOBS.BLOB_HASH.in(deleted))
+                        .execute();
+            }
+
+            return deleted.size();
+        }
     }
 }
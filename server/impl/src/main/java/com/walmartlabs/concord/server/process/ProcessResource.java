@@ -20,9 +20,11 @@ package com.walmartlabs.concord.server.process;
  * =====
  */
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.walmartlabs.concord.common.ConfigurationUtils;
 import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.common.TemporaryPath;
 import com.walmartlabs.concord.imports.Imports;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.server.IsoDateParam;
@@ -38,13 +40,16 @@ import com.walmartlabs.concord.server.process.ProcessEntry.ProcessStatusHistoryE
 import com.walmartlabs.concord.server.process.ProcessEntry.ProcessWaitHistoryEntry;
 import com.walmartlabs.concord.server.process.ProcessManager.ProcessResult;
 import com.walmartlabs.concord.server.process.event.ProcessEventDao;
+import com.walmartlabs.concord.server.process.logs.ProcessLogAccessManager;
 import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
 import com.walmartlabs.concord.server.process.logs.ProcessLogsDao;
 import com.walmartlabs.concord.server.process.logs.ProcessLogsDao.ProcessLog;
 import com.walmartlabs.concord.server.process.logs.ProcessLogsDao.ProcessLogChunk;
 import com.walmartlabs.concord.server.process.pipelines.processors.RequestInfoProcessor;
 import com.walmartlabs.concord.server.process.queue.*;
+import com.walmartlabs.concord.server.process.queue.ProcessCompletionWaiters.Mode;
 import com.walmartlabs.concord.server.process.state.ProcessStateManager;
+import com.walmartlabs.concord.server.process.state.StateManifestEntry;
 import com.walmartlabs.concord.server.sdk.ConcordApplicationException;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
 import com.walmartlabs.concord.server.sdk.metrics.WithTimer;
@@ -66,10 +71,15 @@ import org.sonatype.siesta.ValidationErrorsException;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.*;
 import javax.ws.rs.core.Response.Status;
 import java.io.*;
@@ -77,6 +87,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.walmartlabs.concord.server.process.state.ProcessStateManager.path;
@@ -103,7 +115,9 @@ public class ProcessResource implements Resource {
     private final ProjectAccessManager projectAccessManager;
     private final ProcessConfiguration processCfg;
     private final ProcessLogManager logManager;
+    private final ProcessLogAccessManager logAccessManager;
     private final ProcessEventDao processEventDao;
+    private final ProcessCompletionWaiters completionWaiters;
 
     private final ProcessResourceV2 v2;
 
@@ -121,7 +135,9 @@ public class ProcessResource implements Resource {
                            ObjectMapper objectMapper,
                            ProcessConfiguration processCfg,
                            ProcessLogManager logManager,
+                           ProcessLogAccessManager logAccessManager,
                            ProcessEventDao processEventDao,
+                           ProcessCompletionWaiters completionWaiters,
                            ProcessResourceV2 v2) {
 
         this.processManager = processManager;
@@ -137,7 +153,9 @@ public class ProcessResource implements Resource {
         this.objectMapper = objectMapper;
         this.processCfg = processCfg;
         this.logManager = logManager;
+        this.logAccessManager = logAccessManager;
         this.processEventDao = processEventDao;
+        this.completionWaiters = completionWaiters;
 
         this.v2 = v2;
     }
@@ -471,50 +489,132 @@ public class ProcessResource implements Resource {
     }
 
     /**
-     * Waits for completion of a process.
+     * Waits for completion of a process. The request thread is released
+     * while waiting.
      *
      * @param instanceId
      * @param timeout
-     * @return
+     * @param asyncResponse
+     * @param request
      */
     @GET
-    @ApiOperation("Wait for a process to finish")
+    @ApiOperation(value = "Wait for a process to finish", response = ProcessEntry.class)
     @Produces(MediaType.APPLICATION_JSON)
     @javax.ws.rs.Path("/{id}/waitForCompletion")
-    public ProcessEntry waitForCompletion(@ApiParam @PathParam("id") UUID instanceId,
-                                          @ApiParam @QueryParam("timeout") @DefaultValue("-1") long timeout) {
+    public void waitForCompletion(@ApiParam @PathParam("id") UUID instanceId,
+                                  @ApiParam @QueryParam("timeout") @DefaultValue("-1") long timeout,
+                                  @Suspended AsyncResponse asyncResponse,
+                                  @Context HttpServletRequest request) {
 
         log.info("waitForCompletion ['{}', {}] -> waiting...", instanceId, timeout);
 
-        long t1 = System.currentTimeMillis();
+        // fail early if the process doesn't exist
+        get(instanceId);
+
+        suspend(asyncResponse, request, Collections.singletonList(instanceId), Mode.ALL, timeout, () -> {
+            ProcessEntry r = get(instanceId);
+            if (!ProcessCompletionWaiters.FINAL_STATUSES.contains(r.status())) {
+                log.warn("waitForCompletion ['{}', {}] -> timeout, last status: {}", instanceId, timeout, r.status());
+                return Response.status(Status.REQUEST_TIMEOUT).entity(r).build();
+            }
+            return Response.ok(r).build();
+        });
+    }
+
+    /**
+     * Waits for completion of multiple processes. The request thread is
+     * released while waiting.
+     *
+     * @param instanceIds
+     * @param mode        {@code ALL} to wait for all processes to finish,
+     *                    {@code ANY} to wait for at least one process
+     * @param timeout
+     * @param asyncResponse
+     * @param request
+     */
+    @POST
+    @ApiOperation(value = "Wait for multiple processes to finish", response = ProcessEntry.class, responseContainer = "List")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @javax.ws.rs.Path("/bulk/waitForCompletion")
+    public void batchWaitForCompletion(@ApiParam(required = true) List<UUID> instanceIds,
+                                       @ApiParam @QueryParam("mode") @DefaultValue("ALL") Mode mode,
+                                       @ApiParam @QueryParam("timeout") @DefaultValue("-1") long timeout,
+                                       @Suspended AsyncResponse asyncResponse,
+                                       @Context HttpServletRequest request) {
+
+        if (instanceIds == null || instanceIds.isEmpty()) {
+            throw new ValidationErrorsException("Instance IDs are required");
+        }
+
+        log.info("batchWaitForCompletion [{}, {}, {}] -> waiting...", instanceIds.size(), mode, timeout);
 
-        ProcessEntry r;
-        while (true) {
-            r = get(instanceId);
+        Set<UUID> unknown = new HashSet<>(instanceIds);
+        unknown.removeAll(queueDao.getStatuses(instanceIds).keySet());
+        if (!unknown.isEmpty()) {
+            log.warn("batchWaitForCompletion -> not found: {}", unknown);
+            throw new ConcordApplicationException("Process instance(s) not found: " + unknown, Status.NOT_FOUND);
+        }
 
-            ProcessStatus s = r.status();
-            if (s == ProcessStatus.FINISHED ||
-                    s == ProcessStatus.FAILED ||
-                    s == ProcessStatus.CANCELLED ||
-                    s == ProcessStatus.TIMED_OUT) {
-                return r;
+        suspend(asyncResponse, request, instanceIds, mode, timeout, () -> {
+            List<ProcessEntry> l = new ArrayList<>(instanceIds.size());
+            for (UUID id : instanceIds) {
+                l.add(get(id));
             }
 
-            if (timeout > 0) {
-                long t2 = System.currentTimeMillis();
-                if (t2 - t1 >= timeout) {
-                    log.warn("waitForCompletion ['{}', {}] -> timeout, last status: {}", instanceId, timeout, s);
-                    throw new ConcordApplicationException(Response.status(Status.REQUEST_TIMEOUT).entity(r).build());
-                }
+            boolean complete;
+            if (mode == Mode.ANY) {
+                complete = l.stream().anyMatch(e -> ProcessCompletionWaiters.FINAL_STATUSES.contains(e.status()));
+            } else {
+                complete = l.stream().allMatch(e -> ProcessCompletionWaiters.FINAL_STATUSES.contains(e.status()));
             }
 
+            if (!complete) {
+                log.warn("batchWaitForCompletion [{}, {}, {}] -> timeout", instanceIds.size(), mode, timeout);
+                return Response.status(Status.REQUEST_TIMEOUT).entity(l).build();
+            }
+            return Response.ok(l).build();
+        });
+    }
+
+    private void suspend(AsyncResponse asyncResponse, HttpServletRequest request, List<UUID> instanceIds, Mode mode, long timeout, Supplier<Response> result) {
+        // the timeout is handled by the registry, so the response could include the last known status
+        asyncResponse.setTimeout(0, TimeUnit.MILLISECONDS);
+
+        ProcessCompletionWaiters.Registration registration = completionWaiters.register(instanceIds, mode, timeout, timedOut -> {
             try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) { // NOSONAR
-                throw new ConcordApplicationException(Response.status(Status.INTERNAL_SERVER_ERROR)
-                        .entity("Request was interrputed")
-                        .build());
+                asyncResponse.resume(result.get());
+            } catch (Exception e) {
+                asyncResponse.resume(e);
             }
+        });
+
+        // remove the waiter if the request ends before the processes are finished
+        // (e.g. the client disconnects or the connection's idle timeout expires)
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    registration.cancel();
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                    registration.cancel();
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                    registration.cancel();
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                    // do nothing
+                }
+            });
+        } else {
+            asyncResponse.register((CompletionCallback) t -> registration.cancel());
         }
     }
 
@@ -649,7 +749,7 @@ public class ProcessResource implements Resource {
 
         ProcessEntry processEntry = processManager.assertProcess(instanceId);
         assertProcessAccess(processEntry, "attachment");
-        PartialProcessKey processKey = ProcessKey.from(processEntry);
+        ProcessKey processKey = ProcessKey.from(processEntry);
 
         // TODO replace with javax.validation
         if (attachmentName.endsWith("/")) {
@@ -657,29 +757,16 @@ public class ProcessResource implements Resource {
         }
 
         String resource = path(Constants.Files.JOB_ATTACHMENTS_DIR_NAME, attachmentName);
-        Optional<Path> o = stateManager.get(processKey, resource, src -> {
-            try {
-                Path tmp = IOUtils.createTempFile("attachment", ".bin");
-                try (OutputStream dst = Files.newOutputStream(tmp)) {
-                    IOUtils.copy(src, dst);
-                }
-                return Optional.of(tmp);
-            } catch (IOException e) {
-                throw new ConcordApplicationException("Error while exporting an attachment: " + attachmentName, e);
-            }
-        });
-
+        Optional<InputStream> o = stateManager.open(processKey, resource);
         if (!o.isPresent()) {
             return Response.status(Status.NOT_FOUND).build();
         }
 
-        Path tmp = o.get();
+        InputStream data = o.get();
 
         return Response.ok((StreamingOutput) out -> {
-            try (InputStream in = Files.newInputStream(tmp)) {
+            try (InputStream in = data) {
                 IOUtils.copy(in, out);
-            } finally {
-                Files.delete(tmp);
             }
         }).build();
     }
@@ -801,7 +888,7 @@ public class ProcessResource implements Resource {
                            @HeaderParam("range") String range) {
 
         // check the permissions, logs can contain sensitive data
-        ProcessKey processKey = assertLogAccess(instanceId);
+        ProcessKey processKey = logAccessManager.assertLogAccess(instanceId);
 
         Integer start = null;
         Integer end = null;
@@ -923,14 +1010,12 @@ public class ProcessResource implements Resource {
 
         assertProcessAccess(p, "state");
 
-        StreamingOutput out = output -> {
-            Path tmp = stateManager.get(processKey, fileName, ProcessResource::copyToTmp)
-                    .orElseThrow(() -> new ConcordApplicationException("State file not found: " + fileName, Status.NOT_FOUND));
+        InputStream data = stateManager.open(processKey, fileName)
+                .orElseThrow(() -> new ConcordApplicationException("State file not found: " + fileName, Status.NOT_FOUND));
 
-            try (InputStream in = Files.newInputStream(tmp)) {
+        StreamingOutput out = output -> {
+            try (InputStream in = data) {
                 IOUtils.copy(in, output);
-            } finally {
-                Files.delete(tmp);
             }
         };
 
@@ -938,6 +1023,52 @@ public class ProcessResource implements Resource {
                 .build();
     }
 
+    /**
+     * Returns the manifest of the current state snapshot of a process.
+     * Used to download only the files which are not cached locally.
+     */
+    @GET
+    @ApiOperation(value = "Get a process state snapshot manifest", responseContainer = "map", response = StateManifestEntry.class)
+    @javax.ws.rs.Path("/{id}/state/manifest")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<String, StateManifestEntry> getStateManifest(@ApiParam @PathParam("id") UUID instanceId) {
+        ProcessEntry p = assertProcess(PartialProcessKey.from(instanceId));
+        ProcessKey processKey = ProcessKey.from(p);
+
+        assertProcessAccess(p, "state");
+
+        return stateManager.getManifest(processKey, null);
+    }
+
+    /**
+     * Downloads the specified files from the current state snapshot of a process.
+     */
+    @POST
+    @ApiOperation(value = "Download the specified files from a process state snapshot", response = File.class)
+    @javax.ws.rs.Path("/{id}/state/snapshot/files")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces("application/zip")
+    public Response downloadStateFiles(@ApiParam @PathParam("id") UUID instanceId,
+                                       @ApiParam List<String> fileNames) {
+
+        ProcessEntry p = assertProcess(PartialProcessKey.from(instanceId));
+        ProcessKey processKey = ProcessKey.from(p);
+
+        assertProcessAccess(p, "state");
+
+        List<String> names = fileNames != null ? fileNames : Collections.emptyList();
+
+        StreamingOutput out = output -> {
+            try (ZipArchiveOutputStream dst = new ZipArchiveOutputStream(output)) {
+                stateManager.exportFiles(processKey, names, zipTo(dst));
+            }
+        };
+
+        return Response.ok(out, "application/zip")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + instanceId + ".zip\"")
+                .build();
+    }
+
     /**
      * Upload process attachments.
      *
@@ -963,12 +1094,7 @@ public class ProcessResource implements Resource {
             stateManager.deleteDirectory(processKey, path(Constants.Files.JOB_ATTACHMENTS_DIR_NAME, Constants.Files.JOB_STATE_DIR_NAME));
             stateManager.importPath(processKey, Constants.Files.JOB_ATTACHMENTS_DIR_NAME, tmpDir);
 
-            Map<String, Object> out = OutVariablesUtils.read(tmpDir);
-            if (out.isEmpty()) {
-                queueDao.removeMeta(processKey, "out");
-            } else {
-                queueDao.updateMeta(processKey, Collections.singletonMap("out", out));
-            }
+            updateOutVariables(processKey, OutVariablesUtils.read(tmpDir));
         } catch (IOException e) {
             log.error("uploadAttachments ['{}'] -> error", processKey, e);
             throw new ConcordApplicationException("upload error: " + e.getMessage());
@@ -990,6 +1116,81 @@ public class ProcessResource implements Resource {
         }
     }
 
+    /**
+     * Compares the manifest of the local process attachments with the current state.
+     *
+     * @param instanceId
+     * @param manifest   local files (relative to the attachments directory)
+     * @return names of the files that must be uploaded using
+     * {@link #uploadAttachmentsDelta(UUID, MultipartInput)}
+     */
+    @POST
+    @javax.ws.rs.Path("{id}/attachment/manifest")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<String> diffAttachments(@PathParam("id") UUID instanceId, Map<String, StateManifestEntry> manifest) {
+        ProcessEntry entry = assertProcess(PartialProcessKey.from(instanceId));
+        ProcessKey processKey = ProcessKey.from(entry);
+
+        if (manifest == null) {
+            throw new ConcordApplicationException("Manifest is required", Status.BAD_REQUEST);
+        }
+
+        return stateManager.diff(processKey, Constants.Files.JOB_ATTACHMENTS_DIR_NAME, manifest);
+    }
+
+    /**
+     * Upload process attachments. Unlike {@link #uploadAttachments(UUID, InputStream)}
+     * accepts only the changed files.
+     * <p/>
+     * Expects a {@code manifest} (JSON, all local files) and {@code data} (ZIP archive with
+     * the files returned by {@link #diffAttachments(UUID, Map)}). Returns
+     * {@code 409 Conflict} if the current state doesn't match the manifest, the
+     * client should upload the whole archive in that case.
+     *
+     * @param instanceId
+     * @param input
+     */
+    @POST
+    @javax.ws.rs.Path("{id}/attachment/delta")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    public void uploadAttachmentsDelta(@PathParam("id") UUID instanceId, MultipartInput input) {
+        ProcessEntry entry = assertProcess(PartialProcessKey.from(instanceId));
+        ProcessKey processKey = ProcessKey.from(entry);
+
+        Map<String, Object> m = MultipartUtils.getMap(input, "manifest");
+        if (m == null) {
+            throw new ConcordApplicationException("Manifest is required", Status.BAD_REQUEST);
+        }
+
+        Map<String, StateManifestEntry> manifest = objectMapper.convertValue(m, new TypeReference<Map<String, StateManifestEntry>>() {
+        });
+
+        try (TemporaryPath tmpDir = IOUtils.tempDir("attachments")) {
+            try (InputStream data = MultipartUtils.getStream(input, "data")) {
+                if (data != null) {
+                    IOUtils.unzip(data, tmpDir.path());
+                }
+            }
+
+            boolean applied = stateManager.importDelta(processKey, Constants.Files.JOB_ATTACHMENTS_DIR_NAME, tmpDir.path(),
+                    manifest, Constants.Files.JOB_STATE_DIR_NAME + "/");
+
+            if (!applied) {
+                throw new ConcordApplicationException("The process state doesn't match the manifest", Status.CONFLICT);
+            }
+
+            // the unchanged "out" file means the "out" variables are unchanged too
+            Path outFile = tmpDir.path().resolve(Constants.Files.OUT_VALUES_FILE_NAME);
+            if (Files.exists(outFile) || !manifest.containsKey(Constants.Files.OUT_VALUES_FILE_NAME)) {
+                updateOutVariables(processKey, OutVariablesUtils.read(tmpDir.path()));
+            }
+        } catch (IOException e) {
+            log.error("uploadAttachmentsDelta ['{}'] -> error", processKey, e);
+            throw new ConcordApplicationException("upload error: " + e.getMessage());
+        }
+    }
+
     /**
      * Decrypt a base64 string previosly encrypted with the process' project key.
      *
@@ -1089,35 +1290,6 @@ public class ProcessResource implements Resource {
         return processKey;
     }
 
-    private ProcessKey assertLogAccess(UUID instanceId) {
-        ProcessEntry pe = processManager.assertProcess(instanceId);
-        ProcessKey pk = ProcessKey.from(pe);
-
-        if (!processCfg.isCheckLogPermissions()) {
-            return pk;
-        }
-
-        if (Roles.isAdmin() || Roles.isGlobalReader()) {
-            return pk;
-        }
-
-        UserPrincipal principal = UserPrincipal.assertCurrent();
-
-        UUID initiatorId = pe.initiatorId();
-        if (principal.getId().equals(initiatorId)) {
-            // process owners should be able to view the process' logs
-            return pk;
-        }
-
-        if (pe.projectId() != null) {
-            projectAccessManager.assertAccess(pe.projectId(), ResourceAccessLevel.WRITER, true);
-            return pk;
-        }
-
-        throw new UnauthorizedException("The current user (" + principal.getUsername() + ") doesn't have " +
-                "the necessary permissions to view the process log: " + instanceId);
-    }
-
     private void assertProcessAccess(ProcessEntry pe, String downloadEntity) {
         UserPrincipal principal = UserPrincipal.assertCurrent();
 
@@ -1140,6 +1312,14 @@ public class ProcessResource implements Resource {
                 "the necessary permissions to the download " + downloadEntity + " : " + pe.instanceId());
     }
 
+    private void updateOutVariables(ProcessKey processKey, Map<String, Object> out) {
+        if (out.isEmpty()) {
+            queueDao.removeMeta(processKey, "out");
+        } else {
+            queueDao.updateMeta(processKey, Collections.singletonMap("out", out));
+        }
+    }
+
     private ProcessEntry assertProcess(PartialProcessKey processKey) {
         ProcessEntry p = processQueueManager.get(processKey);
         if (p == null) {
@@ -1187,18 +1367,6 @@ public class ProcessResource implements Resource {
         return cfg;
     }
 
-    private static Optional<Path> copyToTmp(InputStream in) {
-        try {
-            Path p = IOUtils.createTempFile("state", ".bin");
-            try (OutputStream out = Files.newOutputStream(p)) {
-                IOUtils.copy(in, out);
-            }
-            return Optional.of(p);
-        } catch (IOException e) {
-            throw new ConcordApplicationException("Error while copying a state file: " + e.getMessage(), e);
-        }
-    }
-
     private static RuntimeException syncIsForbidden() {
         return new ConcordApplicationException("The 'sync' mode is no longer available. " +
                 "Please use sync=false and poll for the status updates.", Status.BAD_REQUEST);
@@ -0,0 +1,371 @@
+package com.walmartlabs.concord.server.process.logs;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.walmartlabs.concord.db.PgIntRange;
+import com.walmartlabs.concord.server.Listeners;
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+import com.walmartlabs.concord.server.process.ProcessKey;
+import com.walmartlabs.concord.server.sdk.BackgroundTask;
+import com.walmartlabs.concord.server.sdk.ConcordApplicationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for the process logs.
+ * <p/>
+ * The appended chunks are kept in memory, coalesced per process and written
+ * periodically (or as soon as the buffer contains {@code flushSize} bytes)
+ * using multi-row inserts. When the buffer is full, {@link #append(ProcessKey, byte[])}
+ * blocks for up to {@code maxBlockTime} and then rejects the chunk with
+ * {@code 429 Too Many Requests}.
+ * <p/>
+ * The {@link com.walmartlabs.concord.server.sdk.log.ProcessLogListener}s are
+ * notified after the data is written, in the original order of the chunks.
+ */
+@Named
+@Singleton
+public class ProcessLogBuffer implements BackgroundTask {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessLogBuffer.class);
+
+    private static final int MAX_ROWS_PER_INSERT = 500;
+    private static final int MAX_RETRIES = 3;
+    private static final long ERROR_DELAY = TimeUnit.SECONDS.toMillis(1);
+
+    private final ProcessLogsDao logsDao;
+    private final Listeners listeners;
+    private final ProcessLogStreamHub streamHub;
+
+    private final boolean enabled;
+    private final long maxSize;
+    private final long flushSize;
+    private final long flushInterval;
+    private final long maxBlockTime;
+
+    private final Object lock = new Object();
+
+    /**
+     * Chunks waiting to be written.
+     */
+    private Map<ProcessKey, List<byte[]>> pending = new LinkedHashMap<>();
+
+    /**
+     * Number of bytes of each process that are not written yet (pending or being written).
+     */
+    private final Map<ProcessKey, Integer> unflushed = new HashMap<>();
+
+    /**
+     * Persisted size (upper bound) of each process log. Loaded from the DB
+     * on the first append and updated after each flush.
+     */
+    private final Cache<ProcessKey, Integer> upperBounds = CacheBuilder.newBuilder()
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+
+    private long pendingBytes;
+    private long bufferedBytes;
+    private boolean stopped;
+
+    private final Histogram flushRowsHistogram;
+    private final Histogram flushBytesHistogram;
+    private final Counter rejected;
+
+    private Thread worker;
+
+    @Inject
+    public ProcessLogBuffer(ProcessConfiguration cfg,
+                            ProcessLogsDao logsDao,
+                            Listeners listeners,
+                            ProcessLogStreamHub streamHub,
+                            MetricRegistry metricRegistry) {
+
+        this.logsDao = logsDao;
+        this.listeners = listeners;
+        this.streamHub = streamHub;
+
+        this.enabled = cfg.isLogBufferEnabled();
+        this.maxSize = cfg.getLogBufferMaxSize();
+        this.flushSize = cfg.getLogBufferFlushSize();
+        this.flushInterval = cfg.getLogBufferFlushInterval();
+        this.maxBlockTime = cfg.getLogBufferMaxBlockTime();
+
+        this.flushRowsHistogram = metricRegistry.histogram("process-log-buffer-flush-rows");
+        this.flushBytesHistogram = metricRegistry.histogram("process-log-buffer-flush-bytes");
+        this.rejected = metricRegistry.counter("process-log-buffer-rejected");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds a chunk to the buffer.
+     *
+     * @return the upper bound of the process log, i.e. the persisted size
+     * plus the buffered data of the process. Returns {@code null} if the buffer
+     * is stopped and the chunk must be written directly.
+     */
+    public Integer append(ProcessKey processKey, byte[] data) {
+        if (upperBounds.getIfPresent(processKey) == null) {
+            // a flush can't make the loaded value stale: it either commits before the query
+            // (and the value includes the flushed data) or replaces the value afterwards
+            int size = logsDao.size(processKey);
+            synchronized (lock) {
+                upperBounds.asMap().putIfAbsent(processKey, size);
+            }
+        }
+
+        synchronized (lock) {
+            long deadline = System.currentTimeMillis() + maxBlockTime;
+            while (!stopped && bufferedBytes > 0 && bufferedBytes + data.length > maxSize) {
+                long timeout = deadline - System.currentTimeMillis();
+                if (timeout <= 0) {
+                    rejected.inc();
+                    throw new ConcordApplicationException(Response.status(429)
+                            .entity("The process log buffer is full, try again later")
+                            .type(MediaType.TEXT_PLAIN_TYPE)
+                            .build());
+                }
+
+                lock.notifyAll();
+
+                try {
+                    lock.wait(timeout);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ConcordApplicationException("Interrupted while appending a log", e);
+                }
+            }
+
+            if (stopped) {
+                return null;
+            }
+
+            pending.computeIfAbsent(processKey, k -> new ArrayList<>()).add(data);
+            int unflushedBytes = unflushed.merge(processKey, data.length, Integer::sum);
+
+            pendingBytes += data.length;
+            bufferedBytes += data.length;
+
+            if (pendingBytes >= flushSize) {
+                lock.notifyAll();
+            }
+
+            Integer upper = upperBounds.getIfPresent(processKey);
+            if (upper == null) {
+                // expired in the meantime (unlikely)
+                upper = logsDao.size(processKey);
+                upperBounds.put(processKey, upper);
+            }
+            return upper + unflushedBytes;
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        this.worker = new Thread(this::run, "process-log-buffer");
+        this.worker.start();
+        log.info("start -> done");
+    }
+
+    @Override
+    public void stop() {
+        if (worker == null) {
+            return;
+        }
+
+        synchronized (lock) {
+            stopped = true;
+            lock.notifyAll();
+        }
+
+        try {
+            // the worker writes all remaining data before exiting
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        worker = null;
+        log.info("stop -> done");
+    }
+
+    private void run() {
+        while (true) {
+            Map<ProcessKey, List<byte[]>> batch;
+            boolean last;
+
+            synchronized (lock) {
+                long deadline = System.currentTimeMillis() + flushInterval;
+                while (!stopped && pendingBytes < flushSize) {
+                    long timeout = deadline - System.currentTimeMillis();
+                    if (timeout <= 0) {
+                        break;
+                    }
+
+                    try {
+                        lock.wait(timeout);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        stopped = true;
+                    }
+                }
+
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                pendingBytes = 0;
+                last = stopped;
+            }
+
+            if (!batch.isEmpty()) {
+                try {
+                    flush(batch);
+                } catch (Exception e) {
+                    log.error("run -> flush error: {}", e.getMessage(), e);
+                }
+            }
+
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    private void flush(Map<ProcessKey, List<byte[]>> batch) {
+        List<ProcessKey> keys = new ArrayList<>(batch.keySet());
+
+        for (int i = 0; i < keys.size(); i += MAX_ROWS_PER_INSERT) {
+            List<ProcessKey> part = keys.subList(i, Math.min(i + MAX_ROWS_PER_INSERT, keys.size()));
+
+            Map<ProcessKey, byte[]> rows = new LinkedHashMap<>();
+            Map<ProcessKey, List<byte[]>> chunks = new LinkedHashMap<>();
+            long size = 0;
+            for (ProcessKey k : part) {
+                List<byte[]> l = batch.get(k);
+                byte[] data = concat(l);
+
+                rows.put(k, data);
+                chunks.put(k, l);
+                size += data.length;
+            }
+
+            Map<ProcessKey, PgIntRange> ranges = write(rows);
+
+            synchronized (lock) {
+                for (Map.Entry<ProcessKey, byte[]> e : rows.entrySet()) {
+                    ProcessKey k = e.getKey();
+                    int len = e.getValue().length;
+
+                    unflushed.computeIfPresent(k, (key, v) -> v - len > 0 ? v - len : null);
+
+                    PgIntRange r = ranges.get(k);
+                    if (r != null) {
+                        upperBounds.put(k, r.getUpper());
+                    }
+                }
+
+                bufferedBytes -= size;
+                lock.notifyAll();
+            }
+
+            for (Map.Entry<ProcessKey, PgIntRange> e : ranges.entrySet()) {
+                streamHub.publish(e.getKey(), e.getValue().getLower(), rows.get(e.getKey()));
+            }
+
+            flushRowsHistogram.update(rows.size());
+            flushBytesHistogram.update(size);
+
+            chunks.keySet().retainAll(ranges.keySet());
+            listeners.onProcessLogAppend(chunks);
+        }
+    }
+
+    private Map<ProcessKey, PgIntRange> write(Map<ProcessKey, byte[]> rows) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return logsDao.append(rows);
+            } catch (Exception e) {
+                if (attempt >= MAX_RETRIES) {
+                    log.warn("write -> batch insert failed after {} attempts: {}. Writing the chunks one by one...", attempt, e.getMessage());
+                    break;
+                }
+
+                log.warn("write -> batch insert error: {}. Will retry in {}ms...", e.getMessage(), ERROR_DELAY);
+                sleep(ERROR_DELAY);
+            }
+        }
+
+        // fallback: write each process separately so that a single bad row doesn't block the rest
+        Map<ProcessKey, PgIntRange> result = new HashMap<>();
+        for (Map.Entry<ProcessKey, byte[]> e : rows.entrySet()) {
+            try {
+                result.put(e.getKey(), logsDao.append(e.getKey(), e.getValue()));
+            } catch (Exception ex) {
+                log.error("write ['{}'] -> error, {} byte(s) of the log lost: {}", e.getKey(), e.getValue().length, ex.getMessage());
+            }
+        }
+        return result;
+    }
+
+    private static byte[] concat(List<byte[]> chunks) {
+        if (chunks.size() == 1) {
+            return chunks.get(0);
+        }
+
+        int len = 0;
+        for (byte[] ab : chunks) {
+            len += ab.length;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(len);
+        for (byte[] ab : chunks) {
+            out.write(ab, 0, ab.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -38,6 +38,8 @@ import static com.walmartlabs.concord.common.LogUtils.LogLevel;
 public class ProcessLogManager {
 
     private final ProcessLogsDao logsDao;
+    private final ProcessLogBuffer logBuffer;
+    private final ProcessLogStreamHub streamHub;
     private final Listeners listeners;
 
     @InjectCounter
@@ -45,10 +47,14 @@ public class ProcessLogManager {
 
     @Inject
     public ProcessLogManager(ProcessLogsDao logsDao,
+                             ProcessLogBuffer logBuffer,
+                             ProcessLogStreamHub streamHub,
                              Listeners listeners,
                              Counter logBytesAppended) {
 
         this.logsDao = logsDao;
+        this.logBuffer = logBuffer;
+        this.streamHub = streamHub;
         this.listeners = listeners;
         this.logBytesAppended = logBytesAppended;
     }
@@ -69,9 +75,23 @@ public class ProcessLogManager {
         log(processKey, msg.getBytes());
     }
 
+    /**
+     * Appends a chunk to the process log.
+     *
+     * @return the upper bound of the log, including the buffered data.
+     */
     public int log(ProcessKey processKey, byte[] msg) {
+        if (logBuffer.isEnabled()) {
+            Integer upper = logBuffer.append(processKey, msg);
+            if (upper != null) {
+                logBytesAppended.inc(msg.length);
+                return upper;
+            }
+        }
+
         PgIntRange range = logsDao.append(processKey, msg);
         logBytesAppended.inc(msg.length);
+        streamHub.publish(processKey, range.getLower(), msg);
         listeners.onProcessLogAppend(processKey, msg);
         return range.getUpper();
     }
@@ -0,0 +1,461 @@
+package com.walmartlabs.concord.server.process.logs;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+import com.walmartlabs.concord.server.process.ProcessKey;
+import com.walmartlabs.concord.server.process.logs.ProcessLogsDao.ProcessLogChunk;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueDao;
+import com.walmartlabs.concord.server.sdk.BackgroundTask;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fan-out hub for the process log streams.
+ * <p/>
+ * Each process with at least one subscriber has a single "topic". The data
+ * appended on the current server is pushed to the subscribers directly
+ * (see {@link #publish(ProcessKey, int, byte[])}). The data appended on other
+ * servers is picked up by polling the DB once per topic, regardless of
+ * the number of subscribers. New subscribers (and subscribers that missed
+ * some data) catch up by reading the log from their current offset.
+ * <p/>
+ * All offsets are byte offsets in the process log.
+ */
+@Named
+@Singleton
+public class ProcessLogStreamHub implements BackgroundTask {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessLogStreamHub.class);
+
+    private static final int CATCH_UP_THREADS = 4;
+    private static final int MAX_CATCH_UP_ATTEMPTS = 10;
+
+    /**
+     * Check the process status every N polls without new data.
+     */
+    private static final int STATUS_CHECK_POLLS = 5;
+
+    private static final Set<ProcessStatus> FINAL_STATUSES = Collections.unmodifiableSet(EnumSet.of(
+            ProcessStatus.FINISHED,
+            ProcessStatus.FAILED,
+            ProcessStatus.CANCELLED,
+            ProcessStatus.TIMED_OUT));
+
+    private final ProcessLogsDao logsDao;
+    private final ProcessQueueDao queueDao;
+    private final long pollInterval;
+    private final long keepAliveInterval;
+
+    private final ConcurrentMap<ProcessKey, Topic> topics = new ConcurrentHashMap<>();
+    private final ExecutorService catchUpExecutor = Executors.newFixedThreadPool(CATCH_UP_THREADS);
+
+    private final Histogram topicsHistogram;
+    private final Histogram subscribersHistogram;
+    private final Counter catchUps;
+
+    private Thread worker;
+
+    @Inject
+    public ProcessLogStreamHub(ProcessConfiguration cfg,
+                               ProcessLogsDao logsDao,
+                               ProcessQueueDao queueDao,
+                               MetricRegistry metricRegistry) {
+
+        this.logsDao = logsDao;
+        this.queueDao = queueDao;
+        this.pollInterval = cfg.getLogStreamPollInterval();
+        this.keepAliveInterval = cfg.getLogStreamKeepAliveInterval();
+
+        this.topicsHistogram = metricRegistry.histogram("process-log-stream-topics");
+        this.subscribersHistogram = metricRegistry.histogram("process-log-stream-subscribers");
+        this.catchUps = metricRegistry.counter("process-log-stream-catch-ups");
+    }
+
+    /**
+     * Subscribes to the process log starting from the specified offset.
+     * The data before the current end of the log is read from the DB.
+     */
+    public void subscribe(ProcessKey processKey, int offset, Subscriber subscriber) {
+        Subscription sub = new Subscription(subscriber, offset);
+
+        Topic topic = topics.compute(processKey, (k, v) -> {
+            Topic t = v != null ? v : new Topic(k);
+            synchronized (t) {
+                t.subscriptions.add(sub);
+            }
+            return t;
+        });
+
+        catchUp(topic, sub);
+    }
+
+    public void unsubscribe(ProcessKey processKey, Subscriber subscriber) {
+        Topic t = topics.get(processKey);
+        if (t == null) {
+            return;
+        }
+
+        synchronized (t) {
+            t.subscriptions.removeIf(s -> {
+                if (s.subscriber == subscriber) {
+                    s.closed = true;
+                    return true;
+                }
+                return false;
+            });
+        }
+    }
+
+    /**
+     * Pushes the data appended on the current server to the subscribers.
+     *
+     * @param start the offset of the data in the process log
+     */
+    public void publish(ProcessKey processKey, int start, byte[] data) {
+        Topic t = topics.get(processKey);
+        if (t == null) {
+            return;
+        }
+
+        synchronized (t) {
+            t.localData = true;
+            dispatch(t, start, data);
+        }
+    }
+
+    @Override
+    public void start() {
+        this.worker = new Thread(this::run, "process-log-stream-hub");
+        this.worker.start();
+        log.info("start -> done");
+    }
+
+    @Override
+    public void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+
+        catchUpExecutor.shutdownNow();
+
+        topics.values().forEach(t -> {
+            synchronized (t) {
+                new ArrayList<>(t.subscriptions).forEach(s -> close(t, s));
+            }
+        });
+
+        log.info("stop -> done");
+    }
+
+    private void run() {
+        long lastKeepAlive = System.currentTimeMillis();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                sleep(pollInterval);
+
+                boolean keepAlive = System.currentTimeMillis() - lastKeepAlive >= keepAliveInterval;
+                if (keepAlive) {
+                    lastKeepAlive = System.currentTimeMillis();
+                }
+
+                int subscribers = 0;
+                for (Topic t : topics.values()) {
+                    poll(t, keepAlive);
+
+                    synchronized (t) {
+                        subscribers += t.subscriptions.size();
+                    }
+                }
+
+                // remove the topics without subscribers
+                topics.keySet().forEach(k -> topics.computeIfPresent(k, (key, t) -> {
+                    synchronized (t) {
+                        return t.subscriptions.isEmpty() ? null : t;
+                    }
+                }));
+
+                topicsHistogram.update(topics.size());
+                subscribersHistogram.update(subscribers);
+            } catch (Exception e) {
+                log.warn("run -> error: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void poll(Topic t, boolean keepAlive) {
+        int offset;
+        synchronized (t) {
+            if (keepAlive) {
+                new ArrayList<>(t.subscriptions).forEach(s -> {
+                    if (!s.subscriber.onKeepAlive()) {
+                        close(t, s);
+                    }
+                });
+            }
+
+            if (t.localData) {
+                // the log is being written on this server, no need to poll
+                t.localData = false;
+                t.idlePolls = 0;
+                return;
+            }
+
+            if (t.offset < 0) {
+                // the initial catch up is still running
+                return;
+            }
+
+            offset = t.offset;
+        }
+
+        if (dispatch(t, logsDao.getChunks(t.processKey, offset))) {
+            synchronized (t) {
+                t.idlePolls = 0;
+            }
+            return;
+        }
+
+        synchronized (t) {
+            if (++t.idlePolls < STATUS_CHECK_POLLS) {
+                return;
+            }
+            t.idlePolls = 0;
+        }
+
+        ProcessStatus status = queueDao.getStatus(t.processKey.getInstanceId());
+        if (status != null && !FINAL_STATUSES.contains(status)) {
+            return;
+        }
+
+        // the process is finished, send the remaining data and close the streams
+        dispatch(t, logsDao.getChunks(t.processKey, offset));
+
+        synchronized (t) {
+            new ArrayList<>(t.subscriptions).forEach(s -> {
+                if (!s.syncing) {
+                    t.subscriptions.remove(s);
+                    s.closed = true;
+                    s.subscriber.onEnd();
+                }
+            });
+        }
+    }
+
+    private boolean dispatch(Topic t, List<ProcessLogChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return false;
+        }
+
+        synchronized (t) {
+            for (ProcessLogChunk c : chunks) {
+                dispatch(t, c.getStart(), c.getData());
+            }
+        }
+
+        return true;
+    }
+
+    private void dispatch(Topic t, int start, byte[] data) {
+        t.offset = Math.max(t.offset, start + data.length);
+
+        for (Subscription s : new ArrayList<>(t.subscriptions)) {
+            if (s.syncing) {
+                continue;
+            }
+
+            if (start > s.position) {
+                // some data is missing, e.g. it was appended by another server and is not polled yet
+                s.syncing = true;
+                catchUp(t, s);
+                continue;
+            }
+
+            if (!send(s, start, data)) {
+                close(t, s);
+            }
+        }
+    }
+
+    private void catchUp(Topic t, Subscription s) {
+        catchUps.inc();
+        catchUpExecutor.execute(() -> {
+            try {
+                doCatchUp(t, s);
+            } catch (Exception e) {
+                log.warn("catchUp ['{}'] -> error: {}", t.processKey, e.getMessage());
+                synchronized (t) {
+                    close(t, s);
+                }
+            }
+        });
+    }
+
+    private void doCatchUp(Topic t, Subscription s) {
+        for (int i = 0; i < MAX_CATCH_UP_ATTEMPTS; i++) {
+            int position;
+            synchronized (t) {
+                if (s.closed) {
+                    return;
+                }
+                position = s.position;
+            }
+
+            List<ProcessLogChunk> chunks = logsDao.getChunks(t.processKey, position);
+
+            synchronized (t) {
+                if (s.closed) {
+                    return;
+                }
+
+                for (ProcessLogChunk c : chunks) {
+                    if (!send(s, c.getStart(), c.getData())) {
+                        close(t, s);
+                        return;
+                    }
+                }
+
+                t.offset = Math.max(t.offset, s.position);
+                if (t.offset <= s.position) {
+                    s.syncing = false;
+                    return;
+                }
+            }
+
+            // new data was published while we were reading, try again
+        }
+
+        log.warn("catchUp ['{}'] -> too many attempts, closing the stream", t.processKey);
+        synchronized (t) {
+            close(t, s);
+        }
+    }
+
+    /**
+     * Sends the part of {@code data} after the subscription's current position.
+     * A gap between the current position and {@code start} is skipped.
+     */
+    private static boolean send(Subscription s, int start, byte[] data) {
+        int end = start + data.length;
+        if (end <= s.position) {
+            return true;
+        }
+
+        int from = Math.max(s.position, start);
+        byte[] ab = from == start ? data : Arrays.copyOfRange(data, from - start, data.length);
+
+        s.position = end;
+        return s.subscriber.onData(from, ab);
+    }
+
+    private static void close(Topic t, Subscription s) {
+        if (s.closed) {
+            return;
+        }
+
+        s.closed = true;
+        t.subscriptions.remove(s);
+        s.subscriber.onClose();
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public interface Subscriber {
+
+        /**
+         * Called when new data is available. Must not block.
+         *
+         * @param start the offset of the data in the process log
+         * @return {@code false} if the subscriber can't accept the data.
+         * The subscriber is removed in that case.
+         */
+        boolean onData(int start, byte[] data);
+
+        /**
+         * Called periodically while there's no new data. Must not block.
+         *
+         * @return {@code false} if the subscriber is no longer active.
+         */
+        boolean onKeepAlive();
+
+        /**
+         * Called when the process is finished and all its log data is sent.
+         */
+        void onEnd();
+
+        /**
+         * Called when the subscriber is removed due to an error.
+         */
+        void onClose();
+    }
+
+    private static final class Topic {
+
+        private final ProcessKey processKey;
+        private final List<Subscription> subscriptions = new ArrayList<>();
+
+        /**
+         * The end of the log data seen so far, {@code -1} if unknown.
+         */
+        private int offset = -1;
+
+        private boolean localData;
+        private int idlePolls;
+
+        private Topic(ProcessKey processKey) {
+            this.processKey = processKey;
+        }
+    }
+
+    private static final class Subscription {
+
+        private final Subscriber subscriber;
+        private int position;
+        private boolean syncing = true;
+        private boolean closed;
+
+        private Subscription(Subscriber subscriber, int position) {
+            this.subscriber = subscriber;
+            this.position = position;
+        }
+    }
+}
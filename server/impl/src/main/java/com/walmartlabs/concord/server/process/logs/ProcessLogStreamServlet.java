@@ -0,0 +1,382 @@
+package com.walmartlabs.concord.server.process.logs;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+import com.walmartlabs.concord.server.process.ProcessKey;
+import org.apache.shiro.authz.UnauthorizedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.WebApplicationException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams a process log using Server-Sent Events.
+ * <p/>
+ * {@code GET /api/v2/process-log-stream/{instanceId}?offset=N}
+ * <p/>
+ * Each event contains a part of the log (as UTF-8 text) and its {@code id}
+ * is the byte offset of the end of the part. The parts are cut at UTF-8
+ * character boundaries, i.e. a character split between two log chunks is
+ * sent with the second chunk. The stream starts from the
+ * {@code Last-Event-ID} header's value (i.e. when the client reconnects)
+ * or from the {@code offset} parameter (0 by default). When the process
+ * is finished, an {@code end} event is sent and the stream is closed.
+ */
+@Named
+@Singleton
+public class ProcessLogStreamServlet extends HttpServlet {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessLogStreamServlet.class);
+
+    private static final int WRITER_THREADS = 8;
+    private static final long RETRY_DELAY = 5000;
+
+    private final ProcessLogAccessManager logAccessManager;
+    private final ProcessLogStreamHub hub;
+    private final int maxPendingBytes;
+
+    private final ExecutorService writerExecutor = Executors.newFixedThreadPool(WRITER_THREADS);
+
+    @Inject
+    public ProcessLogStreamServlet(ProcessConfiguration cfg,
+                                   ProcessLogAccessManager logAccessManager,
+                                   ProcessLogStreamHub hub) {
+
+        this.logAccessManager = logAccessManager;
+        this.hub = hub;
+        this.maxPendingBytes = cfg.getLogStreamMaxPendingBytes();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        UUID instanceId = parseInstanceId(req.getPathInfo());
+        if (instanceId == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND, "Invalid process instance ID: " + req.getPathInfo());
+            return;
+        }
+
+        Integer offset = parseOffset(req);
+        if (offset == null) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid offset value");
+            return;
+        }
+
+        ProcessKey processKey;
+        try {
+            processKey = logAccessManager.assertLogAccess(instanceId);
+        } catch (WebApplicationException e) {
+            resp.sendError(e.getResponse().getStatus(), e.getMessage());
+            return;
+        } catch (UnauthorizedException e) {
+            resp.sendError(HttpServletResponse.SC_FORBIDDEN, e.getMessage());
+            return;
+        }
+
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType("text/event-stream");
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.setHeader("Cache-Control", "no-cache");
+        // disable response buffering in nginx
+        resp.setHeader("X-Accel-Buffering", "no");
+
+        AsyncContext ctx = req.startAsync();
+        ctx.setTimeout(0);
+
+        EventStream stream = new EventStream(processKey, ctx);
+        ctx.addListener(stream);
+
+        stream.enqueue("retry: " + RETRY_DELAY + "\n\n");
+        hub.subscribe(processKey, offset, stream);
+    }
+
+    @Override
+    public void destroy() {
+        writerExecutor.shutdownNow();
+        super.destroy();
+    }
+
+    private static UUID parseInstanceId(String pathInfo) {
+        if (pathInfo == null || pathInfo.length() < 2) {
+            return null;
+        }
+
+        try {
+            return UUID.fromString(pathInfo.substring(1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Integer parseOffset(HttpServletRequest req) {
+        String s = req.getHeader("Last-Event-ID");
+        if (s == null || s.trim().isEmpty()) {
+            s = req.getParameter("offset");
+        }
+
+        if (s == null || s.trim().isEmpty()) {
+            return 0;
+        }
+
+        try {
+            int i = Integer.parseInt(s.trim());
+            return i >= 0 ? i : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the length of the longest prefix of the data that doesn't end
+     * with an incomplete UTF-8 character.
+     */
+    static int completeLength(byte[] data, int len) {
+        // look for the start of the last character, at most 4 bytes back
+        for (int i = len - 1; i >= 0 && i >= len - 4; i--) {
+            int b = data[i] & 0xFF;
+            if ((b & 0xC0) == 0x80) {
+                // a continuation byte
+                continue;
+            }
+
+            int charLen;
+            if (b < 0x80) {
+                charLen = 1;
+            } else if ((b & 0xE0) == 0xC0) {
+                charLen = 2;
+            } else if ((b & 0xF0) == 0xE0) {
+                charLen = 3;
+            } else if ((b & 0xF8) == 0xF0) {
+                charLen = 4;
+            } else {
+                // invalid data, send as is
+                return len;
+            }
+
+            return i + charLen > len ? i : len;
+        }
+
+        // no start byte found, invalid data or a partial character
+        return len < 4 ? 0 : len;
+    }
+
+    static String toEvent(int end, byte[] data, int len) {
+        String s = new String(data, 0, len, StandardCharsets.UTF_8)
+                .replace("\r\n", "\n")
+                .replace('\r', '\n');
+
+        StringBuilder sb = new StringBuilder(s.length() + 32);
+        sb.append("id: ").append(end).append('\n');
+        for (String l : s.split("\n", -1)) {
+            sb.append("data: ").append(l).append('\n');
+        }
+        sb.append('\n');
+        return sb.toString();
+    }
+
+    private class EventStream implements ProcessLogStreamHub.Subscriber, AsyncListener {
+
+        private final ProcessKey processKey;
+        private final AsyncContext ctx;
+
+        private final Queue<byte[]> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingBytes = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private volatile boolean finishing;
+        private volatile boolean done;
+
+        /**
+         * The trailing bytes of an incomplete UTF-8 character of the last received chunk.
+         */
+        private byte[] remainder = new byte[0];
+
+        private EventStream(ProcessKey processKey, AsyncContext ctx) {
+            this.processKey = processKey;
+            this.ctx = ctx;
+        }
+
+        @Override
+        public synchronized boolean onData(int start, byte[] data) {
+            byte[] ab = data;
+            if (remainder.length > 0) {
+                ab = new byte[remainder.length + data.length];
+                System.arraycopy(remainder, 0, ab, 0, remainder.length);
+                System.arraycopy(data, 0, ab, remainder.length, data.length);
+            }
+
+            int len = completeLength(ab, ab.length);
+            remainder = Arrays.copyOfRange(ab, len, ab.length);
+            if (len == 0) {
+                return true;
+            }
+
+            // the event ID is the offset of the last sent byte, the client resumes from a character boundary
+            return enqueue(toEvent(start + data.length - remainder.length, ab, len));
+        }
+
+        @Override
+        public boolean onKeepAlive() {
+            return enqueue(": keep-alive\n\n");
+        }
+
+        @Override
+        public void onEnd() {
+            enqueue("event: end\ndata: \n\n");
+            finishing = true;
+            scheduleDrain();
+        }
+
+        @Override
+        public void onClose() {
+            // most likely a slow client, it can reconnect using the last received ID
+            finishing = true;
+            queue.clear();
+            scheduleDrain();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            stop();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            stop();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            stop();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // do nothing
+        }
+
+        private boolean enqueue(String s) {
+            if (done || finishing) {
+                return false;
+            }
+
+            byte[] event = s.getBytes(StandardCharsets.UTF_8);
+            if (pendingBytes.addAndGet(event.length) > maxPendingBytes) {
+                return false;
+            }
+
+            queue.add(event);
+            scheduleDrain();
+            return true;
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    writerExecutor.execute(this::drain);
+                } catch (Exception e) {
+                    // the executor is shut down
+                    draining.set(false);
+                    stop();
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    if (done) {
+                        return;
+                    }
+
+                    byte[] event;
+                    boolean written = false;
+                    ServletOutputStream out = ctx.getResponse().getOutputStream();
+                    while ((event = queue.poll()) != null) {
+                        out.write(event);
+                        pendingBytes.addAndGet(-event.length);
+                        written = true;
+                    }
+
+                    if (written) {
+                        out.flush();
+                    }
+
+                    if (finishing) {
+                        // write the events added right before the stream was marked as finishing
+                        while ((event = queue.poll()) != null) {
+                            out.write(event);
+                        }
+                        out.flush();
+
+                        stop();
+                        ctx.complete();
+                        return;
+                    }
+
+                    draining.set(false);
+
+                    // check if something was added after the queue was drained
+                    if (queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                        return;
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("drain ['{}'] -> error: {}", processKey, e.getMessage());
+                stop();
+                try {
+                    ctx.complete();
+                } catch (IllegalStateException ignored) {
+                    // already completed
+                }
+            }
+        }
+
+        private void stop() {
+            if (done) {
+                return;
+            }
+
+            done = true;
+            hub.unsubscribe(processKey, this);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.walmartlabs.concord.server.process.logs;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.servlet.annotation.WebServlet;
+
+/**
+ * Binds {@link ProcessLogStreamServlet}. The servlet requires the async support.
+ */
+@Named
+@Singleton
+@WebServlet("/api/v2/process-log-stream/*")
+public class ProcessLogStreamServletHolder extends ServletHolder {
+
+    @Inject
+    public ProcessLogStreamServletHolder(ProcessLogStreamServlet servlet) {
+        super(servlet);
+        setAsyncSupported(true);
+    }
+}
@@ -27,14 +27,19 @@ import com.walmartlabs.concord.server.jooq.tables.records.ProcessLogsRecord;
 import com.walmartlabs.concord.server.process.ProcessKey;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
+import org.jooq.InsertSetMoreStep;
+import org.jooq.InsertSetStep;
 import org.jooq.Record2;
+import org.jooq.Result;
 import org.jooq.impl.DSL;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.Serializable;
 import java.sql.Timestamp;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static com.walmartlabs.concord.server.jooq.Routines.processLogLastNBytes2;
@@ -74,21 +79,90 @@ public class ProcessLogsDao extends AbstractDao {
         return PgIntRange.parse(r.getChunkRange().toString());
     }
 
+    /**
+     * Appends a chunk to each of the specified process logs using a single
+     * multi-row insert. The keys must refer to different processes.
+     * @return the new chunk ranges.
+     */
+    public Map<ProcessKey, PgIntRange> append(Map<ProcessKey, byte[]> chunks) {
+        if (chunks.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        Map<UUID, ProcessKey> keys = new HashMap<>();
+        for (ProcessKey k : chunks.keySet()) {
+            if (keys.put(k.getInstanceId(), k) != null) {
+                throw new IllegalArgumentException("Duplicate process key: " + k);
+            }
+        }
+
+        Result<ProcessLogsRecord> rows = txResult(tx -> {
+            InsertSetStep<ProcessLogsRecord> q = tx.insertInto(PROCESS_LOGS);
+            InsertSetMoreStep<ProcessLogsRecord> last = null;
+
+            for (Map.Entry<ProcessKey, byte[]> e : chunks.entrySet()) {
+                UUID instanceId = e.getKey().getInstanceId();
+                Timestamp createdAt = e.getKey().getCreatedAt();
+                byte[] data = e.getValue();
+
+                if (last != null) {
+                    q = last.newRecord();
+                }
+
+                // process_log_next_range2 is evaluated for each row separately,
+                // the ranges don't overlap as long as each row belongs to a different process
+                last = q.set(PROCESS_LOGS.INSTANCE_ID, instanceId)
+                        .set(PROCESS_LOGS.INSTANCE_CREATED_AT, createdAt)
+                        .set(PROCESS_LOGS.CHUNK_RANGE, processLogNextRange2(instanceId, createdAt, data.length))
+                        .set(PROCESS_LOGS.CHUNK_DATA, data);
+            }
+
+            return last.returning(PROCESS_LOGS.INSTANCE_ID, PROCESS_LOGS.CHUNK_RANGE)
+                    .fetch();
+        });
+
+        Map<ProcessKey, PgIntRange> result = new HashMap<>();
+        for (ProcessLogsRecord r : rows) {
+            result.put(keys.get(r.getInstanceId()), PgIntRange.parse(r.getChunkRange().toString()));
+        }
+        return result;
+    }
+
+    /**
+     * @return the current size of the process log, i.e. the upper bound of the last chunk.
+     */
+    public int size(ProcessKey processKey) {
+        try (DSLContext tx = DSL.using(cfg)) {
+            return size(tx, processKey);
+        }
+    }
+
     public ProcessLog get(ProcessKey processKey, Integer start, Integer end) {
         UUID instanceId = processKey.getInstanceId();
         Timestamp createdAt = processKey.getCreatedAt();
 
         try (DSLContext tx = DSL.using(cfg)) {
             List<ProcessLogChunk> chunks = getChunks(tx, processKey, start, end);
+            int size = size(tx, processKey);
+            return new ProcessLog(size, chunks);
+        }
+    }
 
-            int size = tx.select(V_PROCESS_LOGS_SIZE.SIZE)
-                    .from(V_PROCESS_LOGS_SIZE)
-                    .where(V_PROCESS_LOGS_SIZE.INSTANCE_ID.eq(instanceId)
-                            .and(V_PROCESS_LOGS_SIZE.INSTANCE_CREATED_AT.eq(createdAt)))
-                    .fetchOptional(V_PROCESS_LOGS_SIZE.SIZE)
-                    .orElse(0);
+    private static int size(DSLContext tx, ProcessKey processKey) {
+        return tx.select(V_PROCESS_LOGS_SIZE.SIZE)
+                .from(V_PROCESS_LOGS_SIZE)
+                .where(V_PROCESS_LOGS_SIZE.INSTANCE_ID.eq(processKey.getInstanceId())
+                        .and(V_PROCESS_LOGS_SIZE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt())))
+                .fetchOptional(V_PROCESS_LOGS_SIZE.SIZE)
+                .orElse(0);
+    }
 
-            return new ProcessLog(size, chunks);
+    /**
+     * Returns all chunks that end after the specified offset.
+     */
+    public List<ProcessLogChunk> getChunks(ProcessKey processKey, int start) {
+        try (DSLContext tx = DSL.using(cfg)) {
+            return getChunks(tx, processKey, start, null);
         }
     }
 
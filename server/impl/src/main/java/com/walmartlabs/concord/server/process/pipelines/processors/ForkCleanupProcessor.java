@@ -21,6 +21,7 @@ package com.walmartlabs.concord.server.process.pipelines.processors;
  */
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.server.process.Payload;
 import com.walmartlabs.concord.server.process.ProcessException;
@@ -32,7 +33,6 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.Map;
 
 /**
@@ -95,7 +95,7 @@ public class ForkCleanupProcessor implements PayloadProcessor {
 
         m.remove(Constants.Request.ARGUMENTS_KEY);
 
-        try (OutputStream out = Files.newOutputStream(requestFile, StandardOpenOption.TRUNCATE_EXISTING)) {
+        try (OutputStream out = IOUtils.newReplacingOutputStream(requestFile)) {
             objectMapper.writeValue(out, m);
         }
     }
@@ -21,6 +21,7 @@ package com.walmartlabs.concord.server.process.pipelines.processors;
  */
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.policyengine.PolicyEngine;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.server.policy.PolicyManager;
@@ -32,6 +33,7 @@ import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.UUID;
@@ -72,7 +74,9 @@ public class PolicyExportProcessor implements PayloadProcessor {
 
         try {
             Path dst = Files.createDirectories(ws.resolve(Constants.Files.CONCORD_SYSTEM_DIR_NAME));
-            objectMapper.writeValue(dst.resolve(Constants.Files.POLICY_FILE_NAME).toFile(), policy.getRules());
+            try (OutputStream out = IOUtils.newReplacingOutputStream(dst.resolve(Constants.Files.POLICY_FILE_NAME))) {
+                objectMapper.writeValue(out, policy.getRules());
+            }
         } catch (IOException e) {
             logManager.error(processKey, "Error while storing process policy: {}", e);
             throw new ProcessException(processKey, "Storing process policy error", e);
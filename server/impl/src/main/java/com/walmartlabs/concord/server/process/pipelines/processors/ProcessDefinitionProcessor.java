@@ -20,11 +20,14 @@ package com.walmartlabs.concord.server.process.pipelines.processors;
  * =====
  */
 
+import com.walmartlabs.concord.common.ProcessDefinitionCache;
+import com.walmartlabs.concord.common.WorkspaceProcessDefinitionCache;
 import com.walmartlabs.concord.repository.Snapshot;
 import com.walmartlabs.concord.runtime.loader.ProjectLoader;
 import com.walmartlabs.concord.runtime.loader.model.ProcessDefinition;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.server.process.ImportsNormalizerFactory;
+import com.walmartlabs.concord.server.process.InMemoryProcessDefinitionCache;
 import com.walmartlabs.concord.server.process.Payload;
 import com.walmartlabs.concord.server.process.ProcessException;
 import com.walmartlabs.concord.server.process.ProcessKey;
@@ -45,13 +48,16 @@ public class ProcessDefinitionProcessor implements PayloadProcessor {
 
     private final ProjectLoader projectLoader;
     private final ImportsNormalizerFactory importsNormalizer;
+    private final InMemoryProcessDefinitionCache definitionCache;
 
     @Inject
     public ProcessDefinitionProcessor(ProjectLoader projectLoader,
-                                      ImportsNormalizerFactory importsNormalizer) {
+                                      ImportsNormalizerFactory importsNormalizer,
+                                      InMemoryProcessDefinitionCache definitionCache) {
 
         this.projectLoader = projectLoader;
         this.importsNormalizer = importsNormalizer;
+        this.definitionCache = definitionCache;
     }
 
     @Override
@@ -64,8 +70,13 @@ public class ProcessDefinitionProcessor implements PayloadProcessor {
         }
 
         try {
+            // the file could come from the user's repository or the payload archive
+            // only the file written by the server below can reach the runtime
+            WorkspaceProcessDefinitionCache.delete(workDir);
+
             UUID projectId = payload.getHeader(Payload.PROJECT_ID);
-            ProjectLoader.Result result = projectLoader.loadProject(workDir, importsNormalizer.forProject(projectId));
+            ProcessDefinitionCache cache = definitionCache.isEnabled() ? new WorkspaceExportingCache(definitionCache, workDir) : null;
+            ProjectLoader.Result result = projectLoader.loadProject(workDir, importsNormalizer.forProject(projectId), cache);
 
             List<Snapshot> snapshots = result.snapshots();
             for (Snapshot s : snapshots) {
@@ -104,4 +115,34 @@ public class ProcessDefinitionProcessor implements PayloadProcessor {
 
         return payload.putHeader(RepositoryProcessor.REPOSITORY_SNAPSHOT, result);
     }
+
+    /**
+     * Uses the in-memory cache and saves the definition into the process'
+     * workspace, so the runtime doesn't have to parse the same files again.
+     */
+    private static final class WorkspaceExportingCache implements ProcessDefinitionCache {
+
+        private final ProcessDefinitionCache delegate;
+        private final ProcessDefinitionCache workspace;
+
+        private WorkspaceExportingCache(ProcessDefinitionCache delegate, Path workDir) {
+            this.delegate = delegate;
+            this.workspace = new WorkspaceProcessDefinitionCache(workDir);
+        }
+
+        @Override
+        public byte[] get(String hash) {
+            byte[] result = delegate.get(hash);
+            if (result != null) {
+                workspace.put(hash, result);
+            }
+            return result;
+        }
+
+        @Override
+        public void put(String hash, byte[] data) {
+            delegate.put(hash, data);
+            workspace.put(hash, data);
+        }
+    }
 }
@@ -20,6 +20,7 @@ package com.walmartlabs.concord.server.process.pipelines.processors;
  * =====
  */
 
+import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.server.cfg.SecretStoreConfiguration;
 import com.walmartlabs.concord.server.org.secret.SecretUtils;
@@ -32,6 +33,7 @@ import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
@@ -84,8 +86,10 @@ public class ProcessInfoProcessor implements PayloadProcessor {
 
     private void exportSessionToken(ProcessKey processKey, Path ws, String token) {
         try {
-            Path dst = Files.createDirectories(ws.resolve(Constants.Files.CONCORD_SYSTEM_DIR_NAME));
-            Files.write(dst.resolve(Constants.Files.SESSION_TOKEN_FILE_NAME), token.getBytes());
+            Path dst = Files.createDirectories(ws.resolve(Constants.Files.CONCORD_SYSTEM_DIR_NAME)).resolve(Constants.Files.SESSION_TOKEN_FILE_NAME);
+            try (OutputStream out = IOUtils.newReplacingOutputStream(dst)) {
+                out.write(token.getBytes());
+            }
         } catch (IOException e) {
             logManager.error(processKey, "Error while storing the session token: {}", e);
             throw new ProcessException(processKey, "Error while string the session token", e);
@@ -20,7 +20,6 @@ package com.walmartlabs.concord.server.process.pipelines.processors;
  * =====
  */
 
-import com.walmartlabs.concord.repository.Repository;
 import com.walmartlabs.concord.repository.Snapshot;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.server.org.project.RepositoryDao;
@@ -87,27 +86,24 @@ public class RepositoryProcessor implements PayloadProcessor {
 
         Path dst = payload.getHeader(Payload.WORKSPACE_DIR);
 
-        Payload newPayload = repositoryManager.withLock(repo.getUrl(), () -> {
-            try {
-                Repository repository = repositoryManager.fetch(projectId, repo);
-                Snapshot snapshot = repository.export(dst);
-                com.walmartlabs.concord.repository.RepositoryInfo info = repository.info();
-                String branch = repository.branch();
-
-                CommitInfo ci = null;
-                if (info != null) {
-                    ci = new CommitInfo(info.getCommitId(), info.getAuthor(), info.getMessage());
-                }
-
-                RepositoryInfo i = new RepositoryInfo(repo.getId(), repo.getName(), repo.getUrl(), repo.getPath(), branch, repo.getCommitId(), ci);
-                return payload.putHeader(REPOSITORY_INFO_KEY, i)
-                        .putHeader(REPOSITORY_SNAPSHOT, Collections.singletonList(snapshot));
-            } catch (Exception e) {
-                log.error("process -> repository error", e);
-                logManager.error(processKey, "Error while processing a repository: " + repo.getUrl(), e);
-                throw new ProcessException(processKey, "Error while processing a repository: " + repo.getUrl(), e);
+        Payload newPayload;
+        try {
+            RepositoryManager.ExportResult result = repositoryManager.export(projectId, repo, dst);
+            com.walmartlabs.concord.repository.RepositoryInfo info = result.info();
+
+            CommitInfo ci = null;
+            if (info != null) {
+                ci = new CommitInfo(info.getCommitId(), info.getAuthor(), info.getMessage());
             }
-        });
+
+            RepositoryInfo i = new RepositoryInfo(repo.getId(), repo.getName(), repo.getUrl(), repo.getPath(), result.branch(), repo.getCommitId(), ci);
+            newPayload = payload.putHeader(REPOSITORY_INFO_KEY, i)
+                    .putHeader(REPOSITORY_SNAPSHOT, Collections.singletonList(result.snapshot()));
+        } catch (Exception e) {
+            log.error("process -> repository error", e);
+            logManager.error(processKey, "Error while processing a repository: " + repo.getUrl(), e);
+            throw new ProcessException(processKey, "Error while processing a repository: " + repo.getUrl(), e);
+        }
 
         return chain.process(newPayload);
     }
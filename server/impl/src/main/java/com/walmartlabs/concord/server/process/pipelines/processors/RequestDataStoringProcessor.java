@@ -21,6 +21,7 @@ package com.walmartlabs.concord.server.process.pipelines.processors;
  */
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.server.process.Payload;
 import com.walmartlabs.concord.server.process.ProcessException;
@@ -30,7 +31,6 @@ import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Map;
 
@@ -58,7 +58,7 @@ public class RequestDataStoringProcessor implements PayloadProcessor {
         Path workspace = payload.getHeader(Payload.WORKSPACE_DIR);
         Path dst = workspace.resolve(Constants.Files.REQUEST_DATA_FILE_NAME);
 
-        try (OutputStream out = Files.newOutputStream(dst)) {
+        try (OutputStream out = IOUtils.newReplacingOutputStream(dst)) {
             ObjectMapper om = new ObjectMapper();
             om.writeValue(out, cfg);
         } catch (IOException e) {
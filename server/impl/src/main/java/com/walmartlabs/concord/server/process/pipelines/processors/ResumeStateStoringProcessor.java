@@ -20,6 +20,7 @@ package com.walmartlabs.concord.server.process.pipelines.processors;
  * =====
  */
 
+import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.server.process.Payload;
 import com.walmartlabs.concord.server.process.ProcessException;
@@ -29,6 +30,7 @@ import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -62,7 +64,9 @@ public class ResumeStateStoringProcessor implements PayloadProcessor {
             }
 
             Path resumeMarker = stateDir.resolve(Constants.Files.RESUME_MARKER_FILE_NAME);
-            Files.write(resumeMarker, eventName.getBytes());
+            try (OutputStream out = IOUtils.newReplacingOutputStream(resumeMarker)) {
+                out.write(eventName.getBytes());
+            }
         } catch (IOException e) {
             logManager.error(processKey, "Error while saving resume state", e);
             throw new ProcessException(processKey, "Error while saving resume state", e);
@@ -21,6 +21,7 @@ package com.walmartlabs.concord.server.process.pipelines.processors;
  */
 
 import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.common.WorkspaceProcessDefinitionCache;
 import com.walmartlabs.concord.dependencymanager.DependencyManager;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.server.process.PartialProcessKey;
@@ -36,6 +37,7 @@ import javax.inject.Singleton;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Map;
 import java.util.Optional;
@@ -111,7 +113,14 @@ public class TemplateFilesProcessor implements PayloadProcessor {
     private void extract(Payload payload, Path template) throws IOException {
         Path workspacePath = payload.getHeader(Payload.WORKSPACE_DIR);
 
+        // the process definition cache is written by the server, don't accept one from a template
+        boolean hasDefinitionCache = Files.exists(WorkspaceProcessDefinitionCache.file(workspacePath));
+
         // copy template's files to the payload, skipping the existing files
         IOUtils.unzip(template, workspacePath, true);
+
+        if (!hasDefinitionCache) {
+            WorkspaceProcessDefinitionCache.delete(workspacePath);
+        }
     }
 }
@@ -0,0 +1,382 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.cluster.ClusterNotificationListener;
+import com.walmartlabs.concord.server.cluster.ClusterNotifications;
+import com.walmartlabs.concord.server.process.ProcessKey;
+import com.walmartlabs.concord.server.process.queue.dispatcher.DispatcherIndex;
+import com.walmartlabs.concord.server.sdk.BackgroundTask;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Registry of the requests waiting for processes to finish.
+ * <p/>
+ * Waiters are woken up by the status transitions made on the current server
+ * (see {@link #onStatusChange(UUID, ProcessStatus)}) and by the
+ * {@link DispatcherIndex#CHANNEL} notifications sent by the {@code PROCESS_QUEUE}
+ * table trigger on any server. Both are treated as hints: the actual statuses
+ * are always read from the DB and all waiters are re-checked periodically
+ * to recover from any missed notifications.
+ */
+@Named
+@Singleton
+public class ProcessCompletionWaiters implements BackgroundTask, ClusterNotificationListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessCompletionWaiters.class);
+
+    private static final int CHECK_THREADS = 4;
+    private static final long TICK_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+    private static final long RECHECK_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+
+    public static final Set<ProcessStatus> FINAL_STATUSES = Collections.unmodifiableSet(EnumSet.of(
+            ProcessStatus.FINISHED,
+            ProcessStatus.FAILED,
+            ProcessStatus.CANCELLED,
+            ProcessStatus.TIMED_OUT));
+
+    private final ProcessQueueDao queueDao;
+
+    private final ConcurrentMap<UUID, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+    private final Set<Waiter> allWaiters = ConcurrentHashMap.newKeySet();
+    private final ExecutorService checkExecutor = Executors.newFixedThreadPool(CHECK_THREADS);
+
+    private final Histogram waitersHistogram;
+    private final Counter timeouts;
+
+    private Thread worker;
+
+    @Inject
+    public ProcessCompletionWaiters(ProcessQueueDao queueDao,
+                                    ClusterNotifications notifications,
+                                    MetricRegistry metricRegistry) {
+
+        this.queueDao = queueDao;
+
+        this.waitersHistogram = metricRegistry.histogram("process-completion-waiters");
+        this.timeouts = metricRegistry.counter("process-completion-waiter-timeouts");
+
+        notifications.subscribe(DispatcherIndex.CHANNEL, this);
+    }
+
+    /**
+     * Registers a waiter for the specified processes. The listener is called
+     * exactly once: when the processes are finished (all of them or any of
+     * them, depending on the {@code mode}) or when the timeout expires.
+     * Unknown processes are considered finished.
+     * <p/>
+     * The returned {@link Registration} must be cancelled if the caller is
+     * no longer interested in the result (e.g. the client disconnected).
+     *
+     * @param timeout the maximum wait time in milliseconds, {@code <= 0} to
+     *                wait indefinitely
+     */
+    public Registration register(Collection<UUID> instanceIds, Mode mode, long timeout, Listener listener) {
+        if (instanceIds.isEmpty()) {
+            throw new IllegalArgumentException("Instance IDs are required");
+        }
+
+        long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+        Waiter w = new Waiter(new HashSet<>(instanceIds), mode, deadline, listener);
+
+        allWaiters.add(w);
+        for (UUID id : w.instanceIds) {
+            waiters.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(w);
+        }
+
+        // the processes might be already finished
+        scheduleCheck(w);
+
+        return () -> remove(w);
+    }
+
+    /**
+     * Called after a process status is updated (and committed) on the current
+     * server.
+     */
+    public void onStatusChange(UUID instanceId, ProcessStatus status) {
+        if (FINAL_STATUSES.contains(status)) {
+            wakeUp(instanceId);
+        }
+    }
+
+    public void onStatusChange(Collection<ProcessKey> processKeys, ProcessStatus status) {
+        processKeys.forEach(k -> onStatusChange(k.getInstanceId(), status));
+    }
+
+    @Override
+    public void onNotification(String payload) {
+        // "instanceId,status"
+        int idx = payload.indexOf(',');
+        String instanceId = idx > 0 ? payload.substring(0, idx) : payload;
+
+        if (idx > 0) {
+            String status = payload.substring(idx + 1);
+            if (!isFinal(status)) {
+                return;
+            }
+        }
+
+        try {
+            wakeUp(UUID.fromString(instanceId));
+        } catch (IllegalArgumentException e) {
+            log.warn("onNotification -> invalid payload: {}", payload);
+        }
+    }
+
+    @Override
+    public void onReconnect() {
+        // some notifications might've been missed
+        allWaiters.forEach(this::scheduleCheck);
+    }
+
+    @Override
+    public void start() {
+        this.worker = new Thread(this::run, "process-completion-waiters");
+        this.worker.start();
+        log.info("start -> done");
+    }
+
+    @Override
+    public void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+
+        checkExecutor.shutdownNow();
+
+        log.info("stop -> done");
+    }
+
+    private void run() {
+        long lastRecheck = System.currentTimeMillis();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                sleep(TICK_INTERVAL);
+
+                long now = System.currentTimeMillis();
+                boolean recheck = now - lastRecheck >= RECHECK_INTERVAL;
+                if (recheck) {
+                    lastRecheck = now;
+                }
+
+                for (Waiter w : allWaiters) {
+                    if (w.deadline <= now) {
+                        if (!w.expired.compareAndSet(false, true)) {
+                            continue;
+                        }
+
+                        timeouts.inc();
+                        checkExecutor.execute(() -> finish(w, true));
+                    } else if (recheck) {
+                        scheduleCheck(w);
+                    }
+                }
+
+                waitersHistogram.update(allWaiters.size());
+            } catch (Exception e) {
+                log.warn("run -> error: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void wakeUp(UUID instanceId) {
+        Set<Waiter> s = waiters.get(instanceId);
+        if (s == null) {
+            return;
+        }
+
+        s.forEach(this::scheduleCheck);
+    }
+
+    private void scheduleCheck(Waiter w) {
+        if (!w.checkPending.compareAndSet(false, true)) {
+            // the check is already scheduled and will see the latest status
+            return;
+        }
+
+        try {
+            checkExecutor.execute(() -> {
+                w.checkPending.set(false);
+                check(w);
+            });
+        } catch (Exception e) {
+            // the executor is shut down
+            w.checkPending.set(false);
+        }
+    }
+
+    private void check(Waiter w) {
+        if (w.done.get()) {
+            return;
+        }
+
+        Map<UUID, ProcessStatus> statuses;
+        try {
+            statuses = queueDao.getStatuses(w.instanceIds);
+        } catch (Exception e) {
+            // will be re-checked later
+            log.warn("check {} -> error: {}", w.instanceIds, e.getMessage());
+            return;
+        }
+
+        boolean complete;
+        if (w.mode == Mode.ANY) {
+            complete = w.instanceIds.stream().anyMatch(id -> isFinal(statuses.get(id)));
+        } else {
+            complete = w.instanceIds.stream().allMatch(id -> isFinal(statuses.get(id)));
+        }
+
+        if (complete) {
+            finish(w, false);
+        }
+    }
+
+    /**
+     * Number of active waiters.
+     */
+    int size() {
+        return allWaiters.size();
+    }
+
+    private void finish(Waiter w, boolean timedOut) {
+        if (!remove(w)) {
+            return;
+        }
+
+        try {
+            w.listener.onDone(timedOut);
+        } catch (Exception e) {
+            log.warn("finish {} -> listener error: {}", w.instanceIds, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Removes the waiter from the registry.
+     *
+     * @return {@code false} if the waiter was already finished or removed
+     */
+    private boolean remove(Waiter w) {
+        if (!w.done.compareAndSet(false, true)) {
+            return false;
+        }
+
+        allWaiters.remove(w);
+        for (UUID id : w.instanceIds) {
+            waiters.computeIfPresent(id, (k, v) -> {
+                v.remove(w);
+                return v.isEmpty() ? null : v;
+            });
+        }
+
+        return true;
+    }
+
+    private static boolean isFinal(ProcessStatus status) {
+        return status == null || FINAL_STATUSES.contains(status);
+    }
+
+    private static boolean isFinal(String status) {
+        try {
+            return FINAL_STATUSES.contains(ProcessStatus.valueOf(status));
+        } catch (IllegalArgumentException e) {
+            // unknown status, check the process anyway
+            return true;
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public enum Mode {
+
+        /**
+         * Wait for any of the processes to finish.
+         */
+        ANY,
+
+        /**
+         * Wait for all processes to finish.
+         */
+        ALL
+    }
+
+    public interface Listener {
+
+        /**
+         * Called when the waiting is over, on one of the registry's threads.
+         *
+         * @param timedOut {@code true} if the processes didn't finish in time
+         */
+        void onDone(boolean timedOut);
+    }
+
+    public interface Registration {
+
+        /**
+         * Removes the waiter without calling its listener. Does nothing if
+         * the listener was already called.
+         */
+        void cancel();
+    }
+
+    private static final class Waiter {
+
+        private final Set<UUID> instanceIds;
+        private final Mode mode;
+        private final long deadline;
+        private final Listener listener;
+
+        private final AtomicBoolean checkPending = new AtomicBoolean();
+        private final AtomicBoolean expired = new AtomicBoolean();
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Waiter(Set<UUID> instanceIds, Mode mode, long deadline, Listener listener) {
+            this.instanceIds = instanceIds;
+            this.mode = mode;
+            this.deadline = deadline;
+            this.listener = listener;
+        }
+    }
+}
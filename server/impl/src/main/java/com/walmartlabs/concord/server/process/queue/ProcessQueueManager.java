@@ -45,17 +45,20 @@ public class ProcessQueueManager {
     private final ConcordObjectMapper objectMapper;
     private final ProcessKeyCache keyCache;
     private final ProcessEventManager eventManager;
+    private final ProcessCompletionWaiters completionWaiters;
 
     @Inject
     public ProcessQueueManager(ProcessQueueDao queueDao,
                                ConcordObjectMapper objectMapper,
                                ProcessKeyCache keyCache,
-                               ProcessEventManager eventManager) {
+                               ProcessEventManager eventManager,
+                               ProcessCompletionWaiters completionWaiters) {
 
         this.queueDao = queueDao;
         this.eventManager = eventManager;
         this.objectMapper = objectMapper;
         this.keyCache = keyCache;
+        this.completionWaiters = completionWaiters;
     }
 
     /**
@@ -127,6 +130,7 @@ public class ProcessQueueManager {
      */
     public void updateStatus(ProcessKey processKey, ProcessStatus status, Map<String, Object> statusPayload) {
         queueDao.tx(tx -> updateStatus(tx, processKey, status, statusPayload));
+        completionWaiters.onStatusChange(processKey.getInstanceId(), status);
     }
 
     /**
@@ -143,11 +147,32 @@ public class ProcessQueueManager {
      * @return {@code true} if the process was updated
      */
     public boolean updateExpectedStatus(ProcessKey processKey, ProcessStatus expected, ProcessStatus status) {
-        return queueDao.txResult(tx -> {
+        boolean updated = queueDao.txResult(tx -> {
             boolean success = queueDao.updateStatus(tx, processKey, expected, status);
             eventManager.insertStatusHistory(tx, processKey, status, Collections.emptyMap());
             return success;
         });
+
+        if (updated) {
+            completionWaiters.onStatusChange(processKey.getInstanceId(), status);
+        }
+
+        return updated;
+    }
+
+    /**
+     * Updates the process' status but only if it's in the {@code expected} status.
+     * Unlike {@link #updateExpectedStatus(ProcessKey, ProcessStatus, ProcessStatus)}
+     * the status history event is added only if the process was updated.
+     *
+     * @return {@code true} if the process was updated
+     */
+    public boolean updateExpectedStatus(DSLContext tx, ProcessKey processKey, ProcessStatus expected, ProcessStatus status) {
+        boolean success = queueDao.updateStatus(tx, processKey, expected, status);
+        if (success) {
+            eventManager.insertStatusHistory(tx, processKey, status, Collections.emptyMap());
+        }
+        return success;
     }
 
     /**
@@ -157,11 +182,15 @@ public class ProcessQueueManager {
      * @return {@code true} if every processes was updated
      */
     public boolean updateExpectedStatus(List<ProcessKey> processKeys, List<ProcessStatus> expected, ProcessStatus status) {
-        return queueDao.txResult(tx -> {
+        boolean updated = queueDao.txResult(tx -> {
             boolean success = queueDao.updateStatus(processKeys, expected, status);
             eventManager.insertStatusHistory(tx, processKeys, status);
             return success;
         });
+
+        completionWaiters.onStatusChange(processKeys, status);
+
+        return updated;
     }
 
     /**
@@ -169,6 +198,7 @@ public class ProcessQueueManager {
      */
     public void updateAgentId(ProcessKey processKey, String agentId, ProcessStatus status) {
         queueDao.tx(tx -> updateAgentId(tx, processKey, agentId, status));
+        completionWaiters.onStatusChange(processKey.getInstanceId(), status);
     }
 
     /**
@@ -23,7 +23,9 @@ package com.walmartlabs.concord.server.process.queue.dispatcher;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
-import com.walmartlabs.concord.common.MapMatcher;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import com.walmartlabs.concord.common.CompiledMapMatcher;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
 import com.walmartlabs.concord.imports.Imports;
@@ -37,7 +39,9 @@ import com.walmartlabs.concord.server.process.ProcessKey;
 import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueEntry;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueManager;
+import com.walmartlabs.concord.server.queueclient.message.Message;
 import com.walmartlabs.concord.server.queueclient.message.MessageType;
+import com.walmartlabs.concord.server.queueclient.message.ProcessBatchResponse;
 import com.walmartlabs.concord.server.queueclient.message.ProcessRequest;
 import com.walmartlabs.concord.server.queueclient.message.ProcessResponse;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
@@ -55,6 +59,7 @@ import javax.inject.Singleton;
 import java.sql.Timestamp;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.walmartlabs.concord.server.jooq.tables.Organizations.ORGANIZATIONS;
@@ -84,8 +89,10 @@ public class Dispatcher extends PeriodicTask {
     private final ProcessQueueManager queueManager;
     private final Set<Filter> filters;
     private final ImportsNormalizerFactory importsNormalizerFactory;
+    private final DispatcherIndex index;
 
     private final int batchSize;
+    private final boolean useIndex;
 
     private final Histogram dispatchedCountHistogram;
     private final Timer responseTimer;
@@ -98,6 +105,7 @@ public class Dispatcher extends PeriodicTask {
                       ProcessQueueManager queueManager,
                       Set<Filter> filters,
                       ImportsNormalizerFactory importsNormalizerFactory,
+                      DispatcherIndex index,
                       ProcessQueueConfiguration cfg,
                       MetricRegistry metricRegistry) {
 
@@ -110,13 +118,27 @@ public class Dispatcher extends PeriodicTask {
         this.queueManager = queueManager;
         this.filters = filters;
         this.importsNormalizerFactory = importsNormalizerFactory;
+        this.index = index;
 
         this.batchSize = cfg.getDispatcherBatchSize();
+        this.useIndex = cfg.isDispatcherUseIndex();
 
         this.dispatchedCountHistogram = metricRegistry.histogram("process-queue-dispatcher-dispatched-count");
         this.responseTimer = metricRegistry.timer("process-queue-dispatcher-response-timer");
     }
 
+    @Override
+    public void start() {
+        try {
+            dao.setIndexNotifications(useIndex);
+        } catch (Exception e) {
+            // the index is still reloaded periodically
+            log.warn("start -> can't update the process queue notifications: {}", e.getMessage());
+        }
+
+        super.start();
+    }
+
     @Override
     @WithTimer
     protected boolean performTask() {
@@ -134,15 +156,20 @@ public class Dispatcher extends PeriodicTask {
 
         // prepare all responses in a single transaction
         // take a global lock to avoid races
+        List<UUID> processed = new ArrayList<>();
         List<Match> matches = dao.txResult(tx -> {
             locks.lock(tx, LOCK_KEY);
             try {
-                return match(tx, l);
+                return useIndex ? matchIndexed(tx, l, processed) : match(tx, l);
             } finally {
                 filters.forEach(Filter::cleanup);
             }
         });
 
+        // the claimed or stale entries are no longer dispatchable
+        // (only after the commit, the index must stay intact if the transaction rolls back)
+        processed.forEach(index::remove);
+
         dispatchedCountHistogram.update(matches.size());
 
         // no matches, retry after a delay
@@ -150,10 +177,14 @@ public class Dispatcher extends PeriodicTask {
             return false;
         }
 
+        // group the matches by request, a request can receive multiple processes
+        Map<Request, List<ProcessQueueEntry>> responses = new LinkedHashMap<>();
+        matches.forEach(m -> responses.computeIfAbsent(m.request, k -> new ArrayList<>()).add(m.response));
+
         // send all responses in parallel
-        withTimer(responseTimer, () -> matches.stream()
+        withTimer(responseTimer, () -> responses.entrySet().stream()
                 .parallel()
-                .forEach(this::sendResponse));
+                .forEach(e -> sendResponse(e.getKey(), e.getValue())));
 
         return true;
     }
@@ -185,7 +216,9 @@ public class Dispatcher extends PeriodicTask {
 
                 if (pass(tx, e, startingProcesses)) {
                     matches.add(new Match(req, e));
-                    inbox.remove(req);
+                    if (--req.remaining <= 0) {
+                        inbox.remove(req);
+                    }
 
                     if (inbox.isEmpty()) {
                         break;
@@ -210,11 +243,89 @@ public class Dispatcher extends PeriodicTask {
         return matches;
     }
 
+    /**
+     * Matches the requests with the candidates from the {@link DispatcherIndex}.
+     * The agent capabilities are matched once per each distinct set of requirements
+     * and the DB is used only to claim the matched processes.
+     */
+    private List<Match> matchIndexed(DSLContext tx, List<Request> requests, List<UUID> processed) {
+        index.sync(new DispatcherIndex.Loader() {
+            @Override
+            public List<DispatcherIndex.Item> loadAll() {
+                return dao.loadAll(tx);
+            }
+
+            @Override
+            public List<DispatcherIndex.Item> load(Collection<UUID> instanceIds) {
+                return dao.load(tx, instanceIds);
+            }
+        });
+
+        // we need it modifiable
+        List<Request> inbox = new ArrayList<>(requests);
+
+        long now = System.currentTimeMillis();
+
+        // find the buckets that can be handled by at least one of the requests
+        PriorityQueue<Candidates> queue = new PriorityQueue<>(Comparator.comparing((Candidates c) -> c.items.peek(), DispatcherIndex.Item.ORDER));
+        for (DispatcherIndex.Bucket b : index.buckets()) {
+            List<Request> reqs = inbox.stream()
+                    .filter(r -> b.matches(r.request.getCapabilities()))
+                    .collect(Collectors.toList());
+
+            if (reqs.isEmpty()) {
+                continue;
+            }
+
+            PeekingIterator<DispatcherIndex.Item> items = Iterators.peekingIterator(Iterators.filter(b.getItems().iterator(), i -> i.isReady(now)));
+            if (items.hasNext()) {
+                queue.add(new Candidates(items, reqs));
+            }
+        }
+
+        // go through the candidates from all matching buckets in the queue order
+        List<Match> matches = new ArrayList<>();
+        while (!queue.isEmpty() && !inbox.isEmpty()) {
+            Candidates c = queue.poll();
+
+            Request req = c.requests.stream()
+                    .filter(inbox::contains)
+                    .findFirst()
+                    .orElse(null);
+
+            if (req == null) {
+                // all requests capable of handling this bucket are already matched
+                continue;
+            }
+
+            ProcessQueueEntry e = c.items.next().getEntry();
+
+            List<ProcessQueueEntry> startingProcesses = matches.stream().map(m -> m.response).collect(Collectors.toList());
+            if (pass(tx, e, startingProcesses)) {
+                // the index can be stale, make sure the process is still ENQUEUED
+                if (queueManager.updateExpectedStatus(tx, e.key(), ProcessStatus.ENQUEUED, ProcessStatus.STARTING)) {
+                    matches.add(new Match(req, e));
+                    if (--req.remaining <= 0) {
+                        inbox.remove(req);
+                    }
+                }
+
+                processed.add(e.key().getInstanceId());
+            }
+
+            if (c.items.hasNext()) {
+                queue.add(c);
+            }
+        }
+
+        return matches;
+    }
+
     private static Request findRequest(ProcessQueueEntry candidate, List<Request> requests) {
+        CompiledMapMatcher m = CompiledMapMatcher.compile(getAgentRequirements(candidate));
         for (Request req : requests) {
             Map<String, Object> capabilities = req.request.getCapabilities();
-            Map<String, Object> m = getAgentRequirements(candidate);
-            if (MapMatcher.matches(capabilities, m)) {
+            if (m.matches(capabilities)) {
                 return req;
             }
         }
@@ -223,7 +334,7 @@ public class Dispatcher extends PeriodicTask {
     }
 
     @SuppressWarnings("unchecked")
-    private static Map<String, Object> getAgentRequirements(ProcessQueueEntry entry) {
+    static Map<String, Object> getAgentRequirements(ProcessQueueEntry entry) {
         Map<String, Object> requirements = entry.requirements();
         if (requirements == null) {
             return Collections.emptyMap();
@@ -247,38 +358,62 @@ public class Dispatcher extends PeriodicTask {
         return true;
     }
 
-    private void sendResponse(Match match) {
-        WebSocketChannel channel = match.request.channel;
-        long correlationId = match.request.request.getCorrelationId();
-        ProcessQueueEntry item = match.response;
+    private void sendResponse(Request request, List<ProcessQueueEntry> items) {
+        WebSocketChannel channel = request.channel;
+        long correlationId = request.request.getCorrelationId();
 
-        try {
-            SecretReference secret = null;
-            if (item.repoId() != null) {
-                secret = dao.getSecretReference(item.repoId());
+        List<ProcessQueueEntry> sent = new ArrayList<>();
+        List<ProcessResponse> responses = new ArrayList<>();
+        for (ProcessQueueEntry item : items) {
+            try {
+                responses.add(toResponse(correlationId, item));
+                sent.add(item);
+            } catch (Exception e) {
+                log.error("sendResponse ['{}'] -> failed (instanceId: {})", correlationId, item.key().getInstanceId(), e);
+
+                // the process wasn't sent to the agent, return it to the queue
+                // so it can be dispatched again with the next request
+                queueManager.updateExpectedStatus(item.key(), ProcessStatus.STARTING, ProcessStatus.ENQUEUED);
             }
+        }
 
-            // backward compatibility with old process queue entries that are not normalized
-            Imports imports = importsNormalizerFactory.forProject(item.projectId())
-                    .normalize(item.imports());
+        if (responses.isEmpty()) {
+            return;
+        }
 
-            ProcessResponse resp = new ProcessResponse(correlationId,
-                    item.key().getInstanceId(),
-                    secret != null ? secret.orgName : null,
-                    item.repoUrl(),
-                    item.repoPath(),
-                    item.commitId(),
-                    secret != null ? secret.secretName : null,
-                    imports);
+        // agents that don't specify maxCount expect a single process per response
+        Message resp = request.isBatch() ? new ProcessBatchResponse(correlationId, responses) : responses.get(0);
 
+        try {
             if (!channelManager.sendResponse(channel.getChannelId(), resp)) {
                 log.warn("sendResponse ['{}'] -> failed", correlationId);
             }
 
-            logManager.info(item.key(), "Acquired by: " + channel.getUserAgent());
+            sent.forEach(item -> logManager.info(item.key(), "Acquired by: " + channel.getUserAgent()));
         } catch (Exception e) {
-            log.error("sendResponse ['{}'] -> failed (instanceId: {})", correlationId, item.key().getInstanceId());
+            log.error("sendResponse ['{}'] -> failed (instanceIds: {})", correlationId,
+                    sent.stream().map(i -> i.key().getInstanceId()).collect(Collectors.toList()));
+        }
+    }
+
+    private ProcessResponse toResponse(long correlationId, ProcessQueueEntry item) {
+        SecretReference secret = null;
+        if (item.repoId() != null) {
+            secret = dao.getSecretReference(item.repoId());
         }
+
+        // backward compatibility with old process queue entries that are not normalized
+        Imports imports = importsNormalizerFactory.forProject(item.projectId())
+                .normalize(item.imports());
+
+        return new ProcessResponse(correlationId,
+                item.key().getInstanceId(),
+                secret != null ? secret.orgName : null,
+                item.repoUrl(),
+                item.repoPath(),
+                item.commitId(),
+                secret != null ? secret.secretName : null,
+                imports);
     }
 
     @Named
@@ -302,6 +437,34 @@ public class Dispatcher extends PeriodicTask {
             return super.txResult(t);
         }
 
+        /**
+         * Enables or disables the {@code PROCESS_QUEUE_NOTIFY} trigger which feeds
+         * the {@link DispatcherIndex}. Each notification takes the global notify lock
+         * on commit, so the trigger is enabled only when the index is used.
+         * The setting is cluster-wide and must be the same on all servers.
+         */
+        public void setIndexNotifications(boolean enabled) {
+            tx(tx -> {
+                String state = tx.resultQuery("select tgenabled::text from pg_trigger " +
+                        "where tgrelid = 'process_queue'::regclass and tgname = 'process_queue_notify'")
+                        .fetchOne(0, String.class);
+
+                if (state == null) {
+                    log.warn("setIndexNotifications -> the trigger is missing");
+                    return;
+                }
+
+                // 'D' means disabled. Don't lock the table if there's nothing to change
+                boolean current = !"D".equals(state);
+                if (current == enabled) {
+                    return;
+                }
+
+                tx.execute("alter table PROCESS_QUEUE " + (enabled ? "enable" : "disable") + " trigger PROCESS_QUEUE_NOTIFY");
+                log.info("setIndexNotifications -> {}", enabled ? "enabled" : "disabled");
+            });
+        }
+
         @WithTimer
         public List<ProcessQueueEntry> next(DSLContext tx, int offset, int limit) {
             offsetHistogram.update(offset);
@@ -354,6 +517,59 @@ public class Dispatcher extends PeriodicTask {
                             .build());
         }
 
+        @WithTimer
+        public List<DispatcherIndex.Item> loadAll(DSLContext tx) {
+            return selectItems(tx, q -> noCondition());
+        }
+
+        @WithTimer
+        public List<DispatcherIndex.Item> load(DSLContext tx, Collection<UUID> instanceIds) {
+            return selectItems(tx, q -> q.INSTANCE_ID.in(instanceIds));
+        }
+
+        private List<DispatcherIndex.Item> selectItems(DSLContext tx, Function<ProcessQueue, Condition> condition) {
+            ProcessQueue q = PROCESS_QUEUE.as("q");
+
+            Field<UUID> orgIdField = select(PROJECTS.ORG_ID).from(PROJECTS).where(PROJECTS.PROJECT_ID.eq(q.PROJECT_ID)).asField();
+
+            return tx.select(
+                    q.INSTANCE_ID,
+                    q.CREATED_AT,
+                    q.PROJECT_ID,
+                    orgIdField,
+                    q.INITIATOR_ID,
+                    q.PARENT_INSTANCE_ID,
+                    q.REPO_PATH,
+                    q.REPO_URL,
+                    q.COMMIT_ID,
+                    q.REPO_ID,
+                    q.IMPORTS,
+                    q.REQUIREMENTS,
+                    q.EXCLUSIVE,
+                    q.LAST_UPDATED_AT,
+                    q.START_AT)
+                    .from(q)
+                    .where(q.CURRENT_STATUS.eq(ProcessStatus.ENQUEUED.toString())
+                            .and(q.WAIT_CONDITIONS.isNull())
+                            .and(condition.apply(q)))
+                    .fetch(r -> new DispatcherIndex.Item(ProcessQueueEntry.builder()
+                            .key(new ProcessKey(r.value1(), r.value2()))
+                            .projectId(r.value3())
+                            .orgId(r.value4())
+                            .initiatorId(r.value5())
+                            .parentInstanceId(r.value6())
+                            .repoPath(r.value7())
+                            .repoUrl(r.value8())
+                            .commitId(r.value9())
+                            .repoId(r.value10())
+                            .imports(objectMapper.fromJSONB(r.value11(), Imports.class))
+                            .requirements(objectMapper.fromJSONB(r.value12()))
+                            .exclusive(objectMapper.fromJSONB(r.value13()))
+                            .build(),
+                            r.value14().getTime(),
+                            r.value15() != null ? r.value15().getTime() : null));
+        }
+
         public SecretReference getSecretReference(UUID repoId) {
             try (DSLContext tx = DSL.using(cfg)) {
                 return tx.select(ORGANIZATIONS.ORG_NAME, SECRETS.SECRET_NAME)
@@ -371,9 +587,21 @@ public class Dispatcher extends PeriodicTask {
         private final WebSocketChannel channel;
         private final ProcessRequest request;
 
+        /**
+         * Number of processes the request can still accept.
+         */
+        private int remaining;
+
         private Request(WebSocketChannel channel, ProcessRequest request) {
             this.channel = channel;
             this.request = request;
+
+            Integer maxCount = request.getMaxCount();
+            this.remaining = maxCount != null ? Math.max(1, maxCount) : 1;
+        }
+
+        private boolean isBatch() {
+            return request.getMaxCount() != null;
         }
     }
 
@@ -388,6 +616,17 @@ public class Dispatcher extends PeriodicTask {
         }
     }
 
+    private static final class Candidates {
+
+        private final PeekingIterator<DispatcherIndex.Item> items;
+        private final List<Request> requests;
+
+        private Candidates(PeekingIterator<DispatcherIndex.Item> items, List<Request> requests) {
+            this.items = items;
+            this.requests = requests;
+        }
+    }
+
     private static final class SecretReference {
 
         private final String orgName;
@@ -0,0 +1,288 @@
+package com.walmartlabs.concord.server.process.queue.dispatcher;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.common.CompiledMapMatcher;
+import com.walmartlabs.concord.server.cfg.ProcessQueueConfiguration;
+import com.walmartlabs.concord.server.cluster.ClusterNotificationListener;
+import com.walmartlabs.concord.server.cluster.ClusterNotifications;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of dispatchable (ENQUEUED, not waiting) processes grouped
+ * by their agent requirements.
+ * <p/>
+ * The index is updated incrementally using the {@link #CHANNEL} notifications
+ * sent by the {@code PROCESS_QUEUE} table trigger and periodically reloaded
+ * to recover from any missed notifications. The actual status of an entry
+ * must be verified by the caller (e.g. using a conditional status update).
+ * <p/>
+ * Except for the notification callbacks, the index is not thread-safe and
+ * must be accessed only by the {@link Dispatcher}'s thread.
+ */
+@Named
+@Singleton
+public class DispatcherIndex implements ClusterNotificationListener {
+
+    private static final Logger log = LoggerFactory.getLogger(DispatcherIndex.class);
+
+    public static final String CHANNEL = "process_queue";
+
+    /**
+     * If there are more pending updates than this value, the index is reloaded
+     * completely instead.
+     */
+    private static final int MAX_INCREMENTAL_UPDATE = 1000;
+
+    private final long reloadInterval;
+    private final Map<UUID, Item> items = new HashMap<>();
+    private final Map<Map<String, Object>, Bucket> buckets = new HashMap<>();
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+
+    private final Histogram sizeHistogram;
+    private final Histogram bucketCountHistogram;
+    private final Histogram updateSizeHistogram;
+
+    private volatile boolean stale = true;
+    private long lastReloadAt;
+
+    @Inject
+    public DispatcherIndex(ProcessQueueConfiguration cfg,
+                           ClusterNotifications notifications,
+                           MetricRegistry metricRegistry) {
+
+        this.reloadInterval = cfg.getDispatcherIndexReloadInterval();
+
+        this.sizeHistogram = metricRegistry.histogram("process-queue-dispatcher-index-size");
+        this.bucketCountHistogram = metricRegistry.histogram("process-queue-dispatcher-index-buckets");
+        this.updateSizeHistogram = metricRegistry.histogram("process-queue-dispatcher-index-update-size");
+
+        if (cfg.isDispatcherUseIndex()) {
+            notifications.subscribe(CHANNEL, this);
+        }
+    }
+
+    @Override
+    public void onNotification(String payload) {
+        // "instanceId,status"
+        int idx = payload.indexOf(',');
+        String instanceId = idx > 0 ? payload.substring(0, idx) : payload;
+
+        try {
+            pending.add(UUID.fromString(instanceId));
+        } catch (IllegalArgumentException e) {
+            log.warn("onNotification -> invalid payload: {}", payload);
+        }
+    }
+
+    @Override
+    public void onReconnect() {
+        stale = true;
+    }
+
+    /**
+     * Applies the pending updates or reloads the whole index if it is
+     * stale or too old.
+     */
+    public void sync(Loader loader) {
+        long now = System.currentTimeMillis();
+        if (stale || pending.size() > MAX_INCREMENTAL_UPDATE || now - lastReloadAt >= reloadInterval) {
+            reload(loader, now);
+        } else {
+            update(loader);
+        }
+
+        sizeHistogram.update(items.size());
+        bucketCountHistogram.update(buckets.size());
+    }
+
+    /**
+     * Returns all non-empty buckets. The result must not be used after
+     * the index is modified.
+     */
+    public Collection<Bucket> buckets() {
+        return buckets.values();
+    }
+
+    public void remove(UUID instanceId) {
+        Item i = items.remove(instanceId);
+        if (i == null) {
+            return;
+        }
+
+        Bucket b = buckets.get(i.requirements);
+        if (b == null) {
+            return;
+        }
+
+        b.items.remove(i);
+        if (b.items.isEmpty()) {
+            buckets.remove(b.requirements);
+        }
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    private void reload(Loader loader, long now) {
+        // any notification received after this point will be applied on the next sync
+        stale = false;
+        pending.clear();
+
+        List<Item> l = loader.loadAll();
+
+        items.clear();
+        buckets.clear();
+        l.forEach(this::put);
+
+        lastReloadAt = now;
+
+        log.info("reload -> done, {} entries in {} bucket(s)", items.size(), buckets.size());
+    }
+
+    private void update(Loader loader) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Set<UUID> ids = new HashSet<>();
+        for (Iterator<UUID> i = pending.iterator(); i.hasNext(); ) {
+            ids.add(i.next());
+            i.remove();
+        }
+
+        updateSizeHistogram.update(ids.size());
+
+        // the entries not returned by the loader are no longer dispatchable
+        ids.forEach(this::remove);
+        loader.load(ids).forEach(this::put);
+    }
+
+    private void put(Item i) {
+        remove(i.entry.key().getInstanceId());
+
+        items.put(i.entry.key().getInstanceId(), i);
+        buckets.computeIfAbsent(i.requirements, Bucket::new).items.add(i);
+    }
+
+    /**
+     * Returns a copy of the specified map with all nested maps sorted by key.
+     * Two sets of requirements are placed into the same bucket if
+     * their normalized forms are equal.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> normalize(Map<String, Object> m) {
+        Map<String, Object> result = new TreeMap<>();
+        for (Map.Entry<String, Object> e : m.entrySet()) {
+            Object v = e.getValue();
+            if (v instanceof Map) {
+                v = normalize((Map<String, Object>) v);
+            }
+            result.put(e.getKey(), v);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    public interface Loader {
+
+        /**
+         * Returns all dispatchable entries.
+         */
+        List<Item> loadAll();
+
+        /**
+         * Returns the dispatchable entries among the specified IDs.
+         */
+        List<Item> load(Collection<UUID> instanceIds);
+    }
+
+    public static final class Bucket {
+
+        private final Map<String, Object> requirements;
+        private final CompiledMapMatcher matcher;
+        private final NavigableSet<Item> items = new TreeSet<>(Item.ORDER);
+
+        private Bucket(Map<String, Object> requirements) {
+            this.requirements = requirements;
+            this.matcher = CompiledMapMatcher.compile(requirements);
+        }
+
+        public Map<String, Object> getRequirements() {
+            return requirements;
+        }
+
+        /**
+         * @return {@code true} if an agent with the specified capabilities
+         * can handle the processes in this bucket.
+         */
+        public boolean matches(Map<String, Object> capabilities) {
+            return matcher.matches(capabilities);
+        }
+
+        /**
+         * @return the entries in the order of their last status update.
+         */
+        public NavigableSet<Item> getItems() {
+            return items;
+        }
+    }
+
+    public static final class Item {
+
+        static final Comparator<Item> ORDER = Comparator.comparingLong((Item i) -> i.lastUpdatedAt)
+                .thenComparing(i -> i.entry.key().getInstanceId());
+
+        private final ProcessQueueEntry entry;
+        private final Map<String, Object> requirements;
+        private final long lastUpdatedAt;
+        private final Long startAt;
+
+        public Item(ProcessQueueEntry entry, long lastUpdatedAt, Long startAt) {
+            this.entry = entry;
+            this.requirements = normalize(Dispatcher.getAgentRequirements(entry));
+            this.lastUpdatedAt = lastUpdatedAt;
+            this.startAt = startAt;
+        }
+
+        public ProcessQueueEntry getEntry() {
+            return entry;
+        }
+
+        public long getLastUpdatedAt() {
+            return lastUpdatedAt;
+        }
+
+        public boolean isReady(long now) {
+            return startAt == null || startAt <= now;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.walmartlabs.concord.server.process.state;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a value of known size in chunks, each chunk is fetched separately.
+ * Neither the whole value nor a DB connection are held while the data is consumed.
+ */
+public class ChunkedInputStream extends InputStream {
+
+    private final int size;
+    private final int chunkSize;
+    private final ChunkReader reader;
+
+    private byte[] buf;
+    private int bufPos;
+    private int offset;
+
+    public ChunkedInputStream(int size, int chunkSize, ChunkReader reader) {
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.reader = reader;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+
+        return buf[bufPos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!fill()) {
+            return -1;
+        }
+
+        int n = Math.min(len, buf.length - bufPos);
+        System.arraycopy(buf, bufPos, b, off, n);
+        bufPos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return buf != null ? buf.length - bufPos : 0;
+    }
+
+    private boolean fill() throws IOException {
+        if (buf != null && bufPos < buf.length) {
+            return true;
+        }
+
+        if (offset >= size) {
+            return false;
+        }
+
+        int len = Math.min(chunkSize, size - offset);
+        byte[] ab = reader.read(offset, len);
+        if (ab == null || ab.length != len) {
+            throw new IOException("The data was modified or removed while reading (offset: " + offset + ", size: " + size + ")");
+        }
+
+        buf = ab;
+        bufPos = 0;
+        offset += len;
+        return true;
+    }
+
+    public interface ChunkReader {
+
+        /**
+         * @return the data or {@code null} if the value no longer exists.
+         */
+        byte[] read(int offset, int len) throws IOException;
+    }
+}
@@ -0,0 +1,88 @@
+package com.walmartlabs.concord.server.process.state;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.db.AbstractDao;
+import com.walmartlabs.concord.db.MainDB;
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+
+import static com.walmartlabs.concord.server.jooq.tables.ProcessStateBlobs.PROCESS_STATE_BLOBS;
+
+/**
+ * Default store, keeps the data in the {@code PROCESS_STATE_BLOBS} table.
+ */
+@Named
+@Singleton
+public class DatabaseStateStore extends AbstractDao implements StateStore {
+
+    private static final String TYPE = "db";
+
+    @Inject
+    public DatabaseStateStore(@MainDB Configuration cfg) {
+        super(cfg);
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public boolean isInline() {
+        return true;
+    }
+
+    @Override
+    public void put(String hash, InputStream data) {
+        // do nothing, the data is inserted by ProcessStateManager together with the metadata
+    }
+
+    @Override
+    public InputStream get(String hash) throws FileNotFoundException {
+        byte[] ab;
+        try (DSLContext tx = DSL.using(cfg)) {
+            ab = tx.select(PROCESS_STATE_BLOBS.BLOB_DATA)
+                    .from(PROCESS_STATE_BLOBS)
+                    .where(PROCESS_STATE_BLOBS.BLOB_HASH.eq(hash))
+                    .fetchOne(PROCESS_STATE_BLOBS.BLOB_DATA);
+        }
+
+        if (ab == null) {
+            throw new FileNotFoundException("State blob not found: " + hash);
+        }
+
+        return new ByteArrayInputStream(ab);
+    }
+
+    @Override
+    public void delete(String hash) {
+        // do nothing, the data is removed together with the metadata
+    }
+}
@@ -0,0 +1,107 @@
+package com.walmartlabs.concord.server.process.state;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+
+/**
+ * Keeps the data in a directory, one file per hash. The directory must be
+ * shared by all server instances, e.g. an NFS volume or a mounted
+ * S3-compatible bucket.
+ */
+@Named
+@Singleton
+public class FileStateStore implements StateStore {
+
+    private static final String TYPE = "fs";
+
+    private final Path root;
+
+    @Inject
+    public FileStateStore(ProcessConfiguration cfg) {
+        this(cfg.getStateStoreFsPath() != null ? Paths.get(cfg.getStateStoreFsPath()) : null);
+    }
+
+    public FileStateStore(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public boolean isInline() {
+        return false;
+    }
+
+    @Override
+    public void put(String hash, InputStream data) throws IOException {
+        Path dst = path(hash);
+        if (Files.exists(dst)) {
+            // same hash, same data
+            return;
+        }
+
+        Path parent = dst.getParent();
+        Files.createDirectories(parent);
+
+        // write into a temporary file first, so the readers never see partially written data
+        Path tmp = Files.createTempFile(parent, hash, ".tmp");
+        try {
+            Files.copy(data, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, dst, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public InputStream get(String hash) throws IOException {
+        return Files.newInputStream(path(hash));
+    }
+
+    @Override
+    public void delete(String hash) throws IOException {
+        Files.deleteIfExists(path(hash));
+    }
+
+    private Path path(String hash) {
+        if (root == null) {
+            throw new IllegalStateException("The state store's path is not configured (process.stateStore.fs.path)");
+        }
+
+        if (hash.length() < 3 || hash.contains("/") || hash.contains("..")) {
+            throw new IllegalArgumentException("Invalid hash: " + hash);
+        }
+
+        // use the first two characters as a subdirectory to keep the directories small
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+}
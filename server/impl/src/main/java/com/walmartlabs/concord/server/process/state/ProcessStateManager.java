@@ -24,6 +24,7 @@ import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.common.Posix;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.server.Locks;
 import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
 import com.walmartlabs.concord.server.cfg.SecretStoreConfiguration;
 import com.walmartlabs.concord.server.org.secret.SecretUtils;
@@ -32,8 +33,12 @@ import com.walmartlabs.concord.server.process.ProcessKey;
 import com.walmartlabs.concord.server.sdk.metrics.WithTimer;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.jooq.Condition;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record4;
+import org.jooq.Table;
 import org.jooq.impl.DSL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +46,7 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -51,6 +57,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.*;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -58,6 +65,8 @@ import java.util.stream.Stream;
 
 import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessState.PROCESS_STATE;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessStateBlobs.PROCESS_STATE_BLOBS;
+import static org.jooq.impl.DSL.coalesce;
 
 @Named
 @Singleton
@@ -66,17 +75,38 @@ public class ProcessStateManager extends AbstractDao {
     private static final Logger log = LoggerFactory.getLogger(ProcessStateManager.class);
 
     private static final String PATH_SEPARATOR = "/";
-    private static final int INSERT_BATCH_SIZE = 10;
+    private static final int INSERT_BATCH_SIZE = 100;
+    private static final int READ_CHUNK_SIZE = 1024 * 1024;
+    private static final int OWNER_WRITE_MODE = 128; // 0200
+
+    /**
+     * Unencrypted files are stored once in PROCESS_STATE_BLOBS (or in an external
+     * {@link StateStore}) and referenced by their hash. Encrypted files and the data
+     * stored before the blobs were introduced are kept in PROCESS_STATE.ITEM_DATA.
+     */
+    private static final Table<?> STATE_WITH_BLOBS = PROCESS_STATE.leftJoin(PROCESS_STATE_BLOBS)
+            .on(PROCESS_STATE_BLOBS.BLOB_HASH.eq(PROCESS_STATE.BLOB_HASH));
+
+    private static final Field<byte[]> ITEM_DATA = coalesce(PROCESS_STATE.ITEM_DATA, PROCESS_STATE_BLOBS.BLOB_DATA);
+
+    private static final Field<Integer> ITEM_DATA_SIZE = DSL.field("octet_length({0})", Integer.class, PROCESS_STATE.ITEM_DATA);
+    private static final Field<Integer> BLOB_DATA_SIZE = DSL.field("octet_length({0})", Integer.class, PROCESS_STATE_BLOBS.BLOB_DATA);
 
     private final SecretStoreConfiguration secretCfg;
+    private final StateStore stateStore;
+    private final Locks locks;
     private final Set<String> secureFiles = new HashSet<>();
 
     @Inject
     protected ProcessStateManager(@MainDB Configuration cfg,
                                   SecretStoreConfiguration secretCfg,
-                                  ProcessConfiguration stateCfg) {
+                                  ProcessConfiguration stateCfg,
+                                  StateStoreProvider stateStoreProvider,
+                                  Locks locks) {
         super(cfg);
         this.secretCfg = secretCfg;
+        this.stateStore = stateStoreProvider.get();
+        this.locks = locks;
 
         this.secureFiles.addAll(stateCfg.getSecureFiles());
     }
@@ -95,9 +125,77 @@ public class ProcessStateManager extends AbstractDao {
         }
     }
 
+    /**
+     * Opens a single value for reading. Unlike {@link #get(ProcessKey, String, Function)}
+     * the DB connection is released before the data is consumed, which makes
+     * this method suitable for sending the data to (potentially slow) clients.
+     * The data kept in the DB is fetched in chunks, see {@link ChunkedInputStream}.
+     * The data columns use {@code STORAGE EXTERNAL}, so each chunk reads only its own slice.
+     * The caller must close the returned stream.
+     */
+    public Optional<InputStream> open(ProcessKey processKey, String path) {
+        Record4<Boolean, String, Integer, Integer> r;
+        try (DSLContext tx = DSL.using(cfg)) {
+            r = tx.select(PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.BLOB_HASH, ITEM_DATA_SIZE, BLOB_DATA_SIZE)
+                    .from(STATE_WITH_BLOBS)
+                    .where(PROCESS_STATE.INSTANCE_ID.eq(processKey.getInstanceId())
+                            .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))
+                            .and(PROCESS_STATE.ITEM_PATH.eq(path)))
+                    .fetchOne();
+        }
+
+        if (r == null) {
+            return Optional.empty();
+        }
+
+        boolean encrypted = r.value1();
+        String hash = r.value2();
+
+        InputStream in;
+        if (r.value3() != null) {
+            in = new ChunkedInputStream(r.value3(), READ_CHUNK_SIZE, (offset, len) -> readItemData(processKey, path, offset, len));
+        } else if (r.value4() != null) {
+            // the blobs are never modified, only removed when no longer referenced
+            in = new ChunkedInputStream(r.value4(), READ_CHUNK_SIZE, (offset, len) -> readBlobData(hash, offset, len));
+        } else {
+            try {
+                in = stateStore.get(hash);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        return Optional.of(encrypted ? decrypt(in) : in);
+    }
+
+    private byte[] readItemData(ProcessKey processKey, String path, int offset, int len) {
+        try (DSLContext tx = DSL.using(cfg)) {
+            return tx.select(substring(PROCESS_STATE.ITEM_DATA, offset, len))
+                    .from(PROCESS_STATE)
+                    .where(PROCESS_STATE.INSTANCE_ID.eq(processKey.getInstanceId())
+                            .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))
+                            .and(PROCESS_STATE.ITEM_PATH.eq(path)))
+                    .fetchOne(0, byte[].class);
+        }
+    }
+
+    private byte[] readBlobData(String hash, int offset, int len) {
+        try (DSLContext tx = DSL.using(cfg)) {
+            return tx.select(substring(PROCESS_STATE_BLOBS.BLOB_DATA, offset, len))
+                    .from(PROCESS_STATE_BLOBS)
+                    .where(PROCESS_STATE_BLOBS.BLOB_HASH.eq(hash))
+                    .fetchOne(0, byte[].class);
+        }
+    }
+
+    private static Field<byte[]> substring(Field<byte[]> f, int offset, int len) {
+        // bytea substring, 1-based
+        return DSL.field("substring({0} from {1} for {2})", byte[].class, f, DSL.val(offset + 1), DSL.val(len));
+    }
+
     private <T> Optional<T> get(DSLContext tx, ProcessKey processKey, String path, Function<InputStream, Optional<T>> converter) {
-        String sql = tx.select(PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_DATA)
-                .from(PROCESS_STATE)
+        String sql = tx.select(PROCESS_STATE.IS_ENCRYPTED, ITEM_DATA, PROCESS_STATE.BLOB_HASH)
+                .from(STATE_WITH_BLOBS)
                 .where(PROCESS_STATE.INSTANCE_ID.eq((UUID) null)
                         .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((Timestamp) null))
                         .and(PROCESS_STATE.ITEM_PATH.eq((String) null)))
@@ -113,10 +211,8 @@ public class ProcessStateManager extends AbstractDao {
                     if (!rs.next()) {
                         return Optional.empty();
                     }
-                    boolean encrypted = rs.getBoolean(1);
-                    try (InputStream in = rs.getBinaryStream(2);
-                         InputStream processed = encrypted ? decrypt(in) : in) {
-                        return converter.apply(processed);
+                    try (InputStream in = openData(rs, 1)) {
+                        return converter.apply(in);
                     }
                 }
             }
@@ -129,8 +225,8 @@ public class ProcessStateManager extends AbstractDao {
      */
     public <T> List<T> forEach(ProcessKey processKey, String path, Function<InputStream, Optional<T>> converter) {
         try (DSLContext tx = DSL.using(cfg)) {
-            String sql = tx.select(PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_DATA)
-                    .from(PROCESS_STATE)
+            String sql = tx.select(PROCESS_STATE.IS_ENCRYPTED, ITEM_DATA, PROCESS_STATE.BLOB_HASH)
+                    .from(STATE_WITH_BLOBS)
                     .where(PROCESS_STATE.INSTANCE_ID.eq((UUID) null)
                             .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((Timestamp) null))
                             .and(PROCESS_STATE.ITEM_PATH.startsWith((String) null)))
@@ -146,10 +242,8 @@ public class ProcessStateManager extends AbstractDao {
 
                     try (ResultSet rs = ps.executeQuery()) {
                         while (rs.next()) {
-                            boolean encrypted = rs.getBoolean(1);
-                            try (InputStream in = rs.getBinaryStream(2);
-                                 InputStream processed = encrypted ? decrypt(in) : in) {
-                                Optional<T> o = converter.apply(processed);
+                            try (InputStream in = openData(rs, 1)) {
+                                Optional<T> o = converter.apply(in);
                                 o.ifPresent(result::add);
                             }
                         }
@@ -272,13 +366,40 @@ public class ProcessStateManager extends AbstractDao {
 
     private void insert(DSLContext tx, UUID instanceId, Timestamp instanceCreatedAt, String path, byte[] in) {
         boolean needEncrypt = secureFiles.contains(path);
-        byte[] data = in;
         if (needEncrypt) {
-            data = encrypt(in);
+            tx.insertInto(PROCESS_STATE)
+                    .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.IS_ENCRYPTED)
+                    .values(instanceId, instanceCreatedAt, path, encrypt(in), true)
+                    .execute();
+            return;
+        }
+
+        String hash = IOUtils.sha256(in);
+
+        Set<String> existing = lockBlobs(tx, Collections.singleton(hash));
+        if (existing.isEmpty()) {
+            byte[] data = in;
+            if (!stateStore.isInline()) {
+                // see ProcessCleaner, the cleanup removes unused blobs under the exclusive lock
+                locks.lockShared(tx, Locks.STATE_BLOB_NAMESPACE, blobLockKey(hash));
+                try {
+                    stateStore.put(hash, new ByteArrayInputStream(in));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                data = null;
+            }
+
+            tx.insertInto(PROCESS_STATE_BLOBS)
+                    .columns(PROCESS_STATE_BLOBS.BLOB_HASH, PROCESS_STATE_BLOBS.BLOB_DATA, PROCESS_STATE_BLOBS.BLOB_SIZE)
+                    .values(hash, data, (long) in.length)
+                    .onConflictDoNothing()
+                    .execute();
         }
+
         tx.insertInto(PROCESS_STATE)
-                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.IS_ENCRYPTED)
-                .values(instanceId, instanceCreatedAt, path, data, needEncrypt)
+                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.BLOB_HASH, PROCESS_STATE.IS_ENCRYPTED)
+                .values(instanceId, instanceCreatedAt, path, hash, false)
                 .execute();
     }
 
@@ -298,6 +419,108 @@ public class ProcessStateManager extends AbstractDao {
         tx(tx -> importPath(tx, processKey.getInstanceId(), processKey.getCreatedAt(), path, src, filter));
     }
 
+    /**
+     * Returns the manifest of the elements whose path begins with the specified
+     * value. The returned paths are relative to {@code path}.
+     *
+     * @param path the directory or {@code null} to return the whole state.
+     */
+    public Map<String, StateManifestEntry> getManifest(ProcessKey processKey, String path) {
+        try (DSLContext tx = DSL.using(cfg)) {
+            return getManifest(tx, processKey, path);
+        }
+    }
+
+    /**
+     * Compares the specified manifest with the current state of the directory.
+     *
+     * @return paths of the files (relative to {@code path}) that are missing
+     * or different in the current state.
+     */
+    public List<String> diff(ProcessKey processKey, String path, Map<String, StateManifestEntry> manifest) {
+        Map<String, StateManifestEntry> current = getManifest(processKey, path);
+
+        List<String> result = new ArrayList<>();
+        manifest.forEach((k, v) -> {
+            if (!v.matches(current.get(k))) {
+                result.add(k);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Updates the directory using a delta produced with {@link #diff(ProcessKey, String, Map)}.
+     * {@code src} must contain all files of the manifest that differ from the current
+     * state. The existing files whose path begins with {@code replacedPrefix} (relative
+     * to {@code path}) and which are not in the manifest are removed.
+     *
+     * @return {@code false} if the current state doesn't match the delta.
+     * Nothing is changed in that case.
+     */
+    @WithTimer
+    public boolean importDelta(ProcessKey processKey, String path, Path src,
+                               Map<String, StateManifestEntry> manifest, String replacedPrefix) {
+
+        String dir = fixPath(path);
+
+        return txResult(tx -> {
+            Map<String, StateManifestEntry> current = getManifest(tx, processKey, dir);
+
+            for (Map.Entry<String, StateManifestEntry> e : manifest.entrySet()) {
+                String n = e.getKey();
+                if (Files.exists(src.resolve(n))) {
+                    continue;
+                }
+
+                if (!e.getValue().matches(current.get(n))) {
+                    log.warn("importDelta ['{}'] -> '{}' is missing or different", processKey, n);
+                    return false;
+                }
+            }
+
+            List<String> removed = new ArrayList<>();
+            for (String n : current.keySet()) {
+                if (n.startsWith(replacedPrefix) && !manifest.containsKey(n)) {
+                    removed.add(dir + n);
+                }
+            }
+
+            if (!removed.isEmpty()) {
+                tx.deleteFrom(PROCESS_STATE)
+                        .where(PROCESS_STATE.INSTANCE_ID.eq(processKey.getInstanceId())
+                                .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))
+                                .and(PROCESS_STATE.ITEM_PATH.in(removed)))
+                        .execute();
+            }
+
+            importPath(tx, processKey.getInstanceId(), processKey.getCreatedAt(), dir, src, (p, attrs) -> true);
+            return true;
+        });
+    }
+
+    private static Map<String, StateManifestEntry> getManifest(DSLContext tx, ProcessKey processKey, String path) {
+        String dir = fixPath(path);
+
+        Condition c = PROCESS_STATE.INSTANCE_ID.eq(processKey.getInstanceId())
+                .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()));
+
+        if (dir != null) {
+            c = c.and(PROCESS_STATE.ITEM_PATH.startsWith(dir));
+        }
+
+        Map<String, StateManifestEntry> result = new LinkedHashMap<>();
+        tx.select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.BLOB_HASH, PROCESS_STATE.UNIX_MODE.cast(Integer.class))
+                .from(PROCESS_STATE)
+                .where(c)
+                .forEach(r -> {
+                    String n = dir != null ? relativize(dir, r.value1()) : r.value1();
+                    result.put(n, new StateManifestEntry(r.value2(), r.value3() != null ? r.value3() : 0));
+                });
+
+        return result;
+    }
+
     /**
      * Imports data from the specified directory or a file replacing the existing data.
      * If the filter function returns {@code false}, the matching file will be skipped.
@@ -339,15 +562,12 @@ public class ProcessStateManager extends AbstractDao {
                     }
 
                     Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file);
-                    int unixMode = Posix.unixMode(permissions);
+                    // the files exported from repository snapshots are read-only, the processes get writable copies
+                    int unixMode = Posix.unixMode(permissions) | OWNER_WRITE_MODE;
                     boolean needsEncryption = secureFiles.contains(n);
+                    String hash = needsEncryption ? null : IOUtils.sha256(file);
 
-                    tx.deleteFrom(PROCESS_STATE).where(PROCESS_STATE.INSTANCE_ID.eq(instanceId)
-                            .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq(instanceCreatedAt))
-                            .and(PROCESS_STATE.ITEM_PATH.eq(n)))
-                            .execute();
-
-                    batch.add(new BatchItem(n, file, unixMode, needsEncryption));
+                    batch.add(new BatchItem(n, file, unixMode, needsEncryption, hash));
                     if (batch.size() >= INSERT_BATCH_SIZE) {
                         insert(tx, instanceId, instanceCreatedAt, batch);
                         batch.clear();
@@ -366,9 +586,35 @@ public class ProcessStateManager extends AbstractDao {
     }
 
     private void insert(DSLContext tx, UUID instanceId, Timestamp instanceCreatedAt, Collection<BatchItem> batch) {
+        // replace the existing items
+        List<String> paths = new ArrayList<>(batch.size());
+        for (BatchItem item : batch) {
+            paths.add(item.itemPath);
+        }
+
+        tx.deleteFrom(PROCESS_STATE)
+                .where(PROCESS_STATE.INSTANCE_ID.eq(instanceId)
+                        .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq(instanceCreatedAt))
+                        .and(PROCESS_STATE.ITEM_PATH.in(paths)))
+                .execute();
+
+        // store the content of the unencrypted files, skip the blobs we already have
+        Map<String, BatchItem> blobs = new HashMap<>();
+        for (BatchItem item : batch) {
+            if (item.hash != null) {
+                blobs.putIfAbsent(item.hash, item);
+            }
+        }
+
+        if (!blobs.isEmpty()) {
+            Set<String> existing = lockBlobs(tx, blobs.keySet());
+            blobs.keySet().removeAll(existing);
+            insertBlobs(tx, blobs);
+        }
+
         String sql = tx.insertInto(PROCESS_STATE)
-                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.IS_ENCRYPTED)
-                .values((UUID) null, null, null, null, null, null)
+                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.BLOB_HASH, PROCESS_STATE.IS_ENCRYPTED)
+                .values((UUID) null, null, null, null, null, null, null)
                 .getSQL();
 
         List<InputStream> streams = new LinkedList<>();
@@ -388,18 +634,25 @@ public class ProcessStateManager extends AbstractDao {
                         // UNIX_MODE
                         ps.setInt(4, item.unixMode);
 
-                        InputStream in = Files.newInputStream(item.path);
-                        streams.add(in); // keep the streams open until the batch is committed
-
                         if (item.needsEncryption) {
-                            in = encrypt(in);
-                        }
+                            InputStream in = Files.newInputStream(item.path);
+                            streams.add(in); // keep the streams open until the batch is committed
+
+                            // ITEM_DATA
+                            ps.setBinaryStream(5, encrypt(in));
+
+                            // BLOB_HASH
+                            ps.setNull(6, Types.VARCHAR);
+                        } else {
+                            // ITEM_DATA
+                            ps.setNull(5, Types.BINARY);
 
-                        // ITEM_DATA
-                        ps.setBinaryStream(5, in);
+                            // BLOB_HASH
+                            ps.setString(6, item.hash);
+                        }
 
                         // IS_ENCRYPTED
-                        ps.setBoolean(6, item.needsEncryption);
+                        ps.setBoolean(7, item.needsEncryption);
 
                         ps.addBatch();
                     }
@@ -414,14 +667,96 @@ public class ProcessStateManager extends AbstractDao {
         }
     }
 
+    /**
+     * Key of the (advisory) lock which protects the data of a blob in
+     * an external {@link StateStore}, in the {@link Locks#STATE_BLOB_NAMESPACE}.
+     * The state imports hold a shared lock while storing the data and the metadata
+     * of new blobs. The cleanup process removes the metadata and the data only
+     * while holding an exclusive lock.
+     */
+    public static int blobLockKey(String hash) {
+        // the first 32 bits of the SHA-256, collisions only cause some extra waiting
+        return Integer.parseUnsignedInt(hash.substring(0, 8), 16);
+    }
+
+    /**
+     * Locks the existing blobs with the specified hashes, so they can't be
+     * removed by the cleanup process until the current transaction ends.
+     *
+     * @return hashes of the existing blobs.
+     */
+    private static Set<String> lockBlobs(DSLContext tx, Collection<String> hashes) {
+        return new HashSet<>(tx.select(PROCESS_STATE_BLOBS.BLOB_HASH)
+                .from(PROCESS_STATE_BLOBS)
+                .where(PROCESS_STATE_BLOBS.BLOB_HASH.in(hashes))
+                .forShare()
+                .fetch(PROCESS_STATE_BLOBS.BLOB_HASH));
+    }
+
+    private void insertBlobs(DSLContext tx, Map<String, BatchItem> blobs) {
+        if (blobs.isEmpty()) {
+            return;
+        }
+
+        boolean inline = stateStore.isInline();
+        if (!inline) {
+            // the data goes to the external store, only the metadata is kept in the DB
+            for (Map.Entry<String, BatchItem> e : blobs.entrySet()) {
+                // see ProcessCleaner, the cleanup removes unused blobs under the exclusive lock
+                locks.lockShared(tx, Locks.STATE_BLOB_NAMESPACE, blobLockKey(e.getKey()));
+                try (InputStream in = Files.newInputStream(e.getValue().path)) {
+                    stateStore.put(e.getKey(), in);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        }
+
+        String sql = tx.insertInto(PROCESS_STATE_BLOBS)
+                .columns(PROCESS_STATE_BLOBS.BLOB_HASH, PROCESS_STATE_BLOBS.BLOB_DATA, PROCESS_STATE_BLOBS.BLOB_SIZE)
+                .values((String) null, null, null)
+                .onConflictDoNothing()
+                .getSQL();
+
+        List<InputStream> streams = new LinkedList<>();
+        try {
+            tx.connection(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    for (Map.Entry<String, BatchItem> e : blobs.entrySet()) {
+                        Path p = e.getValue().path;
+
+                        ps.setString(1, e.getKey());
+
+                        if (inline) {
+                            InputStream in = Files.newInputStream(p);
+                            streams.add(in);
+                            ps.setBinaryStream(2, in);
+                        } else {
+                            ps.setNull(2, Types.BINARY);
+                        }
+
+                        ps.setLong(3, Files.size(p));
+                        ps.addBatch();
+                    }
+
+                    ps.executeBatch();
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        } finally {
+            streams.forEach(ProcessStateManager::closeSilently);
+        }
+    }
+
     /**
      * Exports all data of a process instance.
      */
     public boolean export(ProcessKey processKey, ItemConsumer consumer) {
         try (DSLContext tx = DSL.using(cfg)) {
             String sql = tx
-                    .select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_DATA)
-                    .from(PROCESS_STATE)
+                    .select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.IS_ENCRYPTED, ITEM_DATA, PROCESS_STATE.BLOB_HASH)
+                    .from(STATE_WITH_BLOBS)
                     .where(PROCESS_STATE.INSTANCE_ID.eq((UUID) null).and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((Timestamp) null)))
                     .getSQL();
 
@@ -437,10 +772,54 @@ public class ProcessStateManager extends AbstractDao {
 
                             String n = rs.getString(1);
                             int unixMode = rs.getInt(2);
-                            boolean encrypted = rs.getBoolean(3);
-                            try (InputStream in = rs.getBinaryStream(4);
-                                 InputStream processed = encrypted ? decrypt(in) : in) {
-                                consumer.accept(n, unixMode, processed);
+                            try (InputStream in = openData(rs, 3)) {
+                                consumer.accept(n, unixMode, in);
+                            }
+                        }
+                    }
+
+                    return found;
+                }
+            });
+        }
+    }
+
+    /**
+     * Exports the specified elements.
+     */
+    public boolean exportFiles(ProcessKey processKey, Collection<String> paths, ItemConsumer consumer) {
+        if (paths.isEmpty()) {
+            return false;
+        }
+
+        List<Field<String>> l = new ArrayList<>(paths.size());
+        for (String p : paths) {
+            l.add(DSL.inline(p));
+        }
+
+        try (DSLContext tx = DSL.using(cfg)) {
+            String sql = tx
+                    .select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.IS_ENCRYPTED, ITEM_DATA, PROCESS_STATE.BLOB_HASH)
+                    .from(STATE_WITH_BLOBS)
+                    .where(PROCESS_STATE.INSTANCE_ID.eq((UUID) null)
+                            .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((Timestamp) null))
+                            .and(PROCESS_STATE.ITEM_PATH.in(l)))
+                    .getSQL();
+
+            return tx.connectionResult(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setObject(1, processKey.getInstanceId());
+                    ps.setTimestamp(2, processKey.getCreatedAt());
+
+                    boolean found = false;
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            found = true;
+
+                            String n = rs.getString(1);
+                            int unixMode = rs.getInt(2);
+                            try (InputStream in = openData(rs, 3)) {
+                                consumer.accept(n, unixMode, in);
                             }
                         }
                     }
@@ -459,8 +838,8 @@ public class ProcessStateManager extends AbstractDao {
 
         try (DSLContext tx = DSL.using(cfg)) {
             String sql = tx
-                    .select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_DATA)
-                    .from(PROCESS_STATE)
+                    .select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.IS_ENCRYPTED, ITEM_DATA, PROCESS_STATE.BLOB_HASH)
+                    .from(STATE_WITH_BLOBS)
                     .where(PROCESS_STATE.INSTANCE_ID.eq((UUID) null)
                             .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((Timestamp) null))
                             .and(PROCESS_STATE.ITEM_PATH.startsWith((String) null)))
@@ -479,10 +858,8 @@ public class ProcessStateManager extends AbstractDao {
 
                             String n = relativize(dir, rs.getString(1));
                             int unixMode = rs.getInt(2);
-                            boolean encrypted = rs.getBoolean(3);
-                            try (InputStream in = rs.getBinaryStream(4);
-                                 InputStream processed = encrypted ? decrypt(in) : in) {
-                                consumer.accept(n, unixMode, processed);
+                            try (InputStream in = openData(rs, 3)) {
+                                consumer.accept(n, unixMode, in);
                             }
                         }
                     }
@@ -493,6 +870,21 @@ public class ProcessStateManager extends AbstractDao {
         }
     }
 
+    /**
+     * Opens the data of the current row. Expects {@code IS_ENCRYPTED}, {@code ITEM_DATA}
+     * and {@code BLOB_HASH} columns starting from the specified index.
+     */
+    private InputStream openData(ResultSet rs, int idx) throws SQLException, IOException {
+        boolean encrypted = rs.getBoolean(idx);
+
+        InputStream in = rs.getBinaryStream(idx + 1);
+        if (in == null) {
+            in = stateStore.get(rs.getString(idx + 2));
+        }
+
+        return encrypted ? decrypt(in) : in;
+    }
+
     private InputStream decrypt(InputStream in) {
         return SecretUtils.decrypt(in, secretCfg.getServerPwd(), secretCfg.getSecretStoreSalt());
     }
@@ -642,7 +1034,7 @@ public class ProcessStateManager extends AbstractDao {
                     Files.createDirectories(parent);
                 }
 
-                try (OutputStream dst = Files.newOutputStream(p, options)) {
+                try (OutputStream dst = options.length == 0 ? IOUtils.newReplacingOutputStream(p) : Files.newOutputStream(p, options)) {
                     IOUtils.copy(src, dst);
                 }
 
@@ -700,12 +1092,14 @@ public class ProcessStateManager extends AbstractDao {
         private final Path path;
         private final int unixMode;
         private final boolean needsEncryption;
+        private final String hash;
 
-        private BatchItem(String itemPath, Path path, int unixMode, boolean needsEncryption) {
+        private BatchItem(String itemPath, Path path, int unixMode, boolean needsEncryption, String hash) {
             this.itemPath = itemPath;
             this.path = path;
             this.unixMode = unixMode;
             this.needsEncryption = needsEncryption;
+            this.hash = hash;
         }
     }
 }
@@ -0,0 +1,59 @@
+package com.walmartlabs.concord.server.process.state;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Storage for the content of the process state files.
+ * <p/>
+ * The files are addressed by their SHA-256 hashes. The metadata (paths, hashes,
+ * sizes and the references between the processes and the files) is always
+ * kept in the DB, see {@link ProcessStateManager}.
+ */
+public interface StateStore {
+
+    String getType();
+
+    /**
+     * @return {@code true} if the data is kept in the {@code PROCESS_STATE_BLOBS}
+     * table. In that case {@link ProcessStateManager} writes the data in the same
+     * transaction as the metadata and {@link #put(String, InputStream)} is not used.
+     */
+    boolean isInline();
+
+    /**
+     * Stores the data. Called before the metadata is committed. Storing the same
+     * hash multiple times must be safe.
+     */
+    void put(String hash, InputStream data) throws IOException;
+
+    /**
+     * Opens the data for reading. The caller must close the returned stream.
+     */
+    InputStream get(String hash) throws IOException;
+
+    /**
+     * Removes the data. Called after the metadata is removed.
+     */
+    void delete(String hash) throws IOException;
+}
@@ -0,0 +1,57 @@
+package com.walmartlabs.concord.server.process.state;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Collection;
+
+@Named
+@Singleton
+public class StateStoreProvider {
+
+    private final StateStore store;
+
+    @Inject
+    public StateStoreProvider(ProcessConfiguration cfg, Collection<StateStore> stores) {
+        this.store = find(stores, cfg.getStateStoreType());
+    }
+
+    /**
+     * @return the currently configured state store.
+     */
+    public StateStore get() {
+        return store;
+    }
+
+    private static StateStore find(Collection<StateStore> stores, String type) {
+        for (StateStore s : stores) {
+            if (s.getType().equalsIgnoreCase(type)) {
+                return s;
+            }
+        }
+
+        throw new IllegalArgumentException("State store of type " + type + " is not found!");
+    }
+}
@@ -53,7 +53,7 @@ public class ClasspathRepositoryProvider implements RepositoryProvider {
     }
 
     @Override
-    public void fetch(String repoUrl, String branch, String commitId, Secret secret, Path dst) {
+    public void fetch(String repoUrl, String branch, String commitId, String path, Secret secret, Path dst) {
         URL resUrl = Resources.getResource(normalizeUrl(repoUrl));
 
         try {
@@ -42,8 +42,9 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.Callable;
+import java.util.concurrent.*;
 
 @Named
 @Singleton
@@ -51,12 +52,25 @@ public class RepositoryManager {
 
     private static final Logger log = LoggerFactory.getLogger(RepositoryManager.class);
 
+    /**
+     * Credentials key of the repositories fetched without a secret, i.e. using
+     * the server's own credentials. Available to every project.
+     */
+    private static final String NO_SECRET = "_none";
+
     private final RepositoryProviders providers;
     private final ProjectDao projectDao;
     private final SecretManager secretManager;
     private final RepositoryCache repositoryCache;
+    private final RepositorySnapshotStore snapshotStore;
     private final RepositoryConfiguration repoCfg;
 
+    /**
+     * Snapshots being created. Used to coalesce concurrent requests for
+     * the same repository and branch/commit into a single fetch.
+     */
+    private final ConcurrentMap<String, CompletableFuture<RepositorySnapshotStore.Entry>> inflight = new ConcurrentHashMap<>();
+
     @Inject
     public RepositoryManager(ObjectMapper objectMapper,
                              GitConfiguration gitCfg,
@@ -67,6 +81,8 @@ public class RepositoryManager {
         GitClientConfiguration gitCliCfg = GitClientConfiguration.builder()
                 .oauthToken(gitCfg.getOauthToken())
                 .shallowClone(gitCfg.isShallowClone())
+                .partialCloneFilter(gitCfg.getPartialCloneFilter())
+                .partialCloneRepositories(gitCfg.getPartialCloneRepositories())
                 .fetchTimeout(gitCfg.getFetchTimeout())
                 .httpLowSpeedLimit(gitCfg.getHttpLowSpeedLimit())
                 .httpLowSpeedTime(gitCfg.getHttpLowSpeedTime())
@@ -87,6 +103,11 @@ public class RepositoryManager {
                 repoCfg.getMaxAge(),
                 repoCfg.getLockCount(),
                 objectMapper);
+
+        this.snapshotStore = repoCfg.isSnapshotsEnabled() ? new RepositorySnapshotStore(repoCfg.getSnapshotDir(),
+                repoCfg.getMaxAge(),
+                repoCfg.isSnapshotHardLinks(),
+                objectMapper) : null;
     }
 
     public void testConnection(UUID orgId, UUID projectId, String uri, String branch, String commitId, String path, String secretName) {
@@ -133,6 +154,82 @@ public class RepositoryManager {
         return repositoryCache.withLock(repoUrl, f);
     }
 
+    /**
+     * Exports the repository's files into {@code dst}.
+     * <p/>
+     * If the snapshots are enabled, the files are exported from an immutable
+     * per-commit snapshot without holding the repository lock. The fetch is
+     * skipped if the requested commit ID is already present in the snapshot
+     * store and concurrent requests for the same branch or commit share
+     * a single fetch. The snapshots and the fetches are shared only between
+     * the requests which use the same secret (or no secret), the project's
+     * access to the secret is checked every time.
+     */
+    public ExportResult export(UUID projectId, RepositoryEntry repo, Path dst) throws IOException {
+        String branch = providers.getBranchOrDefault(repo.getUrl(), repo.getBranch());
+
+        RepositorySnapshotStore.Entry entry = snapshotStore != null ? getSnapshot(projectId, repo) : null;
+        if (entry == null) {
+            return withLock(repo.getUrl(), () -> {
+                Repository repository = fetch(projectId, repo);
+                Snapshot snapshot = repository.export(dst);
+                return new ExportResult(repository.branch(), repository.info(), snapshot);
+            });
+        }
+
+        Snapshot snapshot = snapshotStore.export(entry, dst);
+        return new ExportResult(branch, entry.info(), snapshot);
+    }
+
+    private RepositorySnapshotStore.Entry getSnapshot(UUID projectId, RepositoryEntry repo) {
+        UUID orgId = getOrgId(projectId);
+        SecretManager.DecryptedSecret secret = getDecryptedSecret(orgId, projectId, repo.getSecretName());
+        String credentials = secret != null ? orgId + ":" + secret.getId() : NO_SECRET;
+
+        Optional<RepositorySnapshotStore.Entry> existing = snapshotStore.get(repo.getUrl(), credentials, repo.getCommitId(), repo.getPath());
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        String key = repo.getUrl() + "\n" + credentials + "\n" + repo.getBranch() + "\n" + repo.getCommitId() + "\n" + repo.getPath();
+
+        CompletableFuture<RepositorySnapshotStore.Entry> f = new CompletableFuture<>();
+        CompletableFuture<RepositorySnapshotStore.Entry> prev = inflight.putIfAbsent(key, f);
+        if (prev != null) {
+            try {
+                return prev.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RepositoryException("Interrupted while waiting for the repository: " + repo.getUrl());
+            } catch (ExecutionException e) {
+                throw new RepositoryException("Error while fetching the repository: " + repo.getUrl(), e.getCause());
+            }
+        }
+
+        try {
+            RepositorySnapshotStore.Entry result = withLock(repo.getUrl(), () -> {
+                Repository repository = fetch(repo.getUrl(), repo.getBranch(), repo.getCommitId(), repo.getPath(),
+                        secret != null ? secret.getSecret() : null);
+
+                RepositoryInfo info = repository.info();
+                if (info == null || !RepositorySnapshotStore.isValidCommitId(info.getCommitId())) {
+                    // e.g. non-git repositories
+                    return null;
+                }
+
+                return snapshotStore.put(repo.getUrl(), credentials, repo.getPath(), repository);
+            });
+
+            f.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            f.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, f);
+        }
+    }
+
     private UUID getOrgId(UUID projectId) {
         UUID orgId = projectDao.getOrgId(projectId);
 
@@ -145,6 +242,11 @@ public class RepositoryManager {
     }
 
     private Secret getSecret(UUID orgId, UUID projectId, String secretName) {
+        SecretManager.DecryptedSecret s = getDecryptedSecret(orgId, projectId, secretName);
+        return s != null ? s.getSecret() : null;
+    }
+
+    private SecretManager.DecryptedSecret getDecryptedSecret(UUID orgId, UUID projectId, String secretName) {
         if (secretName == null) {
             return null;
         }
@@ -154,6 +256,34 @@ public class RepositoryManager {
             throw new RepositoryException("Secret not found: " + secretName);
         }
 
-        return s.getSecret();
+        return s;
+    }
+
+    public static final class ExportResult {
+
+        private final String branch;
+        private final RepositoryInfo info;
+        private final Snapshot snapshot;
+
+        private ExportResult(String branch, RepositoryInfo info, Snapshot snapshot) {
+            this.branch = branch;
+            this.info = info;
+            this.snapshot = snapshot;
+        }
+
+        public String branch() {
+            return branch;
+        }
+
+        /**
+         * @return the commit info or {@code null} if not available
+         */
+        public RepositoryInfo info() {
+            return info;
+        }
+
+        public Snapshot snapshot() {
+            return snapshot;
+        }
     }
 }
@@ -23,7 +23,6 @@ package com.walmartlabs.concord.server.repository;
 import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
-import com.walmartlabs.concord.repository.Repository;
 import com.walmartlabs.concord.server.events.ExternalEventResource;
 import com.walmartlabs.concord.server.org.OrganizationManager;
 import com.walmartlabs.concord.server.org.ResourceAccessLevel;
@@ -120,14 +119,16 @@ public class RepositoryRefresher extends AbstractDao {
             return;
         }
 
-        Path repoPath = repositoryManager.withLock(repositoryEntry.getUrl(), () -> {
-            Repository repo = repositoryManager.fetch(projectId, repositoryEntry);
-            Path refreshRepoPath = IOUtils.createTempDir("refreshRepo_");
-            IOUtils.copy(repo.path(), refreshRepoPath);
-            return refreshRepoPath;
-        });
+        Path repoPath;
+        try {
+            repoPath = IOUtils.createTempDir("refreshRepo_");
+        } catch (IOException e) {
+            throw new ConcordApplicationException("Error while refreshing repository: \n" + e.getMessage(), e);
+        }
 
         try {
+            repositoryManager.export(projectId, repositoryEntry, repoPath);
+
             tx(tx -> {
                 for (RepositoryRefreshListener l : listeners) {
                     l.onRefresh(tx, repositoryEntry, repoPath);
@@ -0,0 +1,268 @@
+package com.walmartlabs.concord.server.security;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.walmartlabs.concord.server.cfg.AuthenticationCacheConfiguration;
+import com.walmartlabs.concord.server.cluster.ClusterNotificationListener;
+import com.walmartlabs.concord.server.cluster.ClusterNotifications;
+import com.walmartlabs.concord.server.process.queue.ProcessCompletionWaiters;
+import com.walmartlabs.concord.server.process.queue.dispatcher.DispatcherIndex;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import com.walmartlabs.concord.server.security.apikey.ApiKeyDao;
+import com.walmartlabs.concord.server.user.UserEntry;
+import com.walmartlabs.concord.server.user.UserManager;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived cache of the API key and session key authentication results.
+ * <p/>
+ * The entries are evicted using the {@link #CHANNEL} notifications sent by
+ * the {@code API_KEYS}, {@code USERS}, {@code USER_ROLES} and
+ * {@code USER_TEAMS} table triggers (e.g. when a key is deleted, a user is
+ * disabled or the user's roles are changed) and the {@link DispatcherIndex#CHANNEL}
+ * notifications (when a process is finished). Any other changes are picked up
+ * after {@code authCache.ttl}.
+ */
+@Named
+@Singleton
+public class AuthenticationCache {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthenticationCache.class);
+
+    public static final String CHANNEL = "auth_cache";
+
+    private final ApiKeyDao apiKeyDao;
+    private final UserManager userManager;
+    private final boolean enabled;
+
+    /**
+     * API key hash -> user ID.
+     */
+    private final Cache<String, UUID> apiKeys;
+
+    private final Cache<UUID, Optional<UserEntry>> users;
+
+    /**
+     * Process instance ID -> principals.
+     */
+    private final Cache<UUID, PrincipalCollection> sessions;
+
+    /**
+     * Incremented on every eviction. Used to avoid caching the values loaded
+     * before the eviction.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    @Inject
+    public AuthenticationCache(AuthenticationCacheConfiguration cfg,
+                               ApiKeyDao apiKeyDao,
+                               UserManager userManager,
+                               ClusterNotifications notifications,
+                               MetricRegistry metricRegistry) {
+
+        this.apiKeyDao = apiKeyDao;
+        this.userManager = userManager;
+        this.enabled = cfg.getTtl() > 0;
+
+        this.apiKeys = newCache(cfg);
+        this.users = newCache(cfg);
+        this.sessions = newCache(cfg);
+
+        metricRegistry.register("auth-cache-size", (Gauge<Long>) () -> apiKeys.size() + users.size() + sessions.size());
+
+        if (enabled) {
+            notifications.subscribe(CHANNEL, new UserListener());
+            notifications.subscribe(DispatcherIndex.CHANNEL, new ProcessListener());
+        }
+    }
+
+    /**
+     * @see ApiKeyDao#findUserId(String)
+     */
+    public UUID findApiKeyUserId(String key) {
+        if (!enabled) {
+            return apiKeyDao.findUserId(key);
+        }
+
+        String hash = ApiKeyDao.hash(key);
+
+        UUID userId = apiKeys.getIfPresent(hash);
+        if (userId != null) {
+            return userId;
+        }
+
+        // unknown keys are not cached
+        return load(apiKeys, hash, () -> apiKeyDao.findUserId(key));
+    }
+
+    /**
+     * @see UserManager#get(UUID)
+     */
+    public Optional<UserEntry> getUser(UUID userId) {
+        if (!enabled) {
+            return userManager.get(userId);
+        }
+
+        Optional<UserEntry> u = users.getIfPresent(userId);
+        if (u != null) {
+            return u;
+        }
+
+        return load(users, userId, () -> userManager.get(userId));
+    }
+
+    /**
+     * Returns the principals of a running process or loads them using
+     * the specified {@code loader}. The loader is expected to check
+     * the process' status and to return {@code null} if the process
+     * can't be authenticated. Such results are not cached.
+     */
+    public PrincipalCollection getSessionPrincipals(UUID instanceId, Supplier<PrincipalCollection> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        PrincipalCollection p = sessions.getIfPresent(instanceId);
+        if (p != null) {
+            return p;
+        }
+
+        return load(sessions, instanceId, loader);
+    }
+
+    private <K, V> V load(Cache<K, V> cache, K key, Supplier<V> loader) {
+        long gen = generation.get();
+
+        V v = loader.get();
+        if (v == null) {
+            return null;
+        }
+
+        cache.put(key, v);
+
+        if (gen != generation.get()) {
+            // evicted while loading, the value might be stale
+            cache.invalidate(key);
+        }
+
+        return v;
+    }
+
+    private void evictUser(UUID userId) {
+        generation.incrementAndGet();
+
+        users.invalidate(userId);
+        apiKeys.asMap().values().removeIf(userId::equals);
+        sessions.asMap().values().removeIf(p -> isUser(p, userId));
+    }
+
+    private void evictSession(UUID instanceId) {
+        generation.incrementAndGet();
+        sessions.invalidate(instanceId);
+    }
+
+    private void evictAll() {
+        generation.incrementAndGet();
+
+        apiKeys.invalidateAll();
+        users.invalidateAll();
+        sessions.invalidateAll();
+    }
+
+    private static boolean isUser(PrincipalCollection principals, UUID userId) {
+        UserPrincipal u = principals.oneByType(UserPrincipal.class);
+        return u != null && userId.equals(u.getId());
+    }
+
+    private static <K, V> Cache<K, V> newCache(AuthenticationCacheConfiguration cfg) {
+        return CacheBuilder.newBuilder()
+                .expireAfterWrite(Math.max(cfg.getTtl(), 0), TimeUnit.MILLISECONDS)
+                .maximumSize(cfg.getMaxSize())
+                .concurrencyLevel(32)
+                .build();
+    }
+
+    private final class UserListener implements ClusterNotificationListener {
+
+        @Override
+        public void onNotification(String payload) {
+            // "userId"
+            try {
+                evictUser(UUID.fromString(payload));
+            } catch (IllegalArgumentException e) {
+                log.warn("onNotification -> invalid payload: {}", payload);
+            }
+        }
+
+        @Override
+        public void onReconnect() {
+            // some notifications might've been missed
+            evictAll();
+        }
+    }
+
+    private final class ProcessListener implements ClusterNotificationListener {
+
+        @Override
+        public void onNotification(String payload) {
+            // "instanceId,status"
+            int idx = payload.indexOf(',');
+            if (idx <= 0) {
+                return;
+            }
+
+            try {
+                ProcessStatus status = ProcessStatus.valueOf(payload.substring(idx + 1));
+                if (!ProcessCompletionWaiters.FINAL_STATUSES.contains(status)) {
+                    return;
+                }
+            } catch (IllegalArgumentException e) {
+                // unknown status, evict anyway
+            }
+
+            try {
+                evictSession(UUID.fromString(payload.substring(0, idx)));
+            } catch (IllegalArgumentException e) {
+                log.warn("onNotification -> invalid payload: {}", payload);
+            }
+        }
+
+        @Override
+        public void onReconnect() {
+            sessions.invalidateAll();
+        }
+    }
+}
@@ -126,7 +126,7 @@ public class ApiKeyDao extends AbstractDao {
         }
     }
 
-    private static String hash(String s) {
+    public static String hash(String s) {
         MessageDigest md;
         try {
             md = MessageDigest.getInstance("SHA-256");
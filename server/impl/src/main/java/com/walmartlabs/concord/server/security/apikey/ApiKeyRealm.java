@@ -20,14 +20,15 @@ package com.walmartlabs.concord.server.security.apikey;
  * =====
  */
 
+import com.walmartlabs.concord.server.audit.AccessLogLimiter;
 import com.walmartlabs.concord.server.audit.AuditAction;
 import com.walmartlabs.concord.server.audit.AuditLog;
 import com.walmartlabs.concord.server.audit.AuditObject;
 import com.walmartlabs.concord.server.sdk.metrics.WithTimer;
+import com.walmartlabs.concord.server.security.AuthenticationCache;
 import com.walmartlabs.concord.server.security.PrincipalUtils;
 import com.walmartlabs.concord.server.security.UserPrincipal;
 import com.walmartlabs.concord.server.user.UserEntry;
-import com.walmartlabs.concord.server.user.UserManager;
 import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
@@ -45,13 +46,15 @@ public class ApiKeyRealm extends AuthorizingRealm {
 
     private static final String REALM_NAME = "apikey";
 
-    private final UserManager userManager;
+    private final AuthenticationCache authCache;
     private final AuditLog auditLog;
+    private final AccessLogLimiter accessLogLimiter;
 
     @Inject
-    public ApiKeyRealm(UserManager userManager, AuditLog auditLog) {
-        this.userManager = userManager;
+    public ApiKeyRealm(AuthenticationCache authCache, AuditLog auditLog, AccessLogLimiter accessLogLimiter) {
+        this.authCache = authCache;
         this.auditLog = auditLog;
+        this.accessLogLimiter = accessLogLimiter;
     }
 
     @Override
@@ -64,7 +67,7 @@ public class ApiKeyRealm extends AuthorizingRealm {
     protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) throws AuthenticationException {
         ApiKey t = (ApiKey) token;
 
-        UserEntry u = userManager.get(t.getUserId()).orElse(null);
+        UserEntry u = authCache.getUser(t.getUserId()).orElse(null);
         if (u == null) {
             return null;
         }
@@ -73,10 +76,14 @@ public class ApiKeyRealm extends AuthorizingRealm {
             throw new AuthenticationException("User account '" + u.getName() + "' is disabled");
         }
 
-        auditLog.add(AuditObject.SYSTEM, AuditAction.ACCESS)
-                .userId(u.getId())
-                .field("realm", REALM_NAME)
-                .log();
+        long skipped = accessLogLimiter.acquire(u.getId(), REALM_NAME);
+        if (skipped >= 0) {
+            auditLog.add(AuditObject.SYSTEM, AuditAction.ACCESS)
+                    .userId(u.getId())
+                    .field("realm", REALM_NAME)
+                    .field("skipped", skipped > 0 ? skipped : null)
+                    .log();
+        }
 
         UserPrincipal p = new UserPrincipal(REALM_NAME, u);
         return new SimpleAccount(Arrays.asList(p, t), t.getKey(), getName());
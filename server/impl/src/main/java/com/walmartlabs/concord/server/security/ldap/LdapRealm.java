@@ -20,6 +20,7 @@ package com.walmartlabs.concord.server.security.ldap;
  * =====
  */
 
+import com.walmartlabs.concord.server.audit.AccessLogLimiter;
 import com.walmartlabs.concord.server.audit.AuditAction;
 import com.walmartlabs.concord.server.audit.AuditLog;
 import com.walmartlabs.concord.server.audit.AuditObject;
@@ -58,6 +59,7 @@ public class LdapRealm extends AbstractLdapRealm {
     private final LdapGroupManager ldapGroupManager;
     private final LdapContextFactory ldapContextFactory;
     private final AuditLog auditLog;
+    private final AccessLogLimiter accessLogLimiter;
 
     @Inject
     public LdapRealm(LdapConfiguration cfg,
@@ -65,12 +67,14 @@ public class LdapRealm extends AbstractLdapRealm {
                      ConcordLdapContextFactory ldapContextFactory,
                      LdapManager ldapManager,
                      LdapGroupManager ldapGroupManager,
-                     AuditLog auditLog) {
+                     AuditLog auditLog,
+                     AccessLogLimiter accessLogLimiter) {
 
         this.userManager = userManager;
         this.ldapManager = ldapManager;
         this.ldapGroupManager = ldapGroupManager;
         this.auditLog = auditLog;
+        this.accessLogLimiter = accessLogLimiter;
 
         this.url = cfg.getUrl();
         this.searchBase = cfg.getSearchBase();
@@ -131,12 +135,16 @@ public class LdapRealm extends AbstractLdapRealm {
 
         UserPrincipal userPrincipal = new UserPrincipal(REALM_NAME, u);
 
-        auditLog.add(AuditObject.SYSTEM, AuditAction.ACCESS)
-                .userId(userId)
-                .field("username", u.getName())
-                .field("domain", u.getDomain())
-                .field("realm", REALM_NAME)
-                .log();
+        long skipped = accessLogLimiter.acquire(userId, REALM_NAME);
+        if (skipped >= 0) {
+            auditLog.add(AuditObject.SYSTEM, AuditAction.ACCESS)
+                    .userId(userId)
+                    .field("username", u.getName())
+                    .field("domain", u.getDomain())
+                    .field("realm", REALM_NAME)
+                    .field("skipped", skipped > 0 ? skipped : null)
+                    .log();
+        }
 
         return new SimpleAccount(Arrays.asList(userPrincipal, t, ldapPrincipal), t, getName());
     }
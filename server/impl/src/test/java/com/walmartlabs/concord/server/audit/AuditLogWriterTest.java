@@ -0,0 +1,201 @@
+package com.walmartlabs.concord.server.audit;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.Listeners;
+import com.walmartlabs.concord.server.TestObjectMapper;
+import com.walmartlabs.concord.server.cfg.AuditConfiguration;
+import com.walmartlabs.concord.server.sdk.audit.AuditEvent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class AuditLogWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBatch() {
+        AuditDao dao = mock(AuditDao.class);
+        Listeners listeners = mock(Listeners.class);
+
+        AuditLogWriter writer = newWriter(cfg(10, Collections.singletonList("DELETE"), null), dao, listeners);
+
+        // not started yet
+        assertFalse(writer.append(UUID.randomUUID(), AuditAction.CREATE, AuditObject.PROJECT, details("a")));
+
+        writer.start();
+
+        long t1 = System.currentTimeMillis();
+        assertTrue(writer.append(UUID.randomUUID(), AuditAction.CREATE, AuditObject.PROJECT, details("a")));
+        assertTrue(writer.append(UUID.randomUUID(), AuditAction.UPDATE, AuditObject.PROJECT, details("b")));
+        long t2 = System.currentTimeMillis();
+
+        // must be written synchronously
+        assertFalse(writer.append(UUID.randomUUID(), AuditAction.DELETE, AuditObject.PROJECT, details("c")));
+
+        writer.stop();
+
+        ArgumentCaptor<List<AuditDao.Entry>> entries = ArgumentCaptor.forClass(List.class);
+        verify(dao, times(1)).insert(entries.capture());
+        assertEquals(2, entries.getValue().size());
+        assertEquals("CREATE", entries.getValue().get(0).getAction());
+        assertEquals("a", entries.getValue().get(0).getDetails().get("name"));
+        assertEquals("UPDATE", entries.getValue().get(1).getAction());
+
+        // the entries are timestamped when they are added, not when they are written
+        for (AuditDao.Entry e : entries.getValue()) {
+            long t = e.getEntryDate().getTime();
+            assertTrue(t >= t1 && t <= t2);
+        }
+
+        ArgumentCaptor<List<AuditEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(listeners, times(1)).onAuditEvents(events.capture());
+        assertEquals(2, events.getValue().size());
+
+        // the writer is stopped, the caller must write the entry directly
+        assertFalse(writer.append(UUID.randomUUID(), AuditAction.CREATE, AuditObject.PROJECT, details("d")));
+    }
+
+    @Test
+    public void testFullWithoutJournal() {
+        AuditLogWriter writer = newWriter(cfg(1, Collections.emptyList(), null), mock(AuditDao.class), mock(Listeners.class));
+        writer.start();
+        try {
+            assertTrue(writer.append(UUID.randomUUID(), AuditAction.CREATE, AuditObject.PROJECT, details("a")));
+            assertFalse(writer.append(UUID.randomUUID(), AuditAction.CREATE, AuditObject.PROJECT, details("b")));
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testJournal() throws Exception {
+        AuditDao dao = mock(AuditDao.class);
+
+        AuditLogWriter writer = newWriter(cfg(1, Collections.emptyList(), folder.getRoot().getAbsolutePath()), dao, mock(Listeners.class));
+        writer.start();
+
+        assertTrue(writer.append(UUID.randomUUID(), AuditAction.CREATE, AuditObject.PROJECT, details("a")));
+        // the queue is full, goes into the journal
+        assertTrue(writer.append(UUID.randomUUID(), AuditAction.CREATE, AuditObject.PROJECT, details("b")));
+
+        writer.stop();
+
+        // the journal is replayed on the next start
+        writer = newWriter(cfg(1, Collections.emptyList(), folder.getRoot().getAbsolutePath()), dao, mock(Listeners.class));
+        writer.start();
+        writer.stop();
+
+        ArgumentCaptor<List<AuditDao.Entry>> entries = ArgumentCaptor.forClass(List.class);
+        verify(dao, atLeast(2)).insert(entries.capture());
+
+        Set<Object> names = new HashSet<>();
+        entries.getAllValues().forEach(l -> l.forEach(e -> names.add(e.getDetails().get("name"))));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), names);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPartialReplay() throws Exception {
+        String journalDir = folder.getRoot().getAbsolutePath();
+        int count = 600;
+
+        AuditDao dao1 = mock(AuditDao.class);
+        AuditLogWriter writer = newWriter(cfg(1, Collections.emptyList(), journalDir), dao1, mock(Listeners.class));
+        writer.start();
+        for (int i = 0; i < count; i++) {
+            assertTrue(writer.append(UUID.randomUUID(), AuditAction.CREATE, AuditObject.PROJECT, details("e" + i)));
+        }
+        writer.stop();
+
+        // the first batch is written, the second one fails
+        AuditDao dao2 = mock(AuditDao.class);
+        doNothing().doThrow(new RuntimeException("test")).when(dao2).insert(anyList());
+
+        writer = newWriter(cfg(1, Collections.emptyList(), journalDir), dao2, mock(Listeners.class));
+        writer.start();
+        writer.stop();
+
+        // the next replay continues after the written batch
+        AuditDao dao3 = mock(AuditDao.class);
+        writer = newWriter(cfg(1, Collections.emptyList(), journalDir), dao3, mock(Listeners.class));
+        writer.start();
+        writer.stop();
+
+        // the entry in the queue is written directly
+        ArgumentCaptor<List<AuditDao.Entry>> entries = ArgumentCaptor.forClass(List.class);
+        verify(dao1, atLeastOnce()).insert(entries.capture());
+        List<Object> names = new ArrayList<>();
+        entries.getAllValues().forEach(l -> names(l, names));
+
+        // only the first (successful) call counts
+        entries = ArgumentCaptor.forClass(List.class);
+        verify(dao2, atLeast(2)).insert(entries.capture());
+        names(entries.getAllValues().get(0), names);
+
+        entries = ArgumentCaptor.forClass(List.class);
+        verify(dao3, atLeastOnce()).insert(entries.capture());
+        entries.getAllValues().forEach(l -> names(l, names));
+
+        // each entry is written exactly once
+        assertEquals(count, names.size());
+        assertEquals(count, new HashSet<>(names).size());
+
+        // the journal and the offset files are removed
+        assertEquals(0, Objects.requireNonNull(folder.getRoot().list()).length);
+    }
+
+    private static void names(List<AuditDao.Entry> entries, List<Object> result) {
+        entries.forEach(e -> result.add(e.getDetails().get("name")));
+    }
+
+    private static AuditLogWriter newWriter(AuditConfiguration cfg, AuditDao dao, Listeners listeners) {
+        return new AuditLogWriter(cfg, dao, listeners, new ConcordObjectMapper(TestObjectMapper.INSTANCE), new MetricRegistry());
+    }
+
+    private static AuditConfiguration cfg(int maxQueueSize, List<String> syncActions, String journalDir) {
+        AuditConfiguration cfg = mock(AuditConfiguration.class);
+        when(cfg.isEnabled()).thenReturn(true);
+        when(cfg.isWriterEnabled()).thenReturn(true);
+        when(cfg.getWriterMaxQueueSize()).thenReturn(maxQueueSize);
+        when(cfg.getWriterFlushSize()).thenReturn(500);
+        when(cfg.getWriterFlushInterval()).thenReturn(10000L);
+        when(cfg.getWriterSyncActions()).thenReturn(syncActions);
+        when(cfg.getWriterJournalDir()).thenReturn(journalDir);
+        return cfg;
+    }
+
+    private static Map<String, Object> details(String name) {
+        return Collections.singletonMap("name", name);
+    }
+}
@@ -0,0 +1,219 @@
+package com.walmartlabs.concord.server.org.triggers;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.cfg.TriggersConfiguration;
+import com.walmartlabs.concord.server.cluster.ClusterNotifications;
+import com.walmartlabs.concord.server.org.project.RepositoryDao;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class TriggerIndexTest {
+
+    private final List<TriggerEntry> triggers = new ArrayList<>();
+    private final Set<UUID> disabledRepos = new HashSet<>();
+
+    private TriggersDao triggersDao;
+    private TriggerIndex index;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void init() {
+        TriggersConfiguration cfg = mock(TriggersConfiguration.class);
+        when(cfg.isUseIndex()).thenReturn(true);
+        when(cfg.getIndexReloadInterval()).thenReturn(Long.MAX_VALUE);
+
+        triggersDao = mock(TriggersDao.class);
+        when(triggersDao.listByProjects(any())).thenAnswer(inv -> {
+            Collection<UUID> projectIds = inv.getArgument(0);
+            List<TriggerEntry> result = new ArrayList<>();
+            for (TriggerEntry t : triggers) {
+                if (projectIds == null || projectIds.contains(t.getProjectId())) {
+                    result.add(t);
+                }
+            }
+            return result;
+        });
+
+        RepositoryDao repositoryDao = mock(RepositoryDao.class);
+        when(repositoryDao.listDisabled(any())).thenAnswer(inv -> new HashSet<>(disabledRepos));
+
+        index = new TriggerIndex(cfg, triggersDao, repositoryDao, mock(ClusterNotifications.class), new MetricRegistry());
+    }
+
+    @After
+    public void cleanup() {
+        index.stop();
+    }
+
+    @Test
+    public void testVersions() {
+        UUID projectId = UUID.randomUUID();
+        TriggerEntry a = trigger(projectId, "test", conditions("version", 1));
+        TriggerEntry b = trigger(projectId, "test", conditions());
+        TriggerEntry c = trigger(projectId, "test", conditions("version", "2"));
+        TriggerEntry d = trigger(projectId, "other", conditions("version", 2));
+        triggers.addAll(Arrays.asList(a, b, c, d));
+
+        // triggers without a version are considered v1
+        assertEquals(set(a, b), set(index.list(null, "test", 1)));
+        assertEquals(set(c), set(index.list(null, "test", 2)));
+        assertEquals(set(a, b, c), set(index.list(null, "test", null)));
+        assertEquals(set(d), set(index.list(projectId, "other", 2)));
+        assertTrue(index.list(UUID.randomUUID(), "test", 1).isEmpty());
+    }
+
+    @Test
+    public void testGithub() {
+        UUID projectId = UUID.randomUUID();
+        TriggerEntry a = trigger(projectId, "github", conditions("version", 2, "githubOrg", "org", "githubRepo", "repo"));
+        TriggerEntry b = trigger(projectId, "github", conditions("version", 2, "githubOrg", "org", "githubRepo", "re.*"));
+        TriggerEntry c = trigger(projectId, "github", conditions("version", 2, "githubRepo", "repo"));
+        TriggerEntry d = trigger(projectId, "github", conditions("version", 2, "githubOrg", "other", "githubRepo", "repo"));
+        triggers.addAll(Arrays.asList(a, b, c, d));
+
+        List<TriggerEntry> l = index.listGithub(null, "github", 2, "org", "repo");
+        assertEquals(set(a, b, c), set(l));
+
+        Map<String, Object> event = conditions("version", 2, "githubOrg", "org", "githubRepo", "repo");
+        for (TriggerEntry t : l) {
+            assertTrue(index.filter(event, t));
+        }
+
+        event = conditions("version", 2, "githubOrg", "org", "githubRepo", "rest");
+        assertFalse(index.filter(event, a));
+        assertTrue(index.filter(event, b));
+    }
+
+    @Test
+    public void testIncrementalUpdate() {
+        UUID projectA = UUID.randomUUID();
+        UUID projectB = UUID.randomUUID();
+        UUID repoId = UUID.randomUUID();
+
+        TriggerEntry a = trigger(projectA, repoId, "test", conditions());
+        TriggerEntry b = trigger(projectB, UUID.randomUUID(), "test", conditions());
+        triggers.addAll(Arrays.asList(a, b));
+
+        assertEquals(set(a, b), set(index.list(null, "test", 1)));
+        assertFalse(index.isRepositoryDisabled(repoId));
+
+        // "a" is replaced with "c", the repository is disabled
+        TriggerEntry c = trigger(projectA, repoId, "test", conditions());
+        triggers.remove(a);
+        triggers.add(c);
+        disabledRepos.add(repoId);
+
+        // no notifications yet
+        assertEquals(set(a, b), set(index.list(null, "test", 1)));
+
+        index.onNotification(projectA.toString());
+        assertEquals(set(b, c), await(() -> set(index.list(null, "test", 1)), set(b, c)));
+        assertTrue(index.isRepositoryDisabled(repoId));
+
+        verify(triggersDao, times(1)).listByProjects(isNull());
+        verify(triggersDao, times(1)).listByProjects(Collections.singleton(projectA));
+
+        // full reload
+        index.onNotification("*");
+        verify(triggersDao, timeout(10000).times(2)).listByProjects(isNull());
+    }
+
+    @Test(timeout = 10000)
+    public void testBackgroundRefresh() throws Exception {
+        UUID projectId = UUID.randomUUID();
+        TriggerEntry a = trigger(projectId, "test", conditions());
+        triggers.add(a);
+
+        // the initial load
+        assertEquals(set(a), set(index.list(null, "test", 1)));
+
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(triggersDao.listByProjects(Collections.singleton(projectId))).thenAnswer(inv -> {
+            refreshStarted.countDown();
+            release.await();
+            return new ArrayList<>(triggers);
+        });
+
+        TriggerEntry b = trigger(projectId, "test", conditions());
+        triggers.add(b);
+        index.onNotification(projectId.toString());
+        refreshStarted.await();
+
+        // the callers are not blocked by the refresh
+        assertEquals(set(a), set(index.list(null, "test", 1)));
+
+        release.countDown();
+        assertEquals(set(a, b), await(() -> set(index.list(null, "test", 1)), set(a, b)));
+    }
+
+    private static <T> T await(Supplier<T> s, T expected) {
+        long deadline = System.currentTimeMillis() + 10000;
+        T result = s.get();
+        while (!expected.equals(result) && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            result = s.get();
+        }
+        return result;
+    }
+
+    private static TriggerEntry trigger(UUID projectId, String eventSource, Map<String, Object> conditions) {
+        return trigger(projectId, UUID.randomUUID(), eventSource, conditions);
+    }
+
+    private static TriggerEntry trigger(UUID projectId, UUID repoId, String eventSource, Map<String, Object> conditions) {
+        return new TriggerEntry(UUID.randomUUID(), UUID.randomUUID(), "org", projectId, "project", repoId, "repo",
+                eventSource, null, null, conditions, null);
+    }
+
+    private static Map<String, Object> conditions(Object... kvs) {
+        Map<String, Object> m = new HashMap<>();
+        for (int i = 0; i < kvs.length; i += 2) {
+            m.put((String) kvs[i], kvs[i + 1]);
+        }
+        return m;
+    }
+
+    private static Set<TriggerEntry> set(TriggerEntry... items) {
+        return new HashSet<>(Arrays.asList(items));
+    }
+
+    private static Set<TriggerEntry> set(Collection<TriggerEntry> items) {
+        return new HashSet<>(items);
+    }
+}
@@ -0,0 +1,205 @@
+package com.walmartlabs.concord.server.process;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.sdk.Constants;
+import com.walmartlabs.concord.server.AbstractDaoTest;
+import com.walmartlabs.concord.server.Locks;
+import com.walmartlabs.concord.server.cfg.LockingConfiguration;
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+import com.walmartlabs.concord.server.cfg.SecretStoreConfiguration;
+import com.walmartlabs.concord.server.process.state.DatabaseStateStore;
+import com.walmartlabs.concord.server.process.state.FileStateStore;
+import com.walmartlabs.concord.server.process.state.ProcessStateManager;
+import com.walmartlabs.concord.server.process.state.StateStore;
+import com.walmartlabs.concord.server.process.state.StateStoreProvider;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.walmartlabs.concord.server.jooq.tables.ProcessStateBlobs.PROCESS_STATE_BLOBS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Ignore("requires a local DB instance")
+public class ProcessCleanerTest extends AbstractDaoTest {
+
+    private static final int MAX_ADVISORY_LOCKS = 8;
+
+    private final Locks locks = new Locks(new LockingConfiguration(MAX_ADVISORY_LOCKS));
+
+    @Test
+    public void testUnusedBlobs() {
+        StateStore store = new DatabaseStateStore(getConfiguration());
+        ProcessStateManager stateManager = stateManager(store);
+        ProcessCleaner.CleanerDao cleanerDao = new ProcessCleaner.CleanerDao(getConfiguration(), locks);
+
+        ProcessKey a = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+        ProcessKey b = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+
+        byte[] ab = ("shared-" + UUID.randomUUID()).getBytes();
+        String hash = IOUtils.sha256(ab);
+
+        stateManager.insert(a.getInstanceId(), a.getCreatedAt(), "file", ab);
+        stateManager.insert(b.getInstanceId(), b.getCreatedAt(), "file", ab);
+
+        // the blobs younger than the cutoff are kept even if unused
+        stateManager.delete(a);
+        stateManager.delete(b);
+        cleanerDao.deleteUnusedBlobs(new Timestamp(System.currentTimeMillis() - 60000), store);
+        assertEquals(1, countBlobs(hash));
+
+        // the blob is still referenced by the second process
+        stateManager.insert(b.getInstanceId(), b.getCreatedAt(), "file", ab);
+        cleanerDao.deleteUnusedBlobs(future(), store);
+        assertEquals(1, countBlobs(hash));
+
+        // no references left
+        stateManager.delete(b);
+        cleanerDao.deleteUnusedBlobs(future(), store);
+        assertEquals(0, countBlobs(hash));
+    }
+
+    @Test
+    public void testConcurrentImportAndCleanup() throws Exception {
+        Path storeDir = Files.createTempDirectory("testStore");
+        FileStateStore store = new FileStateStore(storeDir);
+        ProcessStateManager stateManager = stateManager(store);
+        ProcessCleaner.CleanerDao cleanerDao = new ProcessCleaner.CleanerDao(getConfiguration(), locks);
+
+        byte[] ab = ("shared-" + UUID.randomUUID()).getBytes();
+        String hash = IOUtils.sha256(ab);
+        Path blobFile = storeDir.resolve(hash.substring(0, 2)).resolve(hash);
+
+        ProcessKey a = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+        stateManager.insert(a.getInstanceId(), a.getCreatedAt(), "file", ab);
+        stateManager.delete(a);
+
+        // an import of the same blob holds the blob's lock, the cleaner skips the blob
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread importer = new Thread(() -> tx(tx -> {
+            locks.lockShared(tx, Locks.STATE_BLOB_NAMESPACE, ProcessStateManager.blobLockKey(hash));
+            locked.countDown();
+            release.await(30, TimeUnit.SECONDS);
+        }));
+        importer.start();
+
+        try {
+            assertTrue(locked.await(30, TimeUnit.SECONDS));
+
+            cleanerDao.deleteUnusedBlobs(future(), store);
+            assertEquals(1, countBlobs(hash));
+            assertTrue(Files.exists(blobFile));
+        } finally {
+            release.countDown();
+            importer.join(30000);
+        }
+
+        // retried on the next run, the metadata and the data are removed together
+        cleanerDao.deleteUnusedBlobs(future(), store);
+        assertEquals(0, countBlobs(hash));
+        assertFalse(Files.exists(blobFile));
+
+        // a new import of the same content stores the data again
+        ProcessKey b = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+        stateManager.insert(b.getInstanceId(), b.getCreatedAt(), "file", ab);
+        assertContent(stateManager, b, ab);
+    }
+
+    @Test
+    public void testBlobLocksDontUseTheCommonKeys() throws Exception {
+        Path storeDir = Files.createTempDirectory("testStore");
+        FileStateStore store = new FileStateStore(storeDir);
+        ProcessStateManager stateManager = stateManager(store);
+        ProcessCleaner.CleanerDao cleanerDao = new ProcessCleaner.CleanerDao(getConfiguration(), locks);
+
+        byte[] ab = ("shared-" + UUID.randomUUID()).getBytes();
+        String hash = IOUtils.sha256(ab);
+
+        ProcessKey a = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+        stateManager.insert(a.getInstanceId(), a.getCreatedAt(), "file", ab);
+        stateManager.delete(a);
+
+        // hold every key of the regular locks, e.g. the dispatcher's one
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> tx(tx -> {
+            for (long k = 0; k < MAX_ADVISORY_LOCKS; k++) {
+                locks.lock(tx, k);
+            }
+            locked.countDown();
+            release.await(30, TimeUnit.SECONDS);
+        }));
+        holder.start();
+
+        try {
+            assertTrue(locked.await(30, TimeUnit.SECONDS));
+
+            cleanerDao.deleteUnusedBlobs(future(), store);
+            assertEquals(0, countBlobs(hash));
+        } finally {
+            release.countDown();
+            holder.join(30000);
+        }
+    }
+
+    private static void assertContent(ProcessStateManager stateManager, ProcessKey processKey, byte[] expected) throws IOException {
+        try (InputStream in = stateManager.open(processKey, "file").orElseThrow(IllegalStateException::new)) {
+            assertArrayEquals(expected, IOUtils.toByteArray(in));
+        }
+    }
+
+    private int countBlobs(String hash) {
+        try (DSLContext tx = DSL.using(getConfiguration())) {
+            return tx.fetchCount(PROCESS_STATE_BLOBS, PROCESS_STATE_BLOBS.BLOB_HASH.eq(hash));
+        }
+    }
+
+    private ProcessStateManager stateManager(StateStore store) {
+        StateStoreProvider provider = mock(StateStoreProvider.class);
+        when(provider.get()).thenReturn(store);
+
+        ProcessConfiguration stateCfg = new ProcessConfiguration(24 * 60 * 60 * 1000, Collections.singletonList(Constants.Files.REQUEST_DATA_FILE_NAME));
+        return new ProcessStateManager(getConfiguration(), mock(SecretStoreConfiguration.class), stateCfg, provider, locks) {
+        };
+    }
+
+    private static Timestamp future() {
+        return new Timestamp(System.currentTimeMillis() + 60000);
+    }
+}
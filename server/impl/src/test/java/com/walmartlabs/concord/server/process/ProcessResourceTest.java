@@ -0,0 +1,171 @@
+package com.walmartlabs.concord.server.process;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.walmartlabs.concord.sdk.Constants;
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+import com.walmartlabs.concord.server.cfg.SecretStoreConfiguration;
+import com.walmartlabs.concord.server.process.event.ProcessEventDao;
+import com.walmartlabs.concord.server.process.logs.ProcessLogAccessManager;
+import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
+import com.walmartlabs.concord.server.process.logs.ProcessLogsDao;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueDao;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueManager;
+import com.walmartlabs.concord.server.process.state.ProcessStateManager;
+import com.walmartlabs.concord.server.process.state.StateManifestEntry;
+import com.walmartlabs.concord.server.sdk.ConcordApplicationException;
+import org.jboss.resteasy.plugins.providers.multipart.InputPart;
+import org.jboss.resteasy.plugins.providers.multipart.MultipartInput;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ProcessResourceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ProcessKey processKey;
+    private ProcessQueueDao queueDao;
+    private ProcessStateManager stateManager;
+    private ProcessResource resource;
+
+    @Before
+    public void setUp() {
+        processKey = new ProcessKey(UUID.randomUUID(), new java.sql.Timestamp(System.currentTimeMillis()));
+
+        ProcessEntry entry = mock(ProcessEntry.class);
+        when(entry.instanceId()).thenReturn(processKey.getInstanceId());
+        when(entry.createdAt()).thenReturn(new Date(processKey.getCreatedAt().getTime()));
+
+        ProcessQueueManager queueManager = mock(ProcessQueueManager.class);
+        when(queueManager.get(any(PartialProcessKey.class))).thenReturn(entry);
+
+        queueDao = mock(ProcessQueueDao.class);
+        stateManager = mock(ProcessStateManager.class);
+
+        resource = new ProcessResource(mock(ProcessManager.class), queueDao, queueManager, mock(ProcessLogsDao.class),
+                mock(PayloadManager.class), stateManager, mock(SecretStoreConfiguration.class), null, null, null,
+                objectMapper, mock(ProcessConfiguration.class), mock(ProcessLogManager.class), mock(ProcessLogAccessManager.class),
+                mock(ProcessEventDao.class), null, null);
+    }
+
+    @Test
+    public void testDiff() {
+        Map<String, StateManifestEntry> manifest = Collections.singletonMap("a.txt", new StateManifestEntry("abc", 0644));
+        when(stateManager.diff(processKey, Constants.Files.JOB_ATTACHMENTS_DIR_NAME, manifest)).thenReturn(Collections.singletonList("a.txt"));
+
+        assertEquals(Collections.singletonList("a.txt"), resource.diffAttachments(processKey.getInstanceId(), manifest));
+    }
+
+    @Test
+    public void testDeltaConflict() throws Exception {
+        when(stateManager.importDelta(eq(processKey), anyString(), any(), anyMap(), anyString())).thenReturn(false);
+
+        try {
+            resource.uploadAttachmentsDelta(processKey.getInstanceId(), input(manifest(Constants.Files.OUT_VALUES_FILE_NAME), zip(Collections.emptyMap())));
+            fail("exception expected");
+        } catch (ConcordApplicationException e) {
+            assertEquals(409, e.getResponse().getStatus());
+        }
+
+        verifyNoInteractions(queueDao);
+    }
+
+    @Test
+    public void testDeltaOutVariables() throws Exception {
+        when(stateManager.importDelta(eq(processKey), anyString(), any(), anyMap(), anyString())).thenReturn(true);
+
+        // changed "out" variables
+        Map<String, byte[]> files = Collections.singletonMap(Constants.Files.OUT_VALUES_FILE_NAME, "{\"x\": 123}".getBytes());
+        resource.uploadAttachmentsDelta(processKey.getInstanceId(), input(manifest(Constants.Files.OUT_VALUES_FILE_NAME), zip(files)));
+        verify(queueDao, times(1)).updateMeta(processKey, Collections.singletonMap("out", Collections.singletonMap("x", 123)));
+
+        // empty "out" variables, same as in the full upload
+        files = Collections.singletonMap(Constants.Files.OUT_VALUES_FILE_NAME, "{}".getBytes());
+        resource.uploadAttachmentsDelta(processKey.getInstanceId(), input(manifest(Constants.Files.OUT_VALUES_FILE_NAME), zip(files)));
+        verify(queueDao, times(1)).removeMeta(processKey, "out");
+
+        // unchanged "out" variables
+        resource.uploadAttachmentsDelta(processKey.getInstanceId(), input(manifest(Constants.Files.OUT_VALUES_FILE_NAME), zip(Collections.emptyMap())));
+
+        // no "out" variables
+        resource.uploadAttachmentsDelta(processKey.getInstanceId(), input(manifest("other.txt"), zip(Collections.emptyMap())));
+        verify(queueDao, times(2)).removeMeta(processKey, "out");
+
+        verify(queueDao, times(1)).updateMeta(eq(processKey), anyMap());
+    }
+
+    private String manifest(String... files) throws Exception {
+        Map<String, StateManifestEntry> m = new HashMap<>();
+        for (String f : files) {
+            m.put(f, new StateManifestEntry("hash-" + f, 0644));
+        }
+        return objectMapper.writeValueAsString(m);
+    }
+
+    private static byte[] zip(Map<String, byte[]> files) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(baos)) {
+            for (Map.Entry<String, byte[]> e : files.entrySet()) {
+                zip.putNextEntry(new ZipEntry(e.getKey()));
+                zip.write(e.getValue());
+                zip.closeEntry();
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    private static MultipartInput input(String manifest, byte[] data) throws Exception {
+        InputPart manifestPart = part("manifest");
+        when(manifestPart.getBodyAsString()).thenReturn(manifest);
+
+        InputPart dataPart = part("data");
+        when(dataPart.getBody(InputStream.class, null)).thenReturn(new ByteArrayInputStream(data));
+
+        MultipartInput input = mock(MultipartInput.class);
+        when(input.getParts()).thenReturn(Arrays.asList(manifestPart, dataPart));
+        return input;
+    }
+
+    private static InputPart part(String name) {
+        MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+        headers.putSingle(HttpHeaders.CONTENT_DISPOSITION, "form-data; name=\"" + name + "\"");
+
+        InputPart p = mock(InputPart.class);
+        when(p.getHeaders()).thenReturn(headers);
+        return p;
+    }
+}
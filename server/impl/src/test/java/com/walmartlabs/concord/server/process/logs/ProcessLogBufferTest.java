@@ -0,0 +1,135 @@
+package com.walmartlabs.concord.server.process.logs;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.db.PgIntRange;
+import com.walmartlabs.concord.server.Listeners;
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+import com.walmartlabs.concord.server.process.ProcessKey;
+import com.walmartlabs.concord.server.sdk.ConcordApplicationException;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.sql.Timestamp;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ProcessLogBufferTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCoalesce() {
+        ProcessLogsDao dao = mock(ProcessLogsDao.class);
+        when(dao.append(any(Map.class))).thenAnswer(inv -> {
+            Map<ProcessKey, byte[]> rows = inv.getArgument(0);
+            Map<ProcessKey, PgIntRange> result = new HashMap<>();
+            rows.forEach((k, v) -> result.put(k, PgIntRange.parse("[0," + v.length + ")")));
+            return result;
+        });
+
+        Listeners listeners = mock(Listeners.class);
+
+        ProcessLogBuffer buffer = new ProcessLogBuffer(cfg(1024, 1024), dao, listeners, mock(ProcessLogStreamHub.class), new MetricRegistry());
+
+        ProcessKey a = newKey();
+        ProcessKey b = newKey();
+
+        assertEquals(Integer.valueOf(3), buffer.append(a, "abc".getBytes()));
+        assertEquals(Integer.valueOf(5), buffer.append(a, "de".getBytes()));
+        assertEquals(Integer.valueOf(1), buffer.append(b, "x".getBytes()));
+
+        buffer.start();
+        buffer.stop();
+
+        ArgumentCaptor<Map<ProcessKey, byte[]>> rows = ArgumentCaptor.forClass(Map.class);
+        verify(dao, times(1)).append(rows.capture());
+        assertEquals("abcde", new String(rows.getValue().get(a)));
+        assertEquals("x", new String(rows.getValue().get(b)));
+
+        ArgumentCaptor<Map<ProcessKey, List<byte[]>>> chunks = ArgumentCaptor.forClass(Map.class);
+        verify(listeners, times(1)).onProcessLogAppend(chunks.capture());
+        List<byte[]> l = chunks.getValue().get(a);
+        assertEquals(2, l.size());
+        assertEquals("abc", new String(l.get(0)));
+        assertEquals("de", new String(l.get(1)));
+
+        // the buffer is stopped, the caller must write the data directly
+        assertNull(buffer.append(a, "f".getBytes()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUpperBoundIncludesPersistedData() {
+        ProcessKey k = newKey();
+
+        ProcessLogsDao dao = mock(ProcessLogsDao.class);
+        when(dao.size(k)).thenReturn(100);
+        when(dao.append(any(Map.class))).thenAnswer(inv -> {
+            Map<ProcessKey, byte[]> rows = inv.getArgument(0);
+            return Collections.singletonMap(k, PgIntRange.parse("[100," + (100 + rows.get(k).length) + ")"));
+        });
+
+        ProcessLogBuffer buffer = new ProcessLogBuffer(cfg(1024, 1024), dao, mock(Listeners.class), mock(ProcessLogStreamHub.class), new MetricRegistry());
+
+        // the size of the already written log is loaded once, then tracked in memory
+        assertEquals(Integer.valueOf(103), buffer.append(k, "abc".getBytes()));
+        assertEquals(Integer.valueOf(105), buffer.append(k, "de".getBytes()));
+        verify(dao, times(1)).size(k);
+
+        buffer.start();
+        buffer.stop();
+
+        verify(dao, times(1)).append(any(Map.class));
+    }
+
+    @Test
+    public void testFull() {
+        ProcessLogBuffer buffer = new ProcessLogBuffer(cfg(4, 1024), mock(ProcessLogsDao.class), mock(Listeners.class), mock(ProcessLogStreamHub.class), new MetricRegistry());
+
+        ProcessKey k = newKey();
+        buffer.append(k, "abc".getBytes());
+
+        try {
+            buffer.append(k, "de".getBytes());
+            fail("exception expected");
+        } catch (ConcordApplicationException e) {
+            assertEquals(429, e.getResponse().getStatus());
+        }
+    }
+
+    private static ProcessConfiguration cfg(long maxSize, long flushSize) {
+        ProcessConfiguration cfg = mock(ProcessConfiguration.class);
+        when(cfg.isLogBufferEnabled()).thenReturn(true);
+        when(cfg.getLogBufferMaxSize()).thenReturn(maxSize);
+        when(cfg.getLogBufferFlushSize()).thenReturn(flushSize);
+        when(cfg.getLogBufferFlushInterval()).thenReturn(10000L);
+        when(cfg.getLogBufferMaxBlockTime()).thenReturn(10L);
+        return cfg;
+    }
+
+    private static ProcessKey newKey() {
+        return new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+    }
+}
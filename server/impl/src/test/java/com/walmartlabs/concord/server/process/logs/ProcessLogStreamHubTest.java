@@ -0,0 +1,166 @@
+package com.walmartlabs.concord.server.process.logs;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+import com.walmartlabs.concord.server.process.ProcessKey;
+import com.walmartlabs.concord.server.process.logs.ProcessLogsDao.ProcessLogChunk;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueDao;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class ProcessLogStreamHubTest {
+
+    private final List<ProcessLogChunk> log = new ArrayList<>();
+
+    private ProcessLogsDao logsDao;
+    private ProcessLogStreamHub hub;
+
+    @Before
+    public void init() {
+        logsDao = mock(ProcessLogsDao.class);
+        when(logsDao.getChunks(any(ProcessKey.class), anyInt())).thenAnswer(inv -> {
+            int start = inv.getArgument(1);
+            List<ProcessLogChunk> result = new ArrayList<>();
+            synchronized (log) {
+                for (ProcessLogChunk c : log) {
+                    if (c.getStart() + c.getData().length > start) {
+                        result.add(c);
+                    }
+                }
+            }
+            return result;
+        });
+
+        ProcessConfiguration cfg = mock(ProcessConfiguration.class);
+        when(cfg.getLogStreamPollInterval()).thenReturn(100000L);
+        when(cfg.getLogStreamKeepAliveInterval()).thenReturn(100000L);
+
+        hub = new ProcessLogStreamHub(cfg, logsDao, mock(ProcessQueueDao.class), new MetricRegistry());
+    }
+
+    @Test(timeout = 10000)
+    public void testFanOut() throws Exception {
+        ProcessKey k = newKey();
+        append("abc");
+
+        TestSubscriber a = new TestSubscriber(0);
+        TestSubscriber b = new TestSubscriber(2);
+        hub.subscribe(k, 0, a);
+        hub.subscribe(k, 2, b);
+
+        a.await("abc");
+        b.await("c");
+
+        // "live" data
+        hub.publish(k, 3, append("de"));
+
+        a.await("abcde");
+        b.await("cde");
+
+        // the catch up reads were performed once per subscriber
+        verify(logsDao, times(2)).getChunks(any(ProcessKey.class), anyInt());
+    }
+
+    @Test(timeout = 10000)
+    public void testGap() throws Exception {
+        ProcessKey k = newKey();
+
+        TestSubscriber a = new TestSubscriber(0);
+        hub.subscribe(k, 0, a);
+        a.await("");
+
+        // "ab" was appended on another server
+        append("ab");
+        hub.publish(k, 2, append("cd"));
+
+        a.await("abcd");
+    }
+
+    private byte[] append(String s) {
+        synchronized (log) {
+            int start = 0;
+            if (!log.isEmpty()) {
+                ProcessLogChunk last = log.get(log.size() - 1);
+                start = last.getStart() + last.getData().length;
+            }
+            log.add(new ProcessLogChunk(start, s.getBytes()));
+        }
+        return s.getBytes();
+    }
+
+    private static ProcessKey newKey() {
+        return new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+    }
+
+    private static class TestSubscriber implements ProcessLogStreamHub.Subscriber {
+
+        private final StringBuilder data = new StringBuilder();
+        private int end;
+
+        private TestSubscriber(int offset) {
+            this.end = offset;
+        }
+
+        @Override
+        public synchronized boolean onData(int start, byte[] ab) {
+            assertEquals(end, start);
+            data.append(new String(ab));
+            end = start + ab.length;
+            return true;
+        }
+
+        @Override
+        public boolean onKeepAlive() {
+            return true;
+        }
+
+        @Override
+        public void onEnd() {
+        }
+
+        @Override
+        public void onClose() {
+        }
+
+        private void await(String expected) throws InterruptedException {
+            while (true) {
+                synchronized (this) {
+                    if (expected.equals(data.toString())) {
+                        return;
+                    }
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.walmartlabs.concord.server.process.logs;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProcessLogStreamServletTest {
+
+    @Test
+    public void testCompleteLength() {
+        byte[] ab = "aé€😀".getBytes(StandardCharsets.UTF_8); // 1 + 2 + 3 + 4 bytes
+        assertEquals(10, ab.length);
+
+        assertEquals(10, ProcessLogStreamServlet.completeLength(ab, 10));
+        assertEquals(6, ProcessLogStreamServlet.completeLength(ab, 9));
+        assertEquals(6, ProcessLogStreamServlet.completeLength(ab, 8));
+        assertEquals(6, ProcessLogStreamServlet.completeLength(ab, 7));
+        assertEquals(6, ProcessLogStreamServlet.completeLength(ab, 6));
+        assertEquals(3, ProcessLogStreamServlet.completeLength(ab, 5));
+        assertEquals(3, ProcessLogStreamServlet.completeLength(ab, 4));
+        assertEquals(1, ProcessLogStreamServlet.completeLength(ab, 2));
+        assertEquals(0, ProcessLogStreamServlet.completeLength(ab, 0));
+    }
+
+    @Test
+    public void testSplitCharacter() {
+        byte[] ab = "x€y".getBytes(StandardCharsets.UTF_8);
+
+        // the euro sign is split between two chunks
+        byte[] first = Arrays.copyOfRange(ab, 0, 2);
+        int len = ProcessLogStreamServlet.completeLength(first, first.length);
+        assertEquals(1, len);
+        assertEquals("id: 1\ndata: x\n\n", ProcessLogStreamServlet.toEvent(len, first, len));
+
+        byte[] second = Arrays.copyOfRange(ab, 1, ab.length);
+        len = ProcessLogStreamServlet.completeLength(second, second.length);
+        assertEquals(second.length, len);
+        assertEquals("id: 5\ndata: €y\n\n", ProcessLogStreamServlet.toEvent(ab.length, second, len));
+    }
+}
@@ -0,0 +1,206 @@
+package com.walmartlabs.concord.server.process.pipelines.processors;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.common.secret.KeyPair;
+import com.walmartlabs.concord.policyengine.PolicyEngine;
+import com.walmartlabs.concord.policyengine.PolicyEngineRules;
+import com.walmartlabs.concord.repository.*;
+import com.walmartlabs.concord.sdk.Constants;
+import com.walmartlabs.concord.sdk.Secret;
+import com.walmartlabs.concord.server.ansible.AnsibleConfigurationConstants;
+import com.walmartlabs.concord.server.ansible.PrivateKeyProcessor;
+import com.walmartlabs.concord.server.org.project.ProjectDao;
+import com.walmartlabs.concord.server.org.secret.SecretManager;
+import com.walmartlabs.concord.server.policy.PolicyManager;
+import com.walmartlabs.concord.server.process.Payload;
+import com.walmartlabs.concord.server.process.ProcessKey;
+import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The workspace files can be hard links to a repository snapshot. The processors
+ * must replace such files instead of overwriting them.
+ */
+public class SnapshotWorkspaceTest {
+
+    private static final String URL = "https://example.com/test.git";
+    private static final String COMMIT_ID = "0123456789abcdef0123456789abcdef01234567";
+    private static final String PRIVATE_KEY_FILE_NAME = "_privateKey";
+    private static final String CREDENTIALS = "test";
+
+    private Path repoDir;
+    private Path storeDir;
+    private Path workDir;
+
+    @Before
+    public void setUp() throws Exception {
+        repoDir = IOUtils.createTempDir("test-repo");
+        storeDir = IOUtils.createTempDir("test-snapshots");
+        workDir = IOUtils.createTempDir("test-workspace");
+
+        // the repository contains the files written by the processors
+        Files.write(repoDir.resolve("concord.yml"), "flows: {}".getBytes());
+        Files.write(repoDir.resolve(Constants.Files.REQUEST_DATA_FILE_NAME), "repo-request".getBytes());
+        Files.createDirectories(repoDir.resolve(Constants.Files.CONCORD_SYSTEM_DIR_NAME));
+        Files.write(repoDir.resolve(Constants.Files.CONCORD_SYSTEM_DIR_NAME).resolve(Constants.Files.POLICY_FILE_NAME), "repo-policy".getBytes());
+        Files.write(repoDir.resolve(PRIVATE_KEY_FILE_NAME), "repo-key".getBytes());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        IOUtils.deleteRecursively(repoDir);
+        IOUtils.deleteRecursively(storeDir);
+        IOUtils.deleteRecursively(workDir);
+    }
+
+    @Test
+    public void testOverwrittenFiles() throws Exception {
+        RepositorySnapshotStore store = new RepositorySnapshotStore(storeDir, 0, true, new ObjectMapper());
+        RepositorySnapshotStore.Entry entry = store.put(URL, CREDENTIALS, null, new Repository("master", repoDir, repoDir, new TestProvider()));
+        store.export(entry, workDir);
+
+        Path policyFile = policyFile(workDir);
+        Path requestFile = workDir.resolve(Constants.Files.REQUEST_DATA_FILE_NAME);
+        assumeTrue("hard links are not supported", Files.isSameFile(policyFile, policyFile(entry.path())));
+
+        ProcessLogManager logManager = mock(ProcessLogManager.class);
+
+        PolicyManager policyManager = mock(PolicyManager.class);
+        PolicyEngineRules rules = new PolicyEngineRules(null, null, null, null, null, null, null, null, null, null, null, null);
+        when(policyManager.get(any(), any(), any())).thenReturn(new PolicyEngine("test", rules));
+
+        Payload payload = new Payload(new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis())))
+                .putHeader(Payload.WORKSPACE_DIR, workDir)
+                .putHeader(Payload.CONFIGURATION, Collections.singletonMap("a", "b"));
+
+        new Chain(new PolicyExportProcessor(new ObjectMapper(), policyManager, logManager),
+                new RequestDataStoringProcessor(logManager))
+                .process(payload);
+
+        // the workspace files are replaced
+        assertNotEquals("repo-policy", read(policyFile));
+        assertEquals("{\"a\":\"b\"}", read(requestFile));
+        assertFalse(Files.isSameFile(policyFile, policyFile(entry.path())));
+
+        // the snapshot is intact
+        assertEquals("repo-policy", read(policyFile(entry.path())));
+        assertEquals("repo-request", read(entry.path().resolve(Constants.Files.REQUEST_DATA_FILE_NAME)));
+
+        // the next workspace gets the original files
+        Path workDir2 = IOUtils.createTempDir("test-workspace");
+        try {
+            store.export(entry, workDir2);
+            assertEquals("repo-policy", read(policyFile(workDir2)));
+        } finally {
+            IOUtils.deleteRecursively(workDir2);
+        }
+    }
+
+    @Test
+    public void testPrivateKey() throws Exception {
+        RepositorySnapshotStore store = new RepositorySnapshotStore(storeDir, 0, true, new ObjectMapper());
+        RepositorySnapshotStore.Entry entry = store.put(URL, CREDENTIALS, null, new Repository("master", repoDir, repoDir, new TestProvider()));
+        store.export(entry, workDir);
+
+        Path keyFile = workDir.resolve(PRIVATE_KEY_FILE_NAME);
+        assumeTrue("hard links are not supported", Files.isSameFile(keyFile, entry.path().resolve(PRIVATE_KEY_FILE_NAME)));
+
+        SecretManager secretManager = mock(SecretManager.class);
+        when(secretManager.getKeyPair(any(), any(), eq("test-key"), any()))
+                .thenReturn(new KeyPair("public".getBytes(), "private".getBytes()));
+
+        Map<String, Object> key = new HashMap<>();
+        key.put(AnsibleConfigurationConstants.SECRET_KEY, "test-key");
+        key.put(AnsibleConfigurationConstants.REPOSITORY_KEY, ".*");
+        Map<String, Object> cfg = Collections.singletonMap(AnsibleConfigurationConstants.GROUP_KEY,
+                Collections.singletonMap(AnsibleConfigurationConstants.PRIVATE_KEYS, Collections.singletonList(key)));
+
+        Payload payload = new Payload(new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis())))
+                .putHeader(Payload.WORKSPACE_DIR, workDir)
+                .putHeader(Payload.CONFIGURATION, cfg)
+                .putHeader(RepositoryProcessor.REPOSITORY_INFO_KEY, new RepositoryProcessor.RepositoryInfo(UUID.randomUUID(), "test", URL, null, "master", COMMIT_ID, null));
+
+        new Chain(new PrivateKeyProcessor(mock(ProcessLogManager.class), secretManager, mock(ProjectDao.class)))
+                .process(payload);
+
+        assertEquals("private", read(keyFile));
+
+        // the next workspace doesn't get the key
+        assertEquals("repo-key", read(entry.path().resolve(PRIVATE_KEY_FILE_NAME)));
+    }
+
+    private static String read(Path p) throws IOException {
+        return new String(Files.readAllBytes(p));
+    }
+
+    private static Path policyFile(Path dir) {
+        return dir.resolve(Constants.Files.CONCORD_SYSTEM_DIR_NAME).resolve(Constants.Files.POLICY_FILE_NAME);
+    }
+
+    private static class TestProvider implements RepositoryProvider {
+
+        @Override
+        public String getBranchOrDefault(String branch) {
+            return branch;
+        }
+
+        @Override
+        public boolean canHandle(String url) {
+            return true;
+        }
+
+        @Override
+        public void fetch(String uri, String branch, String commitId, String path, Secret secret, Path dst) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Snapshot export(Path src, Path dst, List<String> ignorePatterns) throws IOException {
+            LastModifiedSnapshot snapshot = new LastModifiedSnapshot();
+            IOUtils.copy(src, dst, (String) null, snapshot, StandardCopyOption.REPLACE_EXISTING);
+            return snapshot;
+        }
+
+        @Override
+        public RepositoryInfo getInfo(Path path) {
+            return new RepositoryInfo(COMMIT_ID, "test", "me");
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.cluster.ClusterNotifications;
+import com.walmartlabs.concord.server.process.queue.ProcessCompletionWaiters.Mode;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ProcessCompletionWaitersTest {
+
+    private final Map<UUID, ProcessStatus> statuses = new ConcurrentHashMap<>();
+
+    private ProcessCompletionWaiters waiters;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void init() {
+        ProcessQueueDao queueDao = mock(ProcessQueueDao.class);
+        when(queueDao.getStatuses(any(Collection.class))).thenAnswer(inv -> {
+            Collection<UUID> ids = inv.getArgument(0);
+            Map<UUID, ProcessStatus> result = new HashMap<>();
+            for (UUID id : ids) {
+                ProcessStatus s = statuses.get(id);
+                if (s != null) {
+                    result.put(id, s);
+                }
+            }
+            return result;
+        });
+
+        waiters = new ProcessCompletionWaiters(queueDao, mock(ClusterNotifications.class), new MetricRegistry());
+    }
+
+    @After
+    public void cleanup() {
+        waiters.stop();
+    }
+
+    @Test(timeout = 10000)
+    public void testAll() throws Exception {
+        UUID a = newProcess(ProcessStatus.RUNNING);
+        UUID b = newProcess(ProcessStatus.FINISHED);
+
+        TestListener l = new TestListener();
+        waiters.register(Arrays.asList(a, b), Mode.ALL, -1, l);
+        assertNull(l.poll());
+
+        // a status change on the current server
+        statuses.put(a, ProcessStatus.FAILED);
+        waiters.onStatusChange(a, ProcessStatus.FAILED);
+
+        assertEquals(Boolean.FALSE, l.take());
+    }
+
+    @Test(timeout = 10000)
+    public void testAny() throws Exception {
+        UUID a = newProcess(ProcessStatus.RUNNING);
+        UUID b = newProcess(ProcessStatus.RUNNING);
+
+        TestListener l = new TestListener();
+        waiters.register(Arrays.asList(a, b), Mode.ANY, -1, l);
+        assertNull(l.poll());
+
+        // non-final statuses are ignored
+        statuses.put(b, ProcessStatus.FINISHED);
+        waiters.onNotification(b + ",SUSPENDED");
+        assertNull(l.poll());
+
+        // a notification from another server
+        waiters.onNotification(b + ",FINISHED");
+        assertEquals(Boolean.FALSE, l.take());
+
+        // the listener is called only once
+        waiters.onNotification(a + ",FINISHED");
+        assertNull(l.poll());
+    }
+
+    @Test(timeout = 10000)
+    public void testAlreadyFinished() throws Exception {
+        UUID a = newProcess(ProcessStatus.CANCELLED);
+
+        TestListener l = new TestListener();
+        waiters.register(Collections.singleton(a), Mode.ALL, -1, l);
+
+        assertEquals(Boolean.FALSE, l.take());
+    }
+
+    @Test(timeout = 10000)
+    public void testTimeout() throws Exception {
+        UUID a = newProcess(ProcessStatus.RUNNING);
+
+        waiters.start();
+
+        TestListener l = new TestListener();
+        waiters.register(Collections.singleton(a), Mode.ALL, 100, l);
+
+        assertEquals(Boolean.TRUE, l.take());
+    }
+
+    @Test(timeout = 10000)
+    public void testCancel() throws Exception {
+        UUID a = newProcess(ProcessStatus.RUNNING);
+
+        TestListener l = new TestListener();
+        ProcessCompletionWaiters.Registration r = waiters.register(Collections.singleton(a), Mode.ALL, -1, l);
+        assertEquals(1, waiters.size());
+
+        // e.g. the client disconnected
+        r.cancel();
+        assertEquals(0, waiters.size());
+
+        // the listener is not called after the cancellation
+        statuses.put(a, ProcessStatus.FINISHED);
+        waiters.onStatusChange(a, ProcessStatus.FINISHED);
+        assertNull(l.poll());
+
+        // cancelling a finished waiter does nothing
+        UUID b = newProcess(ProcessStatus.FINISHED);
+        r = waiters.register(Collections.singleton(b), Mode.ALL, -1, l);
+        assertEquals(Boolean.FALSE, l.take());
+        r.cancel();
+        assertEquals(0, waiters.size());
+    }
+
+    private UUID newProcess(ProcessStatus status) {
+        UUID id = UUID.randomUUID();
+        statuses.put(id, status);
+        return id;
+    }
+
+    private static class TestListener implements ProcessCompletionWaiters.Listener {
+
+        private final BlockingQueue<Boolean> results = new ArrayBlockingQueue<>(10);
+
+        @Override
+        public void onDone(boolean timedOut) {
+            results.add(timedOut);
+        }
+
+        private Boolean poll() throws InterruptedException {
+            return results.poll(200, TimeUnit.MILLISECONDS);
+        }
+
+        private Boolean take() throws InterruptedException {
+            return results.take();
+        }
+    }
+}
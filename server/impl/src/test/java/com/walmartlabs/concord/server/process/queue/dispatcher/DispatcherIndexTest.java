@@ -0,0 +1,151 @@
+package com.walmartlabs.concord.server.process.queue.dispatcher;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.cfg.ProcessQueueConfiguration;
+import com.walmartlabs.concord.server.cluster.ClusterNotifications;
+import com.walmartlabs.concord.server.process.ProcessKey;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueEntry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DispatcherIndexTest {
+
+    private DispatcherIndex index;
+    private TestLoader loader;
+
+    @Before
+    public void init() {
+        ProcessQueueConfiguration cfg = mock(ProcessQueueConfiguration.class);
+        when(cfg.isDispatcherUseIndex()).thenReturn(true);
+        when(cfg.getDispatcherIndexReloadInterval()).thenReturn(Long.MAX_VALUE);
+
+        index = new DispatcherIndex(cfg, mock(ClusterNotifications.class), new MetricRegistry());
+        loader = new TestLoader();
+    }
+
+    @Test
+    public void testBuckets() {
+        DispatcherIndex.Item a = item(2, agent("flavor", "a", "os", "linux"));
+        DispatcherIndex.Item b = item(1, agent("os", "linux", "flavor", "a"));
+        DispatcherIndex.Item c = item(3, agent("flavor", "b"));
+        DispatcherIndex.Item d = item(4, null);
+
+        loader.items.addAll(Arrays.asList(a, b, c, d));
+        index.sync(loader);
+
+        assertEquals(4, index.size());
+        assertEquals(3, index.buckets().size());
+
+        DispatcherIndex.Bucket bucket = find(agent("flavor", "a", "os", "linux"));
+        assertEquals(Arrays.asList(b, a), new ArrayList<>(bucket.getItems()));
+    }
+
+    @Test
+    public void testIncrementalUpdate() {
+        DispatcherIndex.Item a = item(1, agent("flavor", "a"));
+        DispatcherIndex.Item b = item(2, agent("flavor", "b"));
+
+        loader.items.addAll(Arrays.asList(a, b));
+        index.sync(loader);
+        assertEquals(2, index.buckets().size());
+
+        // "a" is no longer dispatchable, "c" is a new entry
+        DispatcherIndex.Item c = item(3, agent("flavor", "b"));
+        loader.items.remove(a);
+        loader.items.add(c);
+
+        index.onNotification(a.getEntry().key().getInstanceId() + ",STARTING");
+        index.onNotification(c.getEntry().key().getInstanceId() + ",ENQUEUED");
+        index.sync(loader);
+
+        assertEquals(2, index.size());
+        assertEquals(1, index.buckets().size());
+        assertEquals(Arrays.asList(b, c), new ArrayList<>(find(agent("flavor", "b")).getItems()));
+    }
+
+    @Test
+    public void testReloadOnReconnect() {
+        loader.items.add(item(1, agent("flavor", "a")));
+        index.sync(loader);
+        assertEquals(1, index.size());
+
+        loader.items.add(item(2, agent("flavor", "a")));
+
+        // no notifications, the index shouldn't change
+        index.sync(loader);
+        assertEquals(1, index.size());
+
+        index.onReconnect();
+        index.sync(loader);
+        assertEquals(2, index.size());
+    }
+
+    private DispatcherIndex.Bucket find(Map<String, Object> requirements) {
+        return index.buckets().stream()
+                .filter(b -> b.getRequirements().equals(requirements.get("agent")))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Bucket not found: " + requirements));
+    }
+
+    private static Map<String, Object> agent(Object... kv) {
+        Map<String, Object> m = new HashMap<>();
+        for (int i = 0; i < kv.length; i += 2) {
+            m.put((String) kv[i], kv[i + 1]);
+        }
+        return Collections.singletonMap("agent", m);
+    }
+
+    private static DispatcherIndex.Item item(long lastUpdatedAt, Map<String, Object> requirements) {
+        ProcessQueueEntry e = ProcessQueueEntry.builder()
+                .key(new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis())))
+                .requirements(requirements)
+                .build();
+
+        return new DispatcherIndex.Item(e, lastUpdatedAt, null);
+    }
+
+    private static class TestLoader implements DispatcherIndex.Loader {
+
+        private final List<DispatcherIndex.Item> items = new ArrayList<>();
+
+        @Override
+        public List<DispatcherIndex.Item> loadAll() {
+            return new ArrayList<>(items);
+        }
+
+        @Override
+        public List<DispatcherIndex.Item> load(Collection<UUID> instanceIds) {
+            return items.stream()
+                    .filter(i -> instanceIds.contains(i.getEntry().key().getInstanceId()))
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.walmartlabs.concord.server.process.queue.dispatcher;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.db.AbstractDao;
+import com.walmartlabs.concord.server.Locks;
+import com.walmartlabs.concord.server.cfg.ImportConfiguration;
+import com.walmartlabs.concord.server.cfg.ProcessQueueConfiguration;
+import com.walmartlabs.concord.server.cluster.ClusterNotifications;
+import com.walmartlabs.concord.server.org.project.ProjectDao;
+import com.walmartlabs.concord.server.process.ImportsNormalizerFactory;
+import com.walmartlabs.concord.server.process.ProcessKey;
+import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueEntry;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueManager;
+import com.walmartlabs.concord.server.queueclient.message.Message;
+import com.walmartlabs.concord.server.queueclient.message.MessageType;
+import com.walmartlabs.concord.server.queueclient.message.ProcessBatchResponse;
+import com.walmartlabs.concord.server.queueclient.message.ProcessRequest;
+import com.walmartlabs.concord.server.queueclient.message.ProcessResponse;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import com.walmartlabs.concord.server.websocket.WebSocketChannel;
+import com.walmartlabs.concord.server.websocket.WebSocketChannelManager;
+import org.jooq.DSLContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class DispatcherTest {
+
+    private DSLContext tx;
+    private Dispatcher.DispatcherDao dao;
+    private WebSocketChannelManager channelManager;
+    private ProcessQueueManager queueManager;
+    private ProcessQueueConfiguration cfg;
+
+    private Map<WebSocketChannel, ProcessRequest> requests;
+    private Map<UUID, Message> responses;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void init() throws Exception {
+        tx = mock(DSLContext.class);
+
+        dao = mock(Dispatcher.DispatcherDao.class);
+        when(dao.txResult(any())).thenAnswer(i -> ((AbstractDao.TxResult<Object>) i.getArgument(0)).run(tx));
+
+        requests = new LinkedHashMap<>();
+        responses = new HashMap<>();
+
+        channelManager = mock(WebSocketChannelManager.class);
+        doAnswer(i -> new LinkedHashMap<>(requests)).when(channelManager).getRequests(MessageType.PROCESS_REQUEST);
+        when(channelManager.sendResponse(any(UUID.class), any(Message.class))).thenAnswer(i -> {
+            synchronized (responses) {
+                responses.put(i.getArgument(0), i.getArgument(1));
+            }
+            return true;
+        });
+
+        queueManager = mock(ProcessQueueManager.class);
+        when(queueManager.updateExpectedStatus(eq(tx), any(ProcessKey.class), eq(ProcessStatus.ENQUEUED), eq(ProcessStatus.STARTING))).thenReturn(true);
+
+        cfg = mock(ProcessQueueConfiguration.class);
+        when(cfg.getDispatcherBatchSize()).thenReturn(10);
+        when(cfg.getDispatcherIndexReloadInterval()).thenReturn(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        List<ProcessQueueEntry> entries = entries(5);
+        enqueue(entries);
+
+        UUID channelId = request(3);
+        assertTrue(dispatcher(false).performTask());
+
+        // the request receives up to maxCount processes in a single response
+        ProcessBatchResponse resp = (ProcessBatchResponse) responses.get(channelId);
+        assertEquals(ids(entries.subList(0, 3)), processIds(resp.getProcesses()));
+
+        verify(queueManager, times(3)).updateStatus(eq(tx), any(ProcessKey.class), eq(ProcessStatus.STARTING));
+    }
+
+    @Test
+    public void testPartialBatch() throws Exception {
+        List<ProcessQueueEntry> entries = entries(2);
+        enqueue(entries);
+
+        UUID channelId = request(5);
+        assertTrue(dispatcher(false).performTask());
+
+        // fewer matches than maxCount, the request gets everything that's available
+        ProcessBatchResponse resp = (ProcessBatchResponse) responses.get(channelId);
+        assertEquals(ids(entries), processIds(resp.getProcesses()));
+    }
+
+    @Test
+    public void testBatchAndSingleRequests() throws Exception {
+        List<ProcessQueueEntry> entries = entries(4);
+        enqueue(entries);
+
+        UUID single = request(null);
+        UUID batch = request(2);
+        assertTrue(dispatcher(false).performTask());
+
+        // requests w/o maxCount get a single process, in the old format
+        ProcessResponse a = (ProcessResponse) responses.get(single);
+        assertEquals(entries.get(0).key().getInstanceId(), a.getProcessId());
+
+        ProcessBatchResponse b = (ProcessBatchResponse) responses.get(batch);
+        assertEquals(ids(entries.subList(1, 3)), processIds(b.getProcesses()));
+
+        // the last entry stays in the queue
+        verify(queueManager, times(3)).updateStatus(eq(tx), any(ProcessKey.class), eq(ProcessStatus.STARTING));
+        verify(queueManager, never()).updateStatus(tx, entries.get(3).key(), ProcessStatus.STARTING);
+    }
+
+    @Test
+    public void testIndexedBatch() throws Exception {
+        List<ProcessQueueEntry> entries = entries(5);
+
+        List<DispatcherIndex.Item> items = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            items.add(new DispatcherIndex.Item(entries.get(i), i, null));
+        }
+        when(dao.loadAll(tx)).thenReturn(items);
+
+        UUID channelId = request(3);
+        assertTrue(dispatcher(true).performTask());
+
+        ProcessBatchResponse resp = (ProcessBatchResponse) responses.get(channelId);
+        assertEquals(ids(entries.subList(0, 3)), processIds(resp.getProcesses()));
+
+        verify(queueManager, times(3)).updateExpectedStatus(eq(tx), any(ProcessKey.class), eq(ProcessStatus.ENQUEUED), eq(ProcessStatus.STARTING));
+    }
+
+    @Test
+    public void testRequeueOnResponseError() throws Exception {
+        UUID repoId = UUID.randomUUID();
+
+        List<ProcessQueueEntry> entries = entries(3);
+        ProcessQueueEntry broken = ProcessQueueEntry.builder().from(entries.get(1))
+                .repoId(repoId)
+                .build();
+        entries.set(1, broken);
+        enqueue(entries);
+
+        when(dao.getSecretReference(repoId)).thenThrow(new RuntimeException("boom"));
+
+        UUID channelId = request(3);
+        assertTrue(dispatcher(false).performTask());
+
+        // the rest of the batch is sent, the broken entry goes back to the queue
+        ProcessBatchResponse resp = (ProcessBatchResponse) responses.get(channelId);
+        assertEquals(Arrays.asList(entries.get(0).key().getInstanceId(), entries.get(2).key().getInstanceId()), processIds(resp.getProcesses()));
+
+        verify(queueManager).updateExpectedStatus(broken.key(), ProcessStatus.STARTING, ProcessStatus.ENQUEUED);
+    }
+
+    private Dispatcher dispatcher(boolean useIndex) {
+        when(cfg.isDispatcherUseIndex()).thenReturn(useIndex);
+
+        MetricRegistry metricRegistry = new MetricRegistry();
+        DispatcherIndex index = new DispatcherIndex(cfg, mock(ClusterNotifications.class), metricRegistry);
+
+        return new Dispatcher(mock(Locks.class),
+                dao,
+                channelManager,
+                mock(ProcessLogManager.class),
+                queueManager,
+                Collections.emptySet(),
+                new ImportsNormalizerFactory(mock(ImportConfiguration.class), mock(ProjectDao.class)),
+                index,
+                cfg,
+                metricRegistry);
+    }
+
+    private void enqueue(List<ProcessQueueEntry> entries) {
+        when(dao.next(eq(tx), anyInt(), anyInt())).thenAnswer(i -> {
+            int offset = i.getArgument(1);
+            int limit = i.getArgument(2);
+            if (offset >= entries.size()) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<>(entries.subList(offset, Math.min(entries.size(), offset + limit)));
+        });
+    }
+
+    private UUID request(Integer maxCount) {
+        UUID channelId = UUID.randomUUID();
+
+        WebSocketChannel channel = mock(WebSocketChannel.class);
+        when(channel.getChannelId()).thenReturn(channelId);
+        when(channel.getUserAgent()).thenReturn("test");
+
+        requests.put(channel, new ProcessRequest(Collections.emptyMap(), maxCount));
+        return channelId;
+    }
+
+    private static List<ProcessQueueEntry> entries(int count) {
+        List<ProcessQueueEntry> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(ProcessQueueEntry.builder()
+                    .key(new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis())))
+                    .build());
+        }
+        return result;
+    }
+
+    private static List<UUID> ids(List<ProcessQueueEntry> entries) {
+        return entries.stream().map(e -> e.key().getInstanceId()).collect(Collectors.toList());
+    }
+
+    private static List<UUID> processIds(List<ProcessResponse> responses) {
+        return responses.stream().map(ProcessResponse::getProcessId).collect(Collectors.toList());
+    }
+}
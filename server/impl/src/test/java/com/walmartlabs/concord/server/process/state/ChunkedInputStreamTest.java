@@ -0,0 +1,76 @@
+package com.walmartlabs.concord.server.process.state;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.common.IOUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ChunkedInputStreamTest {
+
+    @Test
+    public void testRead() throws Exception {
+        byte[] ab = new byte[10];
+        for (int i = 0; i < ab.length; i++) {
+            ab[i] = (byte) (200 + i);
+        }
+
+        List<Integer> offsets = new ArrayList<>();
+        try (InputStream in = new ChunkedInputStream(ab.length, 4, (offset, len) -> {
+            offsets.add(offset);
+            return Arrays.copyOfRange(ab, offset, offset + len);
+        })) {
+            assertEquals(200, in.read());
+            assertArrayEquals(Arrays.copyOfRange(ab, 1, ab.length), IOUtils.toByteArray(in));
+            assertEquals(-1, in.read());
+        }
+
+        assertEquals(Arrays.asList(0, 4, 8), offsets);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        try (InputStream in = new ChunkedInputStream(0, 4, (offset, len) -> {
+            throw new IllegalStateException("unexpected read");
+        })) {
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testRemoved() throws Exception {
+        byte[] ab = "0123456789".getBytes();
+
+        try (InputStream in = new ChunkedInputStream(ab.length, 4, (offset, len) -> offset == 0 ? Arrays.copyOfRange(ab, 0, len) : null)) {
+            IOUtils.toByteArray(in);
+            fail("exception expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("modified or removed"));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.walmartlabs.concord.server.process.state;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.common.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+public class FileStateStoreTest {
+
+    @Test
+    public void testPutGetDelete() throws Exception {
+        Path dir = Files.createTempDirectory("test");
+        FileStateStore store = new FileStateStore(dir);
+
+        String hash = "0123456789abcdef";
+
+        store.put(hash, new ByteArrayInputStream("hello".getBytes()));
+        // the same data can be stored multiple times
+        store.put(hash, new ByteArrayInputStream("hello".getBytes()));
+
+        try (InputStream in = store.get(hash)) {
+            assertArrayEquals("hello".getBytes(), IOUtils.toByteArray(in));
+        }
+
+        store.delete(hash);
+
+        try {
+            store.get(hash);
+            fail("exception expected");
+        } catch (NoSuchFileException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHash() throws Exception {
+        FileStateStore store = new FileStateStore(Files.createTempDirectory("test"));
+        store.get("../../etc/passwd");
+    }
+}
@@ -21,15 +21,21 @@ package com.walmartlabs.concord.server.process.state;
  */
 
 import com.google.common.base.Charsets;
+import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.server.AbstractDaoTest;
+import com.walmartlabs.concord.server.Locks;
+import com.walmartlabs.concord.server.cfg.LockingConfiguration;
 import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
 import com.walmartlabs.concord.server.cfg.SecretStoreConfiguration;
 import com.walmartlabs.concord.server.process.ProcessKey;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -37,12 +43,18 @@ import java.nio.file.StandardOpenOption;
 import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
+import static com.walmartlabs.concord.server.jooq.tables.ProcessState.PROCESS_STATE;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessStateBlobs.PROCESS_STATE_BLOBS;
 import static com.walmartlabs.concord.server.process.state.ProcessStateManager.copyTo;
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @Ignore("requires a local DB instance")
 public class ProcessStateManagerTest extends AbstractDaoTest {
@@ -58,7 +70,7 @@ public class ProcessStateManagerTest extends AbstractDaoTest {
 
         //
         ProcessConfiguration stateCfg = new ProcessConfiguration(24 * 60 * 60 * 1000, Collections.singletonList(Constants.Files.REQUEST_DATA_FILE_NAME));
-        ProcessStateManager stateManager = new ProcessStateManager(getConfiguration(), mock(SecretStoreConfiguration.class), stateCfg);
+        ProcessStateManager stateManager = new ProcessStateManager(getConfiguration(), mock(SecretStoreConfiguration.class), stateCfg, provider(new DatabaseStateStore(getConfiguration())), locks());
         stateManager.importPath(processKey, null, baseDir);
 
         Path tmpDir = Files.createTempDirectory("testExport");
@@ -80,6 +92,155 @@ public class ProcessStateManagerTest extends AbstractDaoTest {
         assertFileContent("456", tmpDir.resolve("file-2"));
     }
 
+    @Test
+    public void testFileStore() throws Exception {
+        ProcessKey processKey = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+
+        Path baseDir = Files.createTempDirectory("testImport");
+        writeTempFile(baseDir.resolve("file-1"), "123".getBytes());
+
+        Path storeDir = Files.createTempDirectory("testStore");
+
+        ProcessConfiguration stateCfg = new ProcessConfiguration(24 * 60 * 60 * 1000, Collections.singletonList(Constants.Files.REQUEST_DATA_FILE_NAME));
+        ProcessStateManager stateManager = new ProcessStateManager(getConfiguration(), mock(SecretStoreConfiguration.class), stateCfg, provider(new FileStateStore(storeDir)), locks());
+        stateManager.importPath(processKey, null, baseDir);
+
+        Path tmpDir = Files.createTempDirectory("testExport");
+
+        assertTrue(stateManager.export(processKey, copyTo(tmpDir)));
+        assertFileContent("123", tmpDir.resolve("file-1"));
+    }
+
+    @Test
+    public void testDedup() throws Exception {
+        ProcessKey a = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+        ProcessKey b = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+
+        byte[] ab = ("dedup-" + UUID.randomUUID()).getBytes();
+        String hash = IOUtils.sha256(ab);
+
+        Path baseDir = Files.createTempDirectory("testImport");
+        writeTempFile(baseDir.resolve("file-1"), ab);
+        writeTempFile(baseDir.resolve("file-2"), ab);
+
+        ProcessConfiguration stateCfg = new ProcessConfiguration(24 * 60 * 60 * 1000, Collections.singletonList(Constants.Files.REQUEST_DATA_FILE_NAME));
+        ProcessStateManager stateManager = new ProcessStateManager(getConfiguration(), mock(SecretStoreConfiguration.class), stateCfg, provider(new DatabaseStateStore(getConfiguration())), locks());
+
+        // the same content in two files of the same process and in two processes
+        stateManager.importPath(a, null, baseDir);
+        stateManager.importPath(b, null, baseDir);
+        stateManager.insert(b.getInstanceId(), b.getCreatedAt(), "file-3", ab);
+
+        try (DSLContext tx = DSL.using(getConfiguration())) {
+            int blobs = tx.fetchCount(PROCESS_STATE_BLOBS, PROCESS_STATE_BLOBS.BLOB_HASH.eq(hash));
+            assertEquals(1, blobs);
+
+            List<String> paths = tx.select(PROCESS_STATE.ITEM_PATH)
+                    .from(PROCESS_STATE)
+                    .where(PROCESS_STATE.BLOB_HASH.eq(hash)
+                            .and(PROCESS_STATE.ITEM_DATA.isNull()))
+                    .fetch(PROCESS_STATE.ITEM_PATH);
+            assertEquals(5, paths.size());
+        }
+
+        Path tmpDir = Files.createTempDirectory("testExport");
+        assertTrue(stateManager.export(b, copyTo(tmpDir)));
+        assertFileContent(new String(ab), tmpDir.resolve("file-1"));
+        assertFileContent(new String(ab), tmpDir.resolve("file-2"));
+        assertFileContent(new String(ab), tmpDir.resolve("file-3"));
+    }
+
+    @Test
+    public void testCoalescedReads() throws Exception {
+        ProcessKey processKey = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+
+        ProcessConfiguration stateCfg = new ProcessConfiguration(24 * 60 * 60 * 1000, Collections.singletonList(Constants.Files.REQUEST_DATA_FILE_NAME));
+        ProcessStateManager stateManager = new ProcessStateManager(getConfiguration(), mock(SecretStoreConfiguration.class), stateCfg, provider(new DatabaseStateStore(getConfiguration())), locks());
+
+        // a file stored as a blob
+        stateManager.insert(processKey.getInstanceId(), processKey.getCreatedAt(), "dir/blob", "from-blob".getBytes());
+
+        // a file stored before the blobs were introduced, the data is in ITEM_DATA
+        tx(tx -> tx.insertInto(PROCESS_STATE)
+                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.IS_ENCRYPTED)
+                .values(processKey.getInstanceId(), processKey.getCreatedAt(), "dir/inline", "from-item-data".getBytes(), false)
+                .execute());
+
+        assertEquals(Optional.of("from-blob"), stateManager.get(processKey, "dir/blob", ProcessStateManagerTest::read));
+        assertEquals(Optional.of("from-item-data"), stateManager.get(processKey, "dir/inline", ProcessStateManagerTest::read));
+
+        try (InputStream in = stateManager.open(processKey, "dir/blob").orElseThrow(IllegalStateException::new)) {
+            assertEquals("from-blob", new String(IOUtils.toByteArray(in)));
+        }
+        try (InputStream in = stateManager.open(processKey, "dir/inline").orElseThrow(IllegalStateException::new)) {
+            assertEquals("from-item-data", new String(IOUtils.toByteArray(in)));
+        }
+
+        List<String> l = stateManager.forEach(processKey, "dir/", ProcessStateManagerTest::read);
+        assertEquals(2, l.size());
+        assertTrue(l.contains("from-blob"));
+        assertTrue(l.contains("from-item-data"));
+
+        Path tmpDir = Files.createTempDirectory("testExport");
+        assertTrue(stateManager.exportDirectory(processKey, "dir", copyTo(tmpDir)));
+        assertFileContent("from-blob", tmpDir.resolve("blob"));
+        assertFileContent("from-item-data", tmpDir.resolve("inline"));
+    }
+
+    @Test
+    public void testDelta() throws Exception {
+        ProcessKey processKey = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+
+        Path baseDir = Files.createTempDirectory("testImport");
+        writeTempFile(baseDir.resolve("file-1"), "123".getBytes());
+        writeTempFile(baseDir.resolve("file-2"), "456".getBytes());
+        Files.createDirectories(baseDir.resolve("_state"));
+        writeTempFile(baseDir.resolve("_state/old"), "old".getBytes());
+
+        ProcessConfiguration stateCfg = new ProcessConfiguration(24 * 60 * 60 * 1000, Collections.singletonList(Constants.Files.REQUEST_DATA_FILE_NAME));
+        ProcessStateManager stateManager = new ProcessStateManager(getConfiguration(), mock(SecretStoreConfiguration.class), stateCfg, provider(new DatabaseStateStore(getConfiguration())), locks());
+        stateManager.importPath(processKey, "dir", baseDir);
+
+        Map<String, StateManifestEntry> current = stateManager.getManifest(processKey, "dir");
+        assertEquals(3, current.size());
+        assertEquals(IOUtils.sha256("123".getBytes()), current.get("file-1").getHash());
+
+        // file-1 changed, file-2 is the same, _state/old removed, _state/new added
+        Map<String, StateManifestEntry> manifest = new HashMap<>();
+        manifest.put("file-1", new StateManifestEntry(IOUtils.sha256("123-up".getBytes()), current.get("file-1").getUnixMode()));
+        manifest.put("file-2", current.get("file-2"));
+        manifest.put("_state/new", new StateManifestEntry(IOUtils.sha256("new".getBytes()), current.get("file-1").getUnixMode()));
+
+        List<String> changed = stateManager.diff(processKey, "dir", manifest);
+        Collections.sort(changed);
+        assertEquals(Arrays.asList("_state/new", "file-1"), changed);
+
+        Path delta = Files.createTempDirectory("testDelta");
+        writeTempFile(delta.resolve("file-1"), "123-up".getBytes());
+        Files.createDirectories(delta.resolve("_state"));
+        writeTempFile(delta.resolve("_state/new"), "new".getBytes());
+
+        assertTrue(stateManager.importDelta(processKey, "dir", delta, manifest, "_state/"));
+
+        Path tmpDir = Files.createTempDirectory("testExport");
+        assertTrue(stateManager.exportDirectory(processKey, "dir", copyTo(tmpDir)));
+        assertFileContent("123-up", tmpDir.resolve("file-1"));
+        assertFileContent("456", tmpDir.resolve("file-2"));
+        assertFileContent("new", tmpDir.resolve("_state/new"));
+        assertFalse(Files.exists(tmpDir.resolve("_state/old")));
+
+        // conflict: the manifest refers to a file which is neither in the current state nor in the delta
+        Map<String, StateManifestEntry> stale = new HashMap<>(manifest);
+        stale.put("file-3", new StateManifestEntry(IOUtils.sha256("789".getBytes()), 0644));
+        stale.remove("file-2");
+
+        Path empty = Files.createTempDirectory("testDelta");
+        assertFalse(stateManager.importDelta(processKey, "dir", empty, stale, ""));
+
+        // nothing is changed
+        assertEquals(stateManager.getManifest(processKey, "dir").keySet(), manifest.keySet());
+    }
+
     @Ignore
     @Test
     public void testLargeImport() throws Exception {
@@ -103,10 +264,28 @@ public class ProcessStateManagerTest extends AbstractDaoTest {
         }
 
         ProcessConfiguration stateCfg = new ProcessConfiguration(24 * 60 * 60 * 1000, Collections.singletonList(Constants.Files.REQUEST_DATA_FILE_NAME));
-        ProcessStateManager stateManager = new ProcessStateManager(getConfiguration(), mock(SecretStoreConfiguration.class), stateCfg);
+        ProcessStateManager stateManager = new ProcessStateManager(getConfiguration(), mock(SecretStoreConfiguration.class), stateCfg, provider(new DatabaseStateStore(getConfiguration())), locks());
         stateManager.importPath(processKey, "/", baseDir);
     }
 
+    private static Locks locks() {
+        return new Locks(new LockingConfiguration(8));
+    }
+
+    private static StateStoreProvider provider(StateStore store) {
+        StateStoreProvider provider = mock(StateStoreProvider.class);
+        when(provider.get()).thenReturn(store);
+        return provider;
+    }
+
+    private static Optional<String> read(InputStream in) {
+        try {
+            return Optional.of(new String(IOUtils.toByteArray(in)));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private static void assertFileContent(String expected, Path f) throws IOException {
         String str = com.google.common.io.Files.asCharSource(f.toFile(), Charsets.UTF_8).read();
         assertEquals(expected, str);
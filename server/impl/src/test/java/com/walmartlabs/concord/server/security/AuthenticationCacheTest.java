@@ -0,0 +1,138 @@
+package com.walmartlabs.concord.server.security;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.cfg.AuthenticationCacheConfiguration;
+import com.walmartlabs.concord.server.cluster.ClusterNotificationListener;
+import com.walmartlabs.concord.server.cluster.ClusterNotifications;
+import com.walmartlabs.concord.server.process.queue.dispatcher.DispatcherIndex;
+import com.walmartlabs.concord.server.security.apikey.ApiKeyDao;
+import com.walmartlabs.concord.server.user.UserEntry;
+import com.walmartlabs.concord.server.user.UserManager;
+import com.walmartlabs.concord.server.user.UserType;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class AuthenticationCacheTest {
+
+    private static final String API_KEY = Base64.getEncoder().encodeToString("test-key".getBytes());
+
+    private final Map<String, ClusterNotificationListener> listeners = new HashMap<>();
+
+    private ApiKeyDao apiKeyDao;
+    private UserManager userManager;
+    private AuthenticationCache cache;
+
+    @Before
+    public void init() {
+        AuthenticationCacheConfiguration cfg = mock(AuthenticationCacheConfiguration.class);
+        when(cfg.getTtl()).thenReturn(60000L);
+        when(cfg.getMaxSize()).thenReturn(100L);
+
+        ClusterNotifications notifications = mock(ClusterNotifications.class);
+        doAnswer(inv -> listeners.put(inv.getArgument(0), inv.getArgument(1)))
+                .when(notifications).subscribe(any(), any());
+
+        apiKeyDao = mock(ApiKeyDao.class);
+        userManager = mock(UserManager.class);
+
+        cache = new AuthenticationCache(cfg, apiKeyDao, userManager, notifications, new MetricRegistry());
+    }
+
+    @Test
+    public void testApiKeys() {
+        UUID userId = UUID.randomUUID();
+        when(apiKeyDao.findUserId(API_KEY)).thenReturn(userId);
+        when(userManager.get(userId)).thenReturn(Optional.of(user(userId)));
+
+        assertEquals(userId, cache.findApiKeyUserId(API_KEY));
+        assertEquals(userId, cache.findApiKeyUserId(API_KEY));
+        assertEquals(userId, cache.getUser(userId).map(UserEntry::getId).orElse(null));
+        assertEquals(userId, cache.getUser(userId).map(UserEntry::getId).orElse(null));
+
+        verify(apiKeyDao, times(1)).findUserId(API_KEY);
+        verify(userManager, times(1)).get(userId);
+
+        // e.g. the key was deleted
+        when(apiKeyDao.findUserId(API_KEY)).thenReturn(null);
+        listeners.get(AuthenticationCache.CHANNEL).onNotification(userId.toString());
+
+        assertNull(cache.findApiKeyUserId(API_KEY));
+        cache.getUser(userId);
+
+        verify(apiKeyDao, times(2)).findUserId(API_KEY);
+        verify(userManager, times(2)).get(userId);
+    }
+
+    @Test
+    public void testUnknownKeysAreNotCached() {
+        assertNull(cache.findApiKeyUserId(API_KEY));
+        assertNull(cache.findApiKeyUserId(API_KEY));
+        verify(apiKeyDao, times(2)).findUserId(eq(API_KEY));
+    }
+
+    @Test
+    public void testSessions() {
+        UUID instanceId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        AtomicInteger loads = new AtomicInteger();
+        PrincipalCollection principals = new SimplePrincipalCollection(new UserPrincipal("test", user(userId)), "test");
+
+        assertSame(principals, cache.getSessionPrincipals(instanceId, () -> {
+            loads.incrementAndGet();
+            return principals;
+        }));
+        assertSame(principals, cache.getSessionPrincipals(instanceId, () -> {
+            loads.incrementAndGet();
+            return principals;
+        }));
+        assertEquals(1, loads.get());
+
+        // non-final statuses are ignored
+        listeners.get(DispatcherIndex.CHANNEL).onNotification(instanceId + ",RUNNING");
+        assertNotNull(cache.getSessionPrincipals(instanceId, () -> null));
+
+        // the process is finished
+        listeners.get(DispatcherIndex.CHANNEL).onNotification(instanceId + ",FINISHED");
+        assertNull(cache.getSessionPrincipals(instanceId, () -> null));
+
+        // the initiator's roles were changed
+        cache.getSessionPrincipals(instanceId, () -> principals);
+        listeners.get(AuthenticationCache.CHANNEL).onNotification(userId.toString());
+        assertNull(cache.getSessionPrincipals(instanceId, () -> null));
+    }
+
+    private static UserEntry user(UUID id) {
+        return new UserEntry(id, "test", null, null, null, UserType.LOCAL, null, null, false);
+    }
+}
@@ -0,0 +1,59 @@
+package com.walmartlabs.concord.server.queueclient.message;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Response to a {@link ProcessRequest} with {@code maxCount} specified.
+ * Contains zero or more processes assigned to the agent.
+ */
+public class ProcessBatchResponse extends Message {
+
+    private final List<ProcessResponse> processes;
+
+    @JsonCreator
+    public ProcessBatchResponse(
+            @JsonProperty("correlationId") long correlationId,
+            @JsonProperty("processes") List<ProcessResponse> processes) {
+
+        super(MessageType.PROCESS_BATCH_RESPONSE);
+
+        setCorrelationId(correlationId);
+        this.processes = processes;
+    }
+
+    public List<ProcessResponse> getProcesses() {
+        return processes;
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessBatchResponse{" +
+                "correlationId=" + getCorrelationId() +
+                ", processes=" + processes +
+                '}';
+    }
+}
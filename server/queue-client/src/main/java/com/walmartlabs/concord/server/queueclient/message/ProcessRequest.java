@@ -28,23 +28,41 @@ import java.util.Map;
 public class ProcessRequest extends Message {
 
     private final Map<String, Object> capabilities;
+    private final Integer maxCount;
 
+    public ProcessRequest(Map<String, Object> capabilities) {
+        this(capabilities, null);
+    }
+
+    /**
+     * @param maxCount maximum number of processes the agent can accept.
+     *                 If specified, the server replies with a {@link ProcessBatchResponse}
+     *                 containing up to {@code maxCount} processes. Otherwise
+     *                 a single {@link ProcessResponse} is sent back.
+     */
     @JsonCreator
     public ProcessRequest(
-            @JsonProperty("capabilities") Map<String, Object> capabilities) {
+            @JsonProperty("capabilities") Map<String, Object> capabilities,
+            @JsonProperty("maxCount") Integer maxCount) {
         super(MessageType.PROCESS_REQUEST);
         this.capabilities = capabilities;
+        this.maxCount = maxCount;
     }
 
     public Map<String, Object> getCapabilities() {
         return capabilities;
     }
 
+    public Integer getMaxCount() {
+        return maxCount;
+    }
+
     @Override
     public String toString() {
         return "ProcessRequest{" +
                 "correlationId='" + getCorrelationId() + "', " +
-                "capabilities='" + capabilities + "'" +
+                "capabilities='" + capabilities + "', " +
+                "maxCount=" + maxCount +
                 '}';
     }
 }
@@ -26,11 +26,11 @@ import com.walmartlabs.concord.imports.Imports;
 import com.walmartlabs.concord.server.queueclient.message.*;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.UUID;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.*;
 
 public class MessageSerializerTest {
 
@@ -77,6 +77,22 @@ public class MessageSerializerTest {
         assertEquals(r.getMessageType(), MessageType.PROCESS_REQUEST);
         assertEquals(r.getCapabilities(), rDeserialized.getCapabilities());
         assertEquals(r.getCorrelationId(), rDeserialized.getCorrelationId());
+        assertNull(rDeserialized.getMaxCount());
+        assertFalse(rSerialized.contains("maxCount"));
+    }
+
+    @Test
+    public void testProcessRequestMaxCount() {
+        ProcessRequest r = new ProcessRequest(Collections.singletonMap("k", "v"), 10);
+        r.setCorrelationId(123);
+
+        // ---
+        String rSerialized = MessageSerializer.serialize(r);
+        assertNotNull(rSerialized);
+
+        ProcessRequest rDeserialized = MessageSerializer.deserialize(rSerialized);
+        assertEquals(r.getCapabilities(), rDeserialized.getCapabilities());
+        assertEquals(Integer.valueOf(10), rDeserialized.getMaxCount());
     }
 
     @Test
@@ -108,4 +124,23 @@ public class MessageSerializerTest {
         assertEquals(r.getProcessId(), rDeserialized.getProcessId());
         assertEquals(r.getCorrelationId(), rDeserialized.getCorrelationId());
     }
+
+    @Test
+    public void testProcessBatchResponse() {
+        ProcessResponse a = new ProcessResponse(123, UUID.randomUUID(), null, "repo-url", "repo-path", "commit-id", null, null);
+        ProcessResponse b = new ProcessResponse(123, UUID.randomUUID(), null, null, null, null, null, null);
+        ProcessBatchResponse r = new ProcessBatchResponse(123, Arrays.asList(a, b));
+
+        // ---
+        String rSerialized = MessageSerializer.serialize(r);
+        assertNotNull(rSerialized);
+
+        ProcessBatchResponse rDeserialized = MessageSerializer.deserialize(rSerialized);
+        assertEquals(MessageType.PROCESS_BATCH_RESPONSE, rDeserialized.getMessageType());
+        assertEquals(r.getCorrelationId(), rDeserialized.getCorrelationId());
+        assertEquals(2, rDeserialized.getProcesses().size());
+        assertEquals(a.getProcessId(), rDeserialized.getProcesses().get(0).getProcessId());
+        assertEquals(a.getRepoUrl(), rDeserialized.getProcesses().get(0).getRepoUrl());
+        assertEquals(b.getProcessId(), rDeserialized.getProcesses().get(1).getProcessId());
+    }
 }